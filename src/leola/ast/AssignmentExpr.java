@@ -53,6 +53,13 @@ public class AssignmentExpr extends Expr {
         return value;
     }
     
+    /**
+     * @param value the value to set
+     */
+    public void setValue(Expr value) {
+        this.value = becomeParentOf(value);
+    }
+    
     public Token getOperator() {
         return operator;
     }
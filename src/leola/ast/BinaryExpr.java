@@ -40,6 +40,13 @@ public class BinaryExpr extends Expr {
     public Expr getLeft() {
         return left;
     }
+    
+    /**
+     * @param left the left to set
+     */
+    public void setLeft(Expr left) {
+        this.left = becomeParentOf(left);
+    }
 
     /**
      * @return the right
@@ -47,6 +54,13 @@ public class BinaryExpr extends Expr {
     public Expr getRight() {
         return right;
     }
+    
+    /**
+     * @param right the right to set
+     */
+    public void setRight(Expr right) {
+        this.right = becomeParentOf(right);
+    }
 
     /**
      * @return the op
@@ -61,6 +61,13 @@ public class CaseExpr extends Expr {
     public Expr getCondition() {
         return condition;
     }
+    
+    /**
+     * @param condition the condition to set
+     */
+    public void setCondition(Expr condition) {
+        this.condition = becomeParentOf(condition);
+    }
 
     /**
      * @return the whenExprs
@@ -75,6 +82,13 @@ public class CaseExpr extends Expr {
     public Expr getElseExpr() {
         return this.elseExpr;
     }
+    
+    /**
+     * @param elseExpr the elseExpr to set
+     */
+    public void setElseExpr(Expr elseExpr) {
+        this.elseExpr = becomeParentOf(elseExpr);
+    }
 
 }
 
@@ -59,5 +59,12 @@ public class CatchStmt extends Stmt {
     public Stmt getBody() {
         return body;
     }
+    
+    /**
+     * @param body the body to set
+     */
+    public void setBody(Stmt body) {
+        this.body = becomeParentOf(body);
+    }
 }
 
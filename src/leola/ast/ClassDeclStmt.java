@@ -91,6 +91,13 @@ public class ClassDeclStmt extends Stmt {
     public Stmt getClassBodyStmt() {
         return classBodyStmt;
     }
+    
+    /**
+     * @param classBodyStmt the classBodyStmt to set
+     */
+    public void setClassBodyStmt(Stmt classBodyStmt) {
+        this.classBodyStmt = becomeParentOf(classBodyStmt);
+    }
 
     /**
      * @return the classParameters
@@ -49,6 +49,13 @@ public class DecoratorExpr extends Expr {
     public Expr getDecoratedExpr() {
         return decoratedExpr;
     }
+    
+    /**
+     * @param decoratedExpr the decoratedExpr to set
+     */
+    public void setDecoratedExpr(Expr decoratedExpr) {
+        this.decoratedExpr = becomeParentOf(decoratedExpr);
+    }
 
     
     public List<Expr> getArguments() {
@@ -50,6 +50,13 @@ public class FuncDefExpr extends Expr {
     public Stmt getBody() {
         return body;
     }
+    
+    /**
+     * @param body the body to set
+     */
+    public void setBody(Stmt body) {
+        this.body = becomeParentOf(body);
+    }
 
     /**
      * @return the parameters
@@ -43,6 +43,13 @@ public class FuncInvocationExpr extends Expr {
         return callee;
     }
     
+    /**
+     * @param callee the callee to set
+     */
+    public void setCallee(Expr callee) {
+        this.callee = becomeParentOf(callee);
+    }
+    
     public List<Expr> getArguments() {
         return arguments;
     }
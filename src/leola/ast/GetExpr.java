@@ -31,6 +31,13 @@ public class GetExpr extends Expr {
         return object;
     }
     
+    /**
+     * @param object the object to set
+     */
+    public void setObject(Expr object) {
+        this.object = becomeParentOf(object);
+    }
+    
     
     public String getIdentifier() {
         return identifier;
@@ -51,18 +51,39 @@ public class IfStmt extends Stmt {
     public Expr getCondition() {
         return condition;
     }
+    
+    /**
+     * @param condition the condition to set
+     */
+    public void setCondition(Expr condition) {
+        this.condition = becomeParentOf(condition);
+    }
     /**
      * @return the stmt
      */
     public Stmt getStmt() {
         return stmt;
     }
+    
+    /**
+     * @param stmt the stmt to set
+     */
+    public void setStmt(Stmt stmt) {
+        this.stmt = becomeParentOf(stmt);
+    }
     /**
      * @return the elseStmt
      */
     public Stmt getElseStmt() {
         return elseStmt;
     }
+    
+    /**
+     * @param elseStmt the elseStmt to set
+     */
+    public void setElseStmt(Stmt elseStmt) {
+        this.elseStmt = becomeParentOf(elseStmt);
+    }
 
 }
 
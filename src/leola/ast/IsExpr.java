@@ -39,6 +39,13 @@ public class IsExpr extends Expr {
     public Expr getObject() {
         return object;
     }
+    
+    /**
+     * @param object the object to set
+     */
+    public void setObject(Expr object) {
+        this.object = becomeParentOf(object);
+    }
 
     /**
      * @return the className
@@ -53,4 +53,11 @@ public class NamedParameterExpr extends Expr {
     public Expr getValueExpr() {
         return valueExpr;
     }
+    
+    /**
+     * @param valueExpr the valueExpr to set
+     */
+    public void setValueExpr(Expr valueExpr) {
+        this.valueExpr = becomeParentOf(valueExpr);
+    }
 }
@@ -44,6 +44,13 @@ public class NamespaceSetExpr extends Expr {
         return value;
     }
     
+    /**
+     * @param value the value to set
+     */
+    public void setValue(Expr value) {
+        this.value = becomeParentOf(value);
+    }
+    
     public Token getOperator() {
         return operator;
     }
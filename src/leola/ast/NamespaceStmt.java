@@ -48,6 +48,13 @@ public class NamespaceStmt extends Stmt {
     public Stmt getStmt() {
         return stmt;
     }
+    
+    /**
+     * @param stmt the stmt to set
+     */
+    public void setStmt(Stmt stmt) {
+        this.stmt = becomeParentOf(stmt);
+    }
 
     /**
      * @return the name
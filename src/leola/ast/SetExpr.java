@@ -36,6 +36,13 @@ public class SetExpr extends Expr {
         return object;
     }
     
+    /**
+     * @param object the object to set
+     */
+    public void setObject(Expr object) {
+        this.object = becomeParentOf(object);
+    }
+    
     public String getIdentifier() {
         return identifier;
     }
@@ -44,6 +51,13 @@ public class SetExpr extends Expr {
         return value;
     }
     
+    /**
+     * @param value the value to set
+     */
+    public void setValue(Expr value) {
+        this.value = becomeParentOf(value);
+    }
+    
     public Token getOperator() {
         return operator;
     }
@@ -51,6 +51,13 @@ public class SubscriptGetExpr extends Expr {
     public Expr getObject() {
         return object;
     }
+    
+    /**
+     * @param object the object to set
+     */
+    public void setObject(Expr object) {
+        this.object = becomeParentOf(object);
+    }
 
     /**
      * @return the elementIndex
@@ -58,5 +65,12 @@ public class SubscriptGetExpr extends Expr {
     public Expr getElementIndex() {
         return elementIndex;
     }
+    
+    /**
+     * @param elementIndex the elementIndex to set
+     */
+    public void setElementIndex(Expr elementIndex) {
+        this.elementIndex = becomeParentOf(elementIndex);
+    }
 }
 
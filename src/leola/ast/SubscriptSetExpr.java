@@ -47,6 +47,13 @@ public class SubscriptSetExpr extends Expr {
     public Expr getObject() {
         return object;
     }
+    
+    /**
+     * @param object the object to set
+     */
+    public void setObject(Expr object) {
+        this.object = becomeParentOf(object);
+    }
 
     /**
      * @return the elementIndex
@@ -55,10 +62,24 @@ public class SubscriptSetExpr extends Expr {
         return elementIndex;
     }
     
+    /**
+     * @param elementIndex the elementIndex to set
+     */
+    public void setElementIndex(Expr elementIndex) {
+        this.elementIndex = becomeParentOf(elementIndex);
+    }
+    
     public Expr getValue() {
         return value;
     }
     
+    /**
+     * @param value the value to set
+     */
+    public void setValue(Expr value) {
+        this.value = becomeParentOf(value);
+    }
+    
     public Token getOperator() {
         return operator;
     }
@@ -61,6 +61,13 @@ public class SwitchStmt extends Stmt {
     public Expr getCondition() {
         return condition;
     }
+    
+    /**
+     * @param condition the condition to set
+     */
+    public void setCondition(Expr condition) {
+        this.condition = becomeParentOf(condition);
+    }
 
     /**
      * @return the elseStmt
@@ -68,6 +75,13 @@ public class SwitchStmt extends Stmt {
     public Stmt getElseStmt() {
         return elseStmt;
     }
+    
+    /**
+     * @param elseStmt the elseStmt to set
+     */
+    public void setElseStmt(Stmt elseStmt) {
+        this.elseStmt = becomeParentOf(elseStmt);
+    }
 
     /**
      * @return the whenStmts
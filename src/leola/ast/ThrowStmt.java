@@ -42,5 +42,12 @@ public class ThrowStmt extends Stmt {
     public Expr getExpr() {
         return expr;
     }
+    
+    /**
+     * @param expr the expr to set
+     */
+    public void setExpr(Expr expr) {
+        this.expr = becomeParentOf(expr);
+    }
 }
 
@@ -47,6 +47,13 @@ public class TryStmt extends Stmt {
         return stmt;
     }
     
+    /**
+     * @param stmt the stmt to set
+     */
+    public void setStmt(Stmt stmt) {
+        this.stmt = becomeParentOf(stmt);
+    }
+    
     /**
      * @return the catchStmt
      */
@@ -60,5 +67,12 @@ public class TryStmt extends Stmt {
     public Stmt getFinallyStmt() {
         return finallyStmt;
     }
+    
+    /**
+     * @param finallyStmt the finallyStmt to set
+     */
+    public void setFinallyStmt(Stmt finallyStmt) {
+        this.finallyStmt = becomeParentOf(finallyStmt);
+    }
 }
 
@@ -41,6 +41,13 @@ public class UnaryExpr extends Expr {
     public Expr getExpr() {
         return expr;
     }
+    
+    /**
+     * @param expr the expr to set
+     */
+    public void setExpr(Expr expr) {
+        this.expr = becomeParentOf(expr);
+    }
 
 
     /* (non-Javadoc)
@@ -54,6 +54,13 @@ public class VarDeclStmt extends Stmt {
     public Expr getValue() {
         return value;
     }
+    
+    /**
+     * @param value the value to set
+     */
+    public void setValue(Expr value) {
+        this.value = becomeParentOf(value);
+    }
 
 }
 
@@ -43,6 +43,13 @@ public class WhileStmt extends Stmt {
     public Expr getCondition() {
         return condition;
     }
+    
+    /**
+     * @param condition the condition to set
+     */
+    public void setCondition(Expr condition) {
+        this.condition = becomeParentOf(condition);
+    }
 
     /**
      * @return the stmt
@@ -50,5 +57,12 @@ public class WhileStmt extends Stmt {
     public Stmt getStmt() {
         return stmt;
     }
+    
+    /**
+     * @param stmt the stmt to set
+     */
+    public void setStmt(Stmt stmt) {
+        this.stmt = becomeParentOf(stmt);
+    }
 }
 
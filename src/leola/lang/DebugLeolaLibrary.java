@@ -14,8 +14,10 @@ import leola.vm.Args;
 import leola.vm.Leola;
 import leola.vm.compiler.Assembler;
 import leola.vm.compiler.Bytecode;
+import leola.vm.debug.BreakpointListener;
 import leola.vm.debug.DebugEvent;
-import leola.vm.debug.DebugListener;
+import leola.vm.debug.Debugger;
+import leola.vm.debug.SamplingProfiler;
 import leola.vm.exceptions.LeolaRuntimeException;
 import leola.vm.lib.LeolaIgnore;
 import leola.vm.lib.LeolaLibrary;
@@ -89,14 +91,15 @@ public class DebugLeolaLibrary implements LeolaLibrary {
     /**
      * Attaches a debugger script.  The script should return
      * back a callback function that will be used to pass back
-     * the {@link DebugEvent}.
+     * the {@link DebugEvent} once a breakpoint is reached (see {@link #breakpoint(LeoObject, int)}).  If
+     * the callback returns "over" or "into", execution stops again at the next line.
      * 
      * @param filename the script file
      */
     public void debugger(final String filename) throws Exception {
         final File scriptFile = new File(filename);
         
-        runtime.setDebugListener(new DebugListener() {
+        runtime.setDebugger(new Debugger(new BreakpointListener() {
             Leola runtime = Args.builder()
                                 .setIncludeDirectories(DebugLeolaLibrary.this.runtime.getIncludePath())
                                 .setFileName(filename)
@@ -105,10 +108,94 @@ public class DebugLeolaLibrary implements LeolaLibrary {
             
             
             @Override
-            public void onLineNumber(DebugEvent event) {
-                fun.xcall(LeoObject.valueOf(event));            
+            public void onBreakpoint(DebugEvent event, Debugger debugger) {
+                LeoObject step = fun.xcall(LeoObject.valueOf(event));
+                if(step.$eq(LeoObject.valueOf("over"))) {
+                    debugger.stepOver();
+                }
+                else if(step.$eq(LeoObject.valueOf("into"))) {
+                    debugger.stepInto();
+                }
             }
-        });
+        }));
+    }
+    
+    /**
+     * Sets a breakpoint on a line of the supplied function or class.  A debugger must be
+     * attached (see {@link #debugger(String)}).
+     * 
+     * @param f the function or class
+     * @param line the line number
+     * @return true if the line was found
+     * @throws Exception
+     */
+    public boolean breakpoint(LeoObject f, int line) throws Exception {
+        return attachedDebugger().addBreakpoint(getbytecode(f), line);
+    }
+    
+    /**
+     * Removes a breakpoint from a line of the supplied function or class.
+     * 
+     * @param f the function or class
+     * @param line the line number
+     * @return true if a breakpoint was removed
+     * @throws Exception
+     */
+    public boolean clearbreakpoint(LeoObject f, int line) throws Exception {
+        return attachedDebugger().removeBreakpoint(getbytecode(f), line);
+    }
+    
+    /**
+     * Starts sampling the executed Leola functions, see {@link SamplingProfiler}
+     * 
+     * @param intervalMillis the time between samples in milliseconds, defaults to 10 
+     * @param lines if the samples are taken per line rather than per function
+     */
+    public void startprofiler(LeoObject intervalMillis, LeoObject lines) {
+        long interval = (intervalMillis != null && intervalMillis.isNumber()) ? intervalMillis.asLong() : 10;
+        
+        SamplingProfiler profiler = new SamplingProfiler(this.runtime, interval);
+        profiler.setLineGranularity(LeoObject.isTrue(lines));
+        
+        this.runtime.startProfiler(profiler);
+    }
+    
+    /**
+     * Stops sampling
+     */
+    public void stopprofiler() {
+        this.runtime.stopProfiler();
+    }
+    
+    /**
+     * @return the samples taken as collapsed stacks, for generating a flame graph
+     */
+    public String profilestacks() {
+        return startedProfiler().getCollapsedStacks();
+    }
+    
+    /**
+     * @param n the number of frames to include, defaults to 20
+     * @return the table of the frames with the most samples
+     */
+    public String profilereport(LeoObject n) {
+        return startedProfiler().getReport((n != null && n.isNumber()) ? n.asInt() : 20);
+    }
+    
+    private SamplingProfiler startedProfiler() {
+        SamplingProfiler profiler = this.runtime.getProfiler();
+        if(profiler == null) {
+            throw new LeolaRuntimeException("The profiler has not been started");
+        }
+        return profiler;
+    }
+    
+    private Debugger attachedDebugger() {
+        Debugger debugger = this.runtime.getDebugger();
+        if(debugger == null) {
+            throw new LeolaRuntimeException("No debugger is attached");
+        }
+        return debugger;
     }
     
     /**
@@ -64,7 +64,7 @@ public class StringLeolaLibrary implements LeolaLibrary {
             }
             sb.append(args[i]);
         }
-        return LeoString.valueOf(sb.toString());
+        return new LeoString(sb.toString());
     }
     
     @LeolaMethodVarargs
@@ -76,10 +76,10 @@ public class StringLeolaLibrary implements LeolaLibrary {
             for(int i = 0; i < len; i++) {
                 params[i] = args[i].getValue();
             }
-            result = LeoString.valueOf(String.format(str.toString(), params));
+            result = new LeoString(String.format(str.toString(), params));
         }
         else {
-            result = LeoString.valueOf(String.format(str.toString()));
+            result = new LeoString(String.format(str.toString()));
         }
             
         return result;    
@@ -148,7 +148,7 @@ public class StringLeolaLibrary implements LeolaLibrary {
     }    
     
     public LeoString trim(LeoObject str) {
-        return LeoString.valueOf(str.toString().trim());
+        return new LeoString(str.toString().trim());
     }
         
     public byte[] bytes(LeoObject str) {
@@ -188,7 +188,7 @@ public class LeolaFile {
         do {
             line = this.raf.readLine();
             if ( line != null ) {
-                result.add(LeoString.valueOf(line));
+                result.add(new LeoString(line));
             }
             
         } while(line != null);
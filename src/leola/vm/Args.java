@@ -10,9 +10,11 @@ import java.util.ArrayList;
 import java.util.List;
 
 import leola.vm.exceptions.LeolaRuntimeException;
+import leola.vm.jit.JitCompiler;
 import leola.vm.lib.LeolaLibrary;
 import leola.vm.types.LeoArray;
 import leola.vm.types.LeoObject;
+import leola.vm.util.BytecodeCache;
 
 /**
  * {@link Leola} VM arguments
@@ -144,6 +146,128 @@ public class Args {
             return this;
         }
         
+        /**
+         * This enables defining the methods of a class body once per class definition, which
+         * are then shared between all of the instances of the class.  The methods are bound to
+         * an instance when they are first looked up, which avoids allocating a function for each 
+         * method every time a class is instantiated.
+         * 
+         * Defaults to true.
+         * @param sharedClassMethods
+         * @return the {@link ArgsBuilder} for method chaining
+         */
+        public ArgsBuilder setSharedClassMethods(boolean sharedClassMethods) {
+            args.enableSharedClassMethods(sharedClassMethods);
+            return this;
+        }
+        
+        /**
+         * This enables the peephole optimizer, which removes redundant instructions
+         * and fuses frequent instruction sequences into superinstructions
+         * once the bytecode has been emitted.
+         * 
+         * Defaults to true.
+         * @param optimizeBytecode
+         * @return the {@link ArgsBuilder} for method chaining
+         */
+        public ArgsBuilder setOptimizeBytecode(boolean optimizeBytecode) {
+            args.enableBytecodeOptimizer(optimizeBytecode);
+            return this;
+        }
+        
+        /**
+         * This enables the constant folding pass, which folds constant expressions,
+         * removes dead branches and unreachable statements prior to generating bytecode.
+         * 
+         * Defaults to true.
+         * @param foldConstants
+         * @return the {@link ArgsBuilder} for method chaining
+         */
+        public ArgsBuilder setFoldConstants(boolean foldConstants) {
+            args.enableConstantFolding(foldConstants);
+            return this;
+        }
+        
+        /**
+         * This enables quickening, the {@link VM} rewrites arithmetic and comparison instructions
+         * into type specialized instructions once it has observed their operand types.
+         * 
+         * Defaults to true.
+         * @param quickenInstructions
+         * @return the {@link ArgsBuilder} for method chaining
+         */
+        public ArgsBuilder setQuickenInstructions(boolean quickenInstructions) {
+            args.enableQuickening(quickenInstructions);
+            return this;
+        }
+        
+        /**
+         * This enables tiered compilation, the {@link VM} compiles hot functions
+         * into Java bytecode, see {@link JitCompiler}.
+         * 
+         * Defaults to true.
+         * @param tieredCompilation
+         * @return the {@link ArgsBuilder} for method chaining
+         */
+        public ArgsBuilder setTieredCompilation(boolean tieredCompilation) {
+            args.enableTieredCompilation(tieredCompilation);
+            return this;
+        }
+        
+        /**
+         * The number of invocations (or loop iterations) of a function before it
+         * is compiled, only used if tiered compilation is enabled.
+         * 
+         * Defaults to {@link JitCompiler#DEFAULT_COMPILE_THRESHOLD}
+         * @param compileThreshold
+         * @return the {@link ArgsBuilder} for method chaining
+         */
+        public ArgsBuilder setCompileThreshold(int compileThreshold) {
+            args.setCompileThreshold(compileThreshold);
+            return this;
+        }
+        
+        /**
+         * This enables counting the number of instructions dispatched by
+         * each {@link VM}, see {@link VM#getInstructionCount()}.
+         * 
+         * Defaults to false.
+         * @param countInstructions
+         * @return the {@link ArgsBuilder} for method chaining
+         */
+        public ArgsBuilder setCountInstructions(boolean countInstructions) {
+            args.enableInstructionCount(countInstructions);
+            return this;
+        }
+        
+        /**
+         * This enables collecting the execution count and time of each opcode, stack
+         * growths and allocations, see {@link Leola#getMetrics()}.  This slows down
+         * the {@link VM}.
+         * 
+         * Defaults to false.
+         * @param collectMetrics
+         * @return the {@link ArgsBuilder} for method chaining
+         */
+        public ArgsBuilder setCollectMetrics(boolean collectMetrics) {
+            args.enableMetrics(collectMetrics);
+            return this;
+        }
+        
+        /**
+         * This enables sharing the global and namespace scopes between threads, allowing
+         * for multiple threads to call into (and define globals in) the same {@link Leola}
+         * runtime.  This requires thread locals, see {@link #setAllowThreadLocals(boolean)}.
+         * 
+         * Defaults to false.
+         * @param concurrentGlobals
+         * @return the {@link ArgsBuilder} for method chaining
+         */
+        public ArgsBuilder setConcurrentGlobals(boolean concurrentGlobals) {
+            args.enableConcurrentGlobals(concurrentGlobals);
+            return this;
+        }
+        
         
         /**
          * A statement to be executed immediately.
@@ -207,6 +331,32 @@ public class Args {
             return this;
         }
         
+        /**
+         * Starts the runtime from a snapshot file (see {@link Leola#writeSnapshot(File)}), rather
+         * than loading the standard libraries.
+         * 
+         * @param snapshotFile
+         * @return the {@link ArgsBuilder} for method chaining
+         */
+        public ArgsBuilder setSnapshotFile(File snapshotFile) {
+            args.setSnapshotFile(snapshotFile);
+            return this;
+        }
+        
+        /**
+         * Caches the compiled scripts in the directory, so that a script is only compiled
+         * again once it changes, see {@link BytecodeCache}.
+         * 
+         * Defaults to not caching the compiled scripts.
+         * 
+         * @param bytecodeCacheDirectory
+         * @return the {@link ArgsBuilder} for method chaining
+         */
+        public ArgsBuilder setBytecodeCacheDirectory(File bytecodeCacheDirectory) {
+            args.setBytecodeCacheDirectory(bytecodeCacheDirectory);
+            return this;
+        }
+        
         /**
          * Directories to be included on scanning for include and require
          * statements
@@ -253,12 +403,25 @@ public class Args {
     private boolean isExecuteStatement;
     private boolean isDebugMode;
     private boolean allowThreadLocals;
+    private boolean sharedClassMethods;
+    private boolean optimizeBytecode;
+    private boolean foldConstants;
+    private boolean quickenInstructions;
+    private boolean countInstructions;
+    private boolean collectMetrics;
+    private boolean concurrentGlobals;
+    private boolean tieredCompilation;
+    private int compileThreshold;
     private boolean isSandboxed;
     private boolean isREPL;
     private String statement;
     private LeoObject scriptArgs;
     private int stackSize;
     private int maxStackSize;    
+    private File snapshotFile;
+    private File snapshotOutputFile;
+    private File bytecodeCacheDirectory;
+    private boolean precompile;
     private List<File> includeDirectories = new ArrayList<File>();
     
     /**
@@ -275,6 +438,19 @@ public class Args {
         { "x", "Sets the stack size. Ex. x=1024 "    },
         { "mx", "Sets the max stack size. Ex. mx=1000000" },
         { "t", "Disables allocating a VM per thread. "    },
+        { "cm", "Disables sharing class method definitions between class instances. " },
+        { "np", "Disables the bytecode peephole optimizer. " },
+        { "nf", "Disables constant folding and dead branch elimination. " },
+        { "nq", "Disables quickening of arithmetic and comparison instructions. " },
+        { "ic", "Counts the number of instructions executed by the VM. " },
+        { "im", "Collects and outputs the execution count and time of each opcode, stack growths and allocations. " },
+        { "cg", "Enables sharing the global and namespace scopes between threads. " },
+        { "nj", "Disables compiling hot functions into Java bytecode. " },
+        { "ct", "Sets the number of invocations before a function is compiled. Ex. ct=1000 " },
+        { "ls", "Starts the runtime from a snapshot file. Ex. ls=app.snapshot " },
+        { "ws", "Writes the runtime to a snapshot file once the script is executed. Ex. ws=app.snapshot " },
+        { "bc", "Caches the compiled scripts in the directory. Ex. bc=.leola-cache " },
+        { "pc", "Compiles the scripts of the directory, in parallel, into the bytecode cache. Ex. bc=.leola-cache pc scripts " },
         { "cp", "Path names to be included on include, require look ups.  Use a ';' as " +
                     "a path separater. \n\t\t Ex. \"cp=C:/My Documents/libs;C:/leola/libs\" " },
     };
@@ -344,6 +520,46 @@ public class Args {
             else if (arg.equals("t")) {
                 pargs.allowThreadLocals = false;
             }                
+            else if (arg.equals("cm")) {
+                pargs.sharedClassMethods = false;
+            }
+            else if (arg.equals("np")) {
+                pargs.optimizeBytecode = false;
+            }
+            else if (arg.equals("nf")) {
+                pargs.foldConstants = false;
+            }
+            else if (arg.equals("nq")) {
+                pargs.quickenInstructions = false;
+            }
+            else if (arg.equals("ic")) {
+                pargs.countInstructions = true;
+            }
+            else if (arg.equals("im")) {
+                pargs.collectMetrics = true;
+            }
+            else if (arg.equals("cg")) {
+                pargs.concurrentGlobals = true;
+            }
+            else if (arg.equals("nj")) {
+                pargs.tieredCompilation = false;
+            }
+            else if ( arg.startsWith("ct=") ) {
+                String value = arg.replace("ct=", "");
+                pargs.compileThreshold = Integer.parseInt(value);
+            }
+            else if ( arg.startsWith("ls=") ) {
+                pargs.snapshotFile = new File(arg.replace("ls=", ""));
+            }
+            else if ( arg.startsWith("ws=") ) {
+                pargs.snapshotOutputFile = new File(arg.replace("ws=", ""));
+            }
+            else if ( arg.startsWith("bc=") ) {
+                pargs.bytecodeCacheDirectory = new File(arg.replace("bc=", ""));
+            }
+            else if (arg.equals("pc")) {
+                pargs.precompile = true;
+            }
             else if ( arg.startsWith("cp=") ) {
                 String[] paths = arg.replace("cp=", "").split(";");
                 for(String path : paths) {
@@ -392,7 +608,13 @@ public class Args {
      */
     public Args() {
         this.allowThreadLocals=true;
+        this.sharedClassMethods=true;
+        this.optimizeBytecode=true;
+        this.foldConstants=true;
+        this.quickenInstructions=true;
+        this.tieredCompilation=true;
         this.maxStackSize = Integer.MAX_VALUE;
+        this.compileThreshold = JitCompiler.DEFAULT_COMPILE_THRESHOLD;
     }
     
     /**
@@ -483,6 +705,134 @@ public class Args {
         return this.allowThreadLocals;
     }
     
+    /**
+     * Default is true.
+     * 
+     * @see #enableSharedClassMethods(boolean)
+     * @return true if class methods are defined once per class definition
+     */
+    public boolean sharedClassMethods() {
+        return this.sharedClassMethods;
+    }
+    
+    /**
+     * Default is true.
+     * 
+     * @see #enableBytecodeOptimizer(boolean)
+     * @return true if the emitted bytecode is run through the peephole optimizer
+     */
+    public boolean optimizeBytecode() {
+        return this.optimizeBytecode;
+    }
+    
+    /**
+     * Default is true.
+     * 
+     * @see #enableConstantFolding(boolean)
+     * @return true if constant expressions and dead branches are folded prior to generating bytecode
+     */
+    public boolean foldConstants() {
+        return this.foldConstants;
+    }
+    
+    /**
+     * Default is true.
+     * 
+     * @see #enableQuickening(boolean)
+     * @return true if the {@link VM} quickens arithmetic and comparison instructions
+     */
+    public boolean quickenInstructions() {
+        return this.quickenInstructions;
+    }
+    
+    /**
+     * Default is false.
+     * 
+     * @see #enableInstructionCount(boolean)
+     * @return true if the {@link VM} counts the number of executed instructions
+     */
+    public boolean countInstructions() {
+        return this.countInstructions;
+    }
+    
+    /**
+     * Default is false.
+     * 
+     * @see #enableMetrics(boolean)
+     * @return true if the {@link VM} collects {@link VMMetrics}
+     */
+    public boolean collectMetrics() {
+        return this.collectMetrics;
+    }
+    
+    /**
+     * @return the snapshot file the runtime is started from, or null if the runtime
+     * loads the standard libraries
+     */
+    public File getSnapshotFile() {
+        return snapshotFile;
+    }
+    
+    /**
+     * @return the snapshot file the runtime is written to once the script is executed, or null
+     */
+    public File getSnapshotOutputFile() {
+        return snapshotOutputFile;
+    }
+    
+    /**
+     * @return the directory the compiled scripts are cached in, or null if the compiled
+     * scripts are not cached
+     */
+    public File getBytecodeCacheDirectory() {
+        return bytecodeCacheDirectory;
+    }
+    
+    /**
+     * @return true if the scripts of the directory (see {@link #getFileName()}) are to be
+     * compiled into the bytecode cache, rather than executing a script
+     */
+    public boolean precompile() {
+        return precompile;
+    }
+    
+    /**
+     * Default is false.
+     * 
+     * @see #enableConcurrentGlobals(boolean)
+     * @return true if the global and namespace scopes may be shared between threads
+     */
+    public boolean concurrentGlobals() {
+        return this.concurrentGlobals;
+    }
+    
+    /**
+     * Default is true.
+     * 
+     * @see #enableTieredCompilation(boolean)
+     * @return true if the {@link VM} compiles hot functions into Java bytecode
+     */
+    public boolean tieredCompilation() {
+        return this.tieredCompilation;
+    }
+    
+    /**
+     * Default is {@link JitCompiler#DEFAULT_COMPILE_THRESHOLD}.
+     * 
+     * @see #setCompileThreshold(int)
+     * @return the number of invocations (or loop iterations) of a function before it is compiled
+     */
+    public int getCompileThreshold() {
+        return this.compileThreshold;
+    }
+    
+    /**
+     * @param compileThreshold the number of invocations (or loop iterations) of a function before it is compiled
+     */
+    public void setCompileThreshold(int compileThreshold) {
+        this.compileThreshold = compileThreshold;
+    }
+    
     /**
      * @return the isSandboxed
      */
@@ -574,6 +924,27 @@ public class Args {
         this.includeDirectories = includeDirectories;
     }        
     
+    /**
+     * @param snapshotFile the snapshot file to start the runtime from
+     */
+    public void setSnapshotFile(File snapshotFile) {
+        this.snapshotFile = snapshotFile;
+    }
+    
+    /**
+     * @param snapshotOutputFile the snapshot file to write the runtime to once the script is executed
+     */
+    public void setSnapshotOutputFile(File snapshotOutputFile) {
+        this.snapshotOutputFile = snapshotOutputFile;
+    }
+    
+    /**
+     * @param bytecodeCacheDirectory the directory to cache the compiled scripts in
+     */
+    public void setBytecodeCacheDirectory(File bytecodeCacheDirectory) {
+        this.bytecodeCacheDirectory = bytecodeCacheDirectory;
+    }
+    
     /**
      * @param isDebugMode the isDebugMode to set
      */
@@ -592,5 +963,94 @@ public class Args {
     public void enableVMThreadLocal(boolean allow) {
         this.allowThreadLocals = allow;
     }
+    
+    /**
+     * When this is disabled, the functions declared in a class body are
+     * created each time the class is instantiated.  This property is enabled by
+     * default, which defines the functions once per class definition and binds
+     * them to an instance on lookup.
+     * 
+     * @param enable
+     */
+    public void enableSharedClassMethods(boolean enable) {
+        this.sharedClassMethods = enable;
+    }
+    
+    /**
+     * When this is disabled, the emitted bytecode is executed as is.  This 
+     * property is enabled by default, which removes redundant instructions 
+     * and fuses frequent instruction sequences into superinstructions.
+     * 
+     * @param enable
+     */
+    public void enableBytecodeOptimizer(boolean enable) {
+        this.optimizeBytecode = enable;
+    }
+    
+    /**
+     * When this is disabled, the syntax tree is compiled as is.  This property is
+     * enabled by default, which folds constant expressions and removes dead branches
+     * and unreachable statements.
+     * 
+     * @param enable
+     */
+    public void enableConstantFolding(boolean enable) {
+        this.foldConstants = enable;
+    }
+    
+    /**
+     * When this is disabled, arithmetic and comparison instructions always dispatch on the
+     * types of their operands.  This property is enabled by default, which rewrites these 
+     * instructions into type specialized instructions once their operand types are observed.
+     * 
+     * @param enable
+     */
+    public void enableQuickening(boolean enable) {
+        this.quickenInstructions = enable;
+    }
+    
+    /**
+     * When this is enabled, each {@link VM} counts the number of instructions it
+     * dispatches.  This is disabled by default.
+     * 
+     * @param enable
+     */
+    public void enableInstructionCount(boolean enable) {
+        this.countInstructions = enable;
+    }
+    
+    /**
+     * When this is enabled, each {@link VM} records the execution count and time of the
+     * opcodes it dispatches, its stack growths and the objects its instructions allocate
+     * into the {@link VMMetrics} of the runtime.  This is disabled by default.
+     * 
+     * @param enable
+     */
+    public void enableMetrics(boolean enable) {
+        this.collectMetrics = enable;
+    }
+    
+    /**
+     * When this is enabled, the global and namespace scopes store their values in concurrent
+     * maps, so that multiple threads may read and define globals in the same runtime, each
+     * executing in its own {@link VM}.  Class instances and locals remain unsynchronized.
+     * This is disabled by default.
+     * 
+     * @param enable
+     */
+    public void enableConcurrentGlobals(boolean enable) {
+        this.concurrentGlobals = enable;
+    }
+    
+    /**
+     * When this is enabled, functions which are invoked (or loop) often are compiled
+     * into Java bytecode, leaving their optimization to the JVM.  This is enabled
+     * by default; when disabled, all code is interpreted.
+     * 
+     * @param enable
+     */
+    public void enableTieredCompilation(boolean enable) {
+        this.tieredCompilation = enable;
+    }
 }
 
@@ -5,6 +5,8 @@
 */
 package leola.vm;
 
+import static leola.vm.Opcodes.*;
+
 import leola.vm.compiler.Bytecode;
 import leola.vm.compiler.Outer;
 import leola.vm.types.LeoClass;
@@ -28,6 +30,17 @@ public class ClassDefinition {
     
     private Outer[] outers;
     
+    /**
+     * The root {@link Shape} of the instances
+     */
+    private Shape shape;
+    
+    /**
+     * The methods declared in the class body, indexed by the
+     * program counter of their FUNC_DEF instruction
+     */
+    private ClassMethod[] methods;
+    
     /**
      * The scope in which the class
      * was defined in
@@ -51,6 +64,7 @@ public class ClassDefinition {
         this.superParams = superParams;
         this.body = body;
         this.outers = body.numOuters>0 ? new Outer[body.numOuters] : LeoOuterObject.NOOUTERS;
+        this.shape = new Shape();
     }
     
     /**
@@ -74,6 +88,85 @@ public class ClassDefinition {
         return declaredScope;
     }
     
+    /**
+     * @return the root {@link Shape} shared by the instances of this class
+     */
+    public Shape getShape() {
+        return shape;
+    }
+    
+    /**
+     * Retrieves the shared {@link ClassMethod} defined by the FUNC_DEF instruction at the supplied
+     * program counter of the class body.  A function is only shared if it is assigned directly to a class member and
+     * its closure values are all outers of the class body (i.e., it does not capture any local variables of the
+     * class body, which are different for each instance).
+     * 
+     * @param runtime
+     * @param pc the program counter of the FUNC_DEF instruction
+     * @return the {@link ClassMethod}, or null if the function can not be shared between instances
+     */
+    public ClassMethod getMethod(Leola runtime, int pc) {
+        ClassMethod[] methods = this.methods;
+        if(methods == null) {
+            methods = buildMethods(runtime);
+        }
+        
+        return methods[pc];
+    }
+    
+    /**
+     * Scans the class body for functions which can be shared between instances
+     * 
+     * @param runtime
+     * @return the methods, indexed by program counter
+     */
+    private synchronized ClassMethod[] buildMethods(Leola runtime) {
+        if(this.methods != null) {
+            return this.methods;
+        }
+        
+        final int[] instr = this.body.instr;
+        final int len = this.body.len;
+        
+        ClassMethod[] methods = new ClassMethod[len];
+        
+        int pc = 0;
+        while(pc < len) {
+            int defPc = pc;
+            int i = instr[pc++];
+            int opcode = OPCODE(i);
+            switch(opcode) {
+                case FUNC_DEF:
+                case GEN_DEF: 
+                case NAMESPACE_DEF: {
+                    Bytecode inner = this.body.inner[ARGx(i)];
+                    
+                    boolean isShareable = opcode == FUNC_DEF;
+                    Outer[] outers = inner.numOuters>0 ? new Outer[inner.numOuters] : LeoOuterObject.NOOUTERS;
+                    for(int j = 0; j < inner.numOuters; j++) {
+                        int outer = instr[pc + j];
+                        if(OPCODE(outer) == xLOAD_OUTER) {
+                            outers[j] = this.outers[ARGx(outer)];
+                        }
+                        else {
+                            isShareable = false;
+                        }
+                    }
+                    
+                    pc += inner.numOuters;
+                    
+                    if(isShareable && pc < len && OPCODE(instr[pc]) == SET_GLOBAL) {
+                        methods[defPc] = new ClassMethod(runtime, inner, outers);
+                    }
+                    break;
+                }
+            }
+        }
+        
+        this.methods = methods;
+        return methods;
+    }
+    
     /**
      * @return the outers
      */
@@ -176,7 +176,7 @@ public class ClassDefinitions {
                                 ((LeoClass)parentClass).getScope() : definition.getDeclaredScope();
 
                                 
-        Scope scope = new Scope(ScopeType.Class, parentScope);        
+        Scope scope = new Scope(ScopeType.Class, parentScope, definition.getShape());        
         LeoClass klass = new LeoClass(runtime
                                     , scope
                                     , definition
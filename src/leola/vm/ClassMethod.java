@@ -0,0 +1,47 @@
+/*
+    Leola Programming Language
+    Author: Tony Sparks
+    See license.txt
+*/
+package leola.vm;
+
+import leola.vm.compiler.Bytecode;
+import leola.vm.compiler.Outer;
+import leola.vm.types.LeoClass;
+import leola.vm.types.LeoFunction;
+import leola.vm.types.LeoObject;
+
+/**
+ * A method declared in a class body, which is defined once per {@link ClassDefinition} and shared by all
+ * of the {@link LeoClass} instances.
+ * 
+ * <p>
+ * A {@link ClassMethod} is not bound to an instance, it is stored in the instance's {@link Scope} and only 
+ * bound (see {@link ClassMethod#bind(LeoObject)}) once the method is looked up.  This means instantiating a 
+ * class does not allocate a function (and its closure values) for each of its methods.  A {@link ClassMethod}
+ * never leaves the {@link Scope}, all access to it is through the bound {@link LeoFunction}.
+ * 
+ * @author Tony
+ *
+ */
+public class ClassMethod extends LeoFunction {
+
+    /**
+     * @param runtime
+     * @param bytecode
+     * @param outers the closure values, shared by all bound instances of this method
+     */
+    public ClassMethod(Leola runtime, Bytecode bytecode, Outer[] outers) {
+        super(runtime, null, bytecode, outers);
+    }
+    
+    /**
+     * Binds this method to the supplied instance
+     * 
+     * @param instance the class instance
+     * @return the {@link LeoFunction} bound to the instance
+     */
+    public LeoFunction bind(LeoObject instance) {
+        return new LeoFunction(getRuntime(), instance, getBytecode(), getOuters());
+    }
+}
@@ -3,27 +3,30 @@
  */
 package leola.vm;
 
-import java.util.Stack;
+import java.util.EmptyStackException;
 
 /**
  * Keeps track of the program counters for jumping during try/catch/finally blocks.
- * 
+ *
  * <p>
- * This keeps an internal {@link Stack} of the INIT_*_BLOCKS which contain a program counter to
+ * This keeps an internal stack of the INIT_*_BLOCKS which contain a program counter to
  * the jumping END_BLOCK instruction set (which depending on the type will execute a CATCH or FINALLY
- * block statements).
- * 
+ * block statements).  Each entry is packed into a <code>long</code>, so pushing a block does not
+ * allocate; an {@link ExceptionStack} is owned by a {@link Frame} and reused between calls (see {@link #clear()}).
+ *
  * @author Tony
  *
  */
 public class ExceptionStack {
 
-    private Stack<Long> blockStack;
-    
+    private long[] blockStack;
+    private int size;
+
     /**
      */
     public ExceptionStack() {
-        this.blockStack = new Stack<Long>();
+        this.blockStack = new long[8];
+        this.size = 0;
     }
 
     /**
@@ -31,77 +34,103 @@ public class ExceptionStack {
      * on to the stack.
      */
     public boolean isEmpty() {
-        return this.blockStack.isEmpty();
+        return this.size == 0;
+    }
+
+    /**
+     * Removes all of the try statements
+     */
+    public void clear() {
+        this.size = 0;
+    }
+
+    private void push(long instr) {
+        if(this.size >= this.blockStack.length) {
+            long[] newStack = new long[this.blockStack.length << 1];
+            System.arraycopy(this.blockStack, 0, newStack, 0, this.size);
+            this.blockStack = newStack;
+        }
+
+        this.blockStack[this.size++] = instr;
+    }
+
+    private long peek() {
+        if(this.size == 0) {
+            throw new EmptyStackException();
+        }
+
+        return this.blockStack[this.size - 1];
     }
-    
+
     /**
      * Push a Try block with a Finally statement on to the stack
-     * 
+     *
      * @param pc the program counter (instruction index) to jump
      * to
      */
     public void pushFinally(int pc) {
         long instr = pc;
         instr = (instr << 32) | 1;
-                
-        this.blockStack.add(instr);
+
+        push(instr);
     }
-    
-    
+
+
     /**
      * Push a Try block with a Catch statement on to the stack
-     * 
+     *
      * @param pc the program counter (instruction index) to jump
      * to
      */
     public void pushCatch(int pc) {
         long instr = pc;
         instr = (instr << 32) | 0;
-                
-        this.blockStack.add(instr);
+
+        push(instr);
     }
-    
-    
+
+
     /**
-     * @return peek at the top of the stack to see if there is 
+     * @return peek at the top of the stack to see if there is
      * a Finally block to be executed
      */
     public boolean peekIsFinally() {
-        if(!this.blockStack.isEmpty()) {
-            long instr = this.blockStack.peek();
+        if(!isEmpty()) {
+            long instr = peek();
             return (instr << 32) > 0;
         }
-        
+
         return false;
     }
 
     /**
-     * @return peek at the top of the stack to see if there is 
+     * @return peek at the top of the stack to see if there is
      * a Catch block to be executed
      */
     public boolean peekIsCatch() {
-        if(!this.blockStack.isEmpty()) {
-            long instr = this.blockStack.peek();
+        if(!isEmpty()) {
+            long instr = peek();
             return (instr << 32) == 0;
         }
-        
+
         return false;
     }
-    
-    
+
+
     /**
      * @return the program counter at the top of the stack
      */
     public int peekAddress() {
-        long instr = this.blockStack.peek();
+        long instr = peek();
         return  (int) (instr >> 32);
     }
-    
-    
+
+
     /**
      * Removes the top of the Stack
      */
     public void pop() {
-        this.blockStack.pop();
+        peek();
+        this.size--;
     }
 }
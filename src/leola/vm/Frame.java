@@ -0,0 +1,174 @@
+/*
+    Leola Programming Language
+    Author: Tony Sparks
+    See license.txt
+*/
+package leola.vm;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import leola.vm.compiler.Bytecode;
+import leola.vm.compiler.Outer;
+import leola.vm.types.LeoFunction;
+import leola.vm.types.LeoObject;
+import leola.vm.types.LeoScopedObject;
+
+/**
+ * A {@link Frame} is the activation record of a {@link Bytecode} being executed by the {@link VM}.
+ *
+ * <p>
+ * Leola to Leola function calls (i.e., invoking a {@link LeoFunction} from within Leola code) do not recursively
+ * invoke {@link VM#execute(LeoObject, LeoObject, Bytecode)}; instead the {@link VM} saves the state of the calling
+ * {@link Frame}, pushes a new {@link Frame} for the called function and continues within the same dispatch loop.  Once the
+ * called function returns, the {@link Frame} is popped and the calling {@link Frame} is resumed.
+ *
+ * <p>
+ * {@link Frame}s are owned by a {@link VM} and are recycled between calls, so references to a {@link Frame} should
+ * not be held on to.
+ *
+ * @author Tony
+ *
+ */
+public class Frame {
+
+    /* the call site environment */
+    LeoObject env;
+
+    /* the object which owns the bytecode */
+    LeoObject callee;
+
+    Bytecode code;
+
+    /* the stack index in which this frame starts */
+    int base;
+
+    /* the stack index just past the local variables */
+    int topStack;
+
+    /* the program counter, published at calls and loop back-edges */
+    int pc;
+
+    Scope scope;
+    LeoScopedObject scopedObj;
+
+    Outer[] calleeouters;
+
+    /* the stack of the generator executing in this frame, or null if
+     * this frame executes on the stack of the calling frame */
+    StackSegment segment;
+
+    /* named parameters */
+    List<LeoObject> params;
+    int paramIndex;
+
+    /* exception handling */
+    ExceptionStack blockStack;
+
+    /* reused between the calls made into this frame,
+     * so that they do not need to be allocated per call */
+    private List<LeoObject> paramsBuffer;
+    private ExceptionStack blockStackBuffer;
+    private StackSegment segmentBuffer;
+
+    LeoObject result;
+    LeoObject errorThrown;
+
+    /* an error returned by a called frame, which must be
+     * thrown once this frame resumes */
+    LeoObject pendingError;
+
+    boolean closeOuters;
+    boolean yield;
+    boolean isReturnedSafely;
+    boolean exitFunction;
+
+    /**
+     * Releases any references held by this {@link Frame}, so that it may
+     * be reused
+     */
+    void clear() {
+        this.env = null;
+        this.callee = null;
+        this.code = null;
+        this.scope = null;
+        this.scopedObj = null;
+        this.calleeouters = null;
+        this.segment = null;
+        this.params = null;
+        this.blockStack = null;
+        this.result = null;
+        this.errorThrown = null;
+        this.pendingError = null;
+    }
+
+    /**
+     * @return an empty list for the named parameters, reused between the calls made into this {@link Frame}
+     */
+    List<LeoObject> newParams() {
+        if(this.paramsBuffer == null) {
+            this.paramsBuffer = new ArrayList<LeoObject>();
+        }
+        else {
+            this.paramsBuffer.clear();
+        }
+
+        return this.paramsBuffer;
+    }
+
+    /**
+     * @return an empty {@link ExceptionStack}, reused between the calls made into this {@link Frame}
+     */
+    ExceptionStack newBlockStack() {
+        if(this.blockStackBuffer == null) {
+            this.blockStackBuffer = new ExceptionStack();
+        }
+        else {
+            this.blockStackBuffer.clear();
+        }
+
+        return this.blockStackBuffer;
+    }
+
+    /**
+     * @return a {@link StackSegment} for a generator to execute on, reused between the calls made into this {@link Frame}
+     */
+    StackSegment newSegment() {
+        if(this.segmentBuffer == null) {
+            this.segmentBuffer = new StackSegment();
+        }
+
+        return this.segmentBuffer;
+    }
+
+    /**
+     * @return the {@link Bytecode} being executed
+     */
+    public Bytecode getBytecode() {
+        return code;
+    }
+
+    /**
+     * @return the object which owns the {@link Bytecode}
+     */
+    public LeoObject getCallee() {
+        return callee;
+    }
+
+    /**
+     * @return the current program counter of this frame.  Note, the executing frame only publishes its
+     * program counter when it calls into another function and at loop back-edges (backward jumps), so in
+     * between these it may lag behind the instruction being executed
+     */
+    public int getProgramCounter() {
+        return pc;
+    }
+
+    /**
+     * @return the stack index in which this frame starts; a generator frame starts at the bottom of the
+     * generator's own stack
+     */
+    public int getBase() {
+        return base;
+    }
+}
@@ -0,0 +1,361 @@
+/*
+    Leola Programming Language
+    Author: Tony Sparks
+    See license.txt
+*/
+package leola.vm;
+
+import leola.vm.compiler.Bytecode;
+import leola.vm.types.LeoMap;
+import leola.vm.types.LeoObject;
+import leola.vm.types.LeoScopedObject;
+
+/**
+ * An inline cache for a single property access instruction (<code>GETK</code>, <code>SETK</code> and <code>EGETK</code>)
+ * within a {@link Bytecode}.
+ *
+ * <p>
+ * The cache remembers, for up to {@link InlineCache#MAX_ENTRIES} receivers, how many {@link Scope}s up the property
+ * is stored and in which slot.  Each {@link Scope} walked (from the receiver up to and including the holding {@link Scope})
+ * is guarded by either:
+ * <ul>
+ *  <li>its {@link Shape}, if the {@link Scope} stores its values in slots; every {@link Scope} with the same {@link Shape}
+ *  has the same layout, so any instance of a class hits the same entry</li>
+ *  <li>its identity and version (see {@link Scope#getVersion()}), if the {@link Scope} stores its values in a {@link LeoMap};
+ *  the version changes when a reference is added or removed, which may otherwise shadow or move the cached property</li>
+ * </ul>
+ *
+ * Once more than {@link InlineCache#MAX_ENTRIES} receivers are seen at an instruction and the cache misses more than
+ * it hits, the instruction is considered megamorphic and always takes the normal lookup path.
+ *
+ * <p>
+ * Entries are immutable, so a {@link Bytecode} may be shared between {@link VM}s; concurrent updates may only
+ * lose an entry, never produce an invalid one.  Properties reached through a concurrent {@link Scope} (see
+ * {@link Scope#isConcurrent()}) are never cached, as such a {@link Scope} may be modified by other threads.
+ *
+ * <p>
+ * The hit and miss counts are plain, unsynchronized counters: when the {@link Bytecode} is shared between threads they are
+ * approximate, as concurrent increments may be lost.  They are only used as statistics and for the megamorphic heuristic,
+ * neither of which depends on them being exact.
+ *
+ * @author Tony
+ *
+ */
+public class InlineCache {
+
+    /**
+     * The maximum number of receivers cached per instruction
+     */
+    public static final int MAX_ENTRIES = 4;
+
+    private static final Entry[] NO_ENTRIES = {};
+
+    /**
+     * A cached property location
+     *
+     * @author Tony
+     *
+     */
+    private static class Entry {
+
+        /* for each scope walked, either the shape or the
+         * scope and version guard it
+         */
+        final Shape[] shapes;
+        final Scope[] scopes;
+        final int[] versions;
+
+        final LeoObject key;
+        final int slot;
+
+        Entry(Shape[] shapes, Scope[] scopes, int[] versions, LeoObject key, int slot) {
+            this.shapes = shapes;
+            this.scopes = scopes;
+            this.versions = versions;
+            this.key = key;
+            this.slot = slot;
+        }
+
+        /**
+         * @param scope the receiver scope
+         * @return true if this entry was created for the receiver
+         */
+        boolean isReceiver(Scope scope) {
+            Shape shape = shapes[0];
+            return (shape != null) ? shape == scope.getShape() : scopes[0] == scope;
+        }
+
+        /**
+         * @param scope the receiver scope
+         * @return the holding scope if this entry is still valid, otherwise null
+         */
+        Scope validate(Scope scope) {
+            final int depth = shapes.length - 1;
+            for(int i = 0; i <= depth; i++) {
+                Shape shape = shapes[i];
+                if(shape != null) {
+                    if(scope.getShape() != shape) {
+                        return null;
+                    }
+                }
+                else if(scopes[i] != scope || scope.getVersion() != versions[i]) {
+                    return null;
+                }
+
+                if(i < depth) {
+                    scope = scope.getParent();
+                }
+            }
+
+            /* guard against the raw map being modified directly */
+            if(shapes[depth] == null) {
+                LeoMap values = scope.getRawObjects();
+                if(slot >= values.bucketLength() || values.getKey(slot) != key) {
+                    return null;
+                }
+            }
+
+            return scope;
+        }
+    }
+
+    private volatile Entry[] entries;
+    private volatile boolean megamorphic;
+
+    /* approximate, see the class documentation */
+    private int hits;
+    private int misses;
+
+    /**
+     */
+    public InlineCache() {
+        this.entries = NO_ENTRIES;
+    }
+
+    /**
+     * @return the (approximate) number of times a property was resolved from this cache
+     */
+    public int getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the (approximate) number of times a property had to be looked up
+     */
+    public int getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return true if too many receivers have been seen by this cache
+     */
+    public boolean isMegamorphic() {
+        return megamorphic;
+    }
+
+    /**
+     * Finds the entry for the receiver
+     *
+     * @param scope the receiver scope
+     * @return the entry, or null if there is no entry for the receiver
+     */
+    private Entry find(Scope scope) {
+        Entry[] entries = this.entries;
+        for(int i = 0; i < entries.length; i++) {
+            Entry entry = entries[i];
+            if(entry.isReceiver(scope)) {
+                return entry;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Retrieves the property, this is equivalent to {@link Scope#getObjectNoGlobal(LeoObject)}
+     *
+     * @param obj the receiver
+     * @param key the property name
+     * @return the property value, or null if not found
+     */
+    public LeoObject getProperty(LeoScopedObject obj, LeoObject key) {
+        final Scope scope = obj.getScope();
+
+        Entry entry = find(scope);
+        if(entry != null) {
+            Scope holder = entry.validate(scope);
+            if(holder != null) {
+                hits++;
+                return readSlot(holder, entry.slot);
+            }
+        }
+
+        misses++;
+
+        if(this.megamorphic) {
+            return scope.getObjectNoGlobal(key);
+        }
+
+        Scope holder = scope.lookupScopeNoGlobal(key);
+        if(holder == null) {
+            return null;
+        }
+
+        if(isConcurrent(scope, holder)) {
+            return holder.getObjectNoGlobal(key);
+        }
+
+        int slot = update(scope, holder, key);
+        return readSlot(holder, slot);
+    }
+
+    /**
+     * Sets the property, this is equivalent to {@link Scope#storeObject(LeoObject, LeoObject)}
+     *
+     * @param obj the receiver
+     * @param key the property name
+     * @param value the property value
+     */
+    public void setProperty(LeoScopedObject obj, LeoObject key, LeoObject value) {
+        final Scope scope = obj.getScope();
+
+        Entry entry = find(scope);
+        if(entry != null) {
+            Scope holder = entry.validate(scope);
+            if(holder != null) {
+                hits++;
+                writeSlot(holder, entry.slot, value);
+                return;
+            }
+        }
+
+        misses++;
+
+        if(this.megamorphic) {
+            scope.storeObject(key, value);
+            return;
+        }
+
+        Scope holder = scope.lookupStoreScope(key);
+        holder.putObject(key, value);
+
+        if(!isConcurrent(scope, holder)) {
+            update(scope, holder, key);
+        }
+    }
+
+    /**
+     * @param receiver
+     * @param holder the scope holding the key
+     * @return true if any of the scopes from the receiver up to and including the holder is concurrent
+     */
+    private static boolean isConcurrent(Scope receiver, Scope holder) {
+        for(Scope s = receiver; s != null; s = s.getParent()) {
+            if(s.isConcurrent()) {
+                return true;
+            }
+
+            if(s == holder) {
+                break;
+            }
+        }
+
+        return false;
+    }
+
+    private static LeoObject readSlot(Scope holder, int slot) {
+        if(holder.getShape() != null) {
+            return holder.getSlot(slot);
+        }
+
+        return holder.getRawObjects().getValue(slot);
+    }
+
+    private static void writeSlot(Scope holder, int slot, LeoObject value) {
+        if(holder.getShape() != null) {
+            holder.setSlot(slot, value);
+        }
+        else {
+            holder.getRawObjects().setValue(slot, value);
+        }
+    }
+
+    /**
+     * Adds (or replaces) the cached entry for the receiver
+     *
+     * @param receiver
+     * @param holder the scope holding the key
+     * @param key
+     * @return the slot of the key in the holder
+     */
+    private int update(Scope receiver, Scope holder, LeoObject key) {
+        int slot = -1;
+        Shape holderShape = holder.getShape();
+        if(holderShape != null) {
+            slot = holderShape.indexOf(key);
+            key = holderShape.getKey(slot);
+        }
+        else {
+            LeoMap values = holder.getRawObjects();
+            slot = values.getSlot(key);
+            key = values.getKey(slot);
+        }
+
+        int depth = 0;
+        for(Scope s = receiver; s != holder; s = s.getParent()) {
+            depth++;
+        }
+
+        Shape[] shapes = new Shape[depth + 1];
+        Scope[] scopes = new Scope[depth + 1];
+        int[] versions = new int[depth + 1];
+
+        Scope s = receiver;
+        for(int i = 0; i <= depth; i++) {
+            shapes[i] = s.getShape();
+            if(shapes[i] == null) {
+                scopes[i] = s;
+                versions[i] = s.getVersion();
+            }
+
+            s = s.getParent();
+        }
+
+        Entry entry = new Entry(shapes, scopes, versions, key, slot);
+
+        Entry[] entries = this.entries;
+        for(int i = 0; i < entries.length; i++) {
+            if(entries[i].isReceiver(receiver)) {
+                Entry[] newEntries = entries.clone();
+                newEntries[i] = entry;
+                this.entries = newEntries;
+                return slot;
+            }
+        }
+
+        if(entries.length >= MAX_ENTRIES) {
+
+            /* if the cache is mostly missing, give up on caching
+             * this instruction; otherwise evict one of the entries
+             */
+            int misses = this.misses;
+            if(misses > this.hits) {
+                this.megamorphic = true;
+                this.entries = NO_ENTRIES;
+            }
+            else {
+                Entry[] newEntries = entries.clone();
+                newEntries[(misses & Integer.MAX_VALUE) % MAX_ENTRIES] = entry;
+                this.entries = newEntries;
+            }
+            return slot;
+        }
+
+        Entry[] newEntries = new Entry[entries.length + 1];
+        System.arraycopy(entries, 0, newEntries, 0, entries.length);
+        newEntries[entries.length] = entry;
+        this.entries = newEntries;
+
+        return slot;
+    }
+}
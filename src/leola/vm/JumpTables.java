@@ -0,0 +1,66 @@
+/*
+    Leola Programming Language
+    Author: Tony Sparks
+    See license.txt
+*/
+package leola.vm;
+
+import static leola.vm.Opcodes.*;
+
+import leola.vm.types.LeoMap;
+import leola.vm.types.LeoObject;
+import leola.vm.types.LeoObject.LeoType;
+
+/**
+ * Selects the branch of a <code>TABLE_SWITCH</code> or <code>LOOKUP_SWITCH</code> instruction.
+ *
+ * <p>
+ * A <code>switch</code> statement or <code>case</code> expression whose <code>when</code> arms are all integer or string
+ * constants is compiled into one of these instructions, followed by a <code>JMP</code> for each key and a leading <code>JMP</code>
+ * for when no key matches, and then the usual chain of <code>EQ</code> comparisons.
+ *
+ * <ul>
+ *  <li><code>TABLE_SWITCH</code> is used for a dense range of integer keys, the key minus the lowest key is the index of the
+ *  <code>JMP</code></li>
+ *  <li><code>LOOKUP_SWITCH</code> is used otherwise, a {@link LeoMap} in the constant pool maps each key to the index of its
+ *  <code>JMP</code></li>
+ * </ul>
+ *
+ * <p>
+ * An integer or string key can only be equal to a constant of the same type, so for these the table decides which
+ * branch is taken.  Any other key (e.g., a real number or an object overriding <code>$eq</code>) skips the jump table and
+ * runs the chain of comparisons instead, which keeps the semantics of the <code>EQ</code> operator.
+ *
+ * @author Tony
+ *
+ */
+public class JumpTables {
+
+    /**
+     * Selects the branch for the supplied key
+     *
+     * @param constants the constants of the executing {@link leola.vm.compiler.Bytecode}
+     * @param i the switch instruction
+     * @param key the value switched on
+     * @return the index of the <code>JMP</code> instruction to execute after the switch instruction (0 being
+     * the no matching key branch), or -1 if the key must be compared against each of the <code>when</code> arms
+     */
+    public static int select(LeoObject[] constants, int i, LeoObject key) {
+        LeoType type = key.getType();
+        if(OPCODE(i) == TABLE_SWITCH) {
+            if(type != LeoType.INTEGER) {
+                return -1;
+            }
+
+            long index = (long)key.asInt() - constants[ARG2(i)].asInt();
+            return (index >= 0 && index < ARG1(i)) ? (int)index + 1 : 0;
+        }
+
+        if(type != LeoType.INTEGER && type != LeoType.STRING) {
+            return -1;
+        }
+
+        LeoObject index = ((LeoMap)constants[ARG2(i)]).getWithJNull(key);
+        return (index != null) ? index.asInt() : 0;
+    }
+}
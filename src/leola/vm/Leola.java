@@ -22,8 +22,14 @@ import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.Reader;
 import java.io.StringReader;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
 
 import leola.ast.ASTNode;
 import leola.frontend.ParseException;
@@ -46,6 +52,8 @@ import leola.vm.Scope.ScopeType;
 import leola.vm.compiler.Bytecode;
 import leola.vm.compiler.Compiler;
 import leola.vm.debug.DebugListener;
+import leola.vm.debug.Debugger;
+import leola.vm.debug.SamplingProfiler;
 import leola.vm.exceptions.LeolaRuntimeException;
 import leola.vm.lib.LeolaLibrary;
 import leola.vm.types.LeoNamespace;
@@ -53,6 +61,7 @@ import leola.vm.types.LeoNull;
 import leola.vm.types.LeoObject;
 import leola.vm.types.LeoScopedObject;
 import leola.vm.types.LeoString;
+import leola.vm.util.BytecodeCache;
 import leola.vm.util.ResourceLoader;
 
 /**
@@ -130,6 +139,9 @@ public class Leola {
                 else if(pargs.isRepl()) {
                     executeRepl(pargs);
                 }
+                else if(pargs.precompile()) {
+                    executePrecompile(pargs);
+                }
                 else {
                     executeScript(pargs);
                 }
@@ -166,9 +178,29 @@ public class Leola {
         else {
             System.out.println(result);
         }
+        
+        if(pargs.getSnapshotOutputFile() != null) {
+            writeSnapshot(runtime, pargs.getSnapshotOutputFile());
+        }
 
     }
     
+    /**
+     * Writes the snapshot of the command line runtime
+     * 
+     * @param runtime
+     * @param snapshotFile
+     * @throws LeolaRuntimeException if the snapshot can not be written
+     */
+    private static void writeSnapshot(Leola runtime, File snapshotFile) throws LeolaRuntimeException {
+        try {
+            runtime.writeSnapshot(snapshotFile);
+        }
+        catch(IOException e) {
+            throw new LeolaRuntimeException("Unable to write the snapshot '" + snapshotFile + "': " + e.getMessage(), false);
+        }
+    }
+    
     /**
      * Executes the REPL
      * 
@@ -180,6 +212,27 @@ public class Leola {
         repl.execute();
     }
     
+    /**
+     * Compiles the scripts of the command line directory into the bytecode cache
+     * 
+     * @param pargs
+     * @throws Exception
+     */
+    private static void executePrecompile(Args pargs) throws Exception {
+        if(pargs.getBytecodeCacheDirectory() == null || pargs.getFileName() == null) {
+            System.out.println("The bytecode cache and script directories must be supplied. Ex. bc=.leola-cache pc scripts");
+            System.exit(1);
+        }
+        
+        Leola runtime = new Leola(pargs);
+        
+        long startTime = System.nanoTime();
+        int compiled = runtime.getBytecodeCache().precompile(new File(pargs.getFileName()), Runtime.getRuntime().availableProcessors());
+        long time = System.nanoTime() - startTime;
+        
+        System.out.println("Compiled " + compiled + " script(s) in " + (time / 1_000_000) + " ms");
+    }
+    
     /**
      * Finds the script file that was passed by the command line 
      * 
@@ -243,6 +296,13 @@ public class Leola {
             if(result.isError()) {
                 System.err.println(result);
             }
+            else if(pargs.getSnapshotOutputFile() != null) {
+                writeSnapshot(runtime, pargs.getSnapshotOutputFile());
+            }
+            
+            if(runtime.getMetrics() != null) {
+                System.err.println(runtime.getMetrics().getReport());
+            }
         }
     }
     
@@ -280,6 +340,17 @@ public class Leola {
      * Debug listener
      */
     private DebugListener debugListener;
+    
+    /**
+     * The attached debugger
+     */
+    private volatile Debugger debugger;
+
+
+    /**
+     * The running profiler, if any
+     */
+    private SamplingProfiler profiler;
 
 
     /**
@@ -287,6 +358,32 @@ public class Leola {
      */    
     private VMReference vm;    
     
+    /**
+     * All of the {@link VM}s created by this runtime, weakly held so that the
+     * {@link VM} of a finished thread may be collected
+     */
+    private final Set<VM> vms = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<VM, Boolean>()));
+    
+    /**
+     * The metrics collected by the {@link VM}s, null if not enabled
+     */
+    private final VMMetrics metrics;
+    
+    /**
+     * The runtime this is a fork of, null if this is not a fork
+     */
+    private final Leola template;
+    
+    /**
+     * Binds the objects of the template to this fork, null if this is not a fork
+     */
+    private final TemplateBinder binder;
+    
+    /**
+     * The on-disk cache of compiled scripts, null if not enabled
+     */
+    private final BytecodeCache bytecodeCache;
+    
     /**
      * @throws Exception
      */
@@ -300,16 +397,57 @@ public class Leola {
      */
     public Leola(Args args) throws LeolaRuntimeException {
         this.args = args;
+        this.metrics = args.collectMetrics() ? new VMMetrics() : null;
+        
+        if(args.concurrentGlobals() && !args.allowThreadLocal()) {
+            throw new LeolaRuntimeException("Concurrent globals require a VM per thread, thread locals must be enabled.");
+        }
+        
+        this.template = null;
+        this.binder = null;
+        this.bytecodeCache = (args.getBytecodeCacheDirectory() != null) 
+                                ? new BytecodeCache(this, args.getBytecodeCacheDirectory()) : null;
         
         setIncludePath(args.getIncludeDirectories());
         this.resourceLoader = new ResourceLoader(this);
+        this.vm = newVMReference();
         
+        Scope globalScope = new Scope(ScopeType.Namespace, null, args.concurrentGlobals());
+        this.global = new LeoNamespace(globalScope, LeoString.valueOf(GLOBAL_SCOPE_NAME));
+        reset();
+    }
+    
+    /**
+     * Creates a fork of the template runtime, see {@link #fork()}
+     * 
+     * @param template
+     */
+    private Leola(Leola template) {
+        this.args = template.args;
+        this.metrics = template.metrics;
+        this.debugListener = template.debugListener;
+        this.template = template;
+        this.binder = new TemplateBinder(this, template.global.getScope());
+        this.bytecodeCache = template.bytecodeCache;
+        
+        setIncludePath(new ArrayList<File>(template.getIncludePath()));
+        this.resourceLoader = new ResourceLoader(this);
+        this.vm = newVMReference();
+        
+        reset();
+    }
+    
+    /**
+     * @return the reference to the {@link VM} of the current thread
+     */
+    private VMReference newVMReference() {
+        VMReference reference = null;
         if(args.allowThreadLocal()) {
-            this.vm = new VMReference() {                
+            reference = new VMReference() {                
                 private ThreadLocal<VM> vm = new ThreadLocal<VM>() {        
                     @Override
                     protected VM initialValue() {
-                        return new VM(Leola.this);
+                        return newVM();
                     }
                 };
                 
@@ -319,22 +457,63 @@ public class Leola {
                 }
             };
             
-            this.vm.get();
+            reference.get();
         }
         else {
-            this.vm = new VMReference() {
-                private VM vm = new VM(Leola.this);
+            reference = new VMReference() {
+                private VM vm = newVM();
                 
                 @Override
                 public VM get() {                
                     return this.vm;
                 }
             };
-        }        
+        }
         
-        Scope globalScope = new Scope(ScopeType.Namespace, null);
-        this.global = new LeoNamespace(globalScope, LeoString.valueOf(GLOBAL_SCOPE_NAME));
-        reset();
+        return reference;
+    }
+    
+    /**
+     * Creates a fork of this runtime.  The global {@link Scope} and namespaces of the fork are copy-on-write
+     * views of the ones of this runtime (the template): the libraries, functions, classes and namespaces of the
+     * template are available to the fork without loading or evaluating them again, while anything the fork
+     * defines or assigns is only visible to the fork.  Calling {@link #reset()} on the fork discards its changes,
+     * which makes forks cheap to reuse, see {@link LeolaPool}.
+     * 
+     * <p>
+     * A value of the template is copied into the fork the first time the fork reads it; the template functions,
+     * classes and namespaces are bound to the fork, so that they read and write the globals of the fork, and
+     * {@link LeolaLibrary}s are initialized again for the fork the first time it uses them.  Arrays, maps, class instances
+     * and the closure values of functions are copied (along with the values they hold), so the fork may modify them without
+     * affecting the template or the other forks; the copies are discarded on {@link #reset()}.  Generators and Java objects
+     * are shared with the template and so should not be modified by the forks.  The template itself must not be modified
+     * once it is forked.
+     * 
+     * @return the fork of this runtime
+     * @throws LeolaRuntimeException if this runtime is a fork itself
+     */
+    public Leola fork() throws LeolaRuntimeException {
+        if(this.template != null) {
+            throw new LeolaRuntimeException("A forked runtime can not be forked.");
+        }
+        
+        return new Leola(this);
+    }
+    
+    /**
+     * @return the on-disk cache of compiled scripts, or null if the compiled scripts are not cached
+     * @see Args#getBytecodeCacheDirectory()
+     */
+    public BytecodeCache getBytecodeCache() {
+        return this.bytecodeCache;
+    }
+    
+    /**
+     * @return the runtime this is a fork of, or null if this runtime is not a fork
+     * @see #fork()
+     */
+    public Leola getTemplate() {
+        return this.template;
     }
     
     
@@ -343,12 +522,30 @@ public class Leola {
      * 
      * <p>
      * This will clear out all allocated objects, effectively resetting the {@link Leola} to its initial state.
+     * 
+     * <p>
+     * If this runtime is a fork (see {@link #fork()}), this discards the changes made by the fork and leaves
+     * the template untouched.  If this runtime is started from a snapshot (see {@link Args#getSnapshotFile()}),
+     * this reads the snapshot again.
      */
     public void reset() {
         this.resourceLoader.clearCache();
+        
+        if(this.template != null) {
+            this.binder.clear();
+            this.global = this.binder.bindNamespace(this.template.global);
+            return;
+        }
+        
         this.global.getScope().clear();
         this.global.getNamespaceDefinitions().storeNamespace(this.global);
         
+        if(args.getSnapshotFile() != null) {
+            readSnapshot(args.getSnapshotFile());
+            put("$args", args.getScriptArgs());
+            return;
+        }
+        
         put("$args", args.getScriptArgs());
         put("this", this.global);
 
@@ -378,6 +575,25 @@ public class Leola {
         }
     }
     
+    /**
+     * Reads the snapshot into the (cleared) global namespace
+     * 
+     * @param snapshotFile
+     * @throws LeolaRuntimeException if the snapshot can not be read
+     */
+    private void readSnapshot(File snapshotFile) throws LeolaRuntimeException {
+        if(args.isSandboxed()) {
+            throw new LeolaRuntimeException("A snapshot can not be loaded in sandboxed mode.");
+        }
+        
+        try(InputStream iStream = new BufferedInputStream(new FileInputStream(snapshotFile))) {
+            RuntimeSnapshot.read(this, this.global, new DataInputStream(iStream));
+        }
+        catch(IOException e) {
+            throw new LeolaRuntimeException("Unable to read the snapshot '" + snapshotFile + "': " + e.getMessage(), e);
+        }
+    }
+    
     /**
      * In Sandboxed mode, all 
      * access to Java classes are disabled and importing {@link LeolaLibrary}s
@@ -458,6 +674,103 @@ public class Leola {
         return debugListener;
     }
     
+    /**
+     * Creates a new {@link VM}, which is registered with this runtime
+     * 
+     * @return the {@link VM}
+     */
+    private VM newVM() {
+        VM vm = new VM(this);
+        this.vms.add(vm);
+        return vm;
+    }
+    
+    /**
+     * @return the metrics collected by the {@link VM}s of this runtime, or null if not enabled by {@link Args#collectMetrics()}
+     */
+    public VMMetrics getMetrics() {
+        return this.metrics;
+    }
+    
+    /**
+     * @return a snapshot of the {@link VM}s of this runtime, one per thread if thread locals
+     * are allowed (see {@link Args#allowThreadLocal()})
+     */
+    public List<VM> getVMs() {
+        synchronized (this.vms) {
+            return new ArrayList<VM>(this.vms);
+        }
+    }
+    
+    /**
+     * Starts sampling the Leola functions executed by this runtime, in all of its threads.  A running profiler
+     * is stopped and replaced.
+     * 
+     * @param intervalMillis the time between samples, in milliseconds
+     * @return the started {@link SamplingProfiler}
+     */
+    public SamplingProfiler startProfiler(long intervalMillis) {
+        return startProfiler(new SamplingProfiler(this, intervalMillis));
+    }
+    
+    /**
+     * Starts the supplied profiler.  A running profiler is stopped and replaced.
+     * 
+     * @param profiler the profiler of this runtime
+     * @return the started {@link SamplingProfiler}
+     */
+    public synchronized SamplingProfiler startProfiler(SamplingProfiler profiler) {
+        if(this.profiler != null) {
+            this.profiler.stop();
+        }
+        
+        this.profiler = profiler;
+        this.profiler.start();
+        return this.profiler;
+    }
+    
+    /**
+     * Stops the running profiler
+     * 
+     * @return the stopped {@link SamplingProfiler}, holding the samples taken, or null if none was running
+     */
+    public synchronized SamplingProfiler stopProfiler() {
+        SamplingProfiler profiler = this.profiler;
+        if(profiler != null) {
+            profiler.stop();
+        }
+        return profiler;
+    }
+    
+    /**
+     * @return the most recently started {@link SamplingProfiler}, or null if none was started
+     */
+    public synchronized SamplingProfiler getProfiler() {
+        return this.profiler;
+    }
+    
+    /**
+     * Attaches the {@link Debugger}, which is notified once a breakpoint it installed is reached.  Any breakpoints of
+     * the previously attached {@link Debugger} are removed.
+     * 
+     * @param debugger the debugger, or null to detach the current one
+     */
+    public void setDebugger(Debugger debugger) {
+        Debugger previous = this.debugger;
+        if(previous != null && previous != debugger) {
+            previous.removeAllBreakpoints();
+        }
+        
+        this.debugger = debugger;
+    }
+    
+    /**
+     * @return the attached {@link Debugger}, or null if none is attached
+     */
+    public Debugger getDebugger() {
+        return debugger;
+    }
+    
     
     /**
      * @return the current working directory
@@ -941,12 +1254,8 @@ public class Leola {
             }
         }
         else {
-            try(Reader reader = new BufferedReader(new FileReader(file))) {
-                Bytecode bytecode = compile(reader);
-                bytecode.setSourceFile(file);
-    
-                result = execute(ns, bytecode);
-            }
+            Bytecode bytecode = compile(file);
+            result = execute(ns, bytecode);
         }
 
         return result;
@@ -1048,16 +1357,72 @@ public class Leola {
     }
     
     /**
-     * Compiles the supplied script file
+     * Writes a snapshot of this runtime out to the {@link File}.  A runtime started from the snapshot, see 
+     * {@link Args#getSnapshotFile()}, starts off with the globals, namespaces, functions and classes of this runtime,
+     * without loading the standard libraries or evaluating the scripts again.  The {@link LeolaLibrary}s are initialized
+     * again, by their class name, for the new runtime.
+     * 
+     * <p>
+     * This must not be called while scripts are executing.  Class instances, generators and Java objects (other than
+     * {@link LeolaLibrary} and static functions) can not be written to a snapshot.
+     * 
+     * <p>
+     * The snapshot is written to a temporary file which then replaces the snapshot file, so a snapshot which fails
+     * to be written never leaves a partial file behind.
+     * 
+     * @param snapshotFile
+     * @throws IOException if the snapshot could not be written, or it holds an object which can not be written
+     */
+    public void writeSnapshot(File snapshotFile) throws IOException {
+        File tempFile = File.createTempFile("." + snapshotFile.getName() + "-", ".tmp", snapshotFile.getAbsoluteFile().getParentFile());
+        try {
+            try(OutputStream oStream = new BufferedOutputStream(new FileOutputStream(tempFile))) {
+                writeSnapshot(oStream);
+            }
+            
+            try {
+                Files.move(tempFile.toPath(), snapshotFile.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            }
+            catch(AtomicMoveNotSupportedException e) {
+                Files.move(tempFile.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        finally {
+            /* only left over if the snapshot failed to be written */
+            tempFile.delete();
+        }
+    }
+    
+    /**
+     * Writes a snapshot of this runtime out to the {@link OutputStream}, see {@link #writeSnapshot(File)}
+     * 
+     * @param oStream
+     * @throws IOException if the snapshot could not be written, or it holds an object which can not be written
+     */
+    public void writeSnapshot(OutputStream oStream) throws IOException {
+        DataOutput output = new DataOutputStream(oStream);
+        RuntimeSnapshot.write(this.global, output);
+        oStream.flush();
+    }
+    
+    /**
+     * Compiles the supplied script file, or loads its compiled {@link Bytecode} from the
+     * bytecode cache if enabled (see {@link #getBytecodeCache()})
      * 
      * @param scriptFile
      * @return the {@link Bytecode}
      * @throws Exception
      */
     public Bytecode compile(File scriptFile) throws Exception {
-        Bytecode code = compile(new BufferedReader(new FileReader(scriptFile)));
-        code.setSourceFile(scriptFile);
-        return code;
+        if(this.bytecodeCache != null) {
+            return this.bytecodeCache.load(scriptFile);
+        }
+        
+        try(Reader reader = new BufferedReader(new FileReader(scriptFile))) {
+            Bytecode code = compile(reader);
+            code.setSourceFile(scriptFile);
+            return code;
+        }
     }
     
 
@@ -0,0 +1,235 @@
+/*
+    Leola Programming Language
+    Author: Tony Sparks
+    See license.txt
+*/
+package leola.vm;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import leola.vm.exceptions.LeolaRuntimeException;
+
+/**
+ * A pool of pre-warmed forks (see {@link Leola#fork()}) of a template {@link Leola} runtime.  The template is initialized
+ * once, typically by evaluating the shared scripts, and each checked out fork starts off with the state of the template.
+ * Once released, the changes made by the fork are discarded and the fork is ready to be checked out again; this includes
+ * changes to the arrays, maps, class instances and closure values it copied from the template (see {@link Leola#fork()}).
+ *
+ * <pre>
+ *   Leola template = new Leola();
+ *   template.eval(sharedScripts);
+ *
+ *   LeolaPool pool = new LeolaPool(template, 4, 16);
+ *   Leola runtime = pool.checkout();
+ *   try {
+ *       runtime.eval(request);
+ *   }
+ *   finally {
+ *       pool.release(runtime);
+ *   }
+ * </pre>
+ *
+ * The pool creates its initial forks up front, and more on demand up to its maximum size, after which a checkout waits
+ * for a fork to be released.  The template must not be modified once the pool is created.
+ *
+ * @author Tony
+ *
+ */
+public class LeolaPool {
+
+    private final Leola template;
+    private final int maxSize;
+
+    private final BlockingQueue<Leola> idle;
+    private final AtomicInteger size;
+
+    /* checkout metrics */
+    private final AtomicLong checkouts;
+    private final AtomicLong checkoutTime;
+    private final AtomicLong maxCheckoutTime;
+    private final AtomicLong waits;
+
+    /**
+     * @param template the runtime to fork
+     * @param initialSize the number of forks created up front
+     * @param maxSize the maximum number of forks
+     */
+    public LeolaPool(Leola template, int initialSize, int maxSize) {
+        if(maxSize < 1 || initialSize < 0 || initialSize > maxSize) {
+            throw new IllegalArgumentException("Invalid pool size: " + initialSize + " of " + maxSize);
+        }
+
+        this.template = template;
+        this.maxSize = maxSize;
+
+        this.idle = new LinkedBlockingQueue<Leola>();
+        this.size = new AtomicInteger();
+
+        this.checkouts = new AtomicLong();
+        this.checkoutTime = new AtomicLong();
+        this.maxCheckoutTime = new AtomicLong();
+        this.waits = new AtomicLong();
+
+        for(int i = 0; i < initialSize; i++) {
+            this.idle.add(newFork());
+        }
+    }
+
+    /**
+     * @return a new fork of the template, or null if the pool is at its maximum size
+     */
+    private Leola newFork() {
+        int current;
+        do {
+            current = this.size.get();
+            if(current >= this.maxSize) {
+                return null;
+            }
+        }
+        while(!this.size.compareAndSet(current, current + 1));
+
+        try {
+            return this.template.fork();
+        }
+        catch(RuntimeException e) {
+            this.size.decrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * Checks out a fork, waiting for one to be released if the pool is at its maximum size
+     *
+     * @return the fork, which must be given back by {@link #release(Leola)}
+     * @throws InterruptedException
+     */
+    public Leola checkout() throws InterruptedException {
+        return checkout(-1, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Checks out a fork, waiting up to the timeout for one to be released if the pool is at its maximum size
+     *
+     * @param timeout the time to wait, a negative timeout waits indefinitely
+     * @param unit
+     * @return the fork, which must be given back by {@link #release(Leola)}, or null if the timeout elapsed
+     * @throws InterruptedException
+     */
+    public Leola checkout(long timeout, TimeUnit unit) throws InterruptedException {
+        long startTime = System.nanoTime();
+
+        Leola fork = this.idle.poll();
+        if(fork == null) {
+            fork = newFork();
+            if(fork == null) {
+                this.waits.incrementAndGet();
+                fork = (timeout < 0) ? this.idle.take() : this.idle.poll(timeout, unit);
+            }
+        }
+
+        if(fork != null) {
+            long time = System.nanoTime() - startTime;
+            this.checkouts.incrementAndGet();
+            this.checkoutTime.addAndGet(time);
+
+            long max;
+            do {
+                max = this.maxCheckoutTime.get();
+            }
+            while(time > max && !this.maxCheckoutTime.compareAndSet(max, time));
+        }
+
+        return fork;
+    }
+
+    /**
+     * Releases the checked out fork back to the pool, discarding its changes, so that the next checkout of the fork
+     * sees the values of the template again.  If discarding the changes fails, the fork is removed from the pool.
+     *
+     * @param fork
+     * @throws LeolaRuntimeException if the runtime is not a fork of the template of this pool
+     */
+    public void release(Leola fork) throws LeolaRuntimeException {
+        if(fork.getTemplate() != this.template) {
+            throw new LeolaRuntimeException("The runtime is not a fork of the pool template.");
+        }
+
+        try {
+            fork.reset();
+        }
+        catch(RuntimeException e) {
+            this.size.decrementAndGet();
+            throw e;
+        }
+
+        this.idle.add(fork);
+    }
+
+    /**
+     * @return the template runtime
+     */
+    public Leola getTemplate() {
+        return this.template;
+    }
+
+    /**
+     * @return the number of forks created by this pool, checked out or not
+     */
+    public int getSize() {
+        return this.size.get();
+    }
+
+    /**
+     * @return the maximum number of forks
+     */
+    public int getMaxSize() {
+        return this.maxSize;
+    }
+
+    /**
+     * @return the number of forks available for checkout
+     */
+    public int getIdleCount() {
+        return this.idle.size();
+    }
+
+    /**
+     * @return the number of checkouts
+     */
+    public long getCheckoutCount() {
+        return this.checkouts.get();
+    }
+
+    /**
+     * @return the number of checkouts which had to wait for a fork to be released
+     */
+    public long getWaitCount() {
+        return this.waits.get();
+    }
+
+    /**
+     * @return the total time spent checking out forks, in nanoseconds
+     */
+    public long getCheckoutTime() {
+        return this.checkoutTime.get();
+    }
+
+    /**
+     * @return the longest time spent checking out a fork, in nanoseconds
+     */
+    public long getMaxCheckoutTime() {
+        return this.maxCheckoutTime.get();
+    }
+
+    /**
+     * @return the average time spent checking out a fork, in nanoseconds
+     */
+    public long getAverageCheckoutTime() {
+        long count = this.checkouts.get();
+        return (count > 0) ? this.checkoutTime.get() / count : 0;
+    }
+}
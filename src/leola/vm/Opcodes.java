@@ -459,6 +459,216 @@ public class Opcodes {
                 op = "LINE";
                 break;
             }           
+            
+            /* superinstructions */
+            case ADD_LOCAL_CONST: {
+                op = "ADD_LOCAL_CONST";
+                break;
+            }
+            case SUB_LOCAL_CONST: {
+                op = "SUB_LOCAL_CONST";
+                break;
+            }
+            case ADD_LOCAL_LOCAL: {
+                op = "ADD_LOCAL_LOCAL";
+                break;
+            }
+            case LOAD_LOCAL_GETK: {
+                op = "LOAD_LOCAL_GETK";
+                break;
+            }
+            case EQ_LOCAL_LOCAL_IFEQ: {
+                op = "EQ_LOCAL_LOCAL_IFEQ";
+                break;
+            }
+            case NEQ_LOCAL_LOCAL_IFEQ: {
+                op = "NEQ_LOCAL_LOCAL_IFEQ";
+                break;
+            }
+            case GT_LOCAL_LOCAL_IFEQ: {
+                op = "GT_LOCAL_LOCAL_IFEQ";
+                break;
+            }
+            case GTE_LOCAL_LOCAL_IFEQ: {
+                op = "GTE_LOCAL_LOCAL_IFEQ";
+                break;
+            }
+            case LT_LOCAL_LOCAL_IFEQ: {
+                op = "LT_LOCAL_LOCAL_IFEQ";
+                break;
+            }
+            case LTE_LOCAL_LOCAL_IFEQ: {
+                op = "LTE_LOCAL_LOCAL_IFEQ";
+                break;
+            }
+            case EQ_LOCAL_CONST_IFEQ: {
+                op = "EQ_LOCAL_CONST_IFEQ";
+                break;
+            }
+            case NEQ_LOCAL_CONST_IFEQ: {
+                op = "NEQ_LOCAL_CONST_IFEQ";
+                break;
+            }
+            case GT_LOCAL_CONST_IFEQ: {
+                op = "GT_LOCAL_CONST_IFEQ";
+                break;
+            }
+            case GTE_LOCAL_CONST_IFEQ: {
+                op = "GTE_LOCAL_CONST_IFEQ";
+                break;
+            }
+            case LT_LOCAL_CONST_IFEQ: {
+                op = "LT_LOCAL_CONST_IFEQ";
+                break;
+            }
+            case LTE_LOCAL_CONST_IFEQ: {
+                op = "LTE_LOCAL_CONST_IFEQ";
+                break;
+            }
+            case ADD_II: {
+                op = "ADD_II";
+                break;
+            }
+            case ADD_DD: {
+                op = "ADD_DD";
+                break;
+            }
+            case ADD_SS: {
+                op = "ADD_SS";
+                break;
+            }
+            case SUB_II: {
+                op = "SUB_II";
+                break;
+            }
+            case SUB_DD: {
+                op = "SUB_DD";
+                break;
+            }
+            case MUL_II: {
+                op = "MUL_II";
+                break;
+            }
+            case MUL_DD: {
+                op = "MUL_DD";
+                break;
+            }
+            case EQ_II: {
+                op = "EQ_II";
+                break;
+            }
+            case NEQ_II: {
+                op = "NEQ_II";
+                break;
+            }
+            case GT_II: {
+                op = "GT_II";
+                break;
+            }
+            case GTE_II: {
+                op = "GTE_II";
+                break;
+            }
+            case LT_II: {
+                op = "LT_II";
+                break;
+            }
+            case LTE_II: {
+                op = "LTE_II";
+                break;
+            }
+            case GT_DD: {
+                op = "GT_DD";
+                break;
+            }
+            case GTE_DD: {
+                op = "GTE_DD";
+                break;
+            }
+            case LT_DD: {
+                op = "LT_DD";
+                break;
+            }
+            case LTE_DD: {
+                op = "LTE_DD";
+                break;
+            }
+            case ADD_LOCAL_CONST_II: {
+                op = "ADD_LOCAL_CONST_II";
+                break;
+            }
+            case SUB_LOCAL_CONST_II: {
+                op = "SUB_LOCAL_CONST_II";
+                break;
+            }
+            case ADD_LOCAL_LOCAL_II: {
+                op = "ADD_LOCAL_LOCAL_II";
+                break;
+            }
+            case EQ_LOCAL_LOCAL_IFEQ_II: {
+                op = "EQ_LOCAL_LOCAL_IFEQ_II";
+                break;
+            }
+            case NEQ_LOCAL_LOCAL_IFEQ_II: {
+                op = "NEQ_LOCAL_LOCAL_IFEQ_II";
+                break;
+            }
+            case GT_LOCAL_LOCAL_IFEQ_II: {
+                op = "GT_LOCAL_LOCAL_IFEQ_II";
+                break;
+            }
+            case GTE_LOCAL_LOCAL_IFEQ_II: {
+                op = "GTE_LOCAL_LOCAL_IFEQ_II";
+                break;
+            }
+            case LT_LOCAL_LOCAL_IFEQ_II: {
+                op = "LT_LOCAL_LOCAL_IFEQ_II";
+                break;
+            }
+            case LTE_LOCAL_LOCAL_IFEQ_II: {
+                op = "LTE_LOCAL_LOCAL_IFEQ_II";
+                break;
+            }
+            case EQ_LOCAL_CONST_IFEQ_II: {
+                op = "EQ_LOCAL_CONST_IFEQ_II";
+                break;
+            }
+            case NEQ_LOCAL_CONST_IFEQ_II: {
+                op = "NEQ_LOCAL_CONST_IFEQ_II";
+                break;
+            }
+            case GT_LOCAL_CONST_IFEQ_II: {
+                op = "GT_LOCAL_CONST_IFEQ_II";
+                break;
+            }
+            case GTE_LOCAL_CONST_IFEQ_II: {
+                op = "GTE_LOCAL_CONST_IFEQ_II";
+                break;
+            }
+            case LT_LOCAL_CONST_IFEQ_II: {
+                op = "LT_LOCAL_CONST_IFEQ_II";
+                break;
+            }
+            case LTE_LOCAL_CONST_IFEQ_II: {
+                op = "LTE_LOCAL_CONST_IFEQ_II";
+                break;
+            }
+            case TABLE_SWITCH: {
+                op = "TABLE_SWITCH";
+                break;
+            }
+            case LOOKUP_SWITCH: {
+                op = "LOOKUP_SWITCH";
+                break;
+            }
+            case BREAKPOINT: {
+                op = "BREAKPOINT";
+                break;
+            }
+            case CONCAT: {
+                op = "CONCAT";
+                break;
+            }
             default: {
                 throw new LeolaRuntimeException("Unknown Opcode: " + opcode);
             }
@@ -573,7 +783,79 @@ public class Opcodes {
         LTE = 66,                     /*      */
         
         /* debug */
-        LINE = 67                     /* ARGx */
+        LINE = 67,                    /* ARGx */
+        
+        /* superinstructions, only produced by the BytecodeOptimizer */
+        ADD_LOCAL_CONST = 68,         /* ARG1 (local), ARG2 (constant) */
+        SUB_LOCAL_CONST = 69,         /* ARG1 (local), ARG2 (constant) */
+        ADD_LOCAL_LOCAL = 70,         /* ARG1 (local), ARG2 (local) */
+        LOAD_LOCAL_GETK = 71,         /* ARG1 (local), ARG2 (constant) */
+        
+        /* compare and branch, the following instruction is the IFEQ holding the jump offset */
+        EQ_LOCAL_LOCAL_IFEQ = 72,     /* ARG1 (local), ARG2 (local) */
+        NEQ_LOCAL_LOCAL_IFEQ = 73,    /* ARG1 (local), ARG2 (local) */
+        GT_LOCAL_LOCAL_IFEQ = 74,     /* ARG1 (local), ARG2 (local) */
+        GTE_LOCAL_LOCAL_IFEQ = 75,    /* ARG1 (local), ARG2 (local) */
+        LT_LOCAL_LOCAL_IFEQ = 76,     /* ARG1 (local), ARG2 (local) */
+        LTE_LOCAL_LOCAL_IFEQ = 77,    /* ARG1 (local), ARG2 (local) */
+        
+        EQ_LOCAL_CONST_IFEQ = 78,     /* ARG1 (local), ARG2 (constant) */
+        NEQ_LOCAL_CONST_IFEQ = 79,    /* ARG1 (local), ARG2 (constant) */
+        GT_LOCAL_CONST_IFEQ = 80,     /* ARG1 (local), ARG2 (constant) */
+        GTE_LOCAL_CONST_IFEQ = 81,    /* ARG1 (local), ARG2 (constant) */
+        LT_LOCAL_CONST_IFEQ = 82,     /* ARG1 (local), ARG2 (constant) */
+        LTE_LOCAL_CONST_IFEQ = 83,    /* ARG1 (local), ARG2 (constant) */
+
+        /* quickened instructions, the VM rewrites the generic instruction into one of these once the
+         * operand types have been observed (_II integers, _DD doubles, _SS strings) */
+        ADD_II = 84,                  /*      */
+        ADD_DD = 85,                  /*      */
+        ADD_SS = 86,                  /*      */
+        SUB_II = 87,                  /*      */
+        SUB_DD = 88,                  /*      */
+        MUL_II = 89,                  /*      */
+        MUL_DD = 90,                  /*      */
+        EQ_II = 91,                   /*      */
+        NEQ_II = 92,                  /*      */
+        GT_II = 93,                   /*      */
+        GTE_II = 94,                  /*      */
+        LT_II = 95,                   /*      */
+        LTE_II = 96,                  /*      */
+        GT_DD = 97,                   /*      */
+        GTE_DD = 98,                  /*      */
+        LT_DD = 99,                   /*      */
+        LTE_DD = 100,                 /*      */
+
+        /* quickened superinstructions */
+        ADD_LOCAL_CONST_II = 101,     /* ARG1 (local), ARG2 (constant) */
+        SUB_LOCAL_CONST_II = 102,     /* ARG1 (local), ARG2 (constant) */
+        ADD_LOCAL_LOCAL_II = 103,     /* ARG1 (local), ARG2 (local) */
+
+        EQ_LOCAL_LOCAL_IFEQ_II = 104, /* ARG1 (local), ARG2 (local) */
+        NEQ_LOCAL_LOCAL_IFEQ_II = 105, /* ARG1 (local), ARG2 (local) */
+        GT_LOCAL_LOCAL_IFEQ_II = 106, /* ARG1 (local), ARG2 (local) */
+        GTE_LOCAL_LOCAL_IFEQ_II = 107, /* ARG1 (local), ARG2 (local) */
+        LT_LOCAL_LOCAL_IFEQ_II = 108, /* ARG1 (local), ARG2 (local) */
+        LTE_LOCAL_LOCAL_IFEQ_II = 109, /* ARG1 (local), ARG2 (local) */
+
+        EQ_LOCAL_CONST_IFEQ_II = 110, /* ARG1 (local), ARG2 (constant) */
+        NEQ_LOCAL_CONST_IFEQ_II = 111, /* ARG1 (local), ARG2 (constant) */
+        GT_LOCAL_CONST_IFEQ_II = 112, /* ARG1 (local), ARG2 (constant) */
+        GTE_LOCAL_CONST_IFEQ_II = 113, /* ARG1 (local), ARG2 (constant) */
+        LT_LOCAL_CONST_IFEQ_II = 114, /* ARG1 (local), ARG2 (constant) */
+        LTE_LOCAL_CONST_IFEQ_II = 115, /* ARG1 (local), ARG2 (constant) */
+
+        /* jump tables, followed by ARG1 + 1 JMP instructions; the first is taken
+         * if no key matches */
+        TABLE_SWITCH = 116,  /* ARG1 (number of keys), ARG2 (constant of the lowest key) */
+        LOOKUP_SWITCH = 117, /* ARG1 (number of keys), ARG2 (constant map of key to JMP index) */
+
+        /* patched over an instruction by the leola.vm.debug.Debugger, which
+         * holds on to the displaced instruction */
+        BREAKPOINT = 118,
+
+        /* a left associated chain of ADDs which builds a string, such as a + ":" + b */
+        CONCAT = 119                  /* ARGx (number of operands) */
         ;
     
     
@@ -673,6 +955,70 @@ public class Opcodes {
         opcodes.put("SIDX", SIDX);        
         
         opcodes.put("LINE", LINE);    
+        
+        /* superinstructions */
+        opcodes.put("ADD_LOCAL_CONST", ADD_LOCAL_CONST);
+        opcodes.put("SUB_LOCAL_CONST", SUB_LOCAL_CONST);
+        opcodes.put("ADD_LOCAL_LOCAL", ADD_LOCAL_LOCAL);
+        opcodes.put("LOAD_LOCAL_GETK", LOAD_LOCAL_GETK);
+        
+        opcodes.put("EQ_LOCAL_LOCAL_IFEQ", EQ_LOCAL_LOCAL_IFEQ);
+        opcodes.put("NEQ_LOCAL_LOCAL_IFEQ", NEQ_LOCAL_LOCAL_IFEQ);
+        opcodes.put("GT_LOCAL_LOCAL_IFEQ", GT_LOCAL_LOCAL_IFEQ);
+        opcodes.put("GTE_LOCAL_LOCAL_IFEQ", GTE_LOCAL_LOCAL_IFEQ);
+        opcodes.put("LT_LOCAL_LOCAL_IFEQ", LT_LOCAL_LOCAL_IFEQ);
+        opcodes.put("LTE_LOCAL_LOCAL_IFEQ", LTE_LOCAL_LOCAL_IFEQ);
+        
+        opcodes.put("EQ_LOCAL_CONST_IFEQ", EQ_LOCAL_CONST_IFEQ);
+        opcodes.put("NEQ_LOCAL_CONST_IFEQ", NEQ_LOCAL_CONST_IFEQ);
+        opcodes.put("GT_LOCAL_CONST_IFEQ", GT_LOCAL_CONST_IFEQ);
+        opcodes.put("GTE_LOCAL_CONST_IFEQ", GTE_LOCAL_CONST_IFEQ);
+        opcodes.put("LT_LOCAL_CONST_IFEQ", LT_LOCAL_CONST_IFEQ);
+        opcodes.put("LTE_LOCAL_CONST_IFEQ", LTE_LOCAL_CONST_IFEQ);
+
+        /* quickened instructions */
+        opcodes.put("ADD_II", ADD_II);
+        opcodes.put("ADD_DD", ADD_DD);
+        opcodes.put("ADD_SS", ADD_SS);
+        opcodes.put("SUB_II", SUB_II);
+        opcodes.put("SUB_DD", SUB_DD);
+        opcodes.put("MUL_II", MUL_II);
+        opcodes.put("MUL_DD", MUL_DD);
+        opcodes.put("EQ_II", EQ_II);
+        opcodes.put("NEQ_II", NEQ_II);
+        opcodes.put("GT_II", GT_II);
+        opcodes.put("GTE_II", GTE_II);
+        opcodes.put("LT_II", LT_II);
+        opcodes.put("LTE_II", LTE_II);
+        opcodes.put("GT_DD", GT_DD);
+        opcodes.put("GTE_DD", GTE_DD);
+        opcodes.put("LT_DD", LT_DD);
+        opcodes.put("LTE_DD", LTE_DD);
+
+        opcodes.put("ADD_LOCAL_CONST_II", ADD_LOCAL_CONST_II);
+        opcodes.put("SUB_LOCAL_CONST_II", SUB_LOCAL_CONST_II);
+        opcodes.put("ADD_LOCAL_LOCAL_II", ADD_LOCAL_LOCAL_II);
+
+        opcodes.put("EQ_LOCAL_LOCAL_IFEQ_II", EQ_LOCAL_LOCAL_IFEQ_II);
+        opcodes.put("NEQ_LOCAL_LOCAL_IFEQ_II", NEQ_LOCAL_LOCAL_IFEQ_II);
+        opcodes.put("GT_LOCAL_LOCAL_IFEQ_II", GT_LOCAL_LOCAL_IFEQ_II);
+        opcodes.put("GTE_LOCAL_LOCAL_IFEQ_II", GTE_LOCAL_LOCAL_IFEQ_II);
+        opcodes.put("LT_LOCAL_LOCAL_IFEQ_II", LT_LOCAL_LOCAL_IFEQ_II);
+        opcodes.put("LTE_LOCAL_LOCAL_IFEQ_II", LTE_LOCAL_LOCAL_IFEQ_II);
+
+        opcodes.put("EQ_LOCAL_CONST_IFEQ_II", EQ_LOCAL_CONST_IFEQ_II);
+        opcodes.put("NEQ_LOCAL_CONST_IFEQ_II", NEQ_LOCAL_CONST_IFEQ_II);
+        opcodes.put("GT_LOCAL_CONST_IFEQ_II", GT_LOCAL_CONST_IFEQ_II);
+        opcodes.put("GTE_LOCAL_CONST_IFEQ_II", GTE_LOCAL_CONST_IFEQ_II);
+        opcodes.put("LT_LOCAL_CONST_IFEQ_II", LT_LOCAL_CONST_IFEQ_II);
+        opcodes.put("LTE_LOCAL_CONST_IFEQ_II", LTE_LOCAL_CONST_IFEQ_II);
+
+        opcodes.put("TABLE_SWITCH", TABLE_SWITCH);
+        opcodes.put("LOOKUP_SWITCH", LOOKUP_SWITCH);
+
+        opcodes.put("BREAKPOINT", BREAKPOINT);
+
+        opcodes.put("CONCAT", CONCAT);
     }
 
 }
@@ -0,0 +1,124 @@
+/*
+    Leola Programming Language
+    Author: Tony Sparks
+    See license.txt
+*/
+package leola.vm;
+
+import java.util.List;
+
+import leola.vm.compiler.Bytecode;
+import leola.vm.exceptions.LeolaRuntimeException;
+import leola.vm.types.LeoObject;
+
+/**
+ * The argument positions of a single call site (<code>INVOKE</code>, <code>TAIL_CALL</code> and <code>NEW_OBJ</code>)
+ * within a {@link Bytecode} which passes named parameters.
+ *
+ * <p>
+ * The names passed at a call site rarely change, and neither do the parameter names of the function being called, so the
+ * permutation of the arguments is computed once and reused for as long as both stay the same.  The callee's parameter names
+ * are compared by identity, as they are held by its {@link Bytecode}.
+ *
+ * <p>
+ * The cached permutation is immutable, so a {@link Bytecode} may be shared between {@link VM}s; concurrent updates
+ * may only recompute the permutation, never produce an invalid one.
+ *
+ * @author Tony
+ *
+ */
+public class ParameterPermutation {
+
+    /**
+     * A computed permutation
+     *
+     * @author Tony
+     *
+     */
+    private static class Entry {
+
+        /* the parameter names of the callee */
+        final LeoObject[] paramNames;
+
+        /* the names passed at the call site, null for an argument without a name */
+        final LeoObject[] names;
+
+        final int[] indexes;
+
+        Entry(LeoObject[] paramNames, LeoObject[] names, int[] indexes) {
+            this.paramNames = paramNames;
+            this.names = names;
+            this.indexes = indexes;
+        }
+
+        boolean matches(List<LeoObject> params, LeoObject[] paramNames) {
+            if(this.paramNames != paramNames || this.names.length != params.size()) {
+                return false;
+            }
+
+            for(int i = 0; i < this.names.length; i++) {
+                if(this.names[i] != params.get(i)) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+
+    private Entry entry;
+
+    /**
+     * Retrieves the argument positions for the supplied names.  For each argument, a positive value is the position
+     * (starting at 1) of the parameter it is named after, a negative value is the order (starting at -1) of an argument
+     * without a name.
+     *
+     * @param params the names passed at the call site, null for an argument without a name
+     * @param paramNames the parameter names of the callee
+     * @return the argument positions, this must not be modified
+     * @throws LeolaRuntimeException if a name does not match any of the parameter names
+     */
+    public int[] getIndexes(List<LeoObject> params, LeoObject[] paramNames) throws LeolaRuntimeException {
+        Entry entry = this.entry;
+        if(entry == null || !entry.matches(params, paramNames)) {
+            entry = this.entry = compute(params, paramNames);
+        }
+
+        return entry.indexes;
+    }
+
+    private static Entry compute(List<LeoObject> params, LeoObject[] paramNames) {
+        LeoObject[] names = params.toArray(new LeoObject[params.size()]);
+        int[] indexes = new int[paramNames.length];
+
+        /* iterate through the parameter names and adjust the stack
+         * so that the names match the position the function expects them
+         */
+        for(int stackIndex = 0; stackIndex < names.length; stackIndex++) {
+            LeoObject paramName = names[stackIndex];
+            if(paramName != null) {
+
+                /* Find the appropriate argument position
+                 * index for the named parameter
+                 */
+                int paramIndex = 0;
+                for(; paramIndex < paramNames.length; paramIndex++) {
+                    if(paramNames[paramIndex].$eq(paramName)) {
+                        break;
+                    }
+                }
+
+                if(paramIndex>=paramNames.length) {
+                    throw new LeolaRuntimeException("ExecutionError: Invalid parameter name '" + paramName + "'", false);
+                }
+
+                indexes[stackIndex] = paramIndex + 1;
+            }
+            else {
+                indexes[stackIndex] = -(stackIndex+1);
+            }
+        }
+
+        return new Entry(paramNames, names, indexes);
+    }
+}
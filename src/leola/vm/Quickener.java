@@ -0,0 +1,336 @@
+/*
+    Leola Programming Language
+    Author: Tony Sparks
+    See license.txt
+*/
+package leola.vm;
+
+import static leola.vm.Opcodes.*;
+
+import leola.vm.compiler.Bytecode;
+import leola.vm.types.LeoBoolean;
+import leola.vm.types.LeoDouble;
+import leola.vm.types.LeoInteger;
+import leola.vm.types.LeoObject;
+import leola.vm.types.LeoObject.LeoType;
+import leola.vm.types.LeoString;
+
+/**
+ * Maps the generic arithmetic and comparison instructions to their type specialized (quickened) forms and back.
+ *
+ * <p>
+ * The first time a generic instruction (e.g., <code>ADD</code>) is executed, the {@link VM} rewrites it in place with
+ * the quickened instruction matching the observed operand types (e.g., <code>ADD_II</code> for two integers).  A quickened
+ * instruction guards its operand types, and on a miss rewrites itself back to the generic instruction and executes it
+ * generically.  An instruction which has been de-quickened {@link Quickener#MAX_DEQUICKENS} times is left generic, as its
+ * operand types are not stable.
+ *
+ * <p>
+ * A quickened instruction always produces the same result as the generic instruction would for the same operands, so a
+ * {@link Bytecode} may be shared between {@link VM}s (see {@link Args#allowThreadLocal()}); a racing rewrite may only
+ * leave an instruction in its generic form or quickened for the other thread's operand types, both of which are
+ * correct.
+ *
+ * <p>
+ * The quickened instructions are executed by {@link Quickener#execute(Bytecode, int, int, LeoObject, LeoObject)} and
+ * {@link Quickener#compare(Bytecode, int, int, LeoObject, LeoObject)} rather than by the {@link VM} dispatch loop, which keeps
+ * the dispatch loop small enough to be compiled by the JIT.
+ *
+ * @author Tony
+ *
+ */
+public class Quickener {
+
+    /**
+     * The number of times an instruction may be de-quickened before it is
+     * left as the generic instruction
+     */
+    public static final int MAX_DEQUICKENS = 4;
+
+    /**
+     * Determines the quickened instruction for the observed operands
+     *
+     * @param opcode the generic opcode
+     * @param l the left hand operand
+     * @param r the right hand operand
+     * @return the quickened opcode, or the supplied opcode if there isn't a quickened form for these operands
+     */
+    public static int quicken(int opcode, LeoObject l, LeoObject r) {
+        LeoType left = l.getType();
+        LeoType right = r.getType();
+
+        if(left == LeoType.INTEGER && right == LeoType.INTEGER) {
+            switch(opcode) {
+                case ADD: return ADD_II;
+                case SUB: return SUB_II;
+                case MUL: return MUL_II;
+                case EQ:  return EQ_II;
+                case NEQ: return NEQ_II;
+                case GT:  return GT_II;
+                case GTE: return GTE_II;
+                case LT:  return LT_II;
+                case LTE: return LTE_II;
+
+                case ADD_LOCAL_CONST: return ADD_LOCAL_CONST_II;
+                case SUB_LOCAL_CONST: return SUB_LOCAL_CONST_II;
+                case ADD_LOCAL_LOCAL: return ADD_LOCAL_LOCAL_II;
+
+                case EQ_LOCAL_LOCAL_IFEQ:  return EQ_LOCAL_LOCAL_IFEQ_II;
+                case NEQ_LOCAL_LOCAL_IFEQ: return NEQ_LOCAL_LOCAL_IFEQ_II;
+                case GT_LOCAL_LOCAL_IFEQ:  return GT_LOCAL_LOCAL_IFEQ_II;
+                case GTE_LOCAL_LOCAL_IFEQ: return GTE_LOCAL_LOCAL_IFEQ_II;
+                case LT_LOCAL_LOCAL_IFEQ:  return LT_LOCAL_LOCAL_IFEQ_II;
+                case LTE_LOCAL_LOCAL_IFEQ: return LTE_LOCAL_LOCAL_IFEQ_II;
+
+                case EQ_LOCAL_CONST_IFEQ:  return EQ_LOCAL_CONST_IFEQ_II;
+                case NEQ_LOCAL_CONST_IFEQ: return NEQ_LOCAL_CONST_IFEQ_II;
+                case GT_LOCAL_CONST_IFEQ:  return GT_LOCAL_CONST_IFEQ_II;
+                case GTE_LOCAL_CONST_IFEQ: return GTE_LOCAL_CONST_IFEQ_II;
+                case LT_LOCAL_CONST_IFEQ:  return LT_LOCAL_CONST_IFEQ_II;
+                case LTE_LOCAL_CONST_IFEQ: return LTE_LOCAL_CONST_IFEQ_II;
+            }
+        }
+        else if(left == LeoType.REAL && right == LeoType.REAL) {
+            switch(opcode) {
+                case ADD: return ADD_DD;
+                case SUB: return SUB_DD;
+                case MUL: return MUL_DD;
+                case GT:  return GT_DD;
+                case GTE: return GTE_DD;
+                case LT:  return LT_DD;
+                case LTE: return LTE_DD;
+            }
+        }
+        else if(left == LeoType.STRING && right == LeoType.STRING) {
+            if(opcode == ADD) {
+                return ADD_SS;
+            }
+        }
+
+        return opcode;
+    }
+
+    /**
+     * @param opcode
+     * @return the generic opcode of the quickened opcode, or the supplied opcode if it is not quickened
+     */
+    public static int generic(int opcode) {
+        switch(opcode) {
+            case ADD_II:
+            case ADD_DD:
+            case ADD_SS: return ADD;
+            case SUB_II:
+            case SUB_DD: return SUB;
+            case MUL_II:
+            case MUL_DD: return MUL;
+            case EQ_II:  return EQ;
+            case NEQ_II: return NEQ;
+            case GT_II:
+            case GT_DD:  return GT;
+            case GTE_II:
+            case GTE_DD: return GTE;
+            case LT_II:
+            case LT_DD:  return LT;
+            case LTE_II:
+            case LTE_DD: return LTE;
+
+            case ADD_LOCAL_CONST_II: return ADD_LOCAL_CONST;
+            case SUB_LOCAL_CONST_II: return SUB_LOCAL_CONST;
+            case ADD_LOCAL_LOCAL_II: return ADD_LOCAL_LOCAL;
+
+            case EQ_LOCAL_LOCAL_IFEQ_II:  return EQ_LOCAL_LOCAL_IFEQ;
+            case NEQ_LOCAL_LOCAL_IFEQ_II: return NEQ_LOCAL_LOCAL_IFEQ;
+            case GT_LOCAL_LOCAL_IFEQ_II:  return GT_LOCAL_LOCAL_IFEQ;
+            case GTE_LOCAL_LOCAL_IFEQ_II: return GTE_LOCAL_LOCAL_IFEQ;
+            case LT_LOCAL_LOCAL_IFEQ_II:  return LT_LOCAL_LOCAL_IFEQ;
+            case LTE_LOCAL_LOCAL_IFEQ_II: return LTE_LOCAL_LOCAL_IFEQ;
+
+            case EQ_LOCAL_CONST_IFEQ_II:  return EQ_LOCAL_CONST_IFEQ;
+            case NEQ_LOCAL_CONST_IFEQ_II: return NEQ_LOCAL_CONST_IFEQ;
+            case GT_LOCAL_CONST_IFEQ_II:  return GT_LOCAL_CONST_IFEQ;
+            case GTE_LOCAL_CONST_IFEQ_II: return GTE_LOCAL_CONST_IFEQ;
+            case LT_LOCAL_CONST_IFEQ_II:  return LT_LOCAL_CONST_IFEQ;
+            case LTE_LOCAL_CONST_IFEQ_II: return LTE_LOCAL_CONST_IFEQ;
+
+            default: return opcode;
+        }
+    }
+
+    /**
+     * @param opcode
+     * @return true if the opcode is a quickened opcode
+     */
+    public static boolean isQuickened(int opcode) {
+        return generic(opcode) != opcode;
+    }
+
+    /**
+     * @param instr
+     * @return the instruction with any quickened opcode replaced by its generic opcode
+     */
+    public static int generify(int instr) {
+        int opcode = OPCODE(instr);
+        return (instr & ~MAX_OP) | generic(opcode);
+    }
+
+    /**
+     * Rewrites the generic instruction with the quickened instruction for the
+     * observed operands
+     *
+     * @param code
+     * @param pc the program counter of the instruction
+     * @param i the instruction
+     * @param l the left hand operand
+     * @param r the right hand operand
+     */
+    public static void quicken(Bytecode code, int pc, int i, LeoObject l, LeoObject r) {
+        int opcode = OPCODE(i);
+        int quickened = quicken(opcode, l, r);
+        if(quickened != opcode && code.isQuickenable(pc) && code.instr[pc] == i) {
+            code.instr[pc] = (i & ~MAX_OP) | quickened;
+        }
+    }
+
+    /**
+     * Rewrites the quickened instruction back to its generic instruction, as the
+     * operand types did not match
+     *
+     * @param code
+     * @param pc the program counter of the instruction
+     * @param i the quickened instruction
+     */
+    private static void dequicken(Bytecode code, int pc, int i) {
+        
+        /* a breakpoint has been patched over the instruction */
+        if(code.instr[pc] != i) {
+            return;
+        }
+        
+        code.dequicken(pc);
+        code.instr[pc] = generify(i);
+    }
+
+    private static boolean isIntegers(LeoObject l, LeoObject r) {
+        return l.getType() == LeoType.INTEGER && r.getType() == LeoType.INTEGER;
+    }
+
+    private static boolean isDoubles(LeoObject l, LeoObject r) {
+        return l.getType() == LeoType.REAL && r.getType() == LeoType.REAL;
+    }
+
+    private static int asInt(LeoObject v) {
+        return ((LeoInteger)v).getNumber();
+    }
+
+    private static double asDouble(LeoObject v) {
+        return ((LeoDouble)v).getNumber();
+    }
+
+    /**
+     * Executes a quickened arithmetic or comparison instruction, if the operand types do not match
+     * the instruction is de-quickened and the generic operation is executed.
+     *
+     * @param code
+     * @param pc the program counter of the instruction
+     * @param i the quickened instruction
+     * @param l the left hand operand
+     * @param r the right hand operand
+     * @return the result
+     */
+    public static LeoObject execute(Bytecode code, int pc, int i, LeoObject l, LeoObject r) {
+        final int opcode = OPCODE(i);
+        if(isIntegers(l, r)) {
+            switch(opcode) {
+                case ADD_II:
+                case ADD_LOCAL_CONST_II:
+                case ADD_LOCAL_LOCAL_II: return LeoInteger.valueOf(asInt(l) + asInt(r));
+                case SUB_II:
+                case SUB_LOCAL_CONST_II: return LeoInteger.valueOf(asInt(l) - asInt(r));
+                case MUL_II:             return LeoInteger.valueOf(asInt(l) * asInt(r));
+                case EQ_II:              return LeoBoolean.valueOf(asInt(l) == asInt(r));
+                case NEQ_II:             return LeoBoolean.valueOf(asInt(l) != asInt(r));
+                case GT_II:              return LeoBoolean.valueOf(asInt(l) > asInt(r));
+                case GTE_II:             return LeoBoolean.valueOf(asInt(l) >= asInt(r));
+                case LT_II:              return LeoBoolean.valueOf(asInt(l) < asInt(r));
+                case LTE_II:             return LeoBoolean.valueOf(asInt(l) <= asInt(r));
+            }
+        }
+        else if(isDoubles(l, r)) {
+            switch(opcode) {
+                case ADD_DD: return LeoDouble.valueOf(asDouble(l) + asDouble(r));
+                case SUB_DD: return LeoDouble.valueOf(asDouble(l) - asDouble(r));
+                case MUL_DD: return LeoDouble.valueOf(asDouble(l) * asDouble(r));
+                case GT_DD:  return LeoBoolean.valueOf(asDouble(l) > asDouble(r));
+                case GTE_DD: return LeoBoolean.valueOf(asDouble(l) >= asDouble(r));
+                case LT_DD:  return LeoBoolean.valueOf(asDouble(l) < asDouble(r));
+                case LTE_DD: return LeoBoolean.valueOf(asDouble(l) <= asDouble(r));
+            }
+        }
+        else if(opcode == ADD_SS && l.getType() == LeoType.STRING && r.getType() == LeoType.STRING) {
+            return ((LeoString)l).append(r);
+        }
+
+        dequicken(code, pc, i);
+
+        switch(generic(opcode)) {
+            case ADD:
+            case ADD_LOCAL_CONST:
+            case ADD_LOCAL_LOCAL: return l.$add(r);
+            case SUB:
+            case SUB_LOCAL_CONST: return l.$sub(r);
+            case MUL:             return l.$mul(r);
+            case EQ:              return LeoBoolean.valueOf(l.$eq(r));
+            case NEQ:             return LeoBoolean.valueOf(l.$neq(r));
+            case GT:              return LeoBoolean.valueOf(l.$gt(r));
+            case GTE:             return LeoBoolean.valueOf(l.$gte(r));
+            case LT:              return LeoBoolean.valueOf(l.$lt(r));
+            default:              return LeoBoolean.valueOf(l.$lte(r));
+        }
+    }
+
+    /**
+     * Executes the comparison of a quickened compare and branch instruction, if the operand types do not match
+     * the instruction is de-quickened and the generic comparison is executed.
+     *
+     * @param code
+     * @param pc the program counter of the instruction
+     * @param i the quickened instruction
+     * @param l the left hand operand
+     * @param r the right hand operand
+     * @return the result of the comparison
+     */
+    public static boolean compare(Bytecode code, int pc, int i, LeoObject l, LeoObject r) {
+        final int opcode = OPCODE(i);
+        if(isIntegers(l, r)) {
+            switch(opcode) {
+                case EQ_LOCAL_LOCAL_IFEQ_II:
+                case EQ_LOCAL_CONST_IFEQ_II:  return asInt(l) == asInt(r);
+                case NEQ_LOCAL_LOCAL_IFEQ_II:
+                case NEQ_LOCAL_CONST_IFEQ_II: return asInt(l) != asInt(r);
+                case GT_LOCAL_LOCAL_IFEQ_II:
+                case GT_LOCAL_CONST_IFEQ_II:  return asInt(l) > asInt(r);
+                case GTE_LOCAL_LOCAL_IFEQ_II:
+                case GTE_LOCAL_CONST_IFEQ_II: return asInt(l) >= asInt(r);
+                case LT_LOCAL_LOCAL_IFEQ_II:
+                case LT_LOCAL_CONST_IFEQ_II:  return asInt(l) < asInt(r);
+                default:                      return asInt(l) <= asInt(r);
+            }
+        }
+
+        dequicken(code, pc, i);
+
+        switch(generic(opcode)) {
+            case EQ_LOCAL_LOCAL_IFEQ:
+            case EQ_LOCAL_CONST_IFEQ:  return l.$eq(r);
+            case NEQ_LOCAL_LOCAL_IFEQ:
+            case NEQ_LOCAL_CONST_IFEQ: return l.$neq(r);
+            case GT_LOCAL_LOCAL_IFEQ:
+            case GT_LOCAL_CONST_IFEQ:  return l.$gt(r);
+            case GTE_LOCAL_LOCAL_IFEQ:
+            case GTE_LOCAL_CONST_IFEQ: return l.$gte(r);
+            case LT_LOCAL_LOCAL_IFEQ:
+            case LT_LOCAL_CONST_IFEQ:  return l.$lt(r);
+            default:                   return l.$lte(r);
+        }
+    }
+}
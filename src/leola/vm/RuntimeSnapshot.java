@@ -0,0 +1,697 @@
+/*
+    Leola Programming Language
+    Author: Tony Sparks
+    See license.txt
+*/
+package leola.vm;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import leola.vm.Scope.ScopeType;
+import leola.vm.compiler.Bytecode;
+import leola.vm.compiler.Outer;
+import leola.vm.lib.LeolaLibrary;
+import leola.vm.types.LeoArray;
+import leola.vm.types.LeoFunction;
+import leola.vm.types.LeoMap;
+import leola.vm.types.LeoNamespace;
+import leola.vm.types.LeoNativeFunction;
+import leola.vm.types.LeoObject;
+import leola.vm.types.LeoOuterObject;
+import leola.vm.types.LeoString;
+import leola.vm.util.ClassUtil;
+
+/**
+ * A snapshot of an initialized {@link Leola} runtime: the global namespace, the namespaces, the functions and class
+ * definitions (along with their {@link Bytecode} and closure values) reachable from it.  Starting a runtime from a
+ * snapshot (see {@link Args#getSnapshotFile()}) skips parsing, compiling and executing the scripts which initialized
+ * the runtime.
+ *
+ * <p>
+ * The objects are written once, later references to an object refer back to it, so that shared objects and cycles
+ * are restored as such.  The {@link Scope}s are written in two parts: a header (the {@link Scope} and its parent),
+ * which is written where the {@link Scope} is first referenced, and its contents, which are written after the
+ * contents of the previously referenced {@link Scope}s.
+ *
+ * <p>
+ * Native functions are not written out, but re-bound by name: a {@link LeolaLibrary} is initialized again by its class
+ * name, and its functions are looked up by their Java method name; static methods are looked up by their class and
+ * method name.  Class instances, generators, errors and other Java objects are not supported.
+ *
+ * @author Tony
+ *
+ */
+final class RuntimeSnapshot {
+
+    public static final int MAGIC_NUMBER = 0x1E05A;
+    public static final int VERSION = 1;
+
+    private static final int T_NULL           = 0;
+    private static final int T_REF            = 1;
+    private static final int T_VALUE          = 2;
+    private static final int T_ARRAY          = 3;
+    private static final int T_MAP            = 4;
+    private static final int T_NAMESPACE      = 5;
+    private static final int T_SCOPE          = 6;
+    private static final int T_FUNCTION       = 7;
+    private static final int T_OUTER          = 8;
+    private static final int T_BYTECODE       = 9;
+    private static final int T_CLASS          = 10;
+    private static final int T_LIBRARY        = 11;
+    private static final int T_LIBRARY_NATIVE = 12;
+    private static final int T_STATIC_NATIVE  = 13;
+
+    private RuntimeSnapshot() {
+    }
+
+    /**
+     * Writes the global namespace, and everything reachable from it, out to the stream
+     *
+     * @param global the global namespace of the runtime
+     * @param out
+     * @throws IOException if an object can not be written to a snapshot
+     */
+    static void write(LeoNamespace global, DataOutput out) throws IOException {
+        out.writeInt(MAGIC_NUMBER);
+        out.writeInt(VERSION);
+
+        new Writer(out, global).write();
+    }
+
+    /**
+     * Reads the snapshot into the (empty) global namespace of the runtime
+     *
+     * @param runtime
+     * @param global the global namespace of the runtime
+     * @param in
+     * @throws IOException if the snapshot is invalid, or refers to a native which no longer exists
+     */
+    static void read(Leola runtime, LeoNamespace global, DataInput in) throws IOException {
+        int magic = in.readInt();
+        if(magic != MAGIC_NUMBER) {
+            throw new IOException("The magic number doesn't match 0x" + Integer.toHexString(MAGIC_NUMBER) + " : 0x" + Integer.toHexString(magic));
+        }
+
+        int version = in.readInt();
+        if(version != VERSION) {
+            throw new IOException("Unsupported snapshot version: " + version);
+        }
+
+        new Reader(runtime, in, global).read();
+    }
+
+    /**
+     * Writes out the object graph
+     *
+     * @author Tony
+     *
+     */
+    private static class Writer {
+        private final DataOutput out;
+        private final Map<Object, Integer> refs;
+        private final List<Scope> scopes;
+
+        /* the name of the value currently being written, for error messages */
+        private LeoObject name;
+
+        Writer(DataOutput out, LeoNamespace global) {
+            this.out = out;
+            this.refs = new IdentityHashMap<Object, Integer>();
+            this.scopes = new ArrayList<Scope>();
+
+            register(global);
+            register(global.getScope());
+            this.scopes.add(global.getScope());
+        }
+
+        private void register(Object obj) {
+            this.refs.put(obj, this.refs.size());
+        }
+
+        /**
+         * @param obj
+         * @return true if the object has already been written, in which case a reference to it is written
+         * @throws IOException
+         */
+        private boolean writeRef(Object obj) throws IOException {
+            if(obj == null) {
+                this.out.write(T_NULL);
+                return true;
+            }
+
+            Integer ref = this.refs.get(obj);
+            if(ref != null) {
+                this.out.write(T_REF);
+                this.out.writeInt(ref);
+                return true;
+            }
+
+            return false;
+        }
+
+        void write() throws IOException {
+            /* the contents of a scope may reference new scopes, which are appended */
+            for(int i = 0; i < this.scopes.size(); i++) {
+                writeScopeContents(this.scopes.get(i));
+            }
+        }
+
+        private void writeScopeContents(Scope scope) throws IOException {
+            LeoMap values = scope.getObjects();
+            this.out.writeInt(values.size());
+            for(Map.Entry<LeoObject, LeoObject> entry : values.entrySet()) {
+                this.name = entry.getKey();
+                writeObject(entry.getKey());
+                writeObject(entry.getValue());
+            }
+
+            if(scope.hasNamespaceDefinitions()) {
+                Map<LeoObject, LeoNamespace> namespaces = scope.getNamespaceDefinitions().getNamespaceDefinitions();
+                this.out.writeInt(namespaces.size());
+                for(Map.Entry<LeoObject, LeoNamespace> entry : namespaces.entrySet()) {
+                    this.name = entry.getKey();
+                    writeObject(entry.getKey());
+                    writeObject(entry.getValue());
+                }
+            }
+            else {
+                this.out.writeInt(0);
+            }
+
+            if(scope.hasClassDefinitions()) {
+                Map<LeoObject, ClassDefinition> classes = scope.getClassDefinitions().getClassDefinitions();
+                this.out.writeInt(classes.size());
+                for(Map.Entry<LeoObject, ClassDefinition> entry : classes.entrySet()) {
+                    this.name = entry.getKey();
+                    writeObject(entry.getKey());
+                    writeClass(entry.getValue());
+                }
+            }
+            else {
+                this.out.writeInt(0);
+            }
+        }
+
+        private void writeScope(Scope scope) throws IOException {
+            if(writeRef(scope)) {
+                return;
+            }
+
+            if(!scope.isNamespaceScope()) {
+                throw new IOException("Only namespace scopes can be written to a snapshot.");
+            }
+
+            this.out.write(T_SCOPE);
+            writeScope(scope.getParent());
+
+            register(scope);
+            this.scopes.add(scope);
+        }
+
+        private void writeObject(LeoObject obj) throws IOException {
+            if(writeRef(obj)) {
+                return;
+            }
+
+            switch(obj.getType()) {
+                case NULL:
+                case BOOLEAN:
+                case INTEGER:
+                case LONG:
+                case REAL:
+                case STRING: {
+                    this.out.write(T_VALUE);
+                    obj.write(this.out);
+                    break;
+                }
+                case ARRAY: {
+                    LeoArray array = obj.as();
+                    this.out.write(T_ARRAY);
+                    register(array);
+
+                    this.out.writeInt(array.size());
+                    for(int i = 0; i < array.size(); i++) {
+                        writeObject(array.get(i));
+                    }
+                    break;
+                }
+                case MAP: {
+                    LeoMap map = obj.as();
+                    this.out.write(T_MAP);
+                    register(map);
+
+                    this.out.writeInt(map.size());
+                    for(Map.Entry<LeoObject, LeoObject> entry : map.entrySet()) {
+                        writeObject(entry.getKey());
+                        writeObject(entry.getValue());
+                    }
+                    break;
+                }
+                case NAMESPACE: {
+                    LeoNamespace ns = obj.as();
+                    this.out.write(T_NAMESPACE);
+                    writeObject(ns.getName());
+                    writeScope(ns.getScope());
+                    register(ns);
+                    break;
+                }
+                case FUNCTION: {
+                    /* generators and methods carry the state of their execution and instance */
+                    if(obj.getClass() != LeoFunction.class) {
+                        throw unsupported(obj);
+                    }
+
+                    LeoFunction function = obj.as();
+                    Outer[] outers = function.getOuters();
+
+                    this.out.write(T_FUNCTION);
+                    writeObject(function.getEnv());
+                    writeBytecode(function.getBytecode());
+                    this.out.writeInt(outers.length);
+                    register(function);
+
+                    for(int i = 0; i < outers.length; i++) {
+                        writeOuter(outers[i]);
+                    }
+                    break;
+                }
+                case NATIVE_FUNCTION: {
+                    LeoNativeFunction function = obj.as();
+                    Object instance = function.getInstance();
+                    if(instance instanceof LeolaLibrary) {
+                        this.out.write(T_LIBRARY_NATIVE);
+                        writeLibrary((LeolaLibrary)instance);
+                        this.out.writeUTF(function.getMethodName().toString());
+                    }
+                    else if(instance == null) {
+                        this.out.write(T_STATIC_NATIVE);
+                        this.out.writeUTF(function.getOwnerClass().getName());
+                        this.out.writeUTF(function.getMethodName().toString());
+                    }
+                    else {
+                        throw unsupported(obj);
+                    }
+
+                    register(function);
+                    break;
+                }
+                default: {
+                    throw unsupported(obj);
+                }
+            }
+        }
+
+        private void writeObjects(LeoObject[] objects) throws IOException {
+            if(objects == null) {
+                this.out.writeInt(-1);
+                return;
+            }
+
+            this.out.writeInt(objects.length);
+            for(int i = 0; i < objects.length; i++) {
+                writeObject(objects[i]);
+            }
+        }
+
+        private void writeOuter(Outer outer) throws IOException {
+            if(writeRef(outer)) {
+                return;
+            }
+
+            this.out.write(T_OUTER);
+            register(outer);
+            writeObject(outer.getValue());
+        }
+
+        private void writeBytecode(Bytecode bytecode) throws IOException {
+            if(writeRef(bytecode)) {
+                return;
+            }
+
+            this.out.write(T_BYTECODE);
+            bytecode.write(this.out);
+
+            File sourceFile = bytecode.getSourceFile();
+            this.out.writeUTF(sourceFile != null ? sourceFile.getPath() : "");
+            register(bytecode);
+        }
+
+        private void writeClass(ClassDefinition definition) throws IOException {
+            if(writeRef(definition)) {
+                return;
+            }
+
+            this.out.write(T_CLASS);
+            writeObject(definition.getClassName());
+            writeClass(definition.getSuperClassDefinition());
+            writeScope(definition.getDeclaredScope());
+            writeObjects(definition.getParameterNames());
+            writeObjects(definition.getSuperParameterNames());
+            writeBytecode(definition.getBody());
+            register(definition);
+
+            Outer[] outers = definition.getOuters();
+            for(int i = 0; i < outers.length; i++) {
+                writeOuter(outers[i]);
+            }
+        }
+
+        private void writeLibrary(LeolaLibrary library) throws IOException {
+            if(writeRef(library)) {
+                return;
+            }
+
+            this.out.write(T_LIBRARY);
+            this.out.writeUTF(library.getClass().getName());
+            register(library);
+        }
+
+        private IOException unsupported(LeoObject obj) {
+            String message = "Unable to write '" + obj + "' (" + obj.getType() + ") to a snapshot";
+            if(this.name != null) {
+                message += ", it is referenced by '" + this.name + "'";
+            }
+            return new IOException(message + ".");
+        }
+    }
+
+    /**
+     * Reads in the object graph
+     *
+     * @author Tony
+     *
+     */
+    private static class Reader {
+        private final Leola runtime;
+        private final DataInput in;
+        private final List<Object> refs;
+        private final List<Scope> scopes;
+
+        /**
+         * The natives of each library, by their Java method name
+         */
+        private final Map<LeolaLibrary, Map<String, LeoNativeFunction>> libraries;
+
+        Reader(Leola runtime, DataInput in, LeoNamespace global) {
+            this.runtime = runtime;
+            this.in = in;
+            this.refs = new ArrayList<Object>();
+            this.scopes = new ArrayList<Scope>();
+            this.libraries = new IdentityHashMap<LeolaLibrary, Map<String, LeoNativeFunction>>();
+
+            this.refs.add(global);
+            this.refs.add(global.getScope());
+            this.scopes.add(global.getScope());
+        }
+
+        void read() throws IOException {
+            for(int i = 0; i < this.scopes.size(); i++) {
+                readScopeContents(this.scopes.get(i));
+            }
+        }
+
+        /**
+         * @param tag the tag read in
+         * @return true if the tag denotes a null or an already read object, see {@link #ref(int)}
+         */
+        private boolean isRef(int tag) {
+            return tag == T_NULL || tag == T_REF;
+        }
+
+        private Object ref(int tag) throws IOException {
+            if(tag == T_NULL) {
+                return null;
+            }
+
+            int ref = this.in.readInt();
+            if(ref < 0 || ref >= this.refs.size()) {
+                throw new IOException("Invalid snapshot reference: " + ref);
+            }
+            return this.refs.get(ref);
+        }
+
+        private void expect(int tag, int expected) throws IOException {
+            if(tag != expected) {
+                throw new IOException("Invalid snapshot tag: " + tag + ", expected: " + expected);
+            }
+        }
+
+        private void readScopeContents(Scope scope) throws IOException {
+            int numberOfValues = this.in.readInt();
+            for(int i = 0; i < numberOfValues; i++) {
+                LeoObject key = readObject();
+                scope.putObject(key, readObject());
+            }
+
+            int numberOfNamespaces = this.in.readInt();
+            for(int i = 0; i < numberOfNamespaces; i++) {
+                LeoObject name = readObject();
+                scope.getNamespaceDefinitions().storeNamespace(name, (LeoNamespace)readObject());
+            }
+
+            int numberOfClasses = this.in.readInt();
+            for(int i = 0; i < numberOfClasses; i++) {
+                LeoObject name = readObject();
+                scope.getClassDefinitions().storeClass(name, readClass());
+            }
+        }
+
+        private Scope readScope() throws IOException {
+            int tag = this.in.readByte();
+            if(isRef(tag)) {
+                return (Scope)ref(tag);
+            }
+
+            expect(tag, T_SCOPE);
+            Scope parent = readScope();
+            Scope scope = new Scope(ScopeType.Namespace, parent);
+
+            this.refs.add(scope);
+            this.scopes.add(scope);
+            return scope;
+        }
+
+        private LeoObject readObject() throws IOException {
+            int tag = this.in.readByte();
+            if(isRef(tag)) {
+                return (LeoObject)ref(tag);
+            }
+
+            switch(tag) {
+                case T_VALUE: {
+                    return LeoObject.read(null, this.in);
+                }
+                case T_ARRAY: {
+                    LeoArray array = new LeoArray();
+                    this.refs.add(array);
+
+                    int size = this.in.readInt();
+                    for(int i = 0; i < size; i++) {
+                        array.add(readObject());
+                    }
+                    return array;
+                }
+                case T_MAP: {
+                    LeoMap map = new LeoMap();
+                    this.refs.add(map);
+
+                    int size = this.in.readInt();
+                    for(int i = 0; i < size; i++) {
+                        LeoObject key = readObject();
+                        map.put(key, readObject());
+                    }
+                    return map;
+                }
+                case T_NAMESPACE: {
+                    LeoObject name = readObject();
+                    LeoNamespace ns = new LeoNamespace(readScope(), name);
+                    this.refs.add(ns);
+                    return ns;
+                }
+                case T_FUNCTION: {
+                    LeoObject env = readObject();
+                    Bytecode bytecode = readBytecode();
+
+                    int numberOfOuters = this.in.readInt();
+                    Outer[] outers = numberOfOuters > 0 ? new Outer[numberOfOuters] : LeoOuterObject.NOOUTERS;
+
+                    LeoFunction function = new LeoFunction(this.runtime, env, bytecode, outers);
+                    this.refs.add(function);
+
+                    for(int i = 0; i < numberOfOuters; i++) {
+                        outers[i] = readOuter();
+                    }
+                    return function;
+                }
+                case T_LIBRARY_NATIVE: {
+                    LeolaLibrary library = readLibrary();
+                    String methodName = this.in.readUTF();
+
+                    LeoNativeFunction function = this.libraries.get(library).get(methodName);
+                    if(function == null) {
+                        List<Method> overloads = ClassUtil.getMethodsByName(library.getClass(), methodName);
+                        if(overloads.isEmpty()) {
+                            throw new IOException("No such native method: " + library.getClass().getName() + "." + methodName);
+                        }
+                        function = new LeoNativeFunction(overloads, library);
+                    }
+
+                    this.refs.add(function);
+                    return function;
+                }
+                case T_STATIC_NATIVE: {
+                    Class<?> aClass = loadClass(this.in.readUTF());
+                    String methodName = this.in.readUTF();
+
+                    List<Method> overloads = new ArrayList<Method>();
+                    for(Method method : ClassUtil.getMethodsByName(aClass, methodName)) {
+                        if((method.getModifiers() & Modifier.STATIC) != 0) {
+                            overloads.add(method);
+                        }
+                    }
+
+                    if(overloads.isEmpty()) {
+                        throw new IOException("No such static method: " + aClass.getName() + "." + methodName);
+                    }
+
+                    LeoNativeFunction function = new LeoNativeFunction(overloads, null);
+                    this.refs.add(function);
+                    return function;
+                }
+                default: {
+                    throw new IOException("Invalid snapshot tag: " + tag);
+                }
+            }
+        }
+
+        private LeoObject[] readObjects() throws IOException {
+            int length = this.in.readInt();
+            if(length < 0) {
+                return null;
+            }
+
+            LeoObject[] objects = new LeoObject[length];
+            for(int i = 0; i < length; i++) {
+                objects[i] = readObject();
+            }
+            return objects;
+        }
+
+        private Outer readOuter() throws IOException {
+            int tag = this.in.readByte();
+            if(isRef(tag)) {
+                return (Outer)ref(tag);
+            }
+
+            expect(tag, T_OUTER);
+            Outer outer = new Outer((LeoObject)null);
+            this.refs.add(outer);
+
+            outer.setValue(readObject());
+            return outer;
+        }
+
+        private Bytecode readBytecode() throws IOException {
+            int tag = this.in.readByte();
+            if(isRef(tag)) {
+                return (Bytecode)ref(tag);
+            }
+
+            expect(tag, T_BYTECODE);
+            Bytecode bytecode = Bytecode.read(this.runtime.getGlobalNamespace(), this.in);
+
+            String sourceFile = this.in.readUTF();
+            if(!sourceFile.isEmpty()) {
+                bytecode.setSourceFile(new File(sourceFile));
+            }
+
+            this.refs.add(bytecode);
+            return bytecode;
+        }
+
+        private ClassDefinition readClass() throws IOException {
+            int tag = this.in.readByte();
+            if(isRef(tag)) {
+                return (ClassDefinition)ref(tag);
+            }
+
+            expect(tag, T_CLASS);
+            LeoObject className = readObject();
+            ClassDefinition superClass = readClass();
+            Scope declaredScope = readScope();
+            LeoObject[] params = readObjects();
+            LeoObject[] superParams = readObjects();
+            Bytecode body = readBytecode();
+
+            ClassDefinition definition = new ClassDefinition(className, superClass, declaredScope, params, superParams, body);
+            this.refs.add(definition);
+
+            Outer[] outers = definition.getOuters();
+            for(int i = 0; i < outers.length; i++) {
+                outers[i] = readOuter();
+            }
+            return definition;
+        }
+
+        /**
+         * Initializes the library for the runtime.  The library loads its functions into a scratch namespace, from
+         * which they are looked up by their Java method name.
+         *
+         * @return the library
+         * @throws IOException
+         */
+        private LeolaLibrary readLibrary() throws IOException {
+            int tag = this.in.readByte();
+            if(isRef(tag)) {
+                return (LeolaLibrary)ref(tag);
+            }
+
+            expect(tag, T_LIBRARY);
+            Class<?> libClass = loadClass(this.in.readUTF());
+
+            LeolaLibrary library = null;
+            try {
+                library = (LeolaLibrary)libClass.getDeclaredConstructor().newInstance();
+            }
+            catch(ReflectiveOperationException | ClassCastException e) {
+                throw new IOException("Unable to create the library: " + libClass.getName(), e);
+            }
+
+            LeoNamespace scratch = new LeoNamespace(new Scope(ScopeType.Namespace, null), LeoString.valueOf(libClass.getSimpleName()));
+            library.init(this.runtime, scratch);
+
+            Map<String, LeoNativeFunction> natives = new HashMap<String, LeoNativeFunction>();
+            for(LeoObject value : scratch.getScope().getScopedValues()) {
+                if(value != null && value.isNativeFunction()) {
+                    LeoNativeFunction function = value.as();
+                    if(function.getInstance() == library) {
+                        natives.put(function.getMethodName().toString(), function);
+                    }
+                }
+            }
+
+            this.libraries.put(library, natives);
+            this.refs.add(library);
+            return library;
+        }
+
+        private Class<?> loadClass(String className) throws IOException {
+            try {
+                return Class.forName(className);
+            }
+            catch(ClassNotFoundException e) {
+                throw new IOException("Unable to find the class: " + className, e);
+            }
+        }
+    }
+}
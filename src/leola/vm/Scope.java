@@ -13,6 +13,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import leola.vm.exceptions.LeolaRuntimeException;
 import leola.vm.lib.LeolaMethod;
@@ -46,25 +47,57 @@ public class Scope {
      * Any class definitions in this 
      * scope
      */
-    private ClassDefinitions classDefinitions;
+    private volatile ClassDefinitions classDefinitions;
     
     /**
      * Any namespace definitions in this 
      * scope
      */
-    private NamespaceDefinitions namespaceDefinitions;
+    private volatile NamespaceDefinitions namespaceDefinitions;
     
     
     /**
      * The values stored in this scope
      */
     private LeoMap values;
+    
+    /**
+     * The values stored in this scope if it is concurrent (see {@link Scope#isConcurrent()}), in
+     * which case neither the values map nor the slots are used
+     */
+    private ConcurrentHashMap<LeoObject, LeoObject> concurrentValues;
+    
+    /**
+     * The scope of the template runtime this scope is a copy-on-write view of (see {@link Leola#fork()}), 
+     * and the binder of the template values to the fork
+     */
+    private Scope template;
+    private TemplateBinder binder;
+    
+    /**
+     * The layout of the values stored in the slots, if this 
+     * is null, the values are stored in the values map
+     */
+    private Shape shape;
+    private LeoObject[] slots;
+    
+    /**
+     * The object which owns this scope, any {@link ClassMethod}s
+     * stored in the slots are bound to it
+     */
+    private LeoObject owner;
 
     /**
      * The type of scope this is
      */
     private ScopeType scopeType;
     
+    /**
+     * Incremented each time a reference is added or removed from
+     * this scope
+     */
+    private int version;
+    
     /**
      * @param scopeType
      * @param parent
@@ -72,6 +105,135 @@ public class Scope {
     public Scope(ScopeType scopeType, Scope parent) {
         this.scopeType = scopeType;
         this.parent = parent;
+        
+        /* namespaces defined in a concurrent namespace are concurrent as well */
+        if(scopeType == ScopeType.Namespace && parent != null && parent.isConcurrent()) {
+            this.concurrentValues = new ConcurrentHashMap<LeoObject, LeoObject>();
+        }
+    }
+    
+    /**
+     * Creates a {@link Scope} which may be shared by multiple threads.  A concurrent {@link Scope}
+     * stores its values in a {@link ConcurrentHashMap}, so that values may be read without locking
+     * and any stored value is safely published to the other threads.
+     * 
+     * <p>
+     * This is intended for the global and namespace scopes of a {@link Leola} runtime which is called
+     * into from multiple threads, see {@link Args#concurrentGlobals()}; class instances and locals
+     * are not shared and so are left unsynchronized.
+     * 
+     * @param scopeType
+     * @param parent
+     * @param concurrent if this {@link Scope} may be shared by multiple threads
+     */
+    public Scope(ScopeType scopeType, Scope parent, boolean concurrent) {
+        this(scopeType, parent);
+        if(concurrent && this.concurrentValues == null) {
+            this.concurrentValues = new ConcurrentHashMap<LeoObject, LeoObject>();
+        }
+    }
+    
+    /**
+     * Creates a {@link Scope} which stores its values in slots described by the supplied {@link Shape}.  If
+     * the {@link Scope} outgrows the {@link Shape} or references are removed, the {@link Scope} falls back to
+     * storing its values in a {@link LeoMap}.
+     * 
+     * @param scopeType
+     * @param parent
+     * @param shape the initial (typically the root) {@link Shape}
+     */
+    public Scope(ScopeType scopeType, Scope parent, Shape shape) {
+        this(scopeType, parent);
+        if(!isConcurrent()) {
+            this.shape = shape;
+        }
+    }
+    
+    /**
+     * Makes this {@link Scope} a copy-on-write view of the template {@link Scope}.  A reference not held by this
+     * {@link Scope} is looked up in the template, and its value, once bound by the {@link TemplateBinder}, is
+     * copied into this {@link Scope}; the template is never modified.  As such, references of the template can
+     * be replaced, but not removed.
+     * 
+     * @param template
+     * @param binder
+     */
+    void setTemplate(Scope template, TemplateBinder binder) {
+        this.template = template;
+        this.binder = binder;
+    }
+    
+    /**
+     * @return the template {@link Scope} this is a copy-on-write view of, or null if none
+     */
+    public Scope getTemplate() {
+        return this.template;
+    }
+    
+    /**
+     * Copies the value of the reference from the template into this {@link Scope}
+     * 
+     * @param reference
+     * @return the copied value, or null if the template does not hold the reference
+     */
+    private LeoObject copyFromTemplate(LeoObject reference) {
+        LeoObject value = this.template.getLocalObject(reference);
+        if(value != null) {
+            value = this.binder.bind(value);
+            
+            if(this.values == null) {
+                this.values = new LeoMap();
+            }
+            this.values.put(reference, value);
+            this.version++;
+        }
+        
+        return value;
+    }
+    
+    /**
+     * Copies all of the values of the template, which have not been copied already, into this {@link Scope}
+     */
+    private void copyTemplate() {
+        if(this.template != null) {
+            for(LeoObject reference : this.template.getObjects().keySet()) {
+                getLocalObject(reference);
+            }
+        }
+    }
+    
+    /**
+     * @return true if this {@link Scope} may be shared by multiple threads
+     * @see Scope#Scope(ScopeType, Scope, boolean)
+     */
+    public boolean isConcurrent() {
+        return this.concurrentValues != null;
+    }
+    
+    /**
+     * Sets the object which owns this {@link Scope}.  This is required in order to store
+     * {@link ClassMethod}s, which are bound to the owner on lookup.
+     * 
+     * @param owner
+     */
+    public void setOwner(LeoObject owner) {
+        this.owner = owner;
+    }
+    
+    /**
+     * Retrieves the value stored in the slot, binding it to the owner if it
+     * is a {@link ClassMethod}
+     * 
+     * @param index
+     * @return the value stored in the slot
+     */
+    private LeoObject bindSlot(int index) {
+        LeoObject value = this.slots[index];
+        if(value instanceof ClassMethod) {
+            value = this.slots[index] = ((ClassMethod)value).bind(this.owner);
+        }
+        
+        return value;
     }
     
     /**
@@ -89,6 +251,9 @@ public class Scope {
      * there before be collected by the JVM GC.  Use this method with caution.
      */
     public void clear() {
+        toDictionary();
+        this.version++;
+        
         if(hasClassDefinitions()) {
             this.classDefinitions.clearDefinitions();            
         }
@@ -105,8 +270,9 @@ public class Scope {
             /* Create a new Set here so that we don't get caught in an infinite recursive loop if
              * the scopes are self referencing
              */
-            Set<Map.Entry<LeoObject, LeoObject>> entrySet = new HashSet<Map.Entry<LeoObject,LeoObject>>(this.values.entrySet());
-            this.values.clear();
+            Map<LeoObject, LeoObject> values = isConcurrent() ? this.concurrentValues : this.values;
+            Set<Map.Entry<LeoObject, LeoObject>> entrySet = new HashSet<Map.Entry<LeoObject,LeoObject>>(values.entrySet());
+            values.clear();
             
             for(Map.Entry<LeoObject, LeoObject> entry : entrySet) {
                 Scope keyScope = entry.getKey().getScope();
@@ -140,10 +306,19 @@ public class Scope {
      * @return the classDefinitions
      */
     public ClassDefinitions getClassDefinitions() {
-        if ( this.classDefinitions == null ) {
-            this.classDefinitions = new ClassDefinitions();
+        ClassDefinitions result = this.classDefinitions;
+        if ( result == null ) {
+            /* the global and namespace scopes may be shared by threads, so
+             * the definitions must only be created once
+             */
+            synchronized (this) {
+                result = this.classDefinitions;
+                if ( result == null ) {
+                    result = this.classDefinitions = new ClassDefinitions();
+                }
+            }
         }
-        return classDefinitions;
+        return result;
     }
 
     /**
@@ -157,11 +332,17 @@ public class Scope {
      * @return the namespaceDefinitions
      */
     public NamespaceDefinitions getNamespaceDefinitions() {
-        if(this.namespaceDefinitions == null) {
-            this.namespaceDefinitions = new NamespaceDefinitions();
+        NamespaceDefinitions result = this.namespaceDefinitions;
+        if(result == null) {
+            synchronized (this) {
+                result = this.namespaceDefinitions;
+                if(result == null) {
+                    result = this.namespaceDefinitions = new NamespaceDefinitions();
+                }
+            }
         }
 
-        return namespaceDefinitions;
+        return result;
     }
 
 
@@ -169,8 +350,46 @@ public class Scope {
      * @return the underlying raw values of the {@link Scope}
      */
     public LeoObject[] getScopedValues() {
+        copyTemplate();
+        
+        if(this.shape != null) {
+            LeoObject[] result = new LeoObject[this.shape.size()];
+            for(int i = 0; i < result.length; i++) {
+                result[i] = bindSlot(i);
+            }
+            return result;
+        }
+        
+        if(isConcurrent()) {
+            return this.concurrentValues.values().toArray(ArrayUtil.EMPTY_LEOOBJECTS);
+        }
+        
         return (this.values != null) ? this.values.vals().getRawArray() : ArrayUtil.EMPTY_LEOOBJECTS;
     }
+    
+    /**
+     * Retrieves the value associated with the reference, only looking in this {@link Scope}
+     * 
+     * @param reference
+     * @return the value if found, otherwise null
+     */
+    private LeoObject getLocalObject(LeoObject reference) {
+        if(this.shape != null) {
+            int index = this.shape.indexOf(reference);
+            return (index > -1) ? bindSlot(index) : null;
+        }
+        
+        if(this.concurrentValues != null) {
+            return this.concurrentValues.get(reference);
+        }
+        
+        LeoObject value = (this.values != null) ? this.values.getWithJNull(reference) : null;
+        if(value == null && this.template != null) {
+            value = copyFromTemplate(reference);
+        }
+        
+        return value;
+    }
 
     /**
      * Recursively attempts to retrieve the value associated with the reference.  If it
@@ -180,7 +399,7 @@ public class Scope {
      * @return the value if found, otherwise null
      */
     public LeoObject getObject(LeoObject reference) {
-        LeoObject value = (this.values != null) ? this.values.getWithJNull(reference) : null;
+        LeoObject value = getLocalObject(reference);
         if ( value == null && parent != null) {
             value = parent.getObject(reference);
         }
@@ -207,7 +426,7 @@ public class Scope {
      * @return the value if found, otherwise null;
      */
     public LeoObject getObjectNoGlobal(LeoObject reference) {
-        LeoObject value = (this.values != null) ? this.values.getWithJNull(reference) : null;
+        LeoObject value = getLocalObject(reference);
         if ( value == null && parent != null && !parent.isGlobalScope()) {
             value = parent.getObjectNoGlobal(reference);
         }
@@ -225,6 +444,30 @@ public class Scope {
         return getObjectNoGlobal(LeoString.valueOf(reference));
     }
     
+    /**
+     * Searches scopes and parent scopes up and until the global scope, in the
+     * same manner as {@link Scope#getObjectNoGlobal(LeoObject)}
+     * 
+     * @param reference
+     * @return the {@link Scope} which holds the reference, or null if not found
+     */
+    Scope lookupScopeNoGlobal(LeoObject reference) {
+        Scope current = this;
+        while(current != null) {
+            if(current.getLocalObject(reference) != null) {
+                return current;
+            }
+            
+            if(current.parent == null || current.parent.isGlobalScope()) {
+                break;
+            }
+            
+            current = current.parent;
+        }
+        
+        return null;
+    }
+    
     /**
      * Retrieves a {@link LeoNamespace} by its name
      * 
@@ -251,17 +494,81 @@ public class Scope {
      * @return the previously held value, if any
      */
     public LeoObject putObject(LeoObject reference, LeoObject value) {
+        if(this.concurrentValues != null) {
+            return putConcurrentObject(reference, value);
+        }
+        
+        if(this.shape != null) {
+            int index = this.shape.indexOf(reference);
+            if(index > -1) {
+                LeoObject previous = bindSlot(index);
+                this.slots[index] = value;
+                return previous;
+            }
+            
+            Shape newShape = this.shape.addProperty(reference);
+            if(newShape != null) {
+                index = newShape.size() - 1;
+                if(this.slots == null) {
+                    this.slots = new LeoObject[Math.max(newShape.getExpectedSize(), newShape.size())];
+                }
+                else if(index >= this.slots.length) {
+                    LeoObject[] newSlots = new LeoObject[this.slots.length << 1];
+                    System.arraycopy(this.slots, 0, newSlots, 0, this.slots.length);
+                    this.slots = newSlots;
+                }
+                
+                this.slots[index] = value;
+                this.shape = newShape;
+                this.version++;
+                return null;
+            }
+            
+            /* this has outgrown the shape */
+            toDictionary();
+        }
+        
         if(this.values==null) {
             this.values = new LeoMap();
         }
+        
+        if(value instanceof ClassMethod) {
+            value = ((ClassMethod)value).bind(this.owner);
+        }
 
-        return this.values.put(reference, value);        
+        LeoObject previous = this.values.put(reference, value);
+        if(previous == null) {
+            this.version++;
+        }
+        
+        return previous;
     }
     
     public LeoObject putObject(String reference, LeoObject value) {
         return putObject(LeoString.valueOf(reference), value);
     }
     
+    /**
+     * Stores an object in this concurrent {@link Scope}.  The version is not maintained, as
+     * the references of a concurrent {@link Scope} are never cached.
+     * 
+     * @param reference
+     * @param value
+     * @return the previously held value, if any
+     */
+    private LeoObject putConcurrentObject(LeoObject reference, LeoObject value) {
+        if(value instanceof ClassMethod) {
+            value = ((ClassMethod)value).bind(this.owner);
+        }
+        
+        /* null values are not permitted by the map, and are treated as not being held */
+        if(value == null) {
+            return this.concurrentValues.remove(reference);
+        }
+        
+        return this.concurrentValues.put(reference, value);
+    }
+    
     /**
      * Stores an object in this scope, it first checks to see if any parent
      * values contain the supplied reference, if it does it will override the existing
@@ -272,12 +579,24 @@ public class Scope {
      * @return the previously held value, if any
      */
     public LeoObject storeObject(LeoObject reference, LeoObject newValue) {
+        return lookupStoreScope(reference).putObject(reference, newValue);
+    }
+    
+    /**
+     * Determines which {@link Scope} {@link Scope#storeObject(LeoObject, LeoObject)} would
+     * store the reference in.
+     * 
+     * @param reference
+     * @return the {@link Scope} that holds the reference, or this {@link Scope} if 
+     * no {@link Scope} holds the reference
+     */
+    Scope lookupStoreScope(LeoObject reference) {
         
         Scope current = this;        
         while (current != null) {
             
             // if the value is the the current scope, break out 
-            if (current.values != null && current.values.getWithJNull(reference) != null ) {
+            if (current.getLocalObject(reference) != null ) {
                 break;
             }
             
@@ -302,7 +621,7 @@ public class Scope {
             break;            
         }
         
-        return current.putObject(reference, newValue);
+        return current;
     }
 
     public LeoObject storeObject(String reference, LeoObject value) {
@@ -317,7 +636,18 @@ public class Scope {
      * by this reference).
      */
     public LeoObject removeObject(LeoObject reference) {
-        return (this.values!=null) ? this.values.remove(reference) : null;
+        if(this.concurrentValues != null) {
+            return this.concurrentValues.remove(reference);
+        }
+        
+        toDictionary();
+        
+        if(this.values!=null) {
+            this.version++;
+            return this.values.remove(reference);
+        }
+        
+        return null;
     }
 
     
@@ -336,6 +666,16 @@ public class Scope {
      * @return true if and only if there are stored objects in this {@link Scope}
      */
     public boolean hasObjects() {
+        copyTemplate();
+        
+        if(this.shape != null) {
+            return this.shape.size() > 0;
+        }
+        
+        if(this.concurrentValues != null) {
+            return !this.concurrentValues.isEmpty();
+        }
+        
         return (this.values != null) && !this.values.isEmpty();
     }
     
@@ -343,19 +683,149 @@ public class Scope {
      * @return the number of {@link LeoObject}s in this {@link Scope}
      */
     public int getNumberOfObjects() {
+        copyTemplate();
+        
+        if(this.shape != null) {
+            return this.shape.size();
+        }
+        
+        if(this.concurrentValues != null) {
+            return this.concurrentValues.size();
+        }
+        
         return (this.values != null) ? this.values.size() : 0;
     }
 
     
     /**
-     * Retrieves the raw {@link LeoMap} that contains the reference and {@link LeoObject} associations
+     * Retrieves the raw {@link LeoMap} that contains the reference and {@link LeoObject} associations.  
+     * 
+     * <p>
+     * Note, if this {@link Scope} stores its values in slots (see {@link Scope#getShape()}), this will permanently
+     * move the values into a {@link LeoMap}.  Use {@link Scope#getObjects()} to only read the values.
+     * 
+     * <p>
+     * If this {@link Scope} is concurrent (see {@link Scope#isConcurrent()}), this is a copy of the values; changes
+     * to it are not reflected on this {@link Scope}.  If this {@link Scope} is a view of a template (see
+     * {@link Scope#getTemplate()}), this only holds the values copied from the template so far.
      * 
      * @return the {@link LeoMap} of the references and values
      */
     public LeoMap getRawObjects() {
+        if(this.concurrentValues != null) {
+            return getObjects();
+        }
+        
+        toDictionary();
         return this.values;
     }
+    
+    /**
+     * @return a copy of the references and {@link LeoObject} associations of this {@link Scope}
+     */
+    public LeoMap getObjects() {
+        copyTemplate();
+        
+        if(this.shape != null) {
+            final int size = this.shape.size();
+            
+            LeoMap map = new LeoMap(size);
+            for(int i = 0; i < size; i++) {
+                map.put(this.shape.getKey(i), bindSlot(i));
+            }
+            return map;
+        }
+        
+        LeoMap map = new LeoMap();
+        if(this.concurrentValues != null) {
+            map.putAll(this.concurrentValues);
+        }
+        else if(this.values != null) {
+            map.putAll(this.values);
+        }
+        return map;
+    }
+    
+    /**
+     * Copies the references of this {@link Scope} into the supplied {@link Scope}, in the order they were added, with
+     * each value bound by the {@link TemplateBinder}.  Unlike {@link Scope#getObjects()}, this does not bind the
+     * {@link ClassMethod}s held in the slots, so this {@link Scope} is only read.
+     *
+     * @param scope the {@link Scope} of the fork
+     * @param binder
+     */
+    void copyTo(Scope scope, TemplateBinder binder) {
+        if(this.shape != null) {
+            final int size = this.shape.size();
+            for(int i = 0; i < size; i++) {
+                scope.putObject(this.shape.getKey(i), binder.bind(this.slots[i]));
+            }
+        }
+        else if(this.concurrentValues != null) {
+            for(Map.Entry<LeoObject, LeoObject> entry : this.concurrentValues.entrySet()) {
+                scope.putObject(entry.getKey(), binder.bind(entry.getValue()));
+            }
+        }
+        else if(this.values != null) {
+            for(Map.Entry<LeoObject, LeoObject> entry : this.values.entrySet()) {
+                scope.putObject(entry.getKey(), binder.bind(entry.getValue()));
+            }
+        }
+    }
 
+    /**
+     * @return the {@link Shape} describing the layout of the slots, or null if this {@link Scope}
+     * stores its values in a {@link LeoMap}
+     */
+    public Shape getShape() {
+        return this.shape;
+    }
+    
+    /**
+     * @param index the slot index, only valid if this {@link Scope} has a {@link Shape}
+     * @return the value stored in the slot
+     */
+    LeoObject getSlot(int index) {
+        return bindSlot(index);
+    }
+    
+    /**
+     * @param index the slot index, only valid if this {@link Scope} has a {@link Shape}
+     * @param value the value to store in the slot
+     */
+    void setSlot(int index, LeoObject value) {
+        this.slots[index] = value;
+    }
+    
+    /**
+     * Moves the values stored in the slots into a {@link LeoMap}
+     */
+    private void toDictionary() {
+        if(this.shape != null) {
+            final int size = this.shape.size();
+            
+            this.values = new LeoMap(size);
+            for(int i = 0; i < size; i++) {
+                this.values.put(this.shape.getKey(i), bindSlot(i));
+            }
+            
+            this.shape = null;
+            this.slots = null;
+            this.version++;
+        }
+    }
+
+    /**
+     * The version of this {@link Scope} changes each time a reference is added or removed, this allows
+     * for caches of looked up references to be invalidated.  The version of a concurrent {@link Scope}
+     * is not maintained, see {@link Scope#isConcurrent()}.
+     * 
+     * @return the current version of this {@link Scope}
+     */
+    public int getVersion() {
+        return this.version;
+    }
+    
     /**
      * @return true if this scope is the global scope
      */
@@ -393,7 +863,21 @@ public class Scope {
         clone.classDefinitions = this.classDefinitions;
         clone.namespaceDefinitions = this.namespaceDefinitions;
 
-        clone.values = (LeoMap)this.values.clone();
+        if(this.shape != null) {
+            /* the clone has no owner, so all methods must be bound to this owner */
+            for(int i = 0; i < this.shape.size(); i++) {
+                bindSlot(i);
+            }
+            
+            clone.shape = this.shape;
+            clone.slots = (this.slots != null) ? this.slots.clone() : null;
+        }
+        else if(this.concurrentValues != null) {
+            clone.concurrentValues = new ConcurrentHashMap<LeoObject, LeoObject>(this.concurrentValues);
+        }
+        else {
+            clone.values = (LeoMap)this.values.clone();
+        }
         return clone;
     }
 
@@ -0,0 +1,152 @@
+/*
+    Leola Programming Language
+    Author: Tony Sparks
+    See license.txt
+*/
+package leola.vm;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import leola.vm.types.LeoInteger;
+import leola.vm.types.LeoMap;
+import leola.vm.types.LeoObject;
+
+/**
+ * A {@link Shape} describes the layout of the members of a {@link Scope} which stores its values in a
+ * flat slot array, rather than in its own {@link LeoMap}.  This is used for class instances, in which
+ * every instance of a {@link ClassDefinition} typically defines the same members in the same order.
+ *
+ * <p>
+ * {@link Shape}s form a transition tree; adding a member to a {@link Scope} moves it from its current
+ * {@link Shape} to the child {@link Shape} for that member.  {@link Scope}s which add the same members in the same order
+ * therefore share the same {@link Shape}.  {@link Shape}s are immutable, only the transitions are added
+ * to, which may be done concurrently.
+ *
+ * @author Tony
+ *
+ */
+public class Shape {
+
+    /**
+     * The maximum number of members a {@link Shape} may describe, after which
+     * a {@link Scope} falls back to dictionary storage
+     */
+    public static final int MAX_PROPERTIES = 64;
+
+    /**
+     * The member names, indexed by slot
+     */
+    private final LeoObject[] keys;
+
+    /**
+     * The member name to slot index
+     */
+    private final LeoMap indexes;
+
+    /**
+     * The child shapes
+     */
+    private final ConcurrentHashMap<LeoObject, Shape> transitions;
+    
+    /**
+     * The root of the transition tree
+     */
+    private final Shape root;
+    
+    /**
+     * The largest number of members seen from the root shape, used
+     * to size slot arrays
+     */
+    private int expectedSize;
+
+    /**
+     * Creates a new empty (root) {@link Shape}
+     */
+    public Shape() {
+        this(null, new LeoObject[0], new LeoMap());
+    }
+
+    /**
+     * @param root
+     * @param keys
+     * @param indexes
+     */
+    private Shape(Shape root, LeoObject[] keys, LeoMap indexes) {
+        this.root = (root != null) ? root : this;
+        this.keys = keys;
+        this.indexes = indexes;
+        this.transitions = new ConcurrentHashMap<LeoObject, Shape>();
+    }
+    
+    /**
+     * @return the number of slots a new {@link Scope} should allocate, this is the largest
+     * {@link Shape} created from the root {@link Shape}
+     */
+    public int getExpectedSize() {
+        return this.root.expectedSize;
+    }
+
+    /**
+     * @return the number of members described by this {@link Shape}
+     */
+    public int size() {
+        return this.keys.length;
+    }
+
+    /**
+     * @param index the slot index
+     * @return the member name stored at the slot index
+     */
+    public LeoObject getKey(int index) {
+        return this.keys[index];
+    }
+
+    /**
+     * Retrieves the slot index of the member
+     *
+     * @param key the member name
+     * @return the slot index, or -1 if this {@link Shape} does not contain the member
+     */
+    public int indexOf(LeoObject key) {
+        LeoObject index = this.indexes.getWithJNull(key);
+        return (index != null) ? index.asInt() : -1;
+    }
+
+    /**
+     * Transitions to the {@link Shape} which contains the members of this {@link Shape} plus
+     * the supplied member.  The new member is stored in slot {@link Shape#size()}.
+     *
+     * @param key the member name, which must not already be in this {@link Shape}
+     * @return the child {@link Shape}, or null if the {@link Shape} would contain more
+     * than {@link Shape#MAX_PROPERTIES} members
+     */
+    public Shape addProperty(LeoObject key) {
+        Shape shape = this.transitions.get(key);
+        if(shape == null) {
+            if(this.keys.length >= MAX_PROPERTIES) {
+                return null;
+            }
+
+            LeoObject[] newKeys = new LeoObject[this.keys.length + 1];
+            System.arraycopy(this.keys, 0, newKeys, 0, this.keys.length);
+            newKeys[this.keys.length] = key;
+
+            LeoMap newIndexes = new LeoMap(newKeys.length);
+            for(int i = 0; i < newKeys.length; i++) {
+                newIndexes.put(newKeys[i], LeoInteger.valueOf(i));
+            }
+
+            shape = new Shape(this.root, newKeys, newIndexes);
+            if(newKeys.length > this.root.expectedSize) {
+                this.root.expectedSize = newKeys.length;
+            }
+
+            Shape existing = this.transitions.putIfAbsent(key, shape);
+            if(existing != null) {
+                shape = existing;
+            }
+        }
+
+        return shape;
+    }
+}
@@ -0,0 +1,46 @@
+/*
+    Leola Programming Language
+    Author: Tony Sparks
+    See license.txt
+*/
+package leola.vm;
+
+import leola.vm.compiler.Outer;
+import leola.vm.compiler.Outer.StackValue;
+import leola.vm.types.LeoGenerator;
+import leola.vm.types.LeoObject;
+
+/**
+ * A stack the {@link VM} executes {@link Frame}s on.  The {@link VM} has one main {@link StackSegment}, and each
+ * {@link LeoGenerator} has one of its own: a generator's {@link Frame} (and any function it calls) executes directly
+ * on the stack of the generator, so that its local variables stay where they are between resumes.
+ *
+ * <p>
+ * An open {@link Outer} refers to the {@link StackSegment} it was created on, rather than to the {@link VM}'s current
+ * stack; the stack arrays are replaced as they grow, so the {@link Outer} always reads the current array of its segment.
+ *
+ * @author Tony
+ *
+ */
+final class StackSegment implements StackValue {
+
+    LeoObject[] stack;
+    Outer[] openouters;
+
+    /* the generator which owns this stack, or null for the main stack */
+    LeoGenerator generator;
+
+    /* the stack (and the index on it) to return to once the generator yields or returns */
+    StackSegment caller;
+    int callerBase;
+
+    @Override
+    public LeoObject getStackValue(int index) {
+        return stack[index];
+    }
+
+    @Override
+    public void setStackValue(int index, LeoObject value) {
+        stack[index] = value;
+    }
+}
@@ -0,0 +1,421 @@
+/*
+    Leola Programming Language
+    Author: Tony Sparks
+    See license.txt
+*/
+package leola.vm;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import leola.vm.Scope.ScopeType;
+import leola.vm.compiler.Outer;
+import leola.vm.lib.LeolaLibrary;
+import leola.vm.types.LeoArray;
+import leola.vm.types.LeoClass;
+import leola.vm.types.LeoFunction;
+import leola.vm.types.LeoMap;
+import leola.vm.types.LeoNamespace;
+import leola.vm.types.LeoNativeFunction;
+import leola.vm.types.LeoNull;
+import leola.vm.types.LeoObject;
+import leola.vm.types.LeoString;
+
+/**
+ * Binds the objects of a template {@link Leola} runtime to a fork of it (see {@link Leola#fork()}), as the fork
+ * copies them from the template:
+ * <ul>
+ *  <li>a {@link LeoNamespace} of the template is bound to a namespace of the fork, whose {@link Scope} is a
+ *  copy-on-write view of the template namespace {@link Scope} (see {@link Scope#getTemplate()})</li>
+ *  <li>a {@link LeoFunction} defined in a namespace of the template is bound to the namespace of the fork, so that
+ *  it reads and writes the globals of the fork</li>
+ *  <li>a {@link ClassDefinition} declared in a namespace of the template is declared in the namespace of the fork</li>
+ *  <li>a {@link LeoNativeFunction} of a {@link LeolaLibrary} is bound to the same library initialized for the fork</li>
+ *  <li>the mutable values, {@link LeoArray}s, {@link LeoMap}s, {@link LeoClass} instances and the closure values
+ *  ({@link Outer}s) of functions, are copied for the fork, their contents bound in turn</li>
+ * </ul>
+ * All other objects (strings, numbers, generators and Java objects) are shared with the template.  An object is bound
+ * once, so the identity of the template objects is preserved within the fork.  The bound objects are discarded on
+ * {@link #clear()}, so the next use of the fork starts off with fresh copies, except for the libraries, which are kept
+ * for the lifetime of the fork.
+ *
+ * @author Tony
+ *
+ */
+final class TemplateBinder {
+
+    private static final LeoObject THIS = LeoString.valueOf("this");
+
+    private final Leola fork;
+    private final Scope templateGlobal;
+
+    /**
+     * The template objects and their fork counterparts
+     */
+    private final Map<Object, Object> bound;
+
+    /**
+     * The template libraries and natives and their fork counterparts
+     */
+    private final Map<Object, Object> libraries;
+
+    /**
+     * @param fork
+     * @param templateGlobal the global {@link Scope} of the template
+     */
+    TemplateBinder(Leola fork, Scope templateGlobal) {
+        this.fork = fork;
+        this.templateGlobal = templateGlobal;
+        this.bound = new IdentityHashMap<Object, Object>();
+        this.libraries = new IdentityHashMap<Object, Object>();
+    }
+
+    /**
+     * Discards the bound objects
+     */
+    synchronized void clear() {
+        this.bound.clear();
+    }
+
+    /**
+     * @param value the template value
+     * @return the value bound to the fork
+     */
+    synchronized LeoObject bind(LeoObject value) {
+        switch(value.getType()) {
+            case NAMESPACE: {
+                LeoNamespace ns = (LeoNamespace)value;
+                return isTemplateScope(ns.getScope()) ? bindNamespace(ns) : ns;
+            }
+            case FUNCTION: {
+                if(value.getClass() == LeoFunction.class) {
+                    return bindFunction((LeoFunction)value);
+                }
+                if(value.getClass() == ClassMethod.class) {
+                    return bindMethod((ClassMethod)value);
+                }
+                
+                /* generators carry state of their own, and are shared */
+                return value;
+            }
+            case NATIVE_FUNCTION: {
+                LeoNativeFunction function = (LeoNativeFunction)value;
+                if(function.getInstance() instanceof LeolaLibrary) {
+                    return bindNative(function);
+                }
+                return function;
+            }
+            case ARRAY: {
+                return bindArray((LeoArray)value);
+            }
+            case MAP: {
+                return bindMap((LeoMap)value);
+            }
+            case CLASS: {
+                return bindInstance((LeoClass)value);
+            }
+            default: {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * @param ns the template namespace
+     * @return the namespace of the fork
+     */
+    synchronized LeoNamespace bindNamespace(LeoNamespace ns) {
+        Scope scope = bindScope(ns.getScope());
+
+        LeoNamespace result = (LeoNamespace)this.bound.get(ns);
+        if(result == null) {
+            result = new LeoNamespace(scope, ns.getName());
+            this.bound.put(ns, result);
+        }
+
+        return result;
+    }
+
+    /**
+     * @param scope a namespace {@link Scope} of the template
+     * @return the {@link Scope} of the fork, a view of the template {@link Scope}
+     */
+    private Scope bindScope(Scope scope) {
+        Scope result = (Scope)this.bound.get(scope);
+        if(result == null) {
+            Scope parent = scope.hasParent() ? bindScope(scope.getParent()) : null;
+            result = new Scope(ScopeType.Namespace, parent);
+
+            /* register before binding the definitions, as the namespaces refer back to their scopes */
+            this.bound.put(scope, result);
+
+            /* a namespace stores itself as 'this', so it must be created before its scope becomes a view
+             * of the template, otherwise it would find the template namespace
+             */
+            LeoObject self = scope.getObjectNoGlobal(THIS);
+            if(self != null && self.isNamespace()) {
+                this.bound.put(self, new LeoNamespace(result, ((LeoNamespace)self).getName()));
+            }
+
+            result.setTemplate(scope, this);
+
+            if(scope.hasNamespaceDefinitions()) {
+                NamespaceDefinitions definitions = result.getNamespaceDefinitions();
+                for(Map.Entry<LeoObject, LeoNamespace> entry : scope.getNamespaceDefinitions().getNamespaceDefinitions().entrySet()) {
+                    definitions.storeNamespace(entry.getKey(), bindNamespace(entry.getValue()));
+                }
+            }
+
+            if(scope.hasClassDefinitions()) {
+                ClassDefinitions definitions = result.getClassDefinitions();
+                for(Map.Entry<LeoObject, ClassDefinition> entry : scope.getClassDefinitions().getClassDefinitions().entrySet()) {
+                    definitions.storeClass(entry.getKey(), bindClass(entry.getValue()));
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * @param definition the template class
+     * @return the class declared in the fork
+     */
+    private ClassDefinition bindClass(ClassDefinition definition) {
+        if(!isTemplateScope(definition.getDeclaredScope())) {
+            return definition;
+        }
+
+        ClassDefinition result = (ClassDefinition)this.bound.get(definition);
+        if(result == null) {
+            ClassDefinition superClass = definition.hasParentClass() ? bindClass(definition.getSuperClassDefinition()) : null;
+            result = new ClassDefinition(definition.getClassName()
+                                       , superClass
+                                       , bindScope(definition.getDeclaredScope())
+                                       , definition.getParameterNames()
+                                       , definition.getSuperParameterNames()
+                                       , definition.getBody());
+
+            /* register before binding the closure values, as they may hold instances of this class */
+            this.bound.put(definition, result);
+
+            Outer[] outers = bindOuters(definition.getOuters());
+            System.arraycopy(outers, 0, result.getOuters(), 0, outers.length);
+        }
+
+        return result;
+    }
+
+    /**
+     * @param function the template function
+     * @return the function bound to the namespace (or class instance) and closure values of the fork
+     */
+    private LeoObject bindFunction(LeoFunction function) {
+        LeoObject result = (LeoObject)this.bound.get(function);
+        if(result != null) {
+            return result;
+        }
+
+        LeoObject env = function.getEnv();
+        LeoObject forkEnv = env;
+        if(env != null) {
+            if(env.isNamespace()) {
+                if(isTemplateScope(((LeoNamespace)env).getScope())) {
+                    forkEnv = bindNamespace((LeoNamespace)env);
+                }
+            }
+            else if(env.isClass()) {
+                forkEnv = bindInstance((LeoClass)env);
+            }
+        }
+
+        Outer[] outers = bindOuters(function.getOuters());
+
+        /* binding the instance or closure values may have bound this function already */
+        result = (LeoObject)this.bound.get(function);
+        if(result == null) {
+            result = (forkEnv != env || outers != function.getOuters())
+                        ? new LeoFunction(this.fork, forkEnv, function.getBytecode(), outers)
+                        : function;
+            this.bound.put(function, result);
+        }
+
+        return result;
+    }
+
+    /**
+     * @param method the template method, not yet bound to an instance
+     * @return the method of the fork
+     */
+    private LeoObject bindMethod(ClassMethod method) {
+        LeoObject result = (LeoObject)this.bound.get(method);
+        if(result == null) {
+            Outer[] outers = bindOuters(method.getOuters());
+            result = (LeoObject)this.bound.get(method);
+            if(result == null) {
+                result = new ClassMethod(this.fork, method.getBytecode(), outers);
+                this.bound.put(method, result);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * @param outers the template closure values
+     * @return the closure values of the fork, or the supplied outers if there are none
+     */
+    private Outer[] bindOuters(Outer[] outers) {
+        if(outers == null || outers.length == 0) {
+            return outers;
+        }
+
+        Outer[] result = new Outer[outers.length];
+        for(int i = 0; i < outers.length; i++) {
+            Outer outer = outers[i];
+            if(outer != null) {
+                Outer forkOuter = (Outer)this.bound.get(outer);
+                if(forkOuter == null) {
+                    /* register before binding the value, a closure may hold itself (or a function holding it) */
+                    forkOuter = new Outer(LeoNull.LEONULL);
+                    this.bound.put(outer, forkOuter);
+                    forkOuter.setValue(bind(outer.getValue()));
+                }
+
+                result[i] = forkOuter;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * @param array the template array
+     * @return the copy of the array for the fork
+     */
+    private LeoArray bindArray(LeoArray array) {
+        LeoArray result = (LeoArray)this.bound.get(array);
+        if(result == null) {
+            final int size = array.size();
+            result = new LeoArray(size);
+            this.bound.put(array, result);
+
+            for(int i = 0; i < size; i++) {
+                result.add(bind(array.get(i)));
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * @param map the template map
+     * @return the copy of the map for the fork
+     */
+    private LeoMap bindMap(LeoMap map) {
+        LeoMap result = (LeoMap)this.bound.get(map);
+        if(result == null) {
+            result = new LeoMap(map.size());
+            this.bound.put(map, result);
+
+            for(Map.Entry<LeoObject, LeoObject> entry : map.entrySet()) {
+                result.put(bind(entry.getKey()), bind(entry.getValue()));
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Copies the class instance, without running its constructor again.  The members are copied from the template
+     * instance, in the order they were added, so the copy has the same {@link Shape} as the template instance.
+     *
+     * @param instance the template instance
+     * @return the copy of the instance for the fork
+     */
+    private LeoClass bindInstance(LeoClass instance) {
+        LeoClass result = (LeoClass)this.bound.get(instance);
+        if(result != null) {
+            return result;
+        }
+
+        ClassDefinition definition = bindClass(instance.getClassDefinition());
+        LeoObject superClass = bind(instance.getSuperClass());
+
+        /* binding the super instance may have bound this instance already */
+        result = (LeoClass)this.bound.get(instance);
+        if(result == null) {
+            Scope parentScope = superClass.isClass() ? ((LeoClass)superClass).getScope() : definition.getDeclaredScope();
+            Scope scope = new Scope(ScopeType.Class, parentScope, definition.getShape());
+
+            result = new LeoClass(this.fork, scope, definition, superClass);
+            this.bound.put(instance, result);
+
+            instance.getScope().copyTo(scope, this);
+        }
+
+        return result;
+    }
+
+    /**
+     * @param function the template native function
+     * @return the native function bound to the library of the fork
+     */
+    private LeoObject bindNative(LeoNativeFunction function) {
+        LeoObject result = (LeoObject)this.libraries.get(function);
+        if(result == null) {
+            Object library = bindLibrary((LeolaLibrary)function.getInstance());
+            result = (library != function.getInstance())
+                        ? new LeoNativeFunction(function.getOverloads(), library)
+                        : function;
+
+            this.libraries.put(function, result);
+        }
+
+        return result;
+    }
+
+    /**
+     * Initializes the library for the fork.  The library loads its functions into a scratch namespace, as the
+     * namespaces of the fork are bound from the template.
+     *
+     * @param library the template library
+     * @return the library of the fork, or the template library if it can not be created
+     */
+    private Object bindLibrary(LeolaLibrary library) {
+        Object result = this.libraries.get(library);
+        if(result == null) {
+            try {
+                LeolaLibrary forkLibrary = library.getClass().getDeclaredConstructor().newInstance();
+                forkLibrary.init(this.fork, new LeoNamespace(new Scope(ScopeType.Namespace, null), LeoString.valueOf(library.getClass().getSimpleName())));
+                result = forkLibrary;
+            }
+            catch(Exception e) {
+                /* the library has no default constructor, so it is shared */
+                result = library;
+            }
+
+            this.libraries.put(library, result);
+        }
+
+        return result;
+    }
+
+    /**
+     * @param scope
+     * @return true if the scope is the global {@link Scope} of the template, or one of its namespaces
+     */
+    private boolean isTemplateScope(Scope scope) {
+        for(Scope s = scope; s != null; s = s.getParent()) {
+            if(!s.isNamespaceScope()) {
+                return false;
+            }
+
+            if(s == this.templateGlobal) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
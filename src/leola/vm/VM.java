@@ -7,16 +7,19 @@ package leola.vm;
 
 import static leola.vm.Opcodes.*;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import leola.vm.Scope.ScopeType;
 import leola.vm.compiler.Bytecode;
 import leola.vm.compiler.Outer;
-import leola.vm.compiler.Outer.StackValue;
 import leola.vm.debug.DebugEvent;
 import leola.vm.debug.DebugListener;
+import leola.vm.debug.Debugger;
 import leola.vm.exceptions.LeolaRuntimeException;
+import leola.vm.jit.CompiledBytecode;
+import leola.vm.jit.CompiledCodeException;
+import leola.vm.jit.JitCompiler;
 import leola.vm.lib.LeolaLibrary;
 import leola.vm.types.LeoArray;
 import leola.vm.types.LeoBoolean;
@@ -29,6 +32,7 @@ import leola.vm.types.LeoNamespace;
 import leola.vm.types.LeoNull;
 import leola.vm.types.LeoObject;
 import leola.vm.types.LeoScopedObject;
+import leola.vm.types.LeoString;
 import leola.vm.util.ClassUtil;
 
 
@@ -122,6 +126,12 @@ public class VM {
      */
     private Outer[] openouters;
     private int top;
+    
+    /* the call frames, Leola to Leola function calls are 
+     * executed on these frames as opposed to the Java stack
+     */
+    private Frame[] frames;
+    private int frameTop;
 
     /**
      * The maximum stack size
@@ -129,24 +139,56 @@ public class VM {
     private final int maxStackSize;
     
     /**
-     * The stack value accounts for closures requesting a value off
+     * If the functions declared in class bodies are
+     * shared between instances
+     */
+    private final boolean sharedClassMethods;
+    
+    /**
+     * If the number of executed instructions
+     * should be counted
+     */
+    private final boolean countInstructions;
+    private long instructionCount;
+    
+    /**
+     * Records the {@link VMMetrics}, null if the metrics
+     * are not collected
+     */
+    private final VMMetrics.Recorder metrics;
+    
+    /**
+     * If arithmetic and comparison instructions are
+     * quickened, see {@link Quickener}
+     */
+    private final boolean quickenInstructions;
+    
+    /**
+     * Compiles hot functions into Java bytecode, null
+     * if tiered compilation is disabled
+     */
+    private final JitCompiler jit;
+    
+    /**
+     * The number of nested compiled invocations; compiled code calls functions
+     * recursively on the Java stack, so beyond {@link #MAX_COMPILED_DEPTH} functions
+     * are interpreted
+     */
+    private static final int MAX_COMPILED_DEPTH = 128;
+    private int compiledDepth;
+    
+    /**
+     * The stack being executed on, either the main stack or the stack of a
+     * generator; the stack and openouters are the arrays of this segment.
+     * 
+     * The segment accounts for closures requesting a value off
      * of the stack and when the are finally 'closed' over.
      * 
      * We can't just use the VM.stack variable when closing over
      * the Outer because the VM.stack variable may be replaced
-     * when the stack grows.
+     * when the stack grows, or when a generator is resumed.
      */
-    private StackValue vmStackValue = new StackValue() {        
-        @Override
-        public LeoObject getStackValue(int index) {
-            return stack[index];
-        }
-        
-        @Override
-        public void setStackValue(int index, LeoObject value) {         
-            stack[index] = value;
-        }
-    };
+    private StackSegment segment;
     
     /**
      * @param runtime the {@link Leola} runtime
@@ -158,12 +200,65 @@ public class VM {
         stackSize = (stackSize <= 0) ? DEFAULT_STACKSIZE : stackSize;
 
         this.maxStackSize = Math.max(runtime.getArgs().getMaxStackSize(), stackSize);
+        this.sharedClassMethods = runtime.getArgs().sharedClassMethods();
+        this.countInstructions = runtime.getArgs().countInstructions();
+        this.metrics = (runtime.getMetrics() != null) ? runtime.getMetrics().newRecorder() : null;
+        this.quickenInstructions = runtime.getArgs().quickenInstructions();
+        this.jit = runtime.getArgs().tieredCompilation() ? 
+                        new JitCompiler(runtime.getArgs().getCompileThreshold()) : null;
         
         this.stack = new LeoObject[stackSize];
         this.openouters = new Outer[stackSize];
+        this.segment = new StackSegment();
+        this.segment.stack = this.stack;
+        this.segment.openouters = this.openouters;
+        this.frames = new Frame[64];
+        this.frameTop = 0;
         this.top = 0;        
     }
 
+    /**
+     * Copies the current call chain of this {@link VM}, outermost first, into the supplied arrays.  For each 
+     * frame, the program counter is of the last call or loop iteration made in it.  If the arrays are too small, 
+     * the innermost frames are copied.
+     * 
+     * <p>
+     * This may be invoked from any thread (e.g., by the {@link leola.vm.debug.SamplingProfiler}).  The frames are read
+     * without synchronization, so that executing does not pay for it; the result is therefore only a best effort snapshot
+     * if this {@link VM} is executing in another thread.
+     * 
+     * @param codes the {@link Bytecode} of each frame
+     * @param pcs the program counter of each frame
+     * @return the number of frames copied
+     */
+    public int getFrames(Bytecode[] codes, int[] pcs) {
+        Frame[] frames = this.frames;
+        int n = Math.min(this.frameTop, frames.length);
+        
+        int count = 0;
+        for(int i = Math.max(0, n - codes.length); i < n; i++) {
+            Frame frame = frames[i];
+            Bytecode code = (frame != null) ? frame.code : null;
+            if(code != null) {
+                codes[count] = code;
+                pcs[count] = frame.pc;
+                count++;
+            }
+        }
+        
+        return count;
+    }
+    
+    /**
+     * The number of instructions dispatched by this {@link VM}, this is only counted if
+     * enabled by {@link Args#countInstructions()} (or {@link Args#collectMetrics()})
+     * 
+     * @return the number of instructions executed
+     */
+    public long getInstructionCount() {
+        return this.instructionCount;
+    }
+    
 
     /**
      * Executes the supplied {@link Bytecode}.  
@@ -415,138 +510,428 @@ public class VM {
         }
         
         if( requiredStackSize > stack.length) {
+            if(this.metrics != null) {
+                this.metrics.stackGrown();
+            }
+            
             final int newStackSize = Math.min( stack.length + ((requiredStackSize-stack.length) << 1), this.maxStackSize);
             LeoObject[] newStack = new LeoObject[newStackSize];
-            System.arraycopy(stack, 0, newStack, 0, base);
+            System.arraycopy(stack, 0, newStack, 0, Math.max(base, top));
             this.stack = newStack;
+            this.segment.stack = newStack;
             
             Outer[] newOuters = new Outer[newStack.length];
-            System.arraycopy(openouters, 0, newOuters, 0, base);
+            System.arraycopy(openouters, 0, newOuters, 0, Math.max(base, top));
             this.openouters = newOuters;
+            this.segment.openouters = newOuters;
         }        
     }
     
     /**
-     * The main VM execution loop.
-     * 
-     * This is a big f'ing method.  Since this is the hot spot (i.e., the most executed part of the code) there are a number
-     * of micro optimizations.  The first such optimization is the use of a switch statement for Opcode handling.  My tests have shown a slight
-     * improvement in speed using the switch over a Map<Opcode, OpcodeHandler> approach.  However, the CPU cost wasn't my primary
-     * concern.  Using the Map approach required more allocations (all of the local variables within this method need
-     * to be accessed in the OpcodeHandler, thus requring an allocated object to capture all of the locals).
-     * 
-     * Java really needs Value Types -- or I suppose more correctly I should have used a more appropriate implementation language.
-     * 
-     * At any rate, this whole codebase has sacrifriced readability/maintainability for these micro-optimizations.  This method
-     * probably being the worst offender.
-     * 
+     * Executes the {@link Bytecode} within a new {@link Frame}.  Any Leola function invocations made from within the
+     * {@link Bytecode} are executed within this same loop (by pushing and popping {@link Frame}s), rather than recursively
+     * invoking {@link VM#execute(LeoObject, LeoObject, Bytecode)}.  This keeps the Java call stack flat; the recursion
+     * depth is only bounded by the VM stack (see {@link Args#getMaxStackSize()}).
+     *
+     * @param env
+     * @param code
+     * @param callee
+     * @param base
+     * @return the result of executing the {@link Bytecode}
+     * @throws LeolaRuntimeException
      */
     private LeoObject executeStackframe(LeoObject env, Bytecode code, LeoObject callee, int base) throws LeolaRuntimeException {
-        LeoObject result = LeoNull.LEONULL;
-        LeoObject errorThrown = LeoNull.LEONULL;
-
-        final int[] instr = code.instr;
-        final int len = code.len;
-        int pc = code.pc;
-
-
-        final LeoObject[] constants = code.constants;
-        final Bytecode[] inner = code.inner;
+        if(this.jit != null && callee != null && callee.getClass() == LeoFunction.class && this.compiledDepth < MAX_COMPILED_DEPTH) {
+            CompiledBytecode compiled = this.jit.onInvoke(code, stack, base);
+            if(compiled != null) {
+                return executeCompiled(compiled, env, callee, code, base);
+            }
+        }
         
-        final Outer[] calleeouters;
-        final LeoObject[] genLocals;
+        final int entryFrame = this.frameTop;
         
+        try {
+            Frame frame = pushFrame(env, code, callee, base);
+            
+            while(true) {
+                
+                /* if the frame invoked a Leola function, a new frame 
+                 * was pushed on to the frame stack, execute it
+                 */
+                if(!executeFrame(frame)) {
+                    frame = this.frames[this.frameTop-1];
+                    continue;
+                }
+                
+                LeoObject result = popFrame(frame);
+                if(this.frameTop == entryFrame) {
+                    return result;
+                }
+                
+                /* return the result to the calling frame */
+                frame = this.frames[this.frameTop-1];
+                if(result.isError()) {
+                    frame.pendingError = result;
+                }
+                else {
+                    stack[top-1] = result;
+                }
+            }
+        }
+        finally {
+            /* only in exceptional cases (errors within the VM itself) will there 
+             * be any left over frames
+             */
+            while(this.frameTop > entryFrame) {
+                Frame frame = this.frames[--this.frameTop];
+                if(frame.segment != null) {
+                    exitGenerator(frame);
+                }
+                
+                frame.clear();
+            }
+            
+            if(this.metrics != null && this.frameTop == 0) {
+                this.metrics.paused();
+            }
+        }
+    }
+    
+    /**
+     * Pushes a new {@link Frame} on to the frame stack, setting up the environment for the
+     * {@link Bytecode} to be executed.
+     * 
+     * @param env
+     * @param code
+     * @param callee
+     * @param base
+     * @return the new {@link Frame}
+     */
+    private Frame pushFrame(LeoObject env, Bytecode code, LeoObject callee, int base) {
+        if(this.frameTop >= this.frames.length) {
+            Frame[] newFrames = new Frame[this.frames.length << 1];
+            System.arraycopy(this.frames, 0, newFrames, 0, this.frameTop);
+            this.frames = newFrames;
+        }
+        
+        Frame frame = this.frames[this.frameTop];
+        if(frame == null) {
+            frame = this.frames[this.frameTop] = new Frame();
+        }
+        
+        frame.env = env;
+        frame.callee = callee;
+        frame.code = code;
+        frame.base = base;
+        frame.pc = code.pc;
         
         /* if there is some object calling this function
          * this means there might be outer scoped variables
          * that we can access within this byte code
          */
         if(callee != null) {
-            calleeouters = callee.getOuters();
-            genLocals = callee.getLocals();
+            frame.calleeouters = callee.getOuters();
             
-            /* if this is a generator, let us copy its local variables onto
-             * the stack
+            /* if this is a generator, resume it where it yielded on its 
+             * own stack, where its local variables were left
              */
-            if(genLocals != null) {
-                System.arraycopy(genLocals, code.numArgs, stack, base+code.numArgs, code.numLocals-code.numArgs);
+            if(callee.isGenerator()) {
+                frame.base = base = resumeGenerator(frame, (LeoGenerator)callee, base);
             }
         }
-        else {
-            calleeouters = null;
-            genLocals = null;
+        
+        LeoScopedObject scopedObj = getScopedObject(env);
+        
+        frame.scope = scopedObj.getScope();
+        frame.scopedObj = scopedObj;
+        
+        /* named parameters 
+         */
+        frame.paramIndex = 0;        
+        if(code.hasParamIndexes()) {
+            frame.params = frame.newParams();
         }
         
-
-        boolean closeOuters = false;
-        boolean yield = false;
-        boolean isReturnedSafely = true;
-        boolean exitFunction = false;
-                
-        Scope scope = null;
+        
+        /* exception handling, keeps track of the catch program 
+         * counter */
+        if(code.hasBlocks()) {
+            frame.blockStack = frame.newBlockStack();
+        }
+        
+        frame.result = LeoNull.LEONULL;
+        frame.errorThrown = LeoNull.LEONULL;
+        
+        frame.closeOuters = false;
+        frame.yield = false;
+        frame.isReturnedSafely = true;
+        frame.exitFunction = false;
+        
+        frame.topStack = base + code.numLocals;
+        top = frame.topStack;
+        
+        this.frameTop++;
+        return frame;
+    }
+    
+    /**
+     * @param env
+     * @return the object holding the scope the {@link Bytecode} executes in, which
+     * is the global namespace if the environment has no scope
+     */
+    private LeoScopedObject getScopedObject(LeoObject env) {
         
         /* check and see if this is a scoped object,
          * if so use the scope
          */
-        LeoScopedObject scopedObj = null;
         if ( env instanceof LeoScopedObject) {
-            scopedObj = (LeoScopedObject)env;
-            scope = scopedObj.getScope();
+            LeoScopedObject scopedObj = (LeoScopedObject)env;
+            if(scopedObj.getScope() != null) {
+                return scopedObj;
+            }
         }
-
+        
         /* use the global scope if this object doesn't contain
          * any scope
          */
-        if(scope==null) {
-            LeoNamespace global = runtime.getGlobalNamespace();
-
-            scope=global.getScope();
-            scopedObj=global;
+        return runtime.getGlobalNamespace();
+    }
+    
+    /**
+     * Executes the {@link CompiledBytecode} of a function, the arguments are already on the stack.  Unlike
+     * interpreted functions, the compiled code recursively invokes the {@link VM} for any function it calls.
+     * 
+     * @param compiled
+     * @param env
+     * @param callee
+     * @param code
+     * @param base
+     * @return the result of executing the function, or the {@link LeoError} it raised
+     */
+    private LeoObject executeCompiled(CompiledBytecode compiled, LeoObject env, LeoObject callee, Bytecode code, int base) {
+        top = base + code.numLocals;
+        compiledDepth++;
+        try {
+            return compiled.execute(code, stack, base, callee.getOuters(), getScopedObject(env), code.pc);
+        }
+        catch(Throwable e) {
+            return buildStackTrace(code, LeoNull.LEONULL, e, -1);
+        }
+        finally {
+            compiledDepth--;
+            exitCall(code, false, base);
+        }
+    }
+    
+    /**
+     * Continues an interpreted invocation in the {@link CompiledBytecode} at the head of a loop, once the
+     * loop has become hot.
+     * 
+     * @param frame
+     * @param pc the program counter of the loop head
+     * @return the result of the invocation, or null if it is to remain interpreted
+     */
+    private LeoObject continueCompiled(Frame frame, int pc) {
+        if(top != frame.topStack || this.compiledDepth >= MAX_COMPILED_DEPTH ||
+          (frame.callee != null && frame.callee.getClass() != LeoFunction.class)) {
+            return null;
         }
         
+        CompiledBytecode compiled = this.jit.onBackEdge(frame.code, stack, frame.base);
+        if(compiled == null || !compiled.isEntry(pc)) {
+            return null;
+        }
         
-        /* named parameters 
-         */
-        List<LeoObject> params = null;
-        int paramIndex = 0;
+        compiledDepth++;
+        try {
+            return compiled.execute(frame.code, stack, frame.base, frame.calleeouters, frame.scopedObj, pc);
+        }
+        finally {
+            compiledDepth--;
+        }
+    }
+    
+    /**
+     * Pops the completed {@link Frame} off of the frame stack
+     * 
+     * @param frame
+     * @return the result of the {@link Frame}
+     */
+    private LeoObject popFrame(Frame frame) {
+        if(frame.segment != null) {
+            exitGenerator(frame);
+        }
+        else {
+            exitCall(frame.code, frame.closeOuters, frame.base);
+        }
         
-        if(code.hasParamIndexes()) {
-            params = new ArrayList<LeoObject>();
+        LeoObject result = frame.isReturnedSafely ? 
+                            frame.result : frame.errorThrown;
+        
+        this.frames[--this.frameTop].clear();
+        return result;
+    }
+    
+    /**
+     * Invokes the {@link LeoFunction} by pushing a new {@link Frame}, the arguments are already
+     * on the stack.
+     * 
+     * @param fun the function to invoke
+     * @param nargs the number of arguments on the stack
+     * @return true if a new {@link Frame} was pushed, false if the function was compiled and
+     * has already been executed
+     */
+    private boolean invokeFrame(LeoFunction fun, int nargs) {
+        final Bytecode code = fun.getBytecode();
+        final int base = top - nargs;
+        
+        growStackIfRequired(stack, base, Math.max(code.maxstacksize, nargs));
+        
+        for(int i = nargs; i < code.numArgs; i++) {
+            stack[base + i] = LeoNull.LEONULL;
+        }
+        
+        /* wrap up the variable arguments into an array */
+        if(code.hasVarargs()) {
+            int varargIndex = code.getVarargIndex();
+            if(nargs > varargIndex) {
+                LeoObject[] varargs = new LeoObject[nargs - varargIndex];
+                System.arraycopy(stack, base + varargIndex, varargs, 0, varargs.length);
+                
+                for(int i = varargIndex + 1; i < nargs; i++) {
+                    stack[base + i] = null;
+                }
+                
+                stack[base + varargIndex] = LeoArray.newLeoArray(varargs);
+            }
         }
         
+        if(this.jit != null && this.compiledDepth < MAX_COMPILED_DEPTH) {
+            CompiledBytecode compiled = this.jit.onInvoke(code, stack, base);
+            if(compiled != null) {
+                LeoObject result = executeCompiled(compiled, fun.getEnv(), fun, code, base);
+                if(result.isError()) {
+                    throw new LeolaRuntimeException(result, false);
+                }
+                
+                stack[top-1] = result;
+                return false;
+            }
+        }
+        
+        pushFrame(fun.getEnv(), code, fun, base);
+        return true;
+    }
+    
+    /**
+     * The main VM execution loop.
+     * 
+     * This is a big f'ing method.  Since this is the hot spot (i.e., the most executed part of the code) there are a number
+     * of micro optimizations.  The first such optimization is the use of a switch statement for Opcode handling.  My tests have shown a slight
+     * improvement in speed using the switch over a Map<Opcode, OpcodeHandler> approach.  However, the CPU cost wasn't my primary
+     * concern.  Using the Map approach required more allocations (all of the local variables within this method need
+     * to be accessed in the OpcodeHandler, thus requring an allocated object to capture all of the locals).
+     * 
+     * Java really needs Value Types -- or I suppose more correctly I should have used a more appropriate implementation language.
+     * 
+     * At any rate, this whole codebase has sacrifriced readability/maintainability for these micro-optimizations.  This method
+     * probably being the worst offender.
+     * 
+     * @param frame the {@link Frame} to execute (or resume)
+     * @return true if the {@link Frame} has completed, false if the {@link Frame} invoked a function (and
+     * therefore pushed a new {@link Frame})
+     */
+    private boolean executeFrame(final Frame frame) throws LeolaRuntimeException {
+        final Bytecode code = frame.code;
+        final int base = frame.base;
+        
+        LeoObject result = frame.result;
+        LeoObject errorThrown = frame.errorThrown;
+
+        final int[] instr = code.instr;
+        final int len = code.len;
+        int pc = frame.pc;
+
+
+        final LeoObject[] constants = code.constants;
+        final Bytecode[] inner = code.inner;
+        
+        final Outer[] calleeouters = frame.calleeouters;
+
+        boolean closeOuters = frame.closeOuters;
+        boolean yield = frame.yield;
+        boolean isReturnedSafely = frame.isReturnedSafely;
+        boolean exitFunction = frame.exitFunction;
+        boolean isInvoking = false;
+                
+        final Scope scope = frame.scope;
+        final LeoScopedObject scopedObj = frame.scopedObj;
+        
+        /* named parameters 
+         */
+        final List<LeoObject> params = frame.params;
+        int paramIndex = frame.paramIndex;
         
         /* exception handling, keeps track of the catch program 
          * counter */
-        ExceptionStack blockStack = null;
-        if(code.hasBlocks()) {
-            blockStack = new ExceptionStack();
-        }
+        final ExceptionStack blockStack = frame.blockStack;
         
+        final int topStack = frame.topStack;
+        final boolean instrumented = this.countInstructions || this.metrics != null;
+        final boolean quickenInstructions = this.quickenInstructions;
         
-        final int topStack = base + code.numLocals;
-        top = topStack;
+        /* the instruction displaced by a BREAKPOINT, which is executed in its
+         * place; shares the slow path with the instrumentation */
+        boolean slowPath = instrumented;
+        boolean isDisplaced = false;
+        int displaced = 0;
 
-        int lineNumber = -1;
         do {            
-            try {                                        
+            try {
+                
+                /* a called function resulted in an error, bubble it up */
+                if(frame.pendingError != null) {
+                    LeoObject error = frame.pendingError;
+                    frame.pendingError = null;
+                    
+                    throw new LeolaRuntimeException(error, false);
+                }
+                
+                dispatch:
                 while( pc < len ) {
                     int i = instr[pc++];
                     int opcode =  i & 255; //OPCODE(i);
+                    
+                    if(slowPath) {
+                        if(isDisplaced) {
+                            i = displaced;
+                            opcode = i & 255;
+                            isDisplaced = false;
+                            slowPath = instrumented;
+                        }
+                        
+                        if(instrumented) {
+                            this.instructionCount++;
+                            if(this.metrics != null) {
+                                this.metrics.dispatched(opcode);
+                            }
+                        }
+                    }
     
                     switch(opcode) {
                         /* Debug */
+                        case BREAKPOINT: {
+                            displaced = breakpoint(frame, pc-1, top);
+                            isDisplaced = true;
+                            slowPath = true;
+                            pc--;
+                            continue;
+                        }
                         case LINE: {
-                            lineNumber = ARGx(i);
                             DebugListener listener = this.runtime.getDebugListener();
                             if(listener != null ) {
-                                LeoObject[] stackSnapshot = new LeoObject[top-base];
-                                System.arraycopy(stack, base, stackSnapshot, 0, stackSnapshot.length);
-    
-                                LeoObject[] localsSnapshot = new LeoObject[topStack-base];
-                                System.arraycopy(stack, base, localsSnapshot, 0, localsSnapshot.length);
-    
                                 listener.onLineNumber(new DebugEvent(stack, base, topStack, top, pc
-                                                                   , lineNumber, scope, calleeouters, code));
+                                                                   , ARGx(i), scope, calleeouters, code));
                             }
                             continue;
                         }
@@ -636,12 +1021,7 @@ public class VM {
                             isReturnedSafely = true; 
                             exitFunction = true;
                                                         
-                            /* copy what was stored on the stack, back to the
-                             * generators local copy
-                             */
-                            System.arraycopy(stack, base+code.numArgs, genLocals, code.numArgs, code.numLocals-code.numArgs);
-                            
-                            code.pc = pc;                        
+                            suspendGenerator(frame, pc);
                             pc = len;
                             
                             if ( top>topStack) {
@@ -651,19 +1031,32 @@ public class VM {
                         }                                                
                         case JMP:    {
                             int pos = ARGsx(i);
+                            
+                            /* publish where the loop is for the SamplingProfiler */
+                            if(pos < 0) {
+                                frame.pc = pc;
+                            }
                             pc += pos;
+                            
+                            /* a backward jump, the loop may continue in compiled code */
+                            if(pos < 0 && this.jit != null) {
+                                LeoObject r = continueCompiled(frame, pc);
+                                if(r != null) {
+                                    result = r;
+                                    pc = len;
+                                    break;
+                                }
+                            }
                             continue;
                         }
                         case TAIL_CALL: {                            
-                            pc = 0;    /* return to the beginning of the function call, with the
-                                       stack persevered */                                                        
                             int nargs = ARG1(i);
                             LeoObject fun = stack[(top-1) - nargs];
                             
                              
                             /* determine if there are named parameters to resolve */
                             if(paramIndex > 0 ) {
-                                nargs = resolveNamedParameters(params, stack, top-nargs, fun, nargs);
+                                nargs = resolveNamedParameters(code.getParameterPermutation(pc-1), params, stack, top-nargs, fun, nargs);
                                 
 
                                 /* ready this for any other method calls */
@@ -743,6 +1136,8 @@ public class VM {
                             // pops the recursive function
                             top--;
                             
+                            pc = 0;    /* return to the beginning of the function call, with the
+                                       stack persevered */
                             continue;
                         }
                         case INVOKE:    {
@@ -751,7 +1146,7 @@ public class VM {
                             
                             /* determine if there are named parameters to resolve */
                             if(paramIndex > 0 && !fun.isNativeFunction() ) {
-                                nargs = resolveNamedParameters(params, stack, top-nargs, fun, nargs);
+                                nargs = resolveNamedParameters(code.getParameterPermutation(pc-1), params, stack, top-nargs, fun, nargs);
                                 
 
                                 /* ready this for any other method calls */
@@ -778,6 +1173,21 @@ public class VM {
                             }
                            
                             
+                            /* Leola functions are executed within this loop, by
+                             * pushing a new frame
+                             */
+                            frame.pc = pc;
+                            if(fun.getClass() == LeoFunction.class) {
+                                LeoFunction f = (LeoFunction)fun;
+                                if(f.getRuntime() == this.runtime) {
+                                    if(invokeFrame(f, nargs)) {
+                                        isInvoking = true;
+                                        break dispatch;
+                                    }
+                                    continue;
+                                }
+                            }
+                            
                             LeoObject c = null;
     
                             switch(nargs) {
@@ -859,7 +1269,7 @@ public class VM {
                                 }
                                 
                                 if(paramIndex > 0) {                                       
-                                    resolveNamedParameters(params, args, 0, definition.getParameterNames(), nargs);
+                                    resolveNamedParameters(code.getParameterPermutation(pc-1), params, args, 0, definition.getParameterNames(), nargs);
                                     
     
                                     /* ready this for any other method calls */
@@ -893,6 +1303,9 @@ public class VM {
                         case NEW_ARRAY:    {
                             int initialSize = ARGx(i);
                             LeoArray array = new LeoArray(initialSize);
+                            if(this.metrics != null) {
+                                this.metrics.allocated(VMMetrics.Allocation.ARRAY);
+                            }
     
                             for(int j = initialSize; j > 0; j--) {
                                 array.add(stack[top-j]);
@@ -906,6 +1319,9 @@ public class VM {
                             int initialSize = ARGx(i);
     
                             LeoMap map = new LeoMap(initialSize);
+                            if(this.metrics != null) {
+                                this.metrics.allocated(VMMetrics.Allocation.MAP);
+                            }
                             for(int j = 0; j < initialSize; j++) {
                                 LeoObject value = stack[--top];
                                 LeoObject key = stack[--top];
@@ -946,7 +1362,10 @@ public class VM {
                         case GEN_DEF: {
                             int innerIndex = ARGx(i);
                             Bytecode bytecode = inner[innerIndex];
-                            LeoGenerator fun = new LeoGenerator(this.runtime, scopedObj, bytecode.clone());
+                            LeoGenerator fun = new LeoGenerator(this.runtime, scopedObj, bytecode);
+                            if(this.metrics != null) {
+                                this.metrics.allocated(VMMetrics.Allocation.GENERATOR);
+                            }
     
                             Outer[] outers = fun.getOuters();
                             if (assignOuters(outers, calleeouters, openouters, bytecode.numOuters, base, pc, code)) {
@@ -960,7 +1379,30 @@ public class VM {
                         case FUNC_DEF: {
                             int innerIndex = ARGx(i);
                             Bytecode bytecode = inner[innerIndex];
+                            
+                            /* methods declared in a class body are defined once per class
+                             * definition, and bound to the instance on lookup
+                             */
+                            if(this.sharedClassMethods && frame.callee == scopedObj && scopedObj instanceof LeoClass) {
+                                LeoClass klass = (LeoClass)scopedObj;
+                                if(klass.getConstructor() == code) {
+                                    ClassMethod method = klass.getClassDefinition().getMethod(this.runtime, pc-1);
+                                    if(method != null) {
+                                        pc += bytecode.numOuters;
+                                        
+                                        /* the method is always followed by a SET_GLOBAL */
+                                        LeoObject name = constants[ARGx(instr[pc++])];
+                                        Scope target = scope.lookupStoreScope(name);
+                                        target.putObject(name, target == scope ? method : method.bind(scopedObj));
+                                        continue;
+                                    }
+                                }
+                            }
+                            
                             LeoFunction fun = new LeoFunction(this.runtime, scopedObj, bytecode);
+                            if(this.metrics != null) {
+                                this.metrics.allocated(VMMetrics.Allocation.FUNCTION);
+                            }
     
                             Outer[] outers = fun.getOuters();                            
                             if (assignOuters(outers, calleeouters, openouters, bytecode.numOuters, base, pc, code)) {
@@ -1028,7 +1470,7 @@ public class VM {
                         }
                         case THROW: {
                             LeoObject str = stack[--top];                                                
-                            throw new LeolaRuntimeException(new LeoError(str));
+                            throw new LeolaRuntimeException(new LeoError(str), false);
                         }
     
                         case IDX: {
@@ -1064,8 +1506,16 @@ public class VM {
                             int iname = ARGx(i);
                             LeoObject obj = stack[--top];
                             
-                            LeoObject value = obj.isAccessible() 
-                                    ? obj.getObject(constants[iname]) : LeoObject.NULL;
+                            LeoObject value = LeoObject.NULL;
+                            if(obj.isScopedObject()) {
+                                value = code.getInlineCache(pc-1).getProperty((LeoScopedObject)obj, constants[iname]);
+                                if(value == null) {
+                                    value = LeoObject.NULL;
+                                }
+                            }
+                            else if(obj.isAccessible()) {
+                                value = obj.getObject(constants[iname]);
+                            }
                                                         
                             stack[top++] = value;
                             continue;
@@ -1074,7 +1524,17 @@ public class VM {
                             int iname = ARGx(i);
                             LeoObject obj = stack[--top];
                             
-                            LeoObject value = obj.xgetObject(constants[iname]);
+                            LeoObject value = null;
+                            if(obj.isScopedObject()) {
+                                value = code.getInlineCache(pc-1).getProperty((LeoScopedObject)obj, constants[iname]);
+                                if(value == null) {
+                                    obj.throwAttributeError(constants[iname]);
+                                }
+                            }
+                            else {
+                                value = obj.xgetObject(constants[iname]);
+                            }
+                            
                             stack[top++] = value;
                             continue;
                         }
@@ -1093,7 +1553,12 @@ public class VM {
                             LeoObject obj = stack[--top];
                             LeoObject value = stack[--top];
     
-                            obj.setObject(constants[iname], value);
+                            if(obj.isScopedObject()) {
+                                code.getInlineCache(pc-1).setProperty((LeoScopedObject)obj, constants[iname], value);
+                            }
+                            else {
+                                obj.setObject(constants[iname], value);
+                            }
                             stack[top++] = obj; /* make this an expression */                            
                             continue;
                         }
@@ -1196,6 +1661,10 @@ public class VM {
                         case ADD:    {
                             LeoObject r = stack[--top];
                             LeoObject l = stack[--top];
+                            if(quickenInstructions) {
+                                Quickener.quicken(code, pc-1, i, l, r);
+                            }
+                            
                             LeoObject c = l.$add(r);
                             stack[top++] = c;
                             continue;
@@ -1203,6 +1672,10 @@ public class VM {
                         case SUB:    {
                             LeoObject r = stack[--top];
                             LeoObject l = stack[--top];
+                            if(quickenInstructions) {
+                                Quickener.quicken(code, pc-1, i, l, r);
+                            }
+                            
                             LeoObject c = l.$sub(r);
                             stack[top++] = c;
                             continue;
@@ -1210,6 +1683,10 @@ public class VM {
                         case MUL:    {
                             LeoObject r = stack[--top];
                             LeoObject l = stack[--top];
+                            if(quickenInstructions) {
+                                Quickener.quicken(code, pc-1, i, l, r);
+                            }
+                            
                             LeoObject c = l.$mul(r);
                             stack[top++] = c;
                             continue;
@@ -1314,6 +1791,10 @@ public class VM {
                         case EQ:    {
                             LeoObject r = stack[--top];
                             LeoObject l = stack[--top];
+                            if(quickenInstructions) {
+                                Quickener.quicken(code, pc-1, i, l, r);
+                            }
+                            
                             LeoObject c = LeoBoolean.valueOf(l.$eq(r));
                             stack[top++] = c;
                             continue;
@@ -1321,6 +1802,10 @@ public class VM {
                         case NEQ:    {
                             LeoObject r = stack[--top];
                             LeoObject l = stack[--top];
+                            if(quickenInstructions) {
+                                Quickener.quicken(code, pc-1, i, l, r);
+                            }
+                            
                             LeoObject c = LeoBoolean.valueOf(l.$neq(r));
                             stack[top++] = c;
                             continue;
@@ -1328,6 +1813,10 @@ public class VM {
                         case GT:    {
                             LeoObject r = stack[--top];
                             LeoObject l = stack[--top];
+                            if(quickenInstructions) {
+                                Quickener.quicken(code, pc-1, i, l, r);
+                            }
+                            
                             LeoObject c = LeoBoolean.valueOf(l.$gt(r));
                             stack[top++] = c;
                             continue;
@@ -1335,6 +1824,10 @@ public class VM {
                         case GTE:    {
                             LeoObject r = stack[--top];
                             LeoObject l = stack[--top];
+                            if(quickenInstructions) {
+                                Quickener.quicken(code, pc-1, i, l, r);
+                            }
+                            
                             LeoObject c = LeoBoolean.valueOf(l.$gte(r));
                             stack[top++] = c;
                             continue;
@@ -1342,6 +1835,10 @@ public class VM {
                         case LT:    {
                             LeoObject r = stack[--top];
                             LeoObject l = stack[--top];
+                            if(quickenInstructions) {
+                                Quickener.quicken(code, pc-1, i, l, r);
+                            }
+                            
                             LeoObject c = LeoBoolean.valueOf(l.$lt(r));
                             stack[top++] = c;
                             continue;
@@ -1349,10 +1846,189 @@ public class VM {
                         case LTE:    {
                             LeoObject r = stack[--top];
                             LeoObject l = stack[--top];
+                            if(quickenInstructions) {
+                                Quickener.quicken(code, pc-1, i, l, r);
+                            }
+                            
                             LeoObject c = LeoBoolean.valueOf(l.$lte(r));
                             stack[top++] = c;
                             continue;
                         }
+                            
+                        /* superinstructions */
+                        case ADD_LOCAL_CONST: {
+                            LeoObject l = stack[base + ARG1(i)];
+                            LeoObject r = constants[ARG2(i)];
+                            if(quickenInstructions) {
+                                Quickener.quicken(code, pc-1, i, l, r);
+                            }
+                            
+                            LeoObject c = l.$add(r);
+                            stack[top++] = c;
+                            continue;
+                        }
+                        case SUB_LOCAL_CONST: {
+                            LeoObject l = stack[base + ARG1(i)];
+                            LeoObject r = constants[ARG2(i)];
+                            if(quickenInstructions) {
+                                Quickener.quicken(code, pc-1, i, l, r);
+                            }
+                            
+                            LeoObject c = l.$sub(r);
+                            stack[top++] = c;
+                            continue;
+                        }
+                        case ADD_LOCAL_LOCAL: {
+                            LeoObject l = stack[base + ARG1(i)];
+                            LeoObject r = stack[base + ARG2(i)];
+                            if(quickenInstructions) {
+                                Quickener.quicken(code, pc-1, i, l, r);
+                            }
+                            
+                            LeoObject c = l.$add(r);
+                            stack[top++] = c;
+                            continue;
+                        }
+                        case LOAD_LOCAL_GETK: {
+                            int iname = ARG2(i);
+                            LeoObject obj = stack[base + ARG1(i)];
+                            
+                            LeoObject value = null;
+                            if(obj.isScopedObject()) {
+                                value = code.getInlineCache(pc-1).getProperty((LeoScopedObject)obj, constants[iname]);
+                                if(value == null) {
+                                    obj.throwAttributeError(constants[iname]);
+                                }
+                            }
+                            else {
+                                value = obj.xgetObject(constants[iname]);
+                            }
+                            
+                            stack[top++] = value;
+                            continue;
+                        }
+                        case EQ_LOCAL_LOCAL_IFEQ:
+                        case NEQ_LOCAL_LOCAL_IFEQ:
+                        case GT_LOCAL_LOCAL_IFEQ:
+                        case GTE_LOCAL_LOCAL_IFEQ:
+                        case LT_LOCAL_LOCAL_IFEQ:
+                        case LTE_LOCAL_LOCAL_IFEQ: {
+                            LeoObject l = stack[base + ARG1(i)];
+                            LeoObject r = stack[base + ARG2(i)];
+                            if(quickenInstructions) {
+                                Quickener.quicken(code, pc-1, i, l, r);
+                            }
+                            
+                            /* the jump offset is held by the following IFEQ */
+                            int branch = instr[pc++];
+                            if(!compare(opcode, l, r)) {
+                                pc += ARGsx(branch);
+                            }
+                            continue;
+                        }
+                        case EQ_LOCAL_CONST_IFEQ:
+                        case NEQ_LOCAL_CONST_IFEQ:
+                        case GT_LOCAL_CONST_IFEQ:
+                        case GTE_LOCAL_CONST_IFEQ:
+                        case LT_LOCAL_CONST_IFEQ:
+                        case LTE_LOCAL_CONST_IFEQ: {
+                            LeoObject l = stack[base + ARG1(i)];
+                            LeoObject r = constants[ARG2(i)];
+                            if(quickenInstructions) {
+                                Quickener.quicken(code, pc-1, i, l, r);
+                            }
+                            
+                            /* the jump offset is held by the following IFEQ */
+                            int branch = instr[pc++];
+                            if(!compare(opcode, l, r)) {
+                                pc += ARGsx(branch);
+                            }
+                            continue;
+                        }
+
+                        /* quickened instructions */
+                        case ADD_II:
+                        case ADD_DD:
+                        case ADD_SS:
+                        case SUB_II:
+                        case SUB_DD:
+                        case MUL_II:
+                        case MUL_DD:
+                        case EQ_II:
+                        case NEQ_II:
+                        case GT_II:
+                        case GTE_II:
+                        case LT_II:
+                        case LTE_II:
+                        case GT_DD:
+                        case GTE_DD:
+                        case LT_DD:
+                        case LTE_DD: {
+                            LeoObject r = stack[--top];
+                            LeoObject l = stack[--top];
+                            LeoObject c = Quickener.execute(code, pc-1, i, l, r);
+                            stack[top++] = c;
+                            continue;
+                        }
+                        case ADD_LOCAL_CONST_II:
+                        case SUB_LOCAL_CONST_II: {
+                            LeoObject c = Quickener.execute(code, pc-1, i, stack[base + ARG1(i)], constants[ARG2(i)]);
+                            stack[top++] = c;
+                            continue;
+                        }
+                        case ADD_LOCAL_LOCAL_II: {
+                            LeoObject c = Quickener.execute(code, pc-1, i, stack[base + ARG1(i)], stack[base + ARG2(i)]);
+                            stack[top++] = c;
+                            continue;
+                        }
+                        case EQ_LOCAL_LOCAL_IFEQ_II:
+                        case NEQ_LOCAL_LOCAL_IFEQ_II:
+                        case GT_LOCAL_LOCAL_IFEQ_II:
+                        case GTE_LOCAL_LOCAL_IFEQ_II:
+                        case LT_LOCAL_LOCAL_IFEQ_II:
+                        case LTE_LOCAL_LOCAL_IFEQ_II: {
+                            
+                            /* the jump offset is held by the following IFEQ */
+                            int branch = instr[pc++];
+                            if(!Quickener.compare(code, pc-2, i, stack[base + ARG1(i)], stack[base + ARG2(i)])) {
+                                pc += ARGsx(branch);
+                            }
+                            continue;
+                        }
+                        case EQ_LOCAL_CONST_IFEQ_II:
+                        case NEQ_LOCAL_CONST_IFEQ_II:
+                        case GT_LOCAL_CONST_IFEQ_II:
+                        case GTE_LOCAL_CONST_IFEQ_II:
+                        case LT_LOCAL_CONST_IFEQ_II:
+                        case LTE_LOCAL_CONST_IFEQ_II: {
+                            
+                            /* the jump offset is held by the following IFEQ */
+                            int branch = instr[pc++];
+                            if(!Quickener.compare(code, pc-2, i, stack[base + ARG1(i)], constants[ARG2(i)])) {
+                                pc += ARGsx(branch);
+                            }
+                            continue;
+                        }
+                        case TABLE_SWITCH:
+                        case LOOKUP_SWITCH: {
+                            int index = JumpTables.select(constants, i, stack[top-1]);
+                            if(index < 0) {
+                                /* skip the jump table, and compare against each when arm */
+                                pc += ARG1(i) + 1;
+                            }
+                            else {
+                                stack[--top] = null;
+                                pc += index;
+                            }
+                            continue;
+                        }
+                        case CONCAT: {
+                            int n = ARGx(i);
+                            top -= n;
+                            stack[top] = LeoString.concat(stack, top, n);
+                            top++;
+                            continue;
+                        }
                         default: {
                             error("Unknown opcode '" + opcode + "' found for the Bytecode '" + Integer.toHexString(i) + "'");
                         }
@@ -1364,15 +2040,20 @@ public class VM {
                 /* clear out result in an ON block */
                 isReturnedSafely = false; 
                 
-                /* build up the stack trace */
-                errorThrown = buildStackTrace(code, errorThrown, e, lineNumber);                                
+                /* build up the stack trace, the failing instruction 
+                 * is the one just before the program counter */
+                errorThrown = buildStackTrace(code, errorThrown, e, code.getLineNumber(pc-1));                                
                 
                 stack[top++] = errorThrown;
                 pc = len;         /* exit out of this function */
             }
-            finally {
-                
-                if(blockStack != null && !blockStack.isEmpty()) {
+            
+            /* leave this frame, as a new one has been pushed */
+            if(isInvoking) {
+                break;
+            }
+            
+            if(blockStack != null && !blockStack.isEmpty()) {
                     
                     /* If we explicitly exited out of this function
                      * either via a RETURN or YIELD statement inside
@@ -1406,17 +2087,46 @@ public class VM {
                          */
                         pc = blockStack.peekAddress();
                     }
-                }
             }
         } while(blockStack != null && !blockStack.isEmpty());
         
-        exitCall(callee, code, closeOuters, base, yield, pc, len);
+        frame.pc = pc;
+        frame.result = result;
+        frame.errorThrown = errorThrown;
+        frame.closeOuters = closeOuters;
+        frame.yield = yield;
+        frame.isReturnedSafely = isReturnedSafely;
+        frame.exitFunction = exitFunction;
+        frame.paramIndex = paramIndex;
         
-        return isReturnedSafely ? 
-                 result : errorThrown;
+        return !isInvoking;
+    }
+    
+    /**
+     * Compares the values for the compare and branch superinstructions
+     * 
+     * @param opcode the compare and branch opcode
+     * @param l
+     * @param r
+     * @return the result of the comparison
+     */
+    private static boolean compare(int opcode, LeoObject l, LeoObject r) {
+        switch(opcode) {
+            case EQ_LOCAL_LOCAL_IFEQ:
+            case EQ_LOCAL_CONST_IFEQ:  return l.$eq(r);
+            case NEQ_LOCAL_LOCAL_IFEQ:
+            case NEQ_LOCAL_CONST_IFEQ: return l.$neq(r);
+            case GT_LOCAL_LOCAL_IFEQ:
+            case GT_LOCAL_CONST_IFEQ:  return l.$gt(r);
+            case GTE_LOCAL_LOCAL_IFEQ:
+            case GTE_LOCAL_CONST_IFEQ: return l.$gte(r);
+            case LT_LOCAL_LOCAL_IFEQ:
+            case LT_LOCAL_CONST_IFEQ:  return l.$lt(r);
+            default:                   return l.$lte(r);
+        }
     }
     
-    private void exitCall(LeoObject callee, Bytecode code, boolean closeOuters, int base, boolean yield, int pc, int len) {
+    private void exitCall(Bytecode code, boolean closeOuters, int base) {
         final int stackSize = Math.min(stack.length, base+code.maxstacksize);
         /* close the outers for this function call */
         if (closeOuters) {
@@ -1436,13 +2146,117 @@ public class VM {
         }
 
         top = base;
+    }
+    
+    /**
+     * Resumes the generator on its own stack, where its local variables were left at its last yield.  Only the
+     * arguments are moved from the calling stack to the stack of the generator.
+     * 
+     * @param frame the generator {@link Frame}
+     * @param generator
+     * @param base the stack index of the arguments on the calling stack
+     * @return the stack index the generator {@link Frame} starts at, on the stack of the generator
+     */
+    private int resumeGenerator(Frame frame, LeoGenerator generator, int base) {
+        if(generator.isExecuting()) {
+            error("The generator is already executing");
+        }
         
-        /* expire this generator if we hit the end of the function */
-        if(!yield && callee != null && callee.isGenerator()) {
-            if(pc == len) {
-                code.pc = pc;
+        final Bytecode code = frame.code;
+        final LeoObject[] locals = generator.getLocals();
+        
+        final int end = Math.max(top, base + code.numArgs);
+        for(int i = 0; i < code.numArgs; i++) {
+            locals[i] = stack[base + i];
+        }
+        for(int i = base; i < end; i++) {
+            stack[i] = null;
+        }
+        
+        StackSegment generatorSegment = frame.newSegment();
+        generatorSegment.stack = locals;
+        if(generatorSegment.openouters == null || generatorSegment.openouters.length < locals.length) {
+            generatorSegment.openouters = new Outer[locals.length];
+        }
+        generatorSegment.generator = generator;
+        generatorSegment.caller = this.segment;
+        generatorSegment.callerBase = base;
+        
+        generator.setExecuting(true);
+        frame.segment = generatorSegment;
+        frame.pc = generator.getProgramCounter();
+        
+        switchStack(generatorSegment);
+        return 0;
+    }
+    
+    /**
+     * Suspends the generator executing in the {@link Frame} at a yield, saving its state in the 
+     * generator rather than in its (shared) {@link Bytecode}; its local variables are left on
+     * its stack
+     * 
+     * @param frame the generator {@link Frame}
+     * @param pc the program counter to resume at
+     */
+    private void suspendGenerator(Frame frame, int pc) {
+        ((LeoGenerator)frame.callee).setProgramCounter(pc);
+    }
+    
+    /**
+     * Exits the generator {@link Frame}, returning to the calling stack.  The local variables are kept on 
+     * the stack of the generator if it yielded, otherwise the generator is done and its stack is cleared.
+     * 
+     * @param frame the generator {@link Frame}
+     */
+    private void exitGenerator(Frame frame) {
+        final Bytecode code = frame.code;
+        final StackSegment generatorSegment = frame.segment;
+        final LeoGenerator generator = generatorSegment.generator;
+        final int stackSize = Math.min(stack.length, code.maxstacksize);
+        
+        /* close the outers for this function call */
+        if (frame.closeOuters) {
+            for(int j=0;j<stackSize;j++) {
+                if(openouters[j]!=null) {
+                    openouters[j].close();
+                    openouters[j] = null;
+                }
             }
-        }        
+        }
+        
+        for(int j=frame.yield ? code.numLocals : 0;j<stackSize;j++) {
+            stack[j] = null;
+        }
+        
+        /* expire this generator if we hit the end of the function */
+        if(!frame.yield && frame.pc == code.len) {
+            generator.setProgramCounter(code.len);
+        }
+        
+        /* the stack only grows beyond its own size for the functions 
+         * the generator called, which have since returned
+         */
+        generator.setLocals(stack.length > code.maxstacksize ? 
+                                Arrays.copyOf(stack, code.maxstacksize) : stack);
+        generator.setExecuting(false);
+        
+        switchStack(generatorSegment.caller);
+        top = generatorSegment.callerBase;
+        
+        generatorSegment.stack = null;
+        generatorSegment.generator = null;
+        generatorSegment.caller = null;
+    }
+    
+    /**
+     * Executes on the supplied {@link StackSegment}
+     * 
+     * @param segment
+     */
+    private void switchStack(StackSegment segment) {
+        this.segment = segment;
+        this.stack = segment.stack;
+        this.openouters = segment.openouters;
     }
 
     /**
@@ -1505,15 +2319,54 @@ public class VM {
         return size;
     }
     
+    /**
+     * Notifies the attached {@link Debugger} that a <code>BREAKPOINT</code> was reached
+     * 
+     * @param frame the current frame
+     * @param pc the program counter of the <code>BREAKPOINT</code>
+     * @param top the top of the stack
+     * @return the displaced instruction to execute
+     */
+    private int breakpoint(Frame frame, int pc, int top) {
+        Debugger debugger = this.runtime.getDebugger();
+        if(debugger == null) {
+            error("No debugger is attached for the breakpoint at " + pc);
+        }
+        
+        Bytecode code = frame.code;
+        DebugEvent event = new DebugEvent(stack, frame.base, frame.topStack, top, pc
+                                        , code.getLineNumber(pc), frame.scope, frame.calleeouters, code);
+        
+        /* the caller resumes once this frame returns */
+        Bytecode callerCode = null;
+        int callerPc = -1;
+        if(this.frameTop > 1) {
+            Frame caller = this.frames[this.frameTop-2];
+            callerCode = caller.code;
+            callerPc = caller.pc;
+        }
+        
+        return debugger.onBreakpoint(event, this.frameTop, callerCode, callerPc);
+    }
+    
     /**
      * Builds the stack trace based off of the current stack trace and error message.
      * 
      * @param code the current bytecode being executed
      * @param errorThrown the current error thrown (if any)
      * @param message the Error message and/or Exception
+     * @param lineNumber the line number the error was raised on, or -1 if not known
      * @return the error thrown 
      */
     private LeoObject buildStackTrace(Bytecode code, LeoObject errorThrown, Object message, int lineNumber) {
+        
+        /* compiled code reports the instruction which raised the error itself */
+        if( (message instanceof CompiledCodeException) ) {
+            CompiledCodeException e = (CompiledCodeException)message;
+            lineNumber = code.getLineNumber(e.getPc());
+            message = e.getCause();
+        }
+        
         if( (message instanceof LeolaRuntimeException) ) {
             LeoError error = ((LeolaRuntimeException)message).getLeoError();
         
@@ -1527,11 +2380,7 @@ public class VM {
                 error = parentError;
             }
             else {
-                LeoError cause = new LeoError();
-                cause.setSourceFile(code.getSourceFileName());
-                cause.setLineNumber(lineNumber);
-                error.addStack(cause);
-                
+                error.addFrame(code.getSourceFileName(), lineNumber);
             }
             
             errorThrown = error;
@@ -1567,24 +2416,25 @@ public class VM {
             errorMsg = "";
         }
         
-        throw new LeolaRuntimeException("ExecutionError: " + errorMsg);
+        throw new LeolaRuntimeException("ExecutionError: " + errorMsg, false);
     }
 
     
     /**
      * Resolve the named parameters
      * 
+     * @param permutation the cached argument positions of the call site
      * @param params
      * @param fun
      * @param nargs
      * @return the number of arguments to be expected
      */
-    private int resolveNamedParameters(List<LeoObject> params, LeoObject[] args, int argTop, LeoObject fun, int nargs) {        
+    private int resolveNamedParameters(ParameterPermutation permutation, List<LeoObject> params, LeoObject[] args, int argTop, LeoObject fun, int nargs) {        
         /* assume this is a function */
         LeoFunction f = fun.as();
         Bytecode bc = f.getBytecode();
         
-        resolveNamedParameters(params, args, argTop, bc.paramNames, nargs);
+        resolveNamedParameters(permutation, params, args, argTop, bc.paramNames, nargs);
         
         /* If we received less number of parameters than expected,
          * adjust the top of the stack, because we are accounting for
@@ -1602,12 +2452,13 @@ public class VM {
     /**
      * Resolve the named parameters
      * 
+     * @param permutation the cached argument positions of the call site
      * @param params
      * @param stack
      * @param paramNames
      * @param nargs
      */
-    private void resolveNamedParameters(List<LeoObject> params, LeoObject[] args, int topArgs, LeoObject[] paramNames, int nargs) {                   
+    private void resolveNamedParameters(ParameterPermutation permutation, List<LeoObject> params, LeoObject[] args, int topArgs, LeoObject[] paramNames, int nargs) {                   
         int expectedNumberOfArgs = paramNames.length;
 //        int tmpTop = 0;//top;
         int tmpTop = top;
@@ -1631,35 +2482,10 @@ public class VM {
             args[topArgs+stackIndex] = null;
         }
                 
-        int[] otherIndexes = new int[expectedNumberOfArgs];
-        
-        /* iterate through the parameter names and adjust the stack
-         * so that the names match the position the function expects them
+        /* the permutation only changes if the names passed or the
+         * function called at this call site changes
          */
-        for(int stackIndex = 0; stackIndex < params.size(); stackIndex++) {
-            LeoObject paramName = params.get(stackIndex);
-            if(paramName != null) {             
-                
-                /* Find the appropriate argument position
-                 * index for the named parameter
-                 */
-                int paramIndex = 0;
-                for(; paramIndex < paramNames.length; paramIndex++) {
-                    if(paramNames[paramIndex].$eq(paramName)) {
-                        break;
-                    }
-                }
-                
-                if(paramIndex>=paramNames.length) {
-                    error("Invalid parameter name '" + paramName + "'");
-                }
-                
-                otherIndexes[stackIndex] = paramIndex + 1;
-            }   
-            else {
-                otherIndexes[stackIndex] = -(stackIndex+1);
-            }
-        }            
+        int[] otherIndexes = permutation.getIndexes(params, paramNames);
 
         /* Assign the named parameters to the correct position
          */
@@ -1730,7 +2556,7 @@ public class VM {
                     int bindex = base + index;
                     outers[j] = openouters[bindex] != null ?
                                 openouters[bindex] :
-                                (openouters[bindex] = new Outer(vmStackValue, bindex));
+                                (openouters[bindex] = newOuter(bindex));
                     closeOuters = true;
                     break;
                 }
@@ -1742,5 +2568,16 @@ public class VM {
 
         return closeOuters;
     }
+    
+    /**
+     * @param index the stack index of the local variable
+     * @return a new {@link Outer} over the local variable
+     */
+    private Outer newOuter(int index) {
+        if(this.metrics != null) {
+            this.metrics.allocated(VMMetrics.Allocation.OUTER);
+        }
+        return new Outer(this.segment, index);
+    }
 }
 
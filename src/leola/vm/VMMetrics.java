@@ -0,0 +1,357 @@
+/*
+    Leola Programming Language
+    Author: Tony Sparks
+    See license.txt
+*/
+package leola.vm;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counters of an instrumented {@link VM} (see {@link Args#collectMetrics()}): the number of times each opcode
+ * is executed and the time spent executing it, the number of times the stack grew and the number of objects
+ * allocated by the instructions creating arrays, maps, functions and closures.
+ *
+ * <p>
+ * The time of an instruction is measured from its dispatch to the dispatch of the next instruction of the
+ * same {@link VM}, so it excludes the instructions of the functions it calls, but includes any time spent in
+ * Java code (e.g., native functions or functions compiled by the {@link leola.vm.jit.JitCompiler}).  Besides its total,
+ * the time is recorded in {@link #NUMBER_OF_TIME_BUCKETS} buckets, see {@link #getTimeBucketLimit(int)}.
+ *
+ * <p>
+ * The counters are shared by all of the {@link VM}s of a {@link Leola} runtime; to keep threads from contending
+ * over them, they are striped: each {@link VM} records into one of several lock-free stripes, which are
+ * summed when read.
+ *
+ * @author Tony
+ *
+ */
+public class VMMetrics {
+
+    /**
+     * The objects allocated by the {@link VM}
+     *
+     * @author Tony
+     *
+     */
+    public static enum Allocation {
+        ARRAY("LeoArray"),
+        MAP("LeoMap"),
+        FUNCTION("LeoFunction"),
+        GENERATOR("LeoGenerator"),
+        OUTER("Outer"),
+        ;
+
+        private final String typeName;
+
+        private Allocation(String typeName) {
+            this.typeName = typeName;
+        }
+
+        /**
+         * @return the name of the allocated type
+         */
+        public String getTypeName() {
+            return typeName;
+        }
+    }
+
+    /**
+     * The number of time buckets per opcode
+     */
+    public static final int NUMBER_OF_TIME_BUCKETS = 8;
+
+    private static final int NUMBER_OF_OPCODES = 256;
+
+    /* the layout of a stripe */
+    private static final int COUNTS = 0;
+    private static final int TIMES = COUNTS + NUMBER_OF_OPCODES;
+    private static final int TIME_BUCKETS = TIMES + NUMBER_OF_OPCODES;
+    private static final int STACK_GROWTHS = TIME_BUCKETS + NUMBER_OF_OPCODES * NUMBER_OF_TIME_BUCKETS;
+    private static final int ALLOCATIONS = STACK_GROWTHS + 1;
+    private static final int STRIPE_SIZE = ALLOCATIONS + Allocation.values().length;
+
+    /**
+     * Records the metrics of a single {@link VM}; as a {@link VM} is confined to
+     * a thread, so is its {@link Recorder}.
+     *
+     * @author Tony
+     *
+     */
+    public static class Recorder {
+        private final AtomicLongArray stripe;
+
+        /* the last dispatched opcode, and when */
+        private int lastOpcode;
+        private long lastTime;
+
+        Recorder(AtomicLongArray stripe) {
+            this.stripe = stripe;
+            this.lastOpcode = -1;
+        }
+
+        /**
+         * An instruction is dispatched, which completes the previous one
+         *
+         * @param opcode
+         */
+        public void dispatched(int opcode) {
+            long now = System.nanoTime();
+            if(this.lastOpcode > -1) {
+                long time = now - this.lastTime;
+                this.stripe.getAndAdd(TIMES + this.lastOpcode, time);
+                this.stripe.getAndIncrement(TIME_BUCKETS + this.lastOpcode * NUMBER_OF_TIME_BUCKETS + timeBucket(time));
+            }
+
+            this.stripe.getAndIncrement(COUNTS + opcode);
+            this.lastOpcode = opcode;
+            this.lastTime = now;
+        }
+
+        /**
+         * The {@link VM} is no longer executing, so the time until the next
+         * dispatch is not attributed to the last instruction
+         */
+        public void paused() {
+            if(this.lastOpcode > -1) {
+                long time = System.nanoTime() - this.lastTime;
+                this.stripe.getAndAdd(TIMES + this.lastOpcode, time);
+                this.stripe.getAndIncrement(TIME_BUCKETS + this.lastOpcode * NUMBER_OF_TIME_BUCKETS + timeBucket(time));
+                this.lastOpcode = -1;
+            }
+        }
+
+        /**
+         * The stack grew
+         */
+        public void stackGrown() {
+            this.stripe.getAndIncrement(STACK_GROWTHS);
+        }
+
+        /**
+         * An object was allocated
+         *
+         * @param allocation
+         */
+        public void allocated(Allocation allocation) {
+            this.stripe.getAndIncrement(ALLOCATIONS + allocation.ordinal());
+        }
+    }
+
+    private final AtomicLongArray[] stripes;
+    private final AtomicInteger nextStripe;
+
+    /**
+     */
+    public VMMetrics() {
+        int numberOfStripes = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 2) - 1) << 1;
+
+        this.stripes = new AtomicLongArray[numberOfStripes];
+        for(int i = 0; i < numberOfStripes; i++) {
+            this.stripes[i] = new AtomicLongArray(STRIPE_SIZE);
+        }
+
+        this.nextStripe = new AtomicInteger();
+    }
+
+    /**
+     * @return a new {@link Recorder} for a {@link VM}, the {@link VM}s are spread over the stripes
+     */
+    public Recorder newRecorder() {
+        int stripe = this.nextStripe.getAndIncrement() & (this.stripes.length - 1);
+        return new Recorder(this.stripes[stripe]);
+    }
+
+    /**
+     * @param time the time of an instruction, in nanoseconds
+     * @return the bucket the time falls into
+     */
+    private static int timeBucket(long time) {
+        int bucket = ((63 - Long.numberOfLeadingZeros(time)) - 4) >> 1;
+        return Math.max(0, Math.min(bucket, NUMBER_OF_TIME_BUCKETS - 1));
+    }
+
+    /**
+     * The buckets grow by a factor of four, the first holding the times under 64 nanoseconds
+     * and the last holding the times of 256 microseconds and over.
+     *
+     * @param bucket
+     * @return the (exclusive) upper limit of the times in the bucket, in nanoseconds, or {@link Long#MAX_VALUE} for the last bucket
+     */
+    public static long getTimeBucketLimit(int bucket) {
+        return (bucket < NUMBER_OF_TIME_BUCKETS - 1) ? 1L << (6 + (bucket << 1)) : Long.MAX_VALUE;
+    }
+
+    private long sum(int index) {
+        long sum = 0;
+        for(AtomicLongArray stripe : this.stripes) {
+            sum += stripe.get(index);
+        }
+        return sum;
+    }
+
+    /**
+     * @param opcode
+     * @return the number of times the opcode was executed
+     */
+    public long getExecutionCount(int opcode) {
+        return sum(COUNTS + (opcode & 255));
+    }
+
+    /**
+     * @return the number of instructions executed
+     */
+    public long getExecutionCount() {
+        long count = 0;
+        for(int opcode = 0; opcode < NUMBER_OF_OPCODES; opcode++) {
+            count += getExecutionCount(opcode);
+        }
+        return count;
+    }
+
+    /**
+     * @param opcode
+     * @return the time spent executing the opcode, in nanoseconds
+     */
+    public long getTime(int opcode) {
+        return sum(TIMES + (opcode & 255));
+    }
+
+    /**
+     * @param opcode
+     * @return the number of executions of the opcode per time bucket, see {@link #getTimeBucketLimit(int)}
+     */
+    public long[] getTimeBuckets(int opcode) {
+        long[] buckets = new long[NUMBER_OF_TIME_BUCKETS];
+        for(int i = 0; i < buckets.length; i++) {
+            buckets[i] = sum(TIME_BUCKETS + (opcode & 255) * NUMBER_OF_TIME_BUCKETS + i);
+        }
+        return buckets;
+    }
+
+    /**
+     * @return the number of times a {@link VM} stack grew
+     */
+    public long getStackGrowths() {
+        return sum(STACK_GROWTHS);
+    }
+
+    /**
+     * @param allocation
+     * @return the number of objects allocated
+     */
+    public long getAllocations(Allocation allocation) {
+        return sum(ALLOCATIONS + allocation.ordinal());
+    }
+
+    /**
+     * Clears the counters.  Counts recorded while clearing may or may not be kept.
+     */
+    public void reset() {
+        for(AtomicLongArray stripe : this.stripes) {
+            for(int i = 0; i < STRIPE_SIZE; i++) {
+                stripe.set(i, 0);
+            }
+        }
+    }
+
+    /**
+     * Writes out the executed opcodes, the most executed first, followed by the stack growths
+     * and allocations
+     *
+     * @param out
+     * @throws IOException
+     */
+    public void writeReport(Writer out) throws IOException {
+        final long[] counts = new long[NUMBER_OF_OPCODES];
+        final long[] times = new long[NUMBER_OF_OPCODES];
+        long totalCount = 0, totalTime = 0;
+
+        List<Integer> opcodes = new ArrayList<Integer>();
+        for(int opcode = 0; opcode < NUMBER_OF_OPCODES; opcode++) {
+            counts[opcode] = getExecutionCount(opcode);
+            times[opcode] = getTime(opcode);
+            if(counts[opcode] > 0) {
+                opcodes.add(opcode);
+                totalCount += counts[opcode];
+                totalTime += times[opcode];
+            }
+        }
+
+        Collections.sort(opcodes, new Comparator<Integer>() {
+
+            @Override
+            public int compare(Integer a, Integer b) {
+                int result = Long.compare(counts[b], counts[a]);
+                return (result != 0) ? result : a.compareTo(b);
+            }
+        });
+
+        StringBuilder header = new StringBuilder(String.format("%-24s %12s %7s %12s %7s %8s", "Opcode", "Count", "Count%", "Time(us)", "Time%", "ns/op"));
+        for(int bucket = 0; bucket < NUMBER_OF_TIME_BUCKETS; bucket++) {
+            header.append(String.format(" %10s", bucketName(bucket)));
+        }
+        out.write(header.append('\n').toString());
+
+        for(int opcode : opcodes) {
+            StringBuilder line = new StringBuilder(String.format("%-24s %12d %7s %12d %7s %8d"
+                    , Opcodes.op2str(opcode)
+                    , counts[opcode], percent(counts[opcode], totalCount)
+                    , times[opcode] / 1000, percent(times[opcode], totalTime)
+                    , times[opcode] / counts[opcode]));
+
+            for(long bucket : getTimeBuckets(opcode)) {
+                line.append(String.format(" %10d", bucket));
+            }
+            out.write(line.append('\n').toString());
+        }
+
+        out.write(String.format("%-24s %12d %7s %12d\n", "Total", totalCount, percent(totalCount, totalCount), totalTime / 1000));
+        out.write('\n');
+
+        out.write(String.format("%-24s %12d\n", "Stack growths", getStackGrowths()));
+        for(Allocation allocation : Allocation.values()) {
+            out.write(String.format("%-24s %12d\n", allocation.getTypeName(), getAllocations(allocation)));
+        }
+        out.flush();
+    }
+
+    /**
+     * @return the report of the collected metrics
+     * @see #writeReport(Writer)
+     */
+    public String getReport() {
+        StringWriter out = new StringWriter();
+        try {
+            writeReport(out);
+        }
+        catch(IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return out.toString();
+    }
+
+    private static String bucketName(int bucket) {
+        if(bucket == NUMBER_OF_TIME_BUCKETS - 1) {
+            return ">=" + timeName(getTimeBucketLimit(bucket - 1));
+        }
+        return "<" + timeName(getTimeBucketLimit(bucket));
+    }
+
+    private static String timeName(long nanos) {
+        return (nanos < 1024) ? nanos + "ns" : (nanos >> 10) + "us";
+    }
+
+    private static String percent(long value, long total) {
+        double percent = (total > 0) ? (value * 100.0) / total : 0.0;
+        return String.format("%.1f%%", percent);
+    }
+}
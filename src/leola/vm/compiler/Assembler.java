@@ -485,6 +485,11 @@ public class Assembler {
                 asm.newmap(Integer.parseInt(args[0]));
             }
         });
+        opcodes.put("CONCAT", new Opcode() {            
+            public void invoke(BytecodeEmitter asm, String...  args) {
+                asm.concat(Integer.parseInt(args[0]));
+            }
+        });
         opcodes.put("FUNC_DEF", new Opcode() {            
             public void invoke(BytecodeEmitter asm, String...  args) {
                 /* second parameter is to denote var args */
@@ -12,7 +12,11 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
+import leola.vm.InlineCache;
 import leola.vm.Opcodes;
+import leola.vm.ParameterPermutation;
+import leola.vm.Quickener;
+import leola.vm.jit.CompiledBytecode;
 import leola.vm.types.LeoClass;
 import leola.vm.types.LeoFunction;
 import leola.vm.types.LeoNamespace;
@@ -41,18 +45,20 @@ public class Bytecode {
     public static final int FL_BLOCKS      = (1<<1);
     public static final int FL_VARARGS     = (1<<2);
     public static final int FL_PARAMS_IDX  = (1<<3);
+    public static final int FL_LINES       = (1<<4);
     
     
     public int flags;
     
     public final int[] instr;
-    public       int pc;
+    public final int pc;
     public final int len;
     
     public LeoObject[] constants;
     public int numConstants;
         
     public DebugSymbols debugSymbols;        
+    public LineNumberTable lineNumbers;
     
     public int numLocals;        
     public int numOuters;
@@ -65,6 +71,32 @@ public class Bytecode {
     public int maxstacksize;
     
     public Bytecode[] inner;    
+    
+    /**
+     * The inline caches for property access instructions, 
+     * indexed by the program counter
+     */
+    private InlineCache[] caches;
+    
+    /**
+     * The argument positions of the call sites passing
+     * named parameters, indexed by the program counter
+     */
+    private ParameterPermutation[] permutations;
+    
+    /**
+     * The number of times each quickened instruction has been
+     * rewritten back to its generic instruction, indexed by the program counter
+     */
+    private byte[] dequickens;
+    
+    /**
+     * The tiered compilation state, see {@link leola.vm.jit.JitCompiler}
+     */
+    private int invocationCount;
+    private int backEdgeCount;
+    private boolean notCompilable;
+    private volatile CompiledBytecode compiled;
         
     /**
      * @param instructions
@@ -113,6 +145,16 @@ public class Bytecode {
         this.flags |= FL_PARAMS_IDX;
     }
     
+    /**
+     * Sets the program counter to line number mappings
+     * 
+     * @param lineNumbers
+     */
+    public void setLineNumbers(LineNumberTable lineNumbers) {
+        this.lineNumbers = lineNumbers;
+        this.flags |= FL_LINES;
+    }
+    
     /**
      * @return true if this contains variable arguments
      */
@@ -142,6 +184,23 @@ public class Bytecode {
         return (this.flags & FL_PARAMS_IDX) != 0;
     }
     
+    /**
+     * @return true if this contains the program counter to line number mappings
+     */
+    public boolean hasLineNumbers() {
+        return (this.flags & FL_LINES) != 0;
+    }
+    
+    /**
+     * Retrieves the line number in the Leola script of the instruction at the supplied program counter.
+     * 
+     * @param pc the program counter
+     * @return the line number, or -1 if it is not known
+     */
+    public int getLineNumber(int pc) {
+        return (this.lineNumbers != null) ? this.lineNumbers.getLineNumber(pc) : -1;
+    }
+    
     /**
      * @return the index in which to start the variable arguments
      */
@@ -187,6 +246,160 @@ public class Bytecode {
         return "";
     }
     
+    /**
+     * Retrieves the {@link InlineCache} for the instruction at the supplied program counter, creating
+     * it if necessary.
+     * 
+     * @param pc the program counter of the property access instruction
+     * @return the {@link InlineCache} for the instruction
+     */
+    public InlineCache getInlineCache(int pc) {
+        InlineCache[] caches = this.caches;
+        if(caches == null) {
+            caches = this.caches = new InlineCache[this.len];
+        }
+        
+        InlineCache cache = caches[pc];
+        if(cache == null) {
+            cache = caches[pc] = new InlineCache();
+        }
+        
+        return cache;
+    }
+    
+    /**
+     * Retrieves the {@link ParameterPermutation} for the call instruction at the supplied program counter, creating
+     * it if necessary.
+     * 
+     * @param pc the program counter of the call instruction
+     * @return the {@link ParameterPermutation} for the instruction
+     */
+    public ParameterPermutation getParameterPermutation(int pc) {
+        ParameterPermutation[] permutations = this.permutations;
+        if(permutations == null) {
+            permutations = this.permutations = new ParameterPermutation[this.len];
+        }
+        
+        ParameterPermutation permutation = permutations[pc];
+        if(permutation == null) {
+            permutation = permutations[pc] = new ParameterPermutation();
+        }
+        
+        return permutation;
+    }
+    
+    /**
+     * Determines if the instruction at the supplied program counter may be quickened, see {@link Quickener}.
+     * 
+     * @param pc the program counter of the instruction
+     * @return true if the instruction has not been de-quickened too many times
+     */
+    public boolean isQuickenable(int pc) {
+        byte[] dequickens = this.dequickens;
+        return dequickens == null || dequickens[pc] < Quickener.MAX_DEQUICKENS;
+    }
+    
+    /**
+     * Records that the quickened instruction at the supplied program counter has been rewritten
+     * back to its generic instruction
+     * 
+     * @param pc the program counter of the instruction
+     */
+    public void dequicken(int pc) {
+        byte[] dequickens = this.dequickens;
+        if(dequickens == null) {
+            dequickens = this.dequickens = new byte[this.len];
+        }
+        
+        if(dequickens[pc] < Quickener.MAX_DEQUICKENS) {
+            dequickens[pc]++;
+        }
+    }
+    
+    /**
+     * @return the number of invocations of this {@link Bytecode}, including this one
+     */
+    public int incrementInvocationCount() {
+        return ++this.invocationCount;
+    }
+    
+    /**
+     * @return the number of backward jumps taken in this {@link Bytecode}, including this one
+     */
+    public int incrementBackEdgeCount() {
+        return ++this.backEdgeCount;
+    }
+    
+    /**
+     * @return the compiled form of this {@link Bytecode}, or null if it is interpreted
+     */
+    public CompiledBytecode getCompiled() {
+        return this.compiled;
+    }
+    
+    /**
+     * @param compiled the compiled form of this {@link Bytecode}
+     */
+    public void setCompiled(CompiledBytecode compiled) {
+        this.compiled = compiled;
+    }
+    
+    /**
+     * @return true if this {@link Bytecode} has not failed to compile
+     */
+    public boolean isCompilable() {
+        return !this.notCompilable;
+    }
+    
+    /**
+     * Denotes that this {@link Bytecode} can not be compiled, and is always to be interpreted
+     */
+    public void setNotCompilable() {
+        this.notCompilable = true;
+    }
+    
+    /**
+     * @return the total number of {@link InlineCache} hits of this {@link Bytecode}, including
+     * any inner {@link Bytecode}
+     */
+    public long getInlineCacheHits() {
+        long hits = 0;
+        if(this.caches != null) {
+            for(InlineCache cache : this.caches) {
+                if(cache != null) {
+                    hits += cache.getHits();
+                }
+            }
+        }
+        
+        for(int i = 0; i < this.numInners; i++) {
+            hits += this.inner[i].getInlineCacheHits();
+        }
+        
+        return hits;
+    }
+    
+    /**
+     * @return the total number of {@link InlineCache} misses of this {@link Bytecode}, including
+     * any inner {@link Bytecode}
+     */
+    public long getInlineCacheMisses() {
+        long misses = 0;
+        if(this.caches != null) {
+            for(InlineCache cache : this.caches) {
+                if(cache != null) {
+                    misses += cache.getMisses();
+                }
+            }
+        }
+        
+        for(int i = 0; i < this.numInners; i++) {
+            misses += this.inner[i].getInlineCacheMisses();
+        }
+        
+        return misses;
+    }
+    
     /**
      * Clones this {@link Bytecode}
      */
@@ -195,6 +408,7 @@ public class Bytecode {
         clone.flags = this.flags;
         clone.constants = this.constants;        
         clone.debugSymbols = this.debugSymbols;
+        clone.lineNumbers = this.lineNumbers;
         clone.inner = new Bytecode[this.numInners];
         for(int i = 0; i<this.numInners;i++) {
             clone.inner[i] = this.inner[i].clone();
@@ -405,6 +619,44 @@ public class Bytecode {
                     }
                     break;
                 }
+                case Opcodes.ADD_LOCAL_CONST:
+                case Opcodes.SUB_LOCAL_CONST:
+                case Opcodes.ADD_LOCAL_LOCAL:
+                case Opcodes.LOAD_LOCAL_GETK:
+                case Opcodes.EQ_LOCAL_LOCAL_IFEQ:
+                case Opcodes.NEQ_LOCAL_LOCAL_IFEQ:
+                case Opcodes.GT_LOCAL_LOCAL_IFEQ:
+                case Opcodes.GTE_LOCAL_LOCAL_IFEQ:
+                case Opcodes.LT_LOCAL_LOCAL_IFEQ:
+                case Opcodes.LTE_LOCAL_LOCAL_IFEQ:
+                case Opcodes.EQ_LOCAL_CONST_IFEQ:
+                case Opcodes.NEQ_LOCAL_CONST_IFEQ:
+                case Opcodes.GT_LOCAL_CONST_IFEQ:
+                case Opcodes.GTE_LOCAL_CONST_IFEQ:
+                case Opcodes.LT_LOCAL_CONST_IFEQ:
+                case Opcodes.LTE_LOCAL_CONST_IFEQ:
+                case Opcodes.ADD_LOCAL_CONST_II:
+                case Opcodes.SUB_LOCAL_CONST_II:
+                case Opcodes.ADD_LOCAL_LOCAL_II:
+                case Opcodes.EQ_LOCAL_LOCAL_IFEQ_II:
+                case Opcodes.NEQ_LOCAL_LOCAL_IFEQ_II:
+                case Opcodes.GT_LOCAL_LOCAL_IFEQ_II:
+                case Opcodes.GTE_LOCAL_LOCAL_IFEQ_II:
+                case Opcodes.LT_LOCAL_LOCAL_IFEQ_II:
+                case Opcodes.LTE_LOCAL_LOCAL_IFEQ_II:
+                case Opcodes.EQ_LOCAL_CONST_IFEQ_II:
+                case Opcodes.NEQ_LOCAL_CONST_IFEQ_II:
+                case Opcodes.GT_LOCAL_CONST_IFEQ_II:
+                case Opcodes.GTE_LOCAL_CONST_IFEQ_II:
+                case Opcodes.LT_LOCAL_CONST_IFEQ_II:
+                case Opcodes.LTE_LOCAL_CONST_IFEQ_II:
+                case Opcodes.TABLE_SWITCH:
+                case Opcodes.LOOKUP_SWITCH: {
+                    String arg1 = Integer.toString(Opcodes.ARG1(code));
+                    String arg2 = Integer.toString(Opcodes.ARG2(code));
+                    sb.append(String.format(lineFormat4Ex, opcode, arg1, arg2, i));
+                    break;
+                }
                 case Opcodes.EGETK:
                 case Opcodes.GETK:
                 case Opcodes.SETK:
@@ -476,7 +728,9 @@ public class Bytecode {
     private void writeVersion1(DataOutput out) throws IOException {                
         out.writeInt(this.len); /* length */
         for(int i = this.pc; i < this.len; i++) {
-            out.writeInt(this.instr[i]);
+            
+            /* quickening is a runtime detail, always write out the generic instruction */
+            out.writeInt(Quickener.generify(this.instr[i]));
         }
         
         out.writeInt(this.maxstacksize);
@@ -498,11 +752,11 @@ public class Bytecode {
         
         for(int i = 0; i < this.numArgs; i++) {
             if(this.paramNames[i] == null) {
-                out.write(0);
+                out.writeInt(0);
             }
             else {
                 byte[] b = this.paramNames[i].getString().getBytes();
-                out.write(b.length);
+                out.writeInt(b.length);
                 out.write(b);
             }
         }
@@ -512,6 +766,10 @@ public class Bytecode {
             this.debugSymbols.write(out);
         }
         
+        if( (this.flags & FL_LINES) != 0) {
+            this.lineNumbers.write(out);
+        }
+        
         if ( this.inner != null ) {
             out.writeInt(this.inner.length);
             for(int i = 0; i < this.inner.length; i++ ) {
@@ -593,6 +851,10 @@ public class Bytecode {
         if( (result.flags & FL_DEBUG) != 0 ) {
             result.debugSymbols = DebugSymbols.read(in);
         }        
+        
+        if( (result.flags & FL_LINES) != 0 ) {
+            result.lineNumbers = LineNumberTable.read(in);
+        }
                 
         result.numInners = in.readInt();
         result.inner = new Bytecode[result.numInners];
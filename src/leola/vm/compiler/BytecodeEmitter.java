@@ -19,6 +19,7 @@ import leola.vm.types.LeoFunction;
 import leola.vm.types.LeoGenerator;
 import leola.vm.types.LeoInteger;
 import leola.vm.types.LeoLong;
+import leola.vm.types.LeoMap;
 import leola.vm.types.LeoNamespace;
 import leola.vm.types.LeoObject;
 import leola.vm.types.LeoString;
@@ -87,6 +88,12 @@ public class BytecodeEmitter {
      */
     private boolean isDebugMode;
     
+    /**
+     * If the emitted instructions should be run 
+     * through the {@link BytecodeOptimizer}
+     */
+    private boolean isOptimized;
+    
     
     /**
      */
@@ -144,6 +151,20 @@ public class BytecodeEmitter {
         }
     }
     
+    /**
+     * @return true if the emitted instructions are optimized by the {@link BytecodeOptimizer}
+     */
+    public boolean isOptimized() {
+        return this.isOptimized;
+    }
+    
+    /**
+     * @param optimize if the emitted instructions should be optimized by the {@link BytecodeOptimizer}
+     */
+    public void setOptimized(boolean optimize) {
+        this.isOptimized = optimize;
+    }
+    
     private void incrementMaxstackSize(int delta) {
         peek().localScope.incrementMaxstacksize(delta);
     }
@@ -680,6 +701,7 @@ public class BytecodeEmitter {
         BytecodeEmitter asm = new BytecodeEmitter(this.scopes);
         asm.start(ScopeType.OBJECT_SCOPE, numberOfParameters, hasVarargs);
         asm.setDebug(this.isDebug());
+        asm.setOptimized(this.isOptimized());
 
         peek().innerEmmitters.add(asm);
         this.innerEmitterStack.push(asm);
@@ -697,6 +719,7 @@ public class BytecodeEmitter {
         BytecodeEmitter asm = new BytecodeEmitter(this.scopes);
         asm.start(ScopeType.LOCAL_SCOPE, numberOfParameters, hasVarargs);
         asm.setDebug(this.isDebug());
+        asm.setOptimized(this.isOptimized());
 
         peek().innerEmmitters.add(asm);
         this.innerEmitterStack.push(asm);
@@ -751,24 +774,27 @@ public class BytecodeEmitter {
     
     
     /**
-     * Emits the LINE opcode.  Only enabled if the debug flags are set.  This marks
-     * the line numbers in the Leola script with the associated byte code.
+     * Marks the line numbers in the Leola script with the associated byte code.  The line
+     * is always recorded in the {@link LineNumberTable}, which is used for error reporting.  The LINE
+     * opcode is only emitted if the debug flags are set, so that a {@link leola.vm.debug.DebugListener} is
+     * notified of each line.
      * 
      * <p>
      * As an optimization, this will only emit the <code>line</code> instruction if the supplied
-     * line number is greater than the last stored line number.  This helps prevent unnecessary
+     * line number differs from the last stored line number.  This helps prevent unnecessary
      * <code>line</code> instructions which would further impact performance.
      *  
      * @param line the line number in the Leola script code
      */
     public void line(int line) {
         
-        if ( this.isDebug() ) {
-            if ( line != peek().localScope.getCurrentLineNumber() && line != 0 
-                && (getInstructionCount() >= 0 )) {
+        if ( line != peek().localScope.getCurrentLineNumber() && line != 0 
+            && (getInstructionCount() >= 0 )) {
 
-                peek().localScope.setCurrentLineNumber(line);
-                
+            peek().localScope.setCurrentLineNumber(line);
+            peek().localScope.getLineNumbers().add(getInstructionCount(), line);
+            
+            if ( this.isDebug() ) {
                 if ( getInstructionCount()==0 || OPCODE(peekInstr()) != LINE  ) {
                     instrx(LINE, line);
                 }
@@ -896,6 +922,39 @@ public class BytecodeEmitter {
         }
     }
     
+    /**
+     * Emits a <code>TABLE_SWITCH</code> over a dense range of integer keys
+     * 
+     * @param lowestKey the lowest key
+     * @param defaultLabel the label jumped to if the key is not in the range
+     * @param labels the label jumped to for each key in the range
+     */
+    public void tableswitch(int lowestKey, String defaultLabel, String[] labels) {
+        int index = getConstants().store(lowestKey);
+        instr2(TABLE_SWITCH, labels.length, index);
+        jumptable(defaultLabel, labels);
+    }
+    
+    /**
+     * Emits a <code>LOOKUP_SWITCH</code>
+     * 
+     * @param keys the map of each key to its (1 based) index in the labels
+     * @param defaultLabel the label jumped to if the key is not found
+     * @param labels the label jumped to for each key
+     */
+    public void lookupswitch(LeoMap keys, String defaultLabel, String[] labels) {
+        int index = getConstants().store(keys);
+        instr2(LOOKUP_SWITCH, labels.length, index);
+        jumptable(defaultLabel, labels);
+    }
+    
+    private void jumptable(String defaultLabel, String[] labels) {
+        jmp(defaultLabel);
+        for(String label : labels) {
+            jmp(label);
+        }
+    }
+    
     public void brk(String label) {
         jmp(label);
     }
@@ -1114,6 +1173,16 @@ public class BytecodeEmitter {
         instr(ADD);
         decrementMaxstackSize();
     }
+    
+    /**
+     * Emits a <code>CONCAT</code>, which adds the operands as a chain of <code>ADD</code>s would
+     * 
+     * @param numberOfOperands
+     */
+    public void concat(int numberOfOperands) {
+        instrx(CONCAT, numberOfOperands);
+        decrementMaxstackSize(numberOfOperands - 1);
+    }
     public void sub() {
         instr(SUB);
         decrementMaxstackSize();
@@ -1221,6 +1290,10 @@ public class BytecodeEmitter {
     public Bytecode compile() {
 
         int [] code = localScope.getRawInstructions();
+        if(isOptimized()) {
+            code = new BytecodeOptimizer(code).optimize(isDebug() ? localScope.getDebugSymbols() : null, localScope.getLineNumbers());
+        }
+        
         Bytecode bytecode = new Bytecode(code);
                     
         bytecode.numArgs = localScope.getNumArgs();
@@ -1257,6 +1330,10 @@ public class BytecodeEmitter {
             }
         }
         
+        if(this.localScope.getLineNumbers().getSize() > 0) {
+            bytecode.setLineNumbers(this.localScope.getLineNumbers());
+        }
+        
         /* we only care about this for classes */
         if ( isDebug() ) {
             bytecode.setDebug();
@@ -5,6 +5,9 @@
 */
 package leola.vm.compiler;
 
+import static leola.vm.Opcodes.MAX_ARG1;
+import static leola.vm.Opcodes.MAX_ARG2;
+
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Stack;
@@ -62,6 +65,9 @@ import leola.frontend.tokens.TokenType;
 import leola.vm.EvalException;
 import leola.vm.Leola;
 import leola.vm.compiler.EmitterScope.ScopeType;
+import leola.vm.types.LeoInteger;
+import leola.vm.types.LeoMap;
+import leola.vm.types.LeoObject;
 import leola.vm.types.LeoString;
 import leola.vm.util.Pair;
 
@@ -104,6 +110,7 @@ public class BytecodeGeneratorVisitor implements ASTNodeVisitor {
     public BytecodeGeneratorVisitor(Leola runtime, EmitterScopes symbols) {
         this.asm = new BytecodeEmitter(symbols);
         this.asm.setDebug(runtime.getArgs().isDebugMode());
+        this.asm.setOptimized(runtime.getArgs().optimizeBytecode());
             
         this.breakLabelStack = new Stack<String>();
         this.continueLabelStack = new Stack<String>();
@@ -345,6 +352,10 @@ public class BytecodeGeneratorVisitor implements ASTNodeVisitor {
                 break;
             }
             default: {
+                if(operator.getType() == TokenType.PLUS && visitConcat(s)) {
+                    break;
+                }
+                
                 s.getLeft().visit(this);
                 s.getRight().visit(this);
                 
@@ -352,6 +363,40 @@ public class BytecodeGeneratorVisitor implements ASTNodeVisitor {
             }
         }                        
     }
+    
+    /**
+     * Visits a left associated chain of additions which involves a string literal, such as <code>a + ":" + b</code>,
+     * emitting one <code>CONCAT</code> rather than an <code>ADD</code> (and an intermediate string) per operand.
+     * 
+     * @param s
+     * @return true if the expression was emitted as a <code>CONCAT</code>
+     * @throws EvalException
+     */
+    private boolean visitConcat(BinaryExpr s) throws EvalException {
+        List<Expr> operands = new ArrayList<Expr>();
+        boolean hasString = false;
+        
+        Expr expr = s;
+        while(expr instanceof BinaryExpr && ((BinaryExpr)expr).getOp().getType() == TokenType.PLUS) {
+            BinaryExpr add = (BinaryExpr)expr;
+            operands.add(0, add.getRight());
+            hasString |= add.getRight() instanceof StringExpr;
+            
+            expr = add.getLeft();
+        }
+        operands.add(0, expr);
+        hasString |= expr instanceof StringExpr;
+        
+        if(!hasString || operands.size() < 3) {
+            return false;
+        }
+        
+        for(Expr operand : operands) {
+            operand.visit(this);
+        }
+        asm.concat(operands.size());
+        return true;
+    }
 
 
     /* (non-Javadoc)
@@ -865,11 +910,15 @@ public class BytecodeGeneratorVisitor implements ASTNodeVisitor {
         
         
         String endCase = asm.nextLabelName();
+        String elseLabel = asm.nextLabelName();
         String nextWhenLabel = null;
                         
         List<Pair<Expr, Stmt>> whenStmts = s.getWhenStmts();
         boolean isSingle = whenStmts.size() < 2;
-        for(Pair<Expr, Stmt> whenExpr : whenStmts) {
+        String[] whenLabels = jumpTable(whenStmts, elseLabel);
+        
+        for(int i = 0; i < whenStmts.size(); i++) {
+            Pair<Expr, Stmt> whenExpr = whenStmts.get(i);
             if(!isSingle) {
                 asm.dup();
             }
@@ -884,6 +933,10 @@ public class BytecodeGeneratorVisitor implements ASTNodeVisitor {
                 asm.pop();
             }
             
+            if(whenLabels != null) {
+                asm.label(whenLabels[i]);
+            }
+            
             stmt.visit(this);
             if( stmt instanceof Expr) {
                 asm.oppop(); /* remove any pushed items */
@@ -897,6 +950,8 @@ public class BytecodeGeneratorVisitor implements ASTNodeVisitor {
             asm.pop();
         }
         
+        asm.label(elseLabel);
+        
         Stmt elseStmt = s.getElseStmt();
         if ( elseStmt != null ) {
             elseStmt.visit(this);
@@ -919,11 +974,15 @@ public class BytecodeGeneratorVisitor implements ASTNodeVisitor {
         condExpr.visit(this);
         
         String endCase = asm.nextLabelName();
+        String elseLabel = asm.nextLabelName();
         String nextWhenLabel = null;
                         
         List<Pair<Expr, Expr>> whenExprs = s.getWhenExprs();
         boolean isSingle = whenExprs.size() < 2;        
-        for(Pair<Expr, Expr> whenExpr : whenExprs) {
+        String[] whenLabels = jumpTable(whenExprs, elseLabel);
+        
+        for(int i = 0; i < whenExprs.size(); i++) {
+            Pair<Expr, Expr> whenExpr = whenExprs.get(i);
             if(!isSingle) {
                 asm.dup();
             }                    
@@ -938,6 +997,10 @@ public class BytecodeGeneratorVisitor implements ASTNodeVisitor {
                 asm.pop();
             }
             
+            if(whenLabels != null) {
+                asm.label(whenLabels[i]);
+            }
+            
             stmt.visit(this);
             asm.jmp(endCase);        
             asm.label(nextWhenLabel);
@@ -947,6 +1010,8 @@ public class BytecodeGeneratorVisitor implements ASTNodeVisitor {
             asm.pop();
         }
         
+        asm.label(elseLabel);
+        
         Expr elseExpr = s.getElseExpr();
         if ( elseExpr != null ) {
             elseExpr.visit(this);
@@ -960,6 +1025,81 @@ public class BytecodeGeneratorVisitor implements ASTNodeVisitor {
     
         
 
+    /**
+     * Emits a jump table for the <code>when</code> arms of a <code>switch</code> or <code>case</code>, if each of them is an
+     * integer or string constant.  The value switched on must be on the top of the stack; it is popped if a branch is
+     * selected by the jump table, otherwise it remains for the chain of comparisons which follows.
+     *
+     * @param whens the when arms
+     * @param elseLabel the label of the else branch, which must be placed after the value switched on is popped
+     * @return the label of each when branch, which must be placed after the value switched on is popped, or null if
+     * no jump table was emitted
+     */
+    private String[] jumpTable(List<? extends Pair<Expr, ?>> whens, String elseLabel) {
+        if(whens.size() < 2 || asm.getConstants().getNumberOfConstants() >= MAX_ARG2) {
+            return null;
+        }
+        
+        boolean isIntegers = true;
+        for(Pair<Expr, ?> when : whens) {
+            Expr key = when.getFirst();
+            if(key instanceof StringExpr) {
+                isIntegers = false;
+            }
+            else if(!(key instanceof IntegerExpr)) {
+                return null;
+            }
+        }
+        
+        String[] whenLabels = new String[whens.size()];
+        
+        /* the first when arm of a duplicated key is the one taken */
+        LeoMap keys = new LeoMap();
+        List<String> keyLabels = new ArrayList<String>();
+        int lowestKey = Integer.MAX_VALUE;
+        int highestKey = Integer.MIN_VALUE;
+        
+        for(int i = 0; i < whenLabels.length; i++) {
+            whenLabels[i] = asm.nextLabelName();
+            
+            Expr when = whens.get(i).getFirst();
+            LeoObject key = null;
+            if(when instanceof IntegerExpr) {
+                int n = ((IntegerExpr)when).getValue();
+                lowestKey = Math.min(lowestKey, n);
+                highestKey = Math.max(highestKey, n);
+                key = LeoInteger.valueOf(n);
+            }
+            else {
+                key = LeoString.valueOf(((StringExpr)when).getValue());
+            }
+            
+            if(keys.getWithJNull(key) == null) {
+                keyLabels.add(whenLabels[i]);
+                keys.put(key, LeoInteger.valueOf(keyLabels.size()));
+            }
+        }
+        
+        long range = (long)highestKey - (long)lowestKey + 1;
+        if(isIntegers && range <= MAX_ARG1 && range <= 2 * keyLabels.size()) {
+            String[] labels = new String[(int)range];
+            for(int i = 0; i < labels.length; i++) {
+                LeoObject index = keys.getWithJNull(LeoInteger.valueOf(lowestKey + i));
+                labels[i] = (index != null) ? keyLabels.get(index.asInt() - 1) : elseLabel;
+            }
+            
+            asm.tableswitch(lowestKey, elseLabel, labels);
+        }
+        else if(keyLabels.size() <= MAX_ARG1) {
+            asm.lookupswitch(keys, elseLabel, keyLabels.toArray(new String[keyLabels.size()]));
+        }
+        else {
+            return null;
+        }
+        
+        return whenLabels;
+    }
+
     /* (non-Javadoc)
      * @see leola.ast.ASTNodeVisitor#visit(leola.ast.ThrowStmt)
      */
@@ -0,0 +1,430 @@
+/*
+    Leola Programming Language
+    Author: Tony Sparks
+    See license.txt
+*/
+package leola.vm.compiler;
+
+import static leola.vm.Opcodes.*;
+
+/**
+ * A peephole optimizer which is run over the instructions of a {@link Bytecode} once they have been emitted.  This
+ * will:
+ *
+ * <ul>
+ *  <li>thread jumps, that is a jump to a <code>JMP</code> instead jumps to its destination</li>
+ *  <li>remove branches on constant conditions (e.g., <code>LOAD_TRUE; IFEQ</code>) and jumps to the next instruction</li>
+ *  <li>remove redundant stack traffic (e.g., <code>DUP; STORE_LOCAL; POP</code>)</li>
+ *  <li>fuse frequent instruction sequences into superinstructions (e.g., <code>LOAD_LOCAL; LOAD_CONST; ADD</code> into
+ *  <code>ADD_LOCAL_CONST</code>)</li>
+ * </ul>
+ *
+ * <p>
+ * An instruction sequence is only rewritten if no jump (or exception block) lands inside of it.  Removed instructions are then
+ * compacted out and the jump offsets, exception block addresses and {@link DebugSymbols} are relocated.  The <code>JMP</code>
+ * instructions of a jump table (following a <code>TABLE_SWITCH</code> or <code>LOOKUP_SWITCH</code>) are indexed into, so they
+ * are never removed.
+ *
+ * @author Tony
+ *
+ */
+public class BytecodeOptimizer {
+
+    private int[] instr;
+    private final int len;
+
+    /**
+     * The absolute jump address of each instruction, or -1 if
+     * the instruction does not jump
+     */
+    private int[] targets;
+
+    /**
+     * The instructions which are jumped to
+     */
+    private boolean[] isTarget;
+
+    /**
+     * The instructions that have been optimized away
+     */
+    private boolean[] removed;
+
+    /**
+     * The instructions which are entries of a jump table
+     */
+    private boolean[] isJumpTable;
+
+    /**
+     * @param instr the emitted instructions
+     */
+    public BytecodeOptimizer(int[] instr) {
+        this.instr = instr.clone();
+        this.len = instr.length;
+
+        this.targets = new int[len];
+        this.isTarget = new boolean[len + 1];
+        this.removed = new boolean[len];
+        this.isJumpTable = new boolean[len];
+
+        for(int pc = 0; pc < len; pc++) {
+            int i = this.instr[pc];
+            switch(OPCODE(i)) {
+                case TABLE_SWITCH:
+                case LOOKUP_SWITCH: {
+                    for(int entry = pc + 1; entry < len && entry <= pc + ARG1(i) + 1; entry++) {
+                        this.isJumpTable[entry] = true;
+                    }
+                    this.targets[pc] = -1;
+                    break;
+                }
+                case JMP:
+                case IFEQ: {
+                    this.targets[pc] = pc + 1 + ARGsx(i);
+                    break;
+                }
+                case INIT_CATCH_BLOCK:
+                case INIT_FINALLY_BLOCK: {
+                    this.targets[pc] = ARGsx(i);
+                    break;
+                }
+                default: {
+                    this.targets[pc] = -1;
+                }
+            }
+        }
+    }
+
+    /**
+     * Optimizes the instructions
+     *
+     * @param debugSymbols the debug symbols to relocate, may be null
+     * @return the optimized instructions
+     */
+    public int[] optimize(DebugSymbols debugSymbols) {
+        return optimize(debugSymbols, null);
+    }
+
+    /**
+     * Optimizes the instructions
+     *
+     * @param debugSymbols the debug symbols to relocate, may be null
+     * @param lineNumbers the line numbers to relocate, may be null
+     * @return the optimized instructions
+     */
+    public int[] optimize(DebugSymbols debugSymbols, LineNumberTable lineNumbers) {
+        threadJumps();
+        markTargets();
+
+        removeConstantBranches();
+        removeRedundantStores();
+        markTargets();
+
+        fuseSuperinstructions();
+        removeJumpsToNext();
+
+        return compact(debugSymbols, lineNumbers);
+    }
+
+    /**
+     * @param pc
+     * @return the first instruction at or after the supplied pc which has not been removed
+     */
+    private int resolve(int pc) {
+        while(pc < len && removed[pc]) {
+            pc++;
+        }
+        return pc;
+    }
+
+    /**
+     * @param pc
+     * @return the opcode at the supplied pc, or -1 if out of bounds
+     */
+    private int opcode(int pc) {
+        return (pc < len) ? OPCODE(instr[pc]) : -1;
+    }
+
+    /**
+     * Determines if the instructions from <code>pc</code> to <code>pc + length</code> can be
+     * rewritten.  The first instruction may be jumped to, as the rewritten sequence starts at
+     * the same location.
+     *
+     * @param pc
+     * @param length
+     * @return true if the sequence may be rewritten
+     */
+    private boolean isSequence(int pc, int length) {
+        if(pc + length > len) {
+            return false;
+        }
+
+        for(int i = 0; i < length; i++) {
+            if(removed[pc + i] || (i > 0 && isTarget[pc + i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void markTargets() {
+        for(int pc = 0; pc <= len; pc++) {
+            isTarget[pc] = false;
+        }
+
+        for(int pc = 0; pc < len; pc++) {
+            if(!removed[pc] && targets[pc] > -1) {
+                isTarget[resolve(targets[pc])] = true;
+            }
+
+            /* a switch instruction jumps past its jump table if the value
+             * must be compared against each when arm */
+            int opcode = opcode(pc);
+            if(opcode == TABLE_SWITCH || opcode == LOOKUP_SWITCH) {
+                isTarget[resolve(Math.min(pc + ARG1(instr[pc]) + 2, len))] = true;
+            }
+        }
+    }
+
+    /**
+     * Jumps (and conditional jumps) to an unconditional <code>JMP</code> are replaced
+     * with a jump to the final destination.  A <code>JMP</code> to a <code>RET</code> is
+     * replaced by the <code>RET</code>.
+     */
+    private void threadJumps() {
+        for(int pc = 0; pc < len; pc++) {
+            int opcode = OPCODE(instr[pc]);
+            if(opcode != JMP && opcode != IFEQ) {
+                continue;
+            }
+
+            int target = targets[pc];
+            for(int hops = 0; hops < len && opcode(target) == JMP && target != pc; hops++) {
+                target = targets[target];
+            }
+
+            if(opcode == JMP && opcode(target) == RET) {
+                instr[pc] = RET;
+                targets[pc] = -1;
+            }
+            else {
+                targets[pc] = target;
+            }
+        }
+    }
+
+    /**
+     * <code>LOAD_TRUE; IFEQ</code> never jumps and <code>LOAD_FALSE; IFEQ</code> or <code>LOAD_NULL; IFEQ</code> always
+     * jump
+     */
+    private void removeConstantBranches() {
+        for(int pc = 0; pc < len - 1; pc++) {
+            if(opcode(pc + 1) != IFEQ || !isSequence(pc, 2)) {
+                continue;
+            }
+
+            switch(opcode(pc)) {
+                case LOAD_TRUE: {
+                    removed[pc] = true;
+                    removed[pc + 1] = true;
+                    break;
+                }
+                case LOAD_FALSE:
+                case LOAD_NULL: {
+                    instr[pc] = JMP;
+                    targets[pc] = targets[pc + 1];
+                    removed[pc + 1] = true;
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * <code>DUP; STORE_LOCAL; POP</code> (and the same for <code>STORE_OUTER</code> and <code>SET_GLOBAL</code>) are
+     * replaced by just the store
+     */
+    private void removeRedundantStores() {
+        for(int pc = 0; pc < len - 2; pc++) {
+            if(opcode(pc) != DUP || opcode(pc + 2) != POP || !isSequence(pc, 3)) {
+                continue;
+            }
+
+            switch(opcode(pc + 1)) {
+                case STORE_LOCAL:
+                case STORE_OUTER:
+                case SET_GLOBAL: {
+                    removed[pc] = true;
+                    removed[pc + 2] = true;
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Replaces frequent instruction sequences with a single instruction
+     */
+    private void fuseSuperinstructions() {
+        for(int pc = 0; pc < len; pc++) {
+            if(opcode(pc) != LOAD_LOCAL || removed[pc]) {
+                continue;
+            }
+
+            int local = ARGx(instr[pc]);
+            if(local > MAX_ARG1) {
+                continue;
+            }
+
+            int next = opcode(pc + 1);
+            int arg2 = (pc + 1 < len) ? ARGx(instr[pc + 1]) : 0;
+
+            /* LOAD_LOCAL; GETK */
+            if(next == GETK) {
+                if(arg2 <= MAX_ARG2 && isSequence(pc, 2)) {
+                    fuse(LOAD_LOCAL_GETK, pc, local, arg2, 2);
+                }
+                continue;
+            }
+
+            if((next != LOAD_LOCAL && next != LOAD_CONST) || arg2 > MAX_ARG2) {
+                continue;
+            }
+
+            boolean isConst = next == LOAD_CONST;
+
+            int superinstr = -1;
+            int length = 3;
+            switch(opcode(pc + 2)) {
+                case ADD: {
+                    superinstr = isConst ? ADD_LOCAL_CONST : ADD_LOCAL_LOCAL;
+                    break;
+                }
+                case SUB: {
+                    superinstr = isConst ? SUB_LOCAL_CONST : -1;
+                    break;
+                }
+                case EQ:
+                case NEQ:
+                case GT:
+                case GTE:
+                case LT:
+                case LTE: {
+                    if(opcode(pc + 3) == IFEQ) {
+                        superinstr = compareAndBranch(opcode(pc + 2), isConst);
+                        length = 4;
+                    }
+                    break;
+                }
+            }
+
+            if(superinstr > -1 && isSequence(pc, length)) {
+
+                /* the compare and branch instructions keep the IFEQ as an
+                 * operand holding the jump offset */
+                fuse(superinstr, pc, local, arg2, 3);
+            }
+        }
+    }
+
+    /**
+     * @param compareOpcode
+     * @param isConst
+     * @return the compare and branch superinstruction
+     */
+    private static int compareAndBranch(int compareOpcode, boolean isConst) {
+        switch(compareOpcode) {
+            case EQ:  return isConst ? EQ_LOCAL_CONST_IFEQ  : EQ_LOCAL_LOCAL_IFEQ;
+            case NEQ: return isConst ? NEQ_LOCAL_CONST_IFEQ : NEQ_LOCAL_LOCAL_IFEQ;
+            case GT:  return isConst ? GT_LOCAL_CONST_IFEQ  : GT_LOCAL_LOCAL_IFEQ;
+            case GTE: return isConst ? GTE_LOCAL_CONST_IFEQ : GTE_LOCAL_LOCAL_IFEQ;
+            case LT:  return isConst ? LT_LOCAL_CONST_IFEQ  : LT_LOCAL_LOCAL_IFEQ;
+            default:  return isConst ? LTE_LOCAL_CONST_IFEQ : LTE_LOCAL_LOCAL_IFEQ;
+        }
+    }
+
+    /**
+     * Replaces the instruction at pc with the superinstruction, removing the
+     * fused instructions that follow it
+     *
+     * @param superinstr
+     * @param pc
+     * @param arg1
+     * @param arg2
+     * @param length the number of instructions fused
+     */
+    private void fuse(int superinstr, int pc, int arg1, int arg2, int length) {
+        instr[pc] = SET_ARG2(SET_ARG1(superinstr, arg1), arg2);
+        for(int i = 1; i < length; i++) {
+            removed[pc + i] = true;
+        }
+    }
+
+    /**
+     * Removes any <code>JMP</code> to the next instruction, unless it is an entry of a jump table
+     */
+    private void removeJumpsToNext() {
+        for(int pc = len - 1; pc >= 0; pc--) {
+            if(!removed[pc] && !isJumpTable[pc] && opcode(pc) == JMP && resolve(targets[pc]) == resolve(pc + 1)) {
+                removed[pc] = true;
+            }
+        }
+    }
+
+    /**
+     * Removes the optimized away instructions and relocates the jumps
+     *
+     * @param debugSymbols
+     * @param lineNumbers
+     * @return the new instructions
+     */
+    private int[] compact(DebugSymbols debugSymbols, LineNumberTable lineNumbers) {
+
+        /* the new location of each instruction, removed instructions
+         * are relocated to the next remaining instruction */
+        int[] relocations = new int[len + 1];
+        int newLen = 0;
+        for(int pc = 0; pc < len; pc++) {
+            relocations[pc] = newLen;
+            if(!removed[pc]) {
+                newLen++;
+            }
+        }
+        relocations[len] = newLen;
+
+        int[] result = new int[newLen];
+        for(int pc = 0; pc < len; pc++) {
+            if(removed[pc]) {
+                continue;
+            }
+
+            int i = instr[pc];
+            int newPc = relocations[pc];
+            int target = targets[pc];
+            if(target > -1) {
+                int newTarget = relocations[target];
+                switch(OPCODE(i)) {
+                    case JMP:
+                    case IFEQ: {
+                        i = SET_ARGsx(i, newTarget - newPc - 1);
+                        break;
+                    }
+                    default: {
+                        i = SET_ARGsx(i, newTarget);
+                    }
+                }
+            }
+
+            result[newPc] = i;
+        }
+
+        if(debugSymbols != null) {
+            debugSymbols.relocate(relocations);
+        }
+
+        if(lineNumbers != null) {
+            lineNumbers.relocate(relocations);
+        }
+
+        return result;
+    }
+}
@@ -32,6 +32,10 @@ public class Compiler {
      * @return the {@link Bytecode}
      */
     public Bytecode compile(ASTNode node) {
+        if(this.runtime.getArgs().foldConstants()) {
+            node.visit(new ConstantFoldingVisitor());
+        }
+        
         BytecodeGeneratorVisitor gen = new BytecodeGeneratorVisitor(this.runtime, new EmitterScopes());
         node.visit(gen);
         
@@ -0,0 +1,700 @@
+/*
+    Leola Programming Language
+    Author: Tony Sparks
+    See license.txt
+*/
+package leola.vm.compiler;
+
+import java.util.List;
+
+import leola.ast.ASTNode;
+import leola.ast.ASTNodeVisitorAdapter;
+import leola.ast.ArrayDeclExpr;
+import leola.ast.AssignmentExpr;
+import leola.ast.BinaryExpr;
+import leola.ast.BlockStmt;
+import leola.ast.BooleanExpr;
+import leola.ast.BreakStmt;
+import leola.ast.CaseExpr;
+import leola.ast.CatchStmt;
+import leola.ast.ClassDeclStmt;
+import leola.ast.ContinueStmt;
+import leola.ast.DecoratorExpr;
+import leola.ast.ElvisGetExpr;
+import leola.ast.EmptyStmt;
+import leola.ast.Expr;
+import leola.ast.FuncDefExpr;
+import leola.ast.FuncInvocationExpr;
+import leola.ast.GenDefExpr;
+import leola.ast.GetExpr;
+import leola.ast.IfStmt;
+import leola.ast.IntegerExpr;
+import leola.ast.IsExpr;
+import leola.ast.LongExpr;
+import leola.ast.MapDeclExpr;
+import leola.ast.NamedParameterExpr;
+import leola.ast.NamespaceSetExpr;
+import leola.ast.NamespaceStmt;
+import leola.ast.NewExpr;
+import leola.ast.NullExpr;
+import leola.ast.ProgramStmt;
+import leola.ast.RealExpr;
+import leola.ast.ReturnStmt;
+import leola.ast.SetExpr;
+import leola.ast.Stmt;
+import leola.ast.StringExpr;
+import leola.ast.SubscriptGetExpr;
+import leola.ast.SubscriptSetExpr;
+import leola.ast.SwitchStmt;
+import leola.ast.ThrowStmt;
+import leola.ast.TryStmt;
+import leola.ast.UnaryExpr;
+import leola.ast.VarDeclStmt;
+import leola.ast.WhileStmt;
+import leola.ast.YieldStmt;
+import leola.frontend.tokens.TokenType;
+import leola.vm.EvalException;
+import leola.vm.types.LeoBoolean;
+import leola.vm.types.LeoDouble;
+import leola.vm.types.LeoInteger;
+import leola.vm.types.LeoLong;
+import leola.vm.types.LeoNull;
+import leola.vm.types.LeoObject;
+import leola.vm.types.LeoString;
+import leola.vm.util.Pair;
+
+/**
+ * Optimizes the Abstract Syntax Tree prior to generating the {@link Bytecode}.  This will:
+ *
+ * <ul>
+ *  <li>fold {@link BinaryExpr} and {@link UnaryExpr} of literal operands (e.g., <code>1024 * 60 * 60</code> or <code>"a" + "b"</code>)
+ *  into a single literal</li>
+ *  <li>simplify logical expressions with a literal left hand operand (e.g., <code>true || x</code> is <code>true</code>)</li>
+ *  <li>remove the dead branch of an {@link IfStmt} (and a {@link WhileStmt} body) with a literal condition</li>
+ *  <li>remove unreachable statements following a <code>return</code>, <code>throw</code>, <code>break</code> or <code>continue</code>
+ *  (or a block or <code>if</code>/<code>else</code> which always ends in one)</li>
+ * </ul>
+ *
+ * <p>
+ * Literals are folded with the same {@link LeoObject} operations the VM executes, so the folded result is exactly
+ * the result the expression would have produced at runtime.  An expression which would fail at runtime (e.g., a division by zero)
+ * is left as is, so that it fails when (and if) it is executed.
+ *
+ * <p>
+ * A dead branch is only removed if it doesn't declare a variable in the enclosing scope.
+ *
+ * @author Tony
+ *
+ */
+public class ConstantFoldingVisitor extends ASTNodeVisitorAdapter {
+
+    /**
+     * Optimizes the expression, returning either the expression or its replacement
+     *
+     * @param expr
+     * @return the optimized expression
+     * @throws EvalException
+     */
+    private Expr optimize(Expr expr) throws EvalException {
+        if(expr == null) {
+            return null;
+        }
+
+        expr.visit(this);
+
+        Expr result = expr;
+        if(expr instanceof BinaryExpr) {
+            result = fold((BinaryExpr)expr);
+        }
+        else if(expr instanceof UnaryExpr) {
+            result = fold((UnaryExpr)expr);
+        }
+
+        return replace(expr, result);
+    }
+
+    /**
+     * Optimizes the statement, returning either the statement or its replacement
+     *
+     * @param stmt
+     * @return the optimized statement
+     * @throws EvalException
+     */
+    private Stmt optimize(Stmt stmt) throws EvalException {
+        if(stmt == null) {
+            return null;
+        }
+
+        if(stmt instanceof Expr) {
+            return optimize((Expr)stmt);
+        }
+
+        stmt.visit(this);
+
+        Stmt result = stmt;
+        if(stmt instanceof IfStmt) {
+            result = eliminate((IfStmt)stmt);
+        }
+        else if(stmt instanceof WhileStmt) {
+            result = eliminate((WhileStmt)stmt);
+        }
+
+        return replace(stmt, result);
+    }
+
+    private void optimizeExprs(List<Expr> exprs) throws EvalException {
+        if(exprs != null) {
+            for(int i = 0; i < exprs.size(); i++) {
+                exprs.set(i, optimize(exprs.get(i)));
+            }
+        }
+    }
+
+    /**
+     * Optimizes each statement, removing any unreachable statements
+     *
+     * @param parent
+     * @param stmts
+     * @throws EvalException
+     */
+    private void optimizeStmts(ASTNode parent, List<Stmt> stmts) throws EvalException {
+        for(int i = 0; i < stmts.size(); i++) {
+            Stmt stmt = optimize(stmts.get(i));
+            if(stmt != stmts.get(i)) {
+                stmt.setParentNode(parent);
+            }
+
+            stmts.set(i, stmt);
+
+            if(isTerminal(stmt) && i + 1 < stmts.size()) {
+                stmts.subList(i + 1, stmts.size()).clear();
+            }
+        }
+    }
+
+    /**
+     * Carries over the source information to the replacement node
+     *
+     * @param original
+     * @param replacement
+     * @return the replacement
+     */
+    private static <T extends ASTNode> T replace(ASTNode original, T replacement) {
+        if(replacement != original) {
+            replacement.setLineNumber(original.getLineNumber());
+            replacement.setSourceLine(original.getSourceLine());
+        }
+        return replacement;
+    }
+
+    /**
+     * @param stmt
+     * @return true if control never moves on to the statement following the supplied statement
+     */
+    private static boolean isTerminal(Stmt stmt) {
+        if(stmt instanceof BlockStmt) {
+            List<Stmt> stmts = ((BlockStmt)stmt).getStatements();
+            return !stmts.isEmpty() && isTerminal(stmts.get(stmts.size() - 1));
+        }
+
+        if(stmt instanceof IfStmt) {
+            IfStmt ifStmt = (IfStmt)stmt;
+            return ifStmt.getElseStmt() != null &&
+                   isTerminal(ifStmt.getStmt()) &&
+                   isTerminal(ifStmt.getElseStmt());
+        }
+
+        return (stmt instanceof ReturnStmt) ||
+               (stmt instanceof ThrowStmt) ||
+               (stmt instanceof BreakStmt) ||
+               (stmt instanceof ContinueStmt);
+    }
+
+    /**
+     * A branch which isn't a block declares its variables in the enclosing scope, such a
+     * branch can not be removed as the variable may be referenced later on.
+     *
+     * @param stmt
+     * @return true if the statement declares a variable in the enclosing scope
+     */
+    private static boolean declaresVariables(Stmt stmt) {
+        if(stmt instanceof VarDeclStmt) {
+            return true;
+        }
+
+        if(stmt instanceof IfStmt) {
+            IfStmt ifStmt = (IfStmt)stmt;
+            return declaresVariables(ifStmt.getStmt()) ||
+                   (ifStmt.getElseStmt() != null && declaresVariables(ifStmt.getElseStmt()));
+        }
+
+        if(stmt instanceof WhileStmt) {
+            return declaresVariables(((WhileStmt)stmt).getStmt());
+        }
+
+        return false;
+    }
+
+    /**
+     * @param expr
+     * @return the value of the literal expression, or null if the expression isn't a literal
+     */
+    private static LeoObject toConstant(Expr expr) {
+        if(expr instanceof IntegerExpr) {
+            return LeoInteger.valueOf(((IntegerExpr)expr).getValue());
+        }
+        if(expr instanceof LongExpr) {
+            return LeoLong.valueOf(((LongExpr)expr).getValue());
+        }
+        if(expr instanceof RealExpr) {
+            return LeoDouble.valueOf(((RealExpr)expr).getValue());
+        }
+        if(expr instanceof StringExpr) {
+            return LeoString.valueOf(((StringExpr)expr).getValue());
+        }
+        if(expr instanceof BooleanExpr) {
+            return LeoBoolean.valueOf(((BooleanExpr)expr).getValue());
+        }
+        if(expr instanceof NullExpr) {
+            return LeoNull.LEONULL;
+        }
+
+        return null;
+    }
+
+    /**
+     * @param value
+     * @return the literal expression of the value, or null if the value can't be expressed as a literal
+     */
+    private static Expr toExpr(LeoObject value) {
+        switch(value.getType()) {
+            case INTEGER: return new IntegerExpr(value.asInt());
+            case LONG:    return new LongExpr(value.asLong());
+            case REAL:    return new RealExpr(value.asDouble());
+            case STRING:  return new StringExpr(value.toString());
+            case BOOLEAN: return new BooleanExpr(value.isTrue());
+            case NULL:    return new NullExpr();
+            default:      return null;
+        }
+    }
+
+    /**
+     * @param expr
+     * @return the folded expression, or the supplied expression if it can't be folded
+     */
+    private Expr fold(BinaryExpr expr) {
+        TokenType op = expr.getOp().getType();
+
+        LeoObject left = toConstant(expr.getLeft());
+        if(left == null) {
+            return expr;
+        }
+
+        /* the right hand side of a logical expression is only
+         * evaluated if the left hand side doesn't determine the result
+         */
+        switch(op) {
+            case LOGICAL_AND: return left.isTrue() ? expr.getRight() : new BooleanExpr(false);
+            case LOGICAL_OR:  return left.isTrue() ? new BooleanExpr(true) : expr.getRight();
+            default:
+        }
+
+        LeoObject right = toConstant(expr.getRight());
+        if(right == null) {
+            return expr;
+        }
+
+        LeoObject result = null;
+        try {
+            switch(op) {
+                case PLUS:  result = left.$add(right); break;
+                case MINUS: result = left.$sub(right); break;
+                case STAR:  result = left.$mul(right); break;
+                case SLASH: result = left.$div(right); break;
+                case MOD:   result = left.$mod(right); break;
+
+                case D_EQUALS:       result = LeoBoolean.valueOf(left.$eq(right));  break;
+                case NOT_EQUALS:     result = LeoBoolean.valueOf(left.$neq(right)); break;
+                case GREATER_THAN:   result = LeoBoolean.valueOf(left.$gt(right));  break;
+                case GREATER_EQUALS: result = LeoBoolean.valueOf(left.$gte(right)); break;
+                case LESS_THAN:      result = LeoBoolean.valueOf(left.$lt(right));  break;
+                case LESS_EQUALS:    result = LeoBoolean.valueOf(left.$lte(right)); break;
+
+                case BITWISE_AND:     result = left.$band(right); break;
+                case BITWISE_OR:      result = left.$bor(right);  break;
+                case BIT_SHIFT_LEFT:  result = left.$bsl(right);  break;
+                case BIT_SHIFT_RIGHT: result = left.$bsr(right);  break;
+                case BITWISE_XOR:     result = left.$xor(right);  break;
+
+                /* reference equality depends on how the constants are
+                 * allocated, so leave these to the VM */
+                default: return expr;
+            }
+        }
+        catch(Exception e) {
+            /* leave it to fail at runtime */
+            return expr;
+        }
+
+        Expr folded = (result != null) ? toExpr(result) : null;
+        return (folded != null) ? folded : expr;
+    }
+
+    /**
+     * @param expr
+     * @return the folded expression, or the supplied expression if it can't be folded
+     */
+    private Expr fold(UnaryExpr expr) {
+        LeoObject value = toConstant(expr.getExpr());
+        if(value == null) {
+            return expr;
+        }
+
+        LeoObject result = null;
+        try {
+            switch(expr.getOp().getType()) {
+                case MINUS:       result = value.$neg();  break;
+                case BITWISE_NOT: result = value.$bnot(); break;
+                case NOT:         result = LeoBoolean.valueOf(!value.isTrue()); break;
+                default: return expr;
+            }
+        }
+        catch(Exception e) {
+            /* leave it to fail at runtime */
+            return expr;
+        }
+
+        Expr folded = (result != null) ? toExpr(result) : null;
+        return (folded != null) ? folded : expr;
+    }
+
+    /**
+     * @param s
+     * @return the statement replacing the {@link IfStmt}
+     */
+    private Stmt eliminate(IfStmt s) {
+        Expr condition = s.getCondition();
+        Stmt elseStmt = s.getElseStmt();
+
+        LeoObject value = toConstant(condition);
+        if(value == null) {
+
+            /* if !x a else b is the same as if x b else a */
+            if(elseStmt != null && condition instanceof UnaryExpr &&
+               ((UnaryExpr)condition).getOp().getType() == TokenType.NOT) {
+
+                Stmt stmt = s.getStmt();
+                s.setCondition(((UnaryExpr)condition).getExpr());
+                s.setStmt(elseStmt);
+                s.setElseStmt(stmt);
+            }
+
+            return s;
+        }
+
+        Stmt taken = value.isTrue() ? s.getStmt() : elseStmt;
+        Stmt dead  = value.isTrue() ? elseStmt : s.getStmt();
+        if(dead != null && declaresVariables(dead)) {
+            return s;
+        }
+
+        return (taken != null) ? taken : new EmptyStmt();
+    }
+
+    /**
+     * @param s
+     * @return the statement replacing the {@link WhileStmt}
+     */
+    private Stmt eliminate(WhileStmt s) {
+        LeoObject value = toConstant(s.getCondition());
+        if(value != null && !value.isTrue() && !declaresVariables(s.getStmt())) {
+            return new EmptyStmt();
+        }
+
+        return s;
+    }
+
+    /* (non-Javadoc)
+     * @see leola.ast.ASTNodeVisitor#visit(leola.ast.ProgramStmt)
+     */
+    @Override
+    public void visit(ProgramStmt s) throws EvalException {
+        optimizeStmts(s, s.getStatements());
+    }
+
+    /* (non-Javadoc)
+     * @see leola.ast.ASTNodeVisitor#visit(leola.ast.BlockStmt)
+     */
+    @Override
+    public void visit(BlockStmt s) throws EvalException {
+        optimizeStmts(s, s.getStatements());
+    }
+
+    /* (non-Javadoc)
+     * @see leola.ast.ASTNodeVisitor#visit(leola.ast.SubscriptGetExpr)
+     */
+    @Override
+    public void visit(SubscriptGetExpr s) throws EvalException {
+        s.setObject(optimize(s.getObject()));
+        s.setElementIndex(optimize(s.getElementIndex()));
+    }
+
+    /* (non-Javadoc)
+     * @see leola.ast.ASTNodeVisitor#visit(leola.ast.SubscriptSetExpr)
+     */
+    @Override
+    public void visit(SubscriptSetExpr s) throws EvalException {
+        s.setObject(optimize(s.getObject()));
+        s.setElementIndex(optimize(s.getElementIndex()));
+        s.setValue(optimize(s.getValue()));
+    }
+
+    /* (non-Javadoc)
+     * @see leola.ast.ASTNodeVisitor#visit(leola.ast.ArrayDeclExpr)
+     */
+    @Override
+    public void visit(ArrayDeclExpr s) throws EvalException {
+        optimizeExprs(s.getElements());
+    }
+
+    /* (non-Javadoc)
+     * @see leola.ast.ASTNodeVisitor#visit(leola.ast.MapDeclExpr)
+     */
+    @Override
+    public void visit(MapDeclExpr s) throws EvalException {
+        for(Pair<Expr, Expr> element : s.getElements()) {
+            element.setFirst(optimize(element.getFirst()));
+            element.setSecond(optimize(element.getSecond()));
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see leola.ast.ASTNodeVisitor#visit(leola.ast.AssignmentExpr)
+     */
+    @Override
+    public void visit(AssignmentExpr s) throws EvalException {
+        s.setValue(optimize(s.getValue()));
+    }
+
+    /* (non-Javadoc)
+     * @see leola.ast.ASTNodeVisitor#visit(leola.ast.BinaryExpr)
+     */
+    @Override
+    public void visit(BinaryExpr s) throws EvalException {
+        s.setLeft(optimize(s.getLeft()));
+        s.setRight(optimize(s.getRight()));
+    }
+
+    /* (non-Javadoc)
+     * @see leola.ast.ASTNodeVisitor#visit(leola.ast.CaseExpr)
+     */
+    @Override
+    public void visit(CaseExpr s) throws EvalException {
+        s.setCondition(optimize(s.getCondition()));
+        for(Pair<Expr, Expr> when : s.getWhenExprs()) {
+            when.setFirst(optimize(when.getFirst()));
+            when.setSecond(optimize(when.getSecond()));
+        }
+        s.setElseExpr(optimize(s.getElseExpr()));
+    }
+
+    /* (non-Javadoc)
+     * @see leola.ast.ASTNodeVisitor#visit(leola.ast.ClassDeclStmt)
+     */
+    @Override
+    public void visit(ClassDeclStmt s) throws EvalException {
+        optimizeExprs(s.getParentClassArguments());
+        s.setClassBodyStmt(optimize(s.getClassBodyStmt()));
+    }
+
+    /* (non-Javadoc)
+     * @see leola.ast.ASTNodeVisitor#visit(leola.ast.DecoratorExpr)
+     */
+    @Override
+    public void visit(DecoratorExpr s) throws EvalException {
+        optimizeExprs(s.getArguments());
+        s.setDecoratedExpr(optimize(s.getDecoratedExpr()));
+    }
+
+    /* (non-Javadoc)
+     * @see leola.ast.ASTNodeVisitor#visit(leola.ast.NamespaceStmt)
+     */
+    @Override
+    public void visit(NamespaceStmt s) throws EvalException {
+        s.setStmt(optimize(s.getStmt()));
+    }
+
+    /* (non-Javadoc)
+     * @see leola.ast.ASTNodeVisitor#visit(leola.ast.CatchStmt)
+     */
+    @Override
+    public void visit(CatchStmt s) throws EvalException {
+        s.setBody(optimize(s.getBody()));
+    }
+
+    /* (non-Javadoc)
+     * @see leola.ast.ASTNodeVisitor#visit(leola.ast.GenDefExpr)
+     */
+    @Override
+    public void visit(GenDefExpr s) throws EvalException {
+        s.setBody(optimize(s.getBody()));
+    }
+
+    /* (non-Javadoc)
+     * @see leola.ast.ASTNodeVisitor#visit(leola.ast.FuncDefExpr)
+     */
+    @Override
+    public void visit(FuncDefExpr s) throws EvalException {
+        s.setBody(optimize(s.getBody()));
+    }
+
+    /* (non-Javadoc)
+     * @see leola.ast.ASTNodeVisitor#visit(leola.ast.FuncInvocationExpr)
+     */
+    @Override
+    public void visit(FuncInvocationExpr s) throws EvalException {
+        s.setCallee(optimize(s.getCallee()));
+        optimizeExprs(s.getArguments());
+    }
+
+    /* (non-Javadoc)
+     * @see leola.ast.ASTNodeVisitor#visit(leola.ast.IfStmt)
+     */
+    @Override
+    public void visit(IfStmt s) throws EvalException {
+        s.setCondition(optimize(s.getCondition()));
+        s.setStmt(optimize(s.getStmt()));
+        s.setElseStmt(optimize(s.getElseStmt()));
+    }
+
+    /* (non-Javadoc)
+     * @see leola.ast.ASTNodeVisitor#visit(leola.ast.IsExpr)
+     */
+    @Override
+    public void visit(IsExpr s) throws EvalException {
+        s.setObject(optimize(s.getObject()));
+    }
+
+    /* (non-Javadoc)
+     * @see leola.ast.ASTNodeVisitor#visit(leola.ast.NamespaceSetExpr)
+     */
+    @Override
+    public void visit(NamespaceSetExpr s) throws EvalException {
+        s.setValue(optimize(s.getValue()));
+    }
+
+    /* (non-Javadoc)
+     * @see leola.ast.ASTNodeVisitor#visit(leola.ast.ElvisGetExpr)
+     */
+    @Override
+    public void visit(ElvisGetExpr s) throws EvalException {
+        s.setObject(optimize(s.getObject()));
+    }
+
+    /* (non-Javadoc)
+     * @see leola.ast.ASTNodeVisitor#visit(leola.ast.GetExpr)
+     */
+    @Override
+    public void visit(GetExpr s) throws EvalException {
+        s.setObject(optimize(s.getObject()));
+    }
+
+    /* (non-Javadoc)
+     * @see leola.ast.ASTNodeVisitor#visit(leola.ast.SetExpr)
+     */
+    @Override
+    public void visit(SetExpr s) throws EvalException {
+        s.setObject(optimize(s.getObject()));
+        s.setValue(optimize(s.getValue()));
+    }
+
+    /* (non-Javadoc)
+     * @see leola.ast.ASTNodeVisitor#visit(leola.ast.NamedParameterExpr)
+     */
+    @Override
+    public void visit(NamedParameterExpr s) throws EvalException {
+        s.setValueExpr(optimize(s.getValueExpr()));
+    }
+
+    /* (non-Javadoc)
+     * @see leola.ast.ASTNodeVisitor#visit(leola.ast.NewExpr)
+     */
+    @Override
+    public void visit(NewExpr s) throws EvalException {
+        optimizeExprs(s.getArguments());
+    }
+
+    /* (non-Javadoc)
+     * @see leola.ast.ASTNodeVisitor#visit(leola.ast.ReturnStmt)
+     */
+    @Override
+    public void visit(ReturnStmt s) throws EvalException {
+        s.setExpr(optimize(s.getExpr()));
+    }
+
+    /* (non-Javadoc)
+     * @see leola.ast.ASTNodeVisitor#visit(leola.ast.YieldStmt)
+     */
+    @Override
+    public void visit(YieldStmt s) throws EvalException {
+        s.setExpr(optimize(s.getExpr()));
+    }
+
+    /* (non-Javadoc)
+     * @see leola.ast.ASTNodeVisitor#visit(leola.ast.SwitchStmt)
+     */
+    @Override
+    public void visit(SwitchStmt s) throws EvalException {
+        s.setCondition(optimize(s.getCondition()));
+        for(Pair<Expr, Stmt> when : s.getWhenStmts()) {
+            when.setFirst(optimize(when.getFirst()));
+            when.setSecond(optimize(when.getSecond()));
+        }
+        s.setElseStmt(optimize(s.getElseStmt()));
+    }
+
+    /* (non-Javadoc)
+     * @see leola.ast.ASTNodeVisitor#visit(leola.ast.TryStmt)
+     */
+    @Override
+    public void visit(TryStmt s) throws EvalException {
+        s.setStmt(optimize(s.getStmt()));
+        if(s.getCatchStmt() != null) {
+            s.getCatchStmt().visit(this);
+        }
+        s.setFinallyStmt(optimize(s.getFinallyStmt()));
+    }
+
+    /* (non-Javadoc)
+     * @see leola.ast.ASTNodeVisitor#visit(leola.ast.ThrowStmt)
+     */
+    @Override
+    public void visit(ThrowStmt s) throws EvalException {
+        s.setExpr(optimize(s.getExpr()));
+    }
+
+    /* (non-Javadoc)
+     * @see leola.ast.ASTNodeVisitor#visit(leola.ast.UnaryExpr)
+     */
+    @Override
+    public void visit(UnaryExpr s) throws EvalException {
+        s.setExpr(optimize(s.getExpr()));
+    }
+
+    /* (non-Javadoc)
+     * @see leola.ast.ASTNodeVisitor#visit(leola.ast.VarDeclStmt)
+     */
+    @Override
+    public void visit(VarDeclStmt s) throws EvalException {
+        s.setValue(optimize(s.getValue()));
+    }
+
+    /* (non-Javadoc)
+     * @see leola.ast.ASTNodeVisitor#visit(leola.ast.WhileStmt)
+     */
+    @Override
+    public void visit(WhileStmt s) throws EvalException {
+        s.setCondition(optimize(s.getCondition()));
+        s.setStmt(optimize(s.getStmt()));
+    }
+}
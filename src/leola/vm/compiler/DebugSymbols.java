@@ -183,6 +183,22 @@ public class DebugSymbols {
     }
     
     
+    /**
+     * Moves the program counters of the local variables to their new locations, this
+     * is used once instructions have been removed by the {@link BytecodeOptimizer}
+     * 
+     * @param relocations the new program counter, indexed by the old program counter
+     */
+    void relocate(int[] relocations) {
+        for(int i = 0; i < this.index; i++) {
+            LocalVar var = this.locvars[i];
+            var.startpc = relocations[Math.min(var.startpc, relocations.length-1)];
+            if(var.endpc > -1) {
+                var.endpc = relocations[Math.min(var.endpc, relocations.length-1)];
+            }
+        }
+    }
+    
     /**
      * @return the number of debug symbols
      */
@@ -83,6 +83,11 @@ public class EmitterScope {
      */
     private DebugSymbols debugSymbols;
     
+    /**
+     * The program counter to line number mappings
+     */
+    private LineNumberTable lineNumbers;
+    
     private boolean usesLocals;
     private boolean debug;    
     private boolean hasParamIndexes;
@@ -111,6 +116,7 @@ public class EmitterScope {
         this.lexicalScopes = new Stack<Integer>();
         this.blockSize = new Stack<Integer>();
         this.debugSymbols = new DebugSymbols();
+        this.lineNumbers = new LineNumberTable();
         
         this.usesLocals = scopeType == ScopeType.LOCAL_SCOPE;
         
@@ -125,6 +131,13 @@ public class EmitterScope {
         return debugSymbols;
     }
     
+    /**
+     * @return the lineNumbers
+     */
+    public LineNumberTable getLineNumbers() {
+        return lineNumbers;
+    }
+    
     /**
      * @return the numArgs
      */
@@ -0,0 +1,209 @@
+/*
+    Leola Programming Language
+    Author: Tony Sparks
+    See license.txt
+*/
+package leola.vm.compiler;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Maps the program counters of a {@link Bytecode} to the line numbers of the Leola script they were compiled from.
+ *
+ * <p>
+ * Each entry marks the program counter at which a line starts; every instruction up to the next entry belongs to that
+ * line.  The table is kept to the side of the instructions, so recording line numbers does not cost anything while
+ * executing and is only looked up once an error is thrown.
+ *
+ * @author Tony
+ *
+ */
+public class LineNumberTable {
+
+    /**
+     * The starting program counter of each entry, in
+     * ascending order
+     */
+    private int[] startpcs;
+
+    /**
+     * The line number of each entry
+     */
+    private int[] lines;
+
+    /**
+     * The number of entries
+     */
+    private int size;
+
+    /**
+     */
+    public LineNumberTable() {
+        this(new int[8], new int[8], 0);
+    }
+
+    /**
+     * @param startpcs
+     * @param lines
+     * @param size
+     */
+    private LineNumberTable(int[] startpcs, int[] lines, int size) {
+        this.startpcs = startpcs;
+        this.lines = lines;
+        this.size = size;
+    }
+
+    /**
+     * Marks the start of a line.  Program counters must be added in ascending order, a line starting at the same
+     * program counter as the previous one replaces it.
+     *
+     * @param startpc the program counter of the first instruction of the line
+     * @param line the line number
+     */
+    public void add(int startpc, int line) {
+        if(this.size > 0) {
+            int last = this.size - 1;
+            if(this.startpcs[last] == startpc) {
+                this.lines[last] = line;
+                return;
+            }
+
+            if(this.lines[last] == line) {
+                return;
+            }
+        }
+
+        if(this.size >= this.startpcs.length) {
+            int capacity = Math.max(8, this.size << 1);
+            int[] newStartpcs = new int[capacity];
+            System.arraycopy(this.startpcs, 0, newStartpcs, 0, this.size);
+            this.startpcs = newStartpcs;
+
+            int[] newLines = new int[capacity];
+            System.arraycopy(this.lines, 0, newLines, 0, this.size);
+            this.lines = newLines;
+        }
+
+        this.startpcs[this.size] = startpc;
+        this.lines[this.size] = line;
+        this.size++;
+    }
+
+    /**
+     * Retrieves the line number of the instruction at the supplied program counter
+     *
+     * @param pc the program counter
+     * @return the line number, or -1 if the instruction does not belong to a line
+     */
+    public int getLineNumber(int pc) {
+        int entry = getEntry(pc);
+        return (entry > -1) ? this.lines[entry] : -1;
+    }
+
+    /**
+     * Retrieves the entry of the line the instruction at the supplied program counter belongs to
+     *
+     * @param pc the program counter
+     * @return the index of the entry, or -1 if the instruction does not belong to a line
+     */
+    public int getEntry(int pc) {
+        int low = 0;
+        int high = this.size - 1;
+        int entry = -1;
+
+        while(low <= high) {
+            int mid = (low + high) >>> 1;
+            if(this.startpcs[mid] <= pc) {
+                entry = mid;
+                low = mid + 1;
+            }
+            else {
+                high = mid - 1;
+            }
+        }
+
+        return entry;
+    }
+
+    /**
+     * @param entry the index of the entry
+     * @return the program counter of the first instruction of the entry
+     */
+    public int getStartPc(int entry) {
+        return this.startpcs[entry];
+    }
+
+    /**
+     * @param entry the index of the entry
+     * @return the line number of the entry
+     */
+    public int getLine(int entry) {
+        return this.lines[entry];
+    }
+
+    /**
+     * @return the number of entries
+     */
+    public int getSize() {
+        return this.size;
+    }
+
+    /**
+     * Moves the program counters of the entries to their new locations, this
+     * is used once instructions have been removed by the {@link BytecodeOptimizer}.  If
+     * entries end up starting at the same program counter, the last one is kept, as that
+     * is the line the remaining instruction belongs to.
+     *
+     * @param relocations the new program counter, indexed by the old program counter
+     */
+    void relocate(int[] relocations) {
+        int newSize = 0;
+        for(int i = 0; i < this.size; i++) {
+            int startpc = relocations[Math.min(this.startpcs[i], relocations.length-1)];
+            if(newSize > 0 && this.startpcs[newSize-1] == startpc) {
+                newSize--;
+            }
+
+            this.startpcs[newSize] = startpc;
+            this.lines[newSize] = this.lines[i];
+            newSize++;
+        }
+
+        this.size = newSize;
+    }
+
+    /**
+     * Reads the from {@link DataInput} stream and constructs a {@link LineNumberTable}.
+     *
+     * @param input
+     * @return the {@link LineNumberTable}
+     * @throws IOException
+     */
+    public static LineNumberTable read(DataInput input) throws IOException {
+        int size = input.readInt();
+        int[] startpcs = new int[size];
+        int[] lines = new int[size];
+        for(int i = 0; i < size; i++) {
+            startpcs[i] = input.readInt();
+            lines[i] = input.readInt();
+        }
+
+        return new LineNumberTable(startpcs, lines, size);
+    }
+
+    /**
+     * Serializes the {@link LineNumberTable}
+     *
+     * @param output
+     * @throws IOException
+     */
+    public void write(DataOutput output) throws IOException {
+        output.writeInt(this.size);
+        for(int i = 0; i < this.size; i++) {
+            output.writeInt(this.startpcs[i]);
+            output.writeInt(this.lines[i]);
+        }
+    }
+}
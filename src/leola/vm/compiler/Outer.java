@@ -86,9 +86,18 @@ public class Outer {
         this.stack = stack;
         this.index = index;
     }
-    
 
-    
+    /**
+     * Creates an {@link Outer} which has already been closed over
+     *
+     * @param value the closed over value
+     */
+    public Outer(LeoObject value) {
+        this(new ClosedStackValue(value), 0);
+    }
+
+
+
     /**
      * @return the index
      */
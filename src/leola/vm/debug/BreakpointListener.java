@@ -0,0 +1,25 @@
+/*
+    Leola Programming Language
+    Author: Tony Sparks
+    See license.txt
+*/
+package leola.vm.debug;
+
+/**
+ * Listens for the breakpoints installed by a {@link Debugger}
+ *
+ * @author Tony
+ *
+ */
+public interface BreakpointListener {
+
+    /**
+     * Execution has stopped at a breakpoint, or at the end of a step.  Execution resumes once
+     * this returns; to stop again at the next line invoke {@link Debugger#stepOver()} or
+     * {@link Debugger#stepInto()} before returning.
+     *
+     * @param event the state of the stopped function
+     * @param debugger the {@link Debugger} which stopped
+     */
+    public void onBreakpoint(DebugEvent event, Debugger debugger);
+}
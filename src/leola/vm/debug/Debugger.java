@@ -0,0 +1,399 @@
+/*
+    Leola Programming Language
+    Author: Tony Sparks
+    See license.txt
+*/
+package leola.vm.debug;
+
+import static leola.vm.Opcodes.*;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import leola.vm.Leola;
+import leola.vm.compiler.Bytecode;
+import leola.vm.compiler.LineNumberTable;
+import leola.vm.types.LeoFunction;
+import leola.vm.types.LeoObject;
+
+/**
+ * A {@link Debugger} stops execution at breakpoints by patching the targeted instruction of a {@link Bytecode} with
+ * a <code>BREAKPOINT</code> instruction; the displaced instruction is restored once the breakpoint is removed.  Code without
+ * breakpoints runs unchanged, so attaching a {@link Debugger} (see {@link Leola#setDebugger(Debugger)}) does not slow down the
+ * interpreter.
+ *
+ * <p>
+ * Breakpoints are set on lines, using the {@link LineNumberTable} of the {@link Bytecode}.  Stepping is implemented with
+ * temporary breakpoints, which are removed at the next stop:
+ * <ul>
+ *  <li>{@link #stepOver()} patches the start of every other line of the stopped function, and the instruction the calling function
+ *  resumes at</li>
+ *  <li>{@link #stepInto()} additionally patches the calls made on the stopped line, and once one is reached patches the start of the
+ *  called function</li>
+ * </ul>
+ *
+ * <p>
+ * A patched {@link Bytecode} is no longer compiled by the {@link leola.vm.jit.JitCompiler}, and any compiled code is discarded.
+ *
+ * @author Tony
+ *
+ */
+public class Debugger {
+
+    /**
+     * An instruction patched with a <code>BREAKPOINT</code>
+     *
+     * @author Tony
+     *
+     */
+    private static class Patch {
+        final Bytecode code;
+        final int pc;
+        final int original;
+
+        /* a breakpoint set by the user */
+        boolean breakpoint;
+
+        /* a temporary breakpoint of a step, which stops if the stopped
+         * function is at or below this depth */
+        int stepDepth;
+
+        /* a call made on the line being stepped into */
+        boolean probe;
+
+        Patch(Bytecode code, int pc) {
+            this.code = code;
+            this.pc = pc;
+            this.original = code.instr[pc];
+            this.stepDepth = -1;
+        }
+
+        boolean isStep() {
+            return this.stepDepth > -1 || this.probe;
+        }
+
+        boolean isUsed() {
+            return this.breakpoint || isStep();
+        }
+    }
+
+    /**
+     * Where execution is currently stopped
+     *
+     * @author Tony
+     *
+     */
+    private static class Stop {
+        final DebugEvent event;
+        final int depth;
+        final Bytecode callerCode;
+        final int callerPc;
+
+        Stop(DebugEvent event, int depth, Bytecode callerCode, int callerPc) {
+            this.event = event;
+            this.depth = depth;
+            this.callerCode = callerCode;
+            this.callerPc = callerPc;
+        }
+    }
+
+    private final BreakpointListener listener;
+    private final Map<Bytecode, Patch[]> patches;
+    private final List<Patch> steps;
+
+    private Stop stop;
+
+    /**
+     * @param listener the listener which is notified once execution stops
+     */
+    public Debugger(BreakpointListener listener) {
+        this.listener = listener;
+        this.patches = new IdentityHashMap<Bytecode, Patch[]>();
+        this.steps = new ArrayList<Patch>();
+    }
+
+    /**
+     * Sets a breakpoint on the supplied line.  The breakpoint is set at the start of the line in the supplied
+     * {@link Bytecode} and in any of its inner {@link Bytecode} (e.g., function bodies) containing the line.
+     *
+     * @param code the {@link Bytecode}
+     * @param lineNumber the line number in the Leola script
+     * @return true if the line was found
+     */
+    public synchronized boolean addBreakpoint(Bytecode code, int lineNumber) {
+        boolean found = false;
+
+        LineNumberTable lines = code.lineNumbers;
+        if(lines != null) {
+            for(int entry = 0; entry < lines.getSize(); entry++) {
+                if(lines.getLine(entry) == lineNumber && lines.getStartPc(entry) < code.len) {
+                    patch(code, lines.getStartPc(entry)).breakpoint = true;
+                    found = true;
+                    break;
+                }
+            }
+        }
+
+        for(int i = 0; i < code.numInners; i++) {
+            found |= addBreakpoint(code.inner[i], lineNumber);
+        }
+
+        return found;
+    }
+
+    /**
+     * Removes the breakpoint on the supplied line
+     *
+     * @param code the {@link Bytecode}
+     * @param lineNumber the line number in the Leola script
+     * @return true if a breakpoint was removed
+     */
+    public synchronized boolean removeBreakpoint(Bytecode code, int lineNumber) {
+        boolean removed = false;
+
+        Patch[] codePatches = this.patches.get(code);
+        if(codePatches != null) {
+            for(Patch patch : codePatches) {
+                if(patch != null && patch.breakpoint && code.getLineNumber(patch.pc) == lineNumber) {
+                    patch.breakpoint = false;
+                    release(patch);
+                    removed = true;
+                }
+            }
+        }
+
+        for(int i = 0; i < code.numInners; i++) {
+            removed |= removeBreakpoint(code.inner[i], lineNumber);
+        }
+
+        return removed;
+    }
+
+    /**
+     * Removes all of the breakpoints, including the temporary breakpoints of a step, restoring
+     * all of the patched instructions
+     */
+    public synchronized void removeAllBreakpoints() {
+        for(Patch[] codePatches : this.patches.values()) {
+            for(Patch patch : codePatches) {
+                if(patch != null) {
+                    patch.code.instr[patch.pc] = patch.original;
+                }
+            }
+        }
+
+        this.patches.clear();
+        this.steps.clear();
+    }
+
+    /**
+     * @return true if any instructions are patched
+     */
+    public synchronized boolean hasBreakpoints() {
+        return !this.patches.isEmpty();
+    }
+
+    /**
+     * Stops at the next line of the stopped function, or once it returns to its caller.  This may only be
+     * invoked while stopped, i.e., from {@link BreakpointListener#onBreakpoint(DebugEvent, Debugger)}.
+     */
+    public synchronized void stepOver() {
+        Stop stop = stopped();
+        Bytecode code = stop.event.getBytecode();
+
+        LineNumberTable lines = code.lineNumbers;
+        if(lines != null) {
+            int current = lines.getEntry(stop.event.getProgramCounter());
+            for(int entry = 0; entry < lines.getSize(); entry++) {
+                if(entry != current) {
+                    step(code, lines.getStartPc(entry), stop.depth);
+                }
+            }
+        }
+
+        if(stop.callerCode != null) {
+            step(stop.callerCode, stop.callerPc, stop.depth - 1);
+        }
+    }
+
+    /**
+     * Stops at the start of any function called on the stopped line, otherwise behaves as {@link #stepOver()}.  This may only be
+     * invoked while stopped, i.e., from {@link BreakpointListener#onBreakpoint(DebugEvent, Debugger)}.
+     */
+    public synchronized void stepInto() {
+        stepOver();
+
+        Stop stop = this.stop;
+        Bytecode code = stop.event.getBytecode();
+        int pc = stop.event.getProgramCounter();
+
+        int end = code.len;
+        LineNumberTable lines = code.lineNumbers;
+        if(lines != null) {
+            int current = lines.getEntry(pc);
+            if(current > -1) {
+                pc = lines.getStartPc(current);
+            }
+            if(current + 1 < lines.getSize()) {
+                end = lines.getStartPc(current + 1);
+            }
+        }
+
+        for(; pc < end; pc++) {
+            if(OPCODE(original(code, pc)) == INVOKE) {
+                Patch patch = patch(code, pc);
+                patch.probe = true;
+                this.steps.add(patch);
+            }
+        }
+    }
+
+    /**
+     * Invoked by the VM once it executes a <code>BREAKPOINT</code> instruction.
+     *
+     * @param event the state of the function
+     * @param depth the call depth of the function
+     * @param callerCode the {@link Bytecode} of the calling function, or null if not known
+     * @param callerPc the program counter the calling function resumes at
+     * @return the displaced instruction, which the VM executes in place of the <code>BREAKPOINT</code>
+     */
+    public synchronized int onBreakpoint(DebugEvent event, int depth, Bytecode callerCode, int callerPc) {
+        Bytecode code = event.getBytecode();
+        int pc = event.getProgramCounter();
+
+        Patch patch = find(code, pc);
+        if(patch == null) {
+            /* removed by another thread */
+            return code.instr[pc];
+        }
+
+        if(patch.breakpoint || (patch.stepDepth > -1 && depth <= patch.stepDepth)) {
+            clearSteps();
+
+            this.stop = new Stop(event, depth, callerCode, callerPc);
+            try {
+                this.listener.onBreakpoint(event, this);
+            }
+            finally {
+                this.stop = null;
+            }
+        }
+
+        /* checked after stopping, as stepping into may probe the call about to be made */
+        if(patch.probe) {
+            probe(event, patch.original);
+        }
+
+        return patch.original;
+    }
+
+    /**
+     * A call made on the line being stepped into is about to be made, stop at the start of
+     * the called function
+     *
+     * @param event
+     * @param instruction the INVOKE instruction
+     */
+    private void probe(DebugEvent event, int instruction) {
+        LeoObject[] stack = event.getStack();
+        LeoObject fun = stack[(event.getStackPointer() - 1) - ARG1(instruction)];
+        if(fun.getClass() == LeoFunction.class) {
+            Bytecode code = ((LeoFunction)fun).getBytecode();
+
+            int pc = 0;
+            if(code.lineNumbers != null && code.lineNumbers.getSize() > 0) {
+                pc = code.lineNumbers.getStartPc(0);
+            }
+
+            step(code, pc, Integer.MAX_VALUE);
+        }
+    }
+
+    private Stop stopped() {
+        if(this.stop == null) {
+            throw new IllegalStateException("Execution is not stopped at a breakpoint");
+        }
+        return this.stop;
+    }
+
+    private void step(Bytecode code, int pc, int depth) {
+        if(pc < 0 || pc >= code.len) {
+            return;
+        }
+        
+        Patch patch = patch(code, pc);
+        patch.stepDepth = Math.max(patch.stepDepth, depth);
+        this.steps.add(patch);
+    }
+
+    private void clearSteps() {
+        for(Patch patch : this.steps) {
+            patch.stepDepth = -1;
+            patch.probe = false;
+            release(patch);
+        }
+        this.steps.clear();
+    }
+
+    private Patch find(Bytecode code, int pc) {
+        Patch[] codePatches = this.patches.get(code);
+        return (codePatches != null) ? codePatches[pc] : null;
+    }
+
+    /**
+     * @return the instruction at the supplied program counter, as it was before being patched
+     */
+    private int original(Bytecode code, int pc) {
+        Patch patch = find(code, pc);
+        return (patch != null) ? patch.original : code.instr[pc];
+    }
+
+    /**
+     * Patches the instruction with a <code>BREAKPOINT</code>, if it is not already
+     */
+    private Patch patch(Bytecode code, int pc) {
+        Patch[] codePatches = this.patches.get(code);
+        if(codePatches == null) {
+            codePatches = new Patch[code.len];
+            this.patches.put(code, codePatches);
+
+            /* compiled code does not stop at breakpoints */
+            code.setNotCompilable();
+            code.setCompiled(null);
+        }
+
+        Patch patch = codePatches[pc];
+        if(patch == null) {
+            patch = codePatches[pc] = new Patch(code, pc);
+            code.instr[pc] = BREAKPOINT;
+        }
+
+        return patch;
+    }
+
+    /**
+     * Restores the displaced instruction, if the patch is no longer used
+     */
+    private void release(Patch patch) {
+        if(patch.isUsed()) {
+            return;
+        }
+
+        Patch[] codePatches = this.patches.get(patch.code);
+        if(codePatches == null || codePatches[patch.pc] != patch) {
+            return;
+        }
+
+        patch.code.instr[patch.pc] = patch.original;
+        codePatches[patch.pc] = null;
+
+        for(Patch other : codePatches) {
+            if(other != null) {
+                return;
+            }
+        }
+        this.patches.remove(patch.code);
+    }
+}
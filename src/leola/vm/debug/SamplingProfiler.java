@@ -0,0 +1,333 @@
+/*
+    Leola Programming Language
+    Author: Tony Sparks
+    See license.txt
+*/
+package leola.vm.debug;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import leola.vm.Leola;
+import leola.vm.VM;
+import leola.vm.compiler.Bytecode;
+
+/**
+ * Periodically samples the call chain of each {@link VM} of a {@link Leola} runtime (see {@link VM#getFrames(Bytecode[], int[])}),
+ * from a separate thread, so that the executing code is not slowed down by the profiler.
+ *
+ * <p>
+ * A frame is named after the source file and the first line of its function, or with {@link #setLineGranularity(boolean)} after
+ * the line being executed in it.  The samples are reported as collapsed stacks (one line per distinct call chain, outermost frame
+ * first, separated by ';' and followed by the number of samples), which is the input of the common flame graph tools, and as a table of
+ * the frames with the most self (sampled as the innermost frame) and total (sampled anywhere in the call chain) samples.
+ *
+ * <p>
+ * Functions executed by the {@link leola.vm.jit.JitCompiler} are attributed to the interpreted function calling them.
+ *
+ * @author Tony
+ *
+ */
+public class SamplingProfiler {
+
+    /**
+     * The maximum number of frames sampled, the innermost
+     * frames are kept
+     */
+    private static final int MAX_DEPTH = 512;
+
+    private final Leola runtime;
+    private final long intervalMillis;
+    private volatile boolean lineGranularity;
+
+    private final Bytecode[] codes;
+    private final int[] pcs;
+
+    private final Map<String, long[]> stacks;
+    private final Map<String, long[]> selfSamples;
+    private final Map<String, long[]> totalSamples;
+    private long samples;
+
+    private Thread sampler;
+
+    /**
+     * @param runtime the runtime to sample
+     * @param intervalMillis the time between samples, in milliseconds
+     */
+    public SamplingProfiler(Leola runtime, long intervalMillis) {
+        if(intervalMillis < 1) {
+            throw new IllegalArgumentException("The sampling interval must be at least 1 millisecond: " + intervalMillis);
+        }
+
+        this.runtime = runtime;
+        this.intervalMillis = intervalMillis;
+
+        this.codes = new Bytecode[MAX_DEPTH];
+        this.pcs = new int[MAX_DEPTH];
+
+        this.stacks = new HashMap<String, long[]>();
+        this.selfSamples = new HashMap<String, long[]>();
+        this.totalSamples = new HashMap<String, long[]>();
+    }
+
+    /**
+     * Names the frames after the line being executed in them, rather than after their function
+     *
+     * @param lineGranularity
+     */
+    public void setLineGranularity(boolean lineGranularity) {
+        this.lineGranularity = lineGranularity;
+    }
+
+    /**
+     * @return the time between samples, in milliseconds
+     */
+    public long getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    /**
+     * Starts sampling in a daemon thread
+     */
+    public synchronized void start() {
+        if(this.sampler != null) {
+            return;
+        }
+
+        this.sampler = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    while(!Thread.currentThread().isInterrupted()) {
+                        sample();
+                        Thread.sleep(intervalMillis);
+                    }
+                }
+                catch(InterruptedException e) {
+                    /* stopped */
+                }
+            }
+        }, "leola-sampling-profiler");
+
+        this.sampler.setDaemon(true);
+        this.sampler.start();
+    }
+
+    /**
+     * Stops sampling, waiting for the sampling thread to finish
+     */
+    public void stop() {
+        Thread sampler;
+        synchronized (this) {
+            sampler = this.sampler;
+            this.sampler = null;
+        }
+
+        if(sampler != null) {
+            sampler.interrupt();
+            try {
+                sampler.join();
+            }
+            catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * @return true if sampling
+     */
+    public synchronized boolean isRunning() {
+        return this.sampler != null;
+    }
+
+    /**
+     * Samples the call chain of each {@link VM} currently executing
+     */
+    public synchronized void sample() {
+        for(VM vm : this.runtime.getVMs()) {
+            int depth = vm.getFrames(this.codes, this.pcs);
+            if(depth > 0) {
+                record(depth);
+            }
+        }
+    }
+
+    private void record(int depth) {
+        StringBuilder stack = new StringBuilder();
+        Set<String> frames = new HashSet<String>();
+
+        String frame = null;
+        for(int i = 0; i < depth; i++) {
+            frame = frameName(this.codes[i], this.pcs[i]);
+            this.codes[i] = null;
+
+            if(i > 0) {
+                stack.append(';');
+            }
+            stack.append(frame);
+
+            if(frames.add(frame)) {
+                increment(this.totalSamples, frame);
+            }
+        }
+
+        increment(this.selfSamples, frame);
+        increment(this.stacks, stack.toString());
+        this.samples++;
+    }
+
+    private String frameName(Bytecode code, int pc) {
+        String file = code.getSourceFileName();
+        if(file == null || file.isEmpty()) {
+            file = "<script>";
+        }
+
+        int line = -1;
+        if(this.lineGranularity) {
+            /* the program counter is just past the call or jump being made */
+            line = code.getLineNumber(Math.max(pc - 1, 0));
+        }
+        else if(code.lineNumbers != null && code.lineNumbers.getSize() > 0) {
+            line = code.lineNumbers.getLine(0);
+        }
+
+        return file.replace(';', '_') + ":" + line;
+    }
+
+    private static void increment(Map<String, long[]> samples, String key) {
+        long[] count = samples.get(key);
+        if(count == null) {
+            samples.put(key, count = new long[1]);
+        }
+        count[0]++;
+    }
+
+    /**
+     * @return the number of call chains sampled
+     */
+    public synchronized long getSampleCount() {
+        return this.samples;
+    }
+
+    /**
+     * Discards the samples taken
+     */
+    public synchronized void reset() {
+        this.stacks.clear();
+        this.selfSamples.clear();
+        this.totalSamples.clear();
+        this.samples = 0;
+    }
+
+    /**
+     * Writes out the samples as collapsed stacks, for generating a flame graph
+     *
+     * @param out
+     * @throws IOException
+     */
+    public synchronized void writeCollapsedStacks(Writer out) throws IOException {
+        for(Map.Entry<String, long[]> stack : sorted(this.stacks)) {
+            out.write(stack.getKey());
+            out.write(' ');
+            out.write(Long.toString(stack.getValue()[0]));
+            out.write('\n');
+        }
+        out.flush();
+    }
+
+    /**
+     * @return the samples as collapsed stacks
+     * @see #writeCollapsedStacks(Writer)
+     */
+    public String getCollapsedStacks() {
+        StringWriter out = new StringWriter();
+        try {
+            writeCollapsedStacks(out);
+        }
+        catch(IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Writes out the frames with the most self samples, along with their total samples
+     *
+     * @param out
+     * @param n the maximum number of frames to write out
+     * @throws IOException
+     */
+    public synchronized void writeReport(Writer out, int n) throws IOException {
+        final String format = "%10s %7s %10s %7s  %s\n";
+        out.write(String.format(format, "Self", "Self%", "Total", "Total%", "Frame"));
+
+        List<Map.Entry<String, long[]>> frames = sorted(this.selfSamples);
+        for(Map.Entry<String, long[]> frame : sorted(this.totalSamples)) {
+            if(!this.selfSamples.containsKey(frame.getKey())) {
+                frames.add(frame);
+            }
+        }
+
+        for(int i = 0; i < frames.size() && i < n; i++) {
+            String name = frames.get(i).getKey();
+            long self = count(this.selfSamples, name);
+            long total = count(this.totalSamples, name);
+
+            out.write(String.format(format, self, percent(self), total, percent(total), name));
+        }
+        out.flush();
+    }
+
+    /**
+     * @param n the maximum number of frames
+     * @return the report of the frames with the most samples
+     * @see #writeReport(Writer, int)
+     */
+    public String getReport(int n) {
+        StringWriter out = new StringWriter();
+        try {
+            writeReport(out, n);
+        }
+        catch(IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return out.toString();
+    }
+
+    private String percent(long count) {
+        double percent = (this.samples > 0) ? (count * 100.0) / this.samples : 0.0;
+        return String.format("%.1f%%", percent);
+    }
+
+    private static long count(Map<String, long[]> samples, String key) {
+        long[] count = samples.get(key);
+        return (count != null) ? count[0] : 0;
+    }
+
+    /**
+     * @return the entries, the most samples first
+     */
+    private static List<Map.Entry<String, long[]>> sorted(Map<String, long[]> samples) {
+        List<Map.Entry<String, long[]>> entries = new ArrayList<Map.Entry<String, long[]>>(samples.entrySet());
+        Collections.sort(entries, new Comparator<Map.Entry<String, long[]>>() {
+
+            @Override
+            public int compare(Map.Entry<String, long[]> a, Map.Entry<String, long[]> b) {
+                int result = Long.compare(b.getValue()[0], a.getValue()[0]);
+                return (result != 0) ? result : a.getKey().compareTo(b.getKey());
+            }
+        });
+        return entries;
+    }
+}
@@ -14,10 +14,14 @@ import java.util.Set;
 import leola.vm.types.LeoObject;
 
 /**
+ * Prints out the state of the executing function to standard out.  As a {@link DebugListener} this is notified of
+ * each line (in debug mode), as a {@link BreakpointListener} of each breakpoint reached; once stopped at a breakpoint, 
+ * entering <code>s</code> steps into, <code>n</code> steps over and anything else continues.
+ * 
  * @author Tony
  *
  */
-public class SimpleStdOutDebugListener implements DebugListener {
+public class SimpleStdOutDebugListener implements DebugListener, BreakpointListener {
 
     private boolean echo;
     private Set<Integer> breakpoints;
@@ -58,6 +62,25 @@ public class SimpleStdOutDebugListener implements DebugListener {
         }
     }
 
+    /* (non-Javadoc)
+     * @see leola.vm.debug.BreakpointListener#onBreakpoint(leola.vm.debug.DebugEvent, leola.vm.debug.Debugger)
+     */
+    @Override
+    public void onBreakpoint(DebugEvent event, Debugger debugger) {
+        out.println("Breakpoint: " + event.getLineNumber());
+        debugPrint(event.getStack(), event.getBase(), event.getStackPointer(), event.getTopStack());
+        
+        if(this.input.hasNext()) {
+            String command = this.input.next();
+            if("s".equals(command)) {
+                debugger.stepInto();
+            }
+            else if("n".equals(command)) {
+                debugger.stepOver();
+            }
+        }
+    }
+
     /**
      * Print out each line to standard out
      * 
@@ -11,6 +11,11 @@ import leola.vm.types.LeoObject;
 
 /**
  * An evaluation exception, means that a bit of code was not able to be executed as intended.
+ * 
+ * <p>
+ * The errors raised by Leola code (e.g., a <code>throw</code> statement or a missing attribute) are created
+ * without a Java stack trace (see {@link #LeolaRuntimeException(LeoObject, boolean)}): filling it in is by far
+ * the most expensive part of raising an error, and the Leola stack trace is kept by the {@link LeoError} itself.
  *
  * @author Tony
  *
@@ -44,6 +49,24 @@ public class LeolaRuntimeException extends RuntimeException {
         
         this.leoError = error.as();
     }
+    
+    /**
+     * @param error
+     * @param writableStackTrace if false, the Java stack trace is not filled in, which makes
+     * creating this exception considerably cheaper
+     */
+    public LeolaRuntimeException(LeoObject error, boolean writableStackTrace) {
+        super(null, null, true, writableStackTrace);
+        
+        if(error==null) {
+            error = new LeoError();
+        }
+        else if (!error.isError()) {
+            error = new LeoError(error);
+        }
+        
+        this.leoError = error.as();
+    }
 
     /**
      * @param message
@@ -52,6 +75,16 @@ public class LeolaRuntimeException extends RuntimeException {
         super(message);
         this.leoError = new LeoError(message);
     }
+    
+    /**
+     * @param message
+     * @param writableStackTrace if false, the Java stack trace is not filled in, which makes
+     * creating this exception considerably cheaper
+     */
+    public LeolaRuntimeException(String message, boolean writableStackTrace) {
+        super(message, null, true, writableStackTrace);
+        this.leoError = new LeoError(message);
+    }
 
     /**
      * @param cause
@@ -61,6 +94,16 @@ public class LeolaRuntimeException extends RuntimeException {
         this.leoError = new LeoError(cause.getMessage());
     }
 
+    /**
+     * @param cause
+     * @param writableStackTrace if false, the Java stack trace is not filled in; the stack trace
+     * of the cause is kept
+     */
+    public LeolaRuntimeException(Throwable cause, boolean writableStackTrace) {
+        super(null, cause, true, writableStackTrace);
+        this.leoError = new LeoError(cause.getMessage());
+    }
+
     /**
      * @param message
      * @param cause
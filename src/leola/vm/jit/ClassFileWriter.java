@@ -0,0 +1,632 @@
+/*
+    Leola Programming Language
+    Author: Tony Sparks
+    See license.txt
+*/
+package leola.vm.jit;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A minimal writer of Java class files, just enough to define a class with a default constructor and
+ * methods made up of a single code attribute (and its exception table).
+ *
+ * <p>
+ * Classes are written in the Java 5 (49.0) class file format, which does not require <code>StackMapTable</code>
+ * attributes; the JVM infers the types of the locals and operand stack while verifying the class.
+ *
+ * @author Tony
+ *
+ */
+public class ClassFileWriter {
+
+    /* class file version */
+    private static final int MAJOR_VERSION = 49;
+
+    /* access flags */
+    public static final int ACC_PUBLIC = 0x0001;
+    public static final int ACC_FINAL  = 0x0010;
+    public static final int ACC_SUPER  = 0x0020;
+
+    /* constant pool tags */
+    private static final int CONSTANT_Utf8        = 1;
+    private static final int CONSTANT_Integer     = 3;
+    private static final int CONSTANT_Double      = 6;
+    private static final int CONSTANT_Class       = 7;
+    private static final int CONSTANT_Fieldref    = 9;
+    private static final int CONSTANT_Methodref   = 10;
+    private static final int CONSTANT_NameAndType = 12;
+
+    /* JVM opcodes */
+    public static final int ACONST_NULL = 0x01;
+    public static final int ICONST_0    = 0x03;
+    public static final int DCONST_0    = 0x0e;
+    public static final int DCONST_1    = 0x0f;
+    public static final int BIPUSH      = 0x10;
+    public static final int SIPUSH      = 0x11;
+    public static final int LDC         = 0x12;
+    public static final int LDC_W       = 0x13;
+    public static final int LDC2_W      = 0x14;
+    public static final int ILOAD       = 0x15;
+    public static final int DLOAD       = 0x18;
+    public static final int ALOAD       = 0x19;
+    public static final int AALOAD      = 0x32;
+    public static final int ISTORE      = 0x36;
+    public static final int DSTORE      = 0x39;
+    public static final int ASTORE      = 0x3a;
+    public static final int AASTORE     = 0x53;
+    public static final int POP         = 0x57;
+    public static final int POP2        = 0x58;
+    public static final int DUP         = 0x59;
+    public static final int DUP_X1      = 0x5a;
+    public static final int DUP_X2      = 0x5b;
+    public static final int DUP2        = 0x5c;
+    public static final int DUP2_X1     = 0x5d;
+    public static final int DUP2_X2     = 0x5e;
+    public static final int SWAP        = 0x5f;
+    public static final int IADD        = 0x60;
+    public static final int DADD        = 0x63;
+    public static final int ISUB        = 0x64;
+    public static final int DSUB        = 0x67;
+    public static final int IMUL        = 0x68;
+    public static final int DMUL        = 0x6b;
+    public static final int IDIV        = 0x6c;
+    public static final int DDIV        = 0x6f;
+    public static final int IREM        = 0x70;
+    public static final int DREM        = 0x73;
+    public static final int INEG        = 0x74;
+    public static final int DNEG        = 0x77;
+    public static final int IXOR        = 0x82;
+    public static final int I2D         = 0x87;
+    public static final int DCMPL       = 0x97;
+    public static final int DCMPG       = 0x98;
+    public static final int IFEQ        = 0x99;
+    public static final int IFNE        = 0x9a;
+    public static final int IFLT        = 0x9b;
+    public static final int IFGE        = 0x9c;
+    public static final int IFGT        = 0x9d;
+    public static final int IFLE        = 0x9e;
+    public static final int IF_ICMPEQ   = 0x9f;
+    public static final int IF_ICMPNE   = 0xa0;
+    public static final int IF_ICMPLT   = 0xa1;
+    public static final int IF_ICMPGE   = 0xa2;
+    public static final int IF_ICMPGT   = 0xa3;
+    public static final int IF_ICMPLE   = 0xa4;
+    public static final int GOTO        = 0xa7;
+    public static final int TABLESWITCH = 0xaa;
+    public static final int LOOKUPSWITCH= 0xab;
+    public static final int ARETURN     = 0xb0;
+    public static final int RETURN      = 0xb1;
+    public static final int GETSTATIC   = 0xb2;
+    public static final int GETFIELD    = 0xb4;
+    public static final int INVOKEVIRTUAL = 0xb6;
+    public static final int INVOKESPECIAL = 0xb7;
+    public static final int INVOKESTATIC  = 0xb8;
+    public static final int ANEWARRAY   = 0xbd;
+    public static final int ATHROW      = 0xbf;
+    public static final int INSTANCEOF  = 0xc1;
+    public static final int WIDE        = 0xc4;
+
+    /**
+     * The maximum size of a method's code, which allows for 16 bit branch offsets
+     */
+    public static final int MAX_CODE_LENGTH = Short.MAX_VALUE;
+
+    /**
+     * A position within the {@link Code} of a method, which may be branched
+     * to before it is placed
+     *
+     * @author Tony
+     *
+     */
+    public static class Label {
+        private int position = -1;
+
+        /* the branch instructions and their offset
+         * locations waiting on this label */
+        private List<int[]> fixups = new ArrayList<int[]>();
+    }
+
+    /**
+     * The instructions of a method
+     *
+     * @author Tony
+     *
+     */
+    public class Code {
+        private ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        /* the labels branched to before they were placed */
+        private List<Label> forwardLabels = new ArrayList<Label>();
+
+        /* the exception table, the start and end of each range of code along with its handler */
+        private List<int[]> handlerRanges = new ArrayList<int[]>();
+        private List<Label> handlers = new ArrayList<Label>();
+
+        private void u1(int value) {
+            bytes.write(value);
+        }
+
+        private void u2(int value) {
+            bytes.write(value >>> 8);
+            bytes.write(value);
+        }
+
+        private void u4(int value) {
+            u2(value >>> 16);
+            u2(value);
+        }
+
+        /**
+         * @return the current size of the code
+         */
+        public int size() {
+            return bytes.size();
+        }
+
+        /**
+         * Emits an instruction without operands
+         *
+         * @param opcode
+         */
+        public void op(int opcode) {
+            u1(opcode);
+        }
+
+        /**
+         * Pushes an integer constant
+         *
+         * @param value
+         */
+        public void iconst(int value) {
+            if(value >= -1 && value <= 5) {
+                u1(ICONST_0 + value);
+            }
+            else if(value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                u1(BIPUSH);
+                u1(value);
+            }
+            else if(value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                u1(SIPUSH);
+                u2(value);
+            }
+            else {
+                int index = integerConstant(value);
+                if(index < 256) {
+                    u1(LDC);
+                    u1(index);
+                }
+                else {
+                    u1(LDC_W);
+                    u2(index);
+                }
+            }
+        }
+
+        /**
+         * Pushes a double constant
+         *
+         * @param value
+         */
+        public void dconst(double value) {
+            long bits = Double.doubleToRawLongBits(value);
+            if(bits == 0L) {
+                u1(DCONST_0);
+            }
+            else if(value == 1.0) {
+                u1(DCONST_1);
+            }
+            else {
+                u1(LDC2_W);
+                u2(doubleConstant(value));
+            }
+        }
+
+        /**
+         * Emits a load or store of a local variable
+         *
+         * @param opcode
+         * @param index
+         */
+        public void local(int opcode, int index) {
+            if(index > 255) {
+                u1(WIDE);
+                u1(opcode);
+                u2(index);
+            }
+            else {
+                u1(opcode);
+                u1(index);
+            }
+        }
+
+        public void aload(int index) {
+            local(ALOAD, index);
+        }
+
+        public void astore(int index) {
+            local(ASTORE, index);
+        }
+
+        public void iload(int index) {
+            local(ILOAD, index);
+        }
+
+        public void istore(int index) {
+            local(ISTORE, index);
+        }
+
+        public void dload(int index) {
+            local(DLOAD, index);
+        }
+
+        public void dstore(int index) {
+            local(DSTORE, index);
+        }
+
+        /**
+         * Emits a field access
+         *
+         * @param opcode <code>GETSTATIC</code> or <code>GETFIELD</code>
+         * @param owner
+         * @param name
+         * @param descriptor
+         */
+        public void field(int opcode, String owner, String name, String descriptor) {
+            u1(opcode);
+            u2(fieldRef(owner, name, descriptor));
+        }
+
+        /**
+         * Emits a method invocation
+         *
+         * @param opcode <code>INVOKESTATIC</code>, <code>INVOKEVIRTUAL</code> or <code>INVOKESPECIAL</code>
+         * @param owner
+         * @param name
+         * @param descriptor
+         */
+        public void invoke(int opcode, String owner, String name, String descriptor) {
+            u1(opcode);
+            u2(methodRef(owner, name, descriptor));
+        }
+
+        /**
+         * Emits an instruction taking a class operand
+         *
+         * @param opcode
+         * @param className
+         */
+        public void type(int opcode, String className) {
+            u1(opcode);
+            u2(classRef(className));
+        }
+
+        /**
+         * Emits a branch instruction
+         *
+         * @param opcode
+         * @param label
+         */
+        public void jump(int opcode, Label label) {
+            int instruction = size();
+            u1(opcode);
+            offset(instruction, label, false);
+        }
+
+        /**
+         * Emits a <code>TABLESWITCH</code> for the keys from <code>low</code> to <code>low + labels.length - 1</code>
+         *
+         * @param low
+         * @param defaultLabel
+         * @param labels
+         */
+        public void tableswitch(int low, Label defaultLabel, Label[] labels) {
+            int instruction = size();
+            u1(TABLESWITCH);
+            while(size() % 4 != 0) {
+                u1(0);
+            }
+
+            offset(instruction, defaultLabel, true);
+            u4(low);
+            u4(low + labels.length - 1);
+            for(Label label : labels) {
+                offset(instruction, label, true);
+            }
+        }
+
+        /**
+         * Emits a <code>LOOKUPSWITCH</code>
+         *
+         * @param defaultLabel
+         * @param keys the keys, in ascending order
+         * @param labels the label of each key
+         */
+        public void lookupswitch(Label defaultLabel, int[] keys, Label[] labels) {
+            int instruction = size();
+            u1(LOOKUPSWITCH);
+            while(size() % 4 != 0) {
+                u1(0);
+            }
+
+            offset(instruction, defaultLabel, true);
+            u4(keys.length);
+            for(int i = 0; i < keys.length; i++) {
+                u4(keys[i]);
+                offset(instruction, labels[i], true);
+            }
+        }
+
+        private void offset(int instruction, Label label, boolean isWide) {
+            if(label.position > -1) {
+                int offset = label.position - instruction;
+                if(isWide) u4(offset);
+                else u2(offset);
+            }
+            else {
+                if(label.fixups.isEmpty()) {
+                    this.forwardLabels.add(label);
+                }
+                label.fixups.add(new int[] { instruction, size(), isWide ? 1 : 0 });
+                if(isWide) u4(0);
+                else u2(0);
+            }
+        }
+
+        /**
+         * Places the label at the current position
+         *
+         * @param label
+         */
+        public void mark(Label label) {
+            label.position = size();
+        }
+
+        /**
+         * Adds an entry to the exception table, any exception thrown by the code from <code>start</code>
+         * (inclusive) to <code>end</code> (exclusive) is caught by the handler
+         *
+         * @param start
+         * @param end
+         * @param handler the label of the handler, which may be placed later on
+         */
+        public void handler(int start, int end, Label handler) {
+            this.handlerRanges.add(new int[] { start, end });
+            this.handlers.add(handler);
+        }
+
+        /**
+         * @return the code with all of the branch offsets resolved
+         */
+        private byte[] toByteArray() {
+            byte[] code = bytes.toByteArray();
+            for(Label label : this.forwardLabels) {
+                for(int[] fixup : label.fixups) {
+                    int offset = label.position - fixup[0];
+                    int pos = fixup[1];
+                    if(fixup[2] == 1) {
+                        code[pos++] = (byte)(offset >>> 24);
+                        code[pos++] = (byte)(offset >>> 16);
+                    }
+                    code[pos++] = (byte)(offset >>> 8);
+                    code[pos] = (byte)offset;
+                }
+            }
+            return code;
+        }
+    }
+
+    private final String className;
+    private final String superName;
+
+    private ByteArrayOutputStream constantPool;
+    private DataOutputStream constants;
+    private Map<String, Integer> constantIndexes;
+    private int numberOfConstants;
+
+    private ByteArrayOutputStream methods;
+    private int numberOfMethods;
+
+    /**
+     * @param className the internal name of the class (e.g., <code>leola/vm/jit/Compiled</code>)
+     * @param superName the internal name of the super class
+     */
+    public ClassFileWriter(String className, String superName) {
+        this.className = className;
+        this.superName = superName;
+
+        this.constantPool = new ByteArrayOutputStream();
+        this.constants = new DataOutputStream(this.constantPool);
+        this.constantIndexes = new HashMap<String, Integer>();
+        this.numberOfConstants = 1;
+
+        this.methods = new ByteArrayOutputStream();
+    }
+
+    /**
+     * @return a new {@link Code} to emit the instructions of a method into
+     */
+    public Code newCode() {
+        return new Code();
+    }
+
+    private int constant(String key, int tag, Object a, Object b) {
+        Integer index = this.constantIndexes.get(key);
+        if(index != null) {
+            return index;
+        }
+
+        try {
+            switch(tag) {
+                case CONSTANT_Utf8: {
+                    this.constants.writeByte(tag);
+                    this.constants.writeUTF((String)a);
+                    break;
+                }
+                case CONSTANT_Integer: {
+                    this.constants.writeByte(tag);
+                    this.constants.writeInt((Integer)a);
+                    break;
+                }
+                case CONSTANT_Double: {
+                    this.constants.writeByte(tag);
+                    this.constants.writeDouble((Double)a);
+                    break;
+                }
+                case CONSTANT_Class: {
+                    int name = utf8((String)a);
+                    this.constants.writeByte(tag);
+                    this.constants.writeShort(name);
+                    break;
+                }
+                default: {
+                    this.constants.writeByte(tag);
+                    this.constants.writeShort((Integer)a);
+                    this.constants.writeShort((Integer)b);
+                }
+            }
+        }
+        catch(IOException e) {
+            throw new IllegalStateException(e);
+        }
+
+        /* a double takes up two entries of the constant pool */
+        index = this.numberOfConstants;
+        this.numberOfConstants += (tag == CONSTANT_Double) ? 2 : 1;
+        this.constantIndexes.put(key, index);
+        return index;
+    }
+
+    private int utf8(String value) {
+        return constant("U" + value, CONSTANT_Utf8, value, null);
+    }
+
+    private int integerConstant(int value) {
+        return constant("I" + value, CONSTANT_Integer, value, null);
+    }
+
+    private int doubleConstant(double value) {
+        return constant("D" + Double.doubleToRawLongBits(value), CONSTANT_Double, value, null);
+    }
+
+    private int classRef(String name) {
+        return constant("C" + name, CONSTANT_Class, name, null);
+    }
+
+    private int nameAndType(String name, String descriptor) {
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        return constant("N" + name + ":" + descriptor, CONSTANT_NameAndType, nameIndex, descriptorIndex);
+    }
+
+    private int fieldRef(String owner, String name, String descriptor) {
+        int ownerIndex = classRef(owner);
+        int nameAndTypeIndex = nameAndType(name, descriptor);
+        return constant("F" + owner + "." + name + ":" + descriptor, CONSTANT_Fieldref, ownerIndex, nameAndTypeIndex);
+    }
+
+    private int methodRef(String owner, String name, String descriptor) {
+        int ownerIndex = classRef(owner);
+        int nameAndTypeIndex = nameAndType(name, descriptor);
+        return constant("M" + owner + "." + name + ":" + descriptor, CONSTANT_Methodref, ownerIndex, nameAndTypeIndex);
+    }
+
+    /**
+     * Adds a public constructor which only invokes the super class's default constructor
+     */
+    public void addDefaultConstructor() {
+        Code code = newCode();
+        code.aload(0);
+        code.invoke(INVOKESPECIAL, this.superName, "<init>", "()V");
+        code.op(RETURN);
+
+        addMethod(ACC_PUBLIC, "<init>", "()V", code, 1, 1);
+    }
+
+    /**
+     * Adds a method
+     *
+     * @param access the access flags
+     * @param name
+     * @param descriptor
+     * @param code the instructions
+     * @param maxStack
+     * @param maxLocals
+     */
+    public void addMethod(int access, String name, String descriptor, Code code, int maxStack, int maxLocals) {
+        byte[] instructions = code.toByteArray();
+
+        try {
+            DataOutputStream out = new DataOutputStream(this.methods);
+            out.writeShort(access);
+            out.writeShort(utf8(name));
+            out.writeShort(utf8(descriptor));
+            out.writeShort(1); // attributes
+
+            int numberOfHandlers = code.handlers.size();
+
+            out.writeShort(utf8("Code"));
+            out.writeInt(12 + instructions.length + numberOfHandlers * 8);
+            out.writeShort(maxStack);
+            out.writeShort(maxLocals);
+            out.writeInt(instructions.length);
+            out.write(instructions);
+
+            out.writeShort(numberOfHandlers);
+            for(int i = 0; i < numberOfHandlers; i++) {
+                int[] range = code.handlerRanges.get(i);
+                out.writeShort(range[0]);
+                out.writeShort(range[1]);
+                out.writeShort(code.handlers.get(i).position);
+                out.writeShort(0); // catches any exception
+            }
+            out.writeShort(0); // attributes
+        }
+        catch(IOException e) {
+            throw new IllegalStateException(e);
+        }
+
+        this.numberOfMethods++;
+    }
+
+    /**
+     * @return the class file
+     */
+    public byte[] toByteArray() {
+        int thisIndex = classRef(this.className);
+        int superIndex = classRef(this.superName);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(MAJOR_VERSION);
+
+            out.writeShort(this.numberOfConstants);
+            out.write(this.constantPool.toByteArray());
+
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisIndex);
+            out.writeShort(superIndex);
+            out.writeShort(0); // interfaces
+            out.writeShort(0); // fields
+
+            out.writeShort(this.numberOfMethods);
+            out.write(this.methods.toByteArray());
+
+            out.writeShort(0); // attributes
+        }
+        catch(IOException e) {
+            throw new IllegalStateException(e);
+        }
+
+        return bytes.toByteArray();
+    }
+}
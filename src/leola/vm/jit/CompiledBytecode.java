@@ -0,0 +1,72 @@
+/*
+    Leola Programming Language
+    Author: Tony Sparks
+    See license.txt
+*/
+package leola.vm.jit;
+
+import java.util.Arrays;
+
+import leola.vm.compiler.Bytecode;
+import leola.vm.compiler.Outer;
+import leola.vm.types.LeoObject;
+import leola.vm.types.LeoScopedObject;
+
+/**
+ * A {@link Bytecode} which has been compiled into a Java class by the {@link JitCompiler}.
+ *
+ * <p>
+ * The local variables of the {@link Bytecode} are held in Java local variables, they are read off of the
+ * {@link leola.vm.VM} stack when the compiled code is entered, either at the start of the {@link Bytecode} or at
+ * the head of a loop (see {@link #isEntry(int)}) when an interpreted invocation switches over to the compiled code.
+ *
+ * <p>
+ * The compiled code holds no state, so it may be shared between {@link leola.vm.VM}s just as the {@link Bytecode} is.
+ *
+ * @author Tony
+ *
+ */
+public abstract class CompiledBytecode {
+
+    /**
+     * The program counters, in ascending order, at which the compiled code may be entered
+     * other than the start of the {@link Bytecode}
+     */
+    private int[] entries;
+
+    protected CompiledBytecode() {
+        this.entries = new int[0];
+    }
+
+    /**
+     * @param entries the program counters of the loop heads, in ascending order
+     */
+    void setEntries(int[] entries) {
+        this.entries = entries;
+    }
+
+    /**
+     * Determines if an interpreted invocation may continue in the compiled code at
+     * the supplied program counter
+     *
+     * @param pc the program counter of the head of a loop
+     * @return true if the compiled code may be entered at the program counter
+     */
+    public boolean isEntry(int pc) {
+        return Arrays.binarySearch(this.entries, pc) > -1;
+    }
+
+    /**
+     * Executes the compiled code.  Errors raised by the code are thrown, rather than returned as a
+     * {@link leola.vm.types.LeoError}.
+     *
+     * @param code the {@link Bytecode} which was compiled
+     * @param stack the {@link leola.vm.VM} stack, holding the local variables
+     * @param base the index of the first local variable on the stack
+     * @param outers the closure values of the callee
+     * @param scopedObj the object whose scope holds the global variables
+     * @param entry the program counter to start at, either {@link Bytecode#pc} or an entry (see {@link #isEntry(int)})
+     * @return the result of executing the code
+     */
+    public abstract LeoObject execute(Bytecode code, LeoObject[] stack, int base, Outer[] outers, LeoScopedObject scopedObj, int entry);
+}
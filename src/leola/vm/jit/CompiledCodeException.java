@@ -0,0 +1,41 @@
+/*
+    Leola Programming Language
+    Author: Tony Sparks
+    See license.txt
+*/
+package leola.vm.jit;
+
+/**
+ * An error raised by {@link CompiledBytecode}, along with the program counter of the instruction which raised it.  The
+ * compiled code does not keep track of its program counter as the interpreter does, instead the JVM code of each source
+ * line is covered by an exception handler which wraps the error, so that the {@link leola.vm.VM} reports the error at
+ * the same line as the interpreter would.
+ *
+ * <p>
+ * This never leaves the {@link leola.vm.VM}, which unwraps the error as it builds the stack trace.
+ *
+ * @author Tony
+ *
+ */
+public class CompiledCodeException extends RuntimeException {
+
+    private static final long serialVersionUID = 3947582038417621508L;
+
+    private final int pc;
+
+    /**
+     * @param cause the error raised by the compiled code
+     * @param pc the program counter of the instruction which raised the error
+     */
+    public CompiledCodeException(Throwable cause, int pc) {
+        super(null, cause, false, false);
+        this.pc = pc;
+    }
+
+    /**
+     * @return the program counter of the instruction which raised the error
+     */
+    public int getPc() {
+        return pc;
+    }
+}
@@ -0,0 +1,1994 @@
+/*
+    Leola Programming Language
+    Author: Tony Sparks
+    See license.txt
+*/
+package leola.vm.jit;
+
+import static leola.vm.Opcodes.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import leola.vm.Quickener;
+import leola.vm.compiler.Bytecode;
+import leola.vm.jit.ClassFileWriter.Code;
+import leola.vm.jit.ClassFileWriter.Label;
+import leola.vm.types.LeoObject;
+
+/**
+ * The second tier of execution.  The {@link leola.vm.VM} interprets all {@link Bytecode}, counting the invocations of
+ * each function and the backward jumps taken in its loops.  Once either count reaches the compile threshold
+ * (see {@link leola.vm.Args#getCompileThreshold()}), the {@link Bytecode} is translated into a Java class (see {@link CompiledBytecode})
+ * which the JVM is then free to optimize as any other Java code.
+ *
+ * <p>
+ * Only straight line code is compiled; {@link Bytecode} containing instructions which depend on the interpreter's state
+ * (YIELD, function/class/namespace definitions, named parameters, try blocks, object creation and the debug LINE
+ * instruction) is left to the interpreter.  Tail calls become a jump back to the start of the compiled code.
+ *
+ * <p>
+ * The Leola stack is mapped onto the JVM operand stack and the Leola local variables onto JVM local variables.  An interpreted
+ * invocation which is looping may switch over to the compiled code at the head of a loop, as long as the Leola stack is
+ * empty at that point.
+ *
+ * <p>
+ * Integers and reals are kept unboxed: a type analysis of the {@link Bytecode} tracks which local variables and stack values
+ * hold an <code>int</code> or <code>double</code>, and these are only boxed into a {@link LeoObject} when they escape (passed
+ * to a call, stored outside of the function, returned, or merged with a value of a different type).  When a function is first
+ * compiled with numbers as arguments it is specialized for those argument types; the specialized code checks the types on
+ * entry and falls back to the generic compiled code should they differ.
+ *
+ * <p>
+ * Tiered compilation is on by default (see {@link leola.vm.Args#tieredCompilation()}).  Only compiled code keeps numbers
+ * unboxed: a function is interpreted, boxing each arithmetic result, until it is invoked (or loops)
+ * {@link #DEFAULT_COMPILE_THRESHOLD} times, as are functions which can not be compiled and every function when tiered
+ * compilation is disabled.
+ *
+ * @author Tony
+ *
+ */
+public class JitCompiler {
+
+    /**
+     * The default number of invocations (or loop iterations) before a function is compiled
+     */
+    public static final int DEFAULT_COMPILE_THRESHOLD = 1000;
+
+    private static final AtomicInteger classIds = new AtomicInteger();
+
+    private static final String LEO_OBJECT = "leola/vm/types/LeoObject";
+    private static final String LEO_BOOLEAN = "leola/vm/types/LeoBoolean";
+    private static final String LEO_INTEGER = "leola/vm/types/LeoInteger";
+    private static final String LEO_DOUBLE = "leola/vm/types/LeoDouble";
+    private static final String BYTECODE = "leola/vm/compiler/Bytecode";
+    private static final String OUTER = "leola/vm/compiler/Outer";
+    private static final String RUNTIME = "leola/vm/jit/JitRuntime";
+    private static final String COMPILED = "leola/vm/jit/CompiledBytecode";
+
+    private static final String OBJ = "L" + LEO_OBJECT + ";";
+    private static final String CACHE = "Lleola/vm/InlineCache;";
+    private static final String SCOPED = "Lleola/vm/types/LeoScopedObject;";
+
+    private static final String EXECUTE_DESC = "(L" + BYTECODE + ";[" + OBJ + "I[L" + OUTER + ";" + SCOPED + "I)" + OBJ;
+
+    /* the JVM local variable slots of the execute method */
+    private static final int CODE_SLOT = 1;
+    private static final int STACK_SLOT = 2;
+    private static final int BASE_SLOT = 3;
+    private static final int OUTERS_SLOT = 4;
+    private static final int SCOPE_SLOT = 5;
+    private static final int ENTRY_SLOT = 6;
+    private static final int CONSTANTS_SLOT = 7;
+    private static final int LOCALS_SLOT = 8;
+
+    /* the scratch JVM operand stack used beyond the Leola stack */
+    private static final int EXTRA_STACK = 8;
+
+    /* the types of the local variables and stack values; a BOXED value is a LeoObject,
+     * the others are held unboxed as a Java int or double */
+    private static final int BOXED = 0;
+    private static final int INT = 1;
+    private static final int DOUBLE = 2;
+
+    /**
+     * Each compiled class is defined in its own {@link ClassLoader}, so that it may be
+     * unloaded along with the {@link Bytecode}
+     */
+    private static class CompiledClassLoader extends ClassLoader {
+        CompiledClassLoader() {
+            super(CompiledBytecode.class.getClassLoader());
+        }
+
+        Class<?> define(String name, byte[] classFile) {
+            return defineClass(name, classFile, 0, classFile.length);
+        }
+    }
+
+    private final int compileThreshold;
+
+    /**
+     * @param compileThreshold the number of invocations (or loop iterations) before a function is compiled
+     */
+    public JitCompiler(int compileThreshold) {
+        this.compileThreshold = Math.max(compileThreshold, 1);
+    }
+
+    /**
+     * @return the number of invocations (or loop iterations) before a function is compiled
+     */
+    public int getCompileThreshold() {
+        return compileThreshold;
+    }
+
+    /**
+     * Records an invocation of the {@link Bytecode}, compiling it if it has become hot
+     *
+     * @param code
+     * @param stack the {@link leola.vm.VM} stack, holding the arguments
+     * @param base the index of the first argument on the stack
+     * @return the {@link CompiledBytecode} or null if the {@link Bytecode} is to be interpreted
+     */
+    public CompiledBytecode onInvoke(Bytecode code, LeoObject[] stack, int base) {
+        CompiledBytecode compiled = code.getCompiled();
+        if(compiled == null && code.isCompilable()) {
+            if(code.incrementInvocationCount() >= this.compileThreshold) {
+                compiled = install(code, stack, base);
+            }
+        }
+        return compiled;
+    }
+
+    /**
+     * Records a backward jump of the {@link Bytecode}, compiling it if it has become hot
+     *
+     * @param code
+     * @param stack the {@link leola.vm.VM} stack, holding the local variables
+     * @param base the index of the first local variable on the stack
+     * @return the {@link CompiledBytecode} or null if the {@link Bytecode} is to be interpreted
+     */
+    public CompiledBytecode onBackEdge(Bytecode code, LeoObject[] stack, int base) {
+        CompiledBytecode compiled = code.getCompiled();
+        if(compiled == null && code.isCompilable()) {
+            if(code.incrementBackEdgeCount() >= this.compileThreshold) {
+                compiled = install(code, stack, base);
+            }
+        }
+        return compiled;
+    }
+
+    private CompiledBytecode install(Bytecode code, LeoObject[] stack, int base) {
+        CompiledBytecode compiled = compile(code, stack, base);
+        if(compiled != null) {
+            code.setCompiled(compiled);
+        }
+        else {
+            code.setNotCompilable();
+        }
+        return compiled;
+    }
+
+    /**
+     * Compiles the {@link Bytecode} into a Java class
+     *
+     * @param code
+     * @return the {@link CompiledBytecode} or null if the {@link Bytecode} can not be compiled
+     */
+    public CompiledBytecode compile(Bytecode code) {
+        return compile(code, null, 0);
+    }
+
+    /**
+     * Compiles the {@link Bytecode} into a Java class.  If any of the parameters currently hold a number, the
+     * code is also compiled with those parameters unboxed; this specialized code is executed whenever the
+     * arguments (or the local variables, when continuing at the head of a loop) are of the same types, otherwise
+     * the code compiled for any types is executed.
+     *
+     * @param code
+     * @param stack the {@link leola.vm.VM} stack, or null if the code is not to be specialized
+     * @param base the index of the first parameter on the stack
+     * @return the {@link CompiledBytecode} or null if the {@link Bytecode} can not be compiled
+     */
+    public CompiledBytecode compile(Bytecode code, LeoObject[] stack, int base) {
+        if(code.pc != 0 || code.hasBlocks() || code.hasParamIndexes() || code.hasDebug()) {
+            return null;
+        }
+
+        try {
+            Translation translation = new Translation(code, null);
+            if(!translation.analyze()) {
+                return null;
+            }
+
+            Translation specialized = null;
+            int[] parameterTypes = parameterTypes(code, stack, base);
+            if(parameterTypes != null) {
+                specialized = new Translation(code, parameterTypes);
+                if(!specialized.analyze() || !specialized.isSpecialized()) {
+                    specialized = null;
+                }
+            }
+
+            String className = "leola/vm/jit/Compiled$" + classIds.incrementAndGet();
+            ClassFileWriter writer = new ClassFileWriter(className, COMPILED);
+            writer.addDefaultConstructor();
+
+            if(specialized != null && specialized.translate(writer, className, "execute", "executeAny")) {
+                if(!translation.translate(writer, className, "executeAny", null)) {
+                    return null;
+                }
+            }
+            else if(!translation.translate(writer, className, "execute", null)) {
+                return null;
+            }
+
+            byte[] classFile = writer.toByteArray();
+            Class<?> compiledClass = new CompiledClassLoader().define(className.replace('/', '.'), classFile);
+            CompiledBytecode compiled = (CompiledBytecode)compiledClass.getDeclaredConstructor().newInstance();
+            compiled.setEntries(translation.entries());
+            return compiled;
+        }
+        catch(Throwable e) {
+            /* anything the translation got wrong is caught by the JVM verifier, in
+             * which case this code is simply left to the interpreter
+             */
+            return null;
+        }
+    }
+
+    /**
+     * @param code
+     * @param stack
+     * @param base
+     * @return the types of the parameters held on the stack, or null if none are numbers
+     */
+    private static int[] parameterTypes(Bytecode code, LeoObject[] stack, int base) {
+        if(stack == null) {
+            return null;
+        }
+
+        int numberOfParameters = Math.min(code.hasVarargs() ? code.numArgs - 1 : code.numArgs, code.numLocals);
+        int[] types = new int[Math.max(numberOfParameters, 0)];
+        boolean hasNumbers = false;
+        for(int k = 0; k < types.length && base + k < stack.length; k++) {
+            types[k] = typeOf(stack[base + k]);
+            hasNumbers |= types[k] != BOXED;
+        }
+        return hasNumbers ? types : null;
+    }
+
+    private static int typeOf(LeoObject value) {
+        if(value != null) {
+            switch(value.getType()) {
+                case INTEGER: return INT;
+                case REAL: return DOUBLE;
+                default:
+            }
+        }
+        return BOXED;
+    }
+
+    /**
+     * A stack value is encoded as its type along with the instruction which produced
+     * it; BOXED values are all encoded alike, as which instruction produced them no longer matters
+     */
+    private static int type(int value) {
+        return value & 3;
+    }
+
+    private static int producer(int value) {
+        return value >>> 2;
+    }
+
+    /**
+     * The types of the local variables and of the Leola stack before an instruction
+     *
+     * @author Tony
+     *
+     */
+    private static class Frame {
+        final int[] locals;
+
+        /* if the LeoObject slot of a typed local variable holds its boxed value as well */
+        final boolean[] boxed;
+        int[] stack;
+
+        Frame(int numLocals) {
+            this.locals = new int[numLocals];
+            this.boxed = new boolean[numLocals];
+            this.stack = new int[0];
+            Arrays.fill(this.boxed, true);
+        }
+
+        private Frame(Frame other) {
+            this.locals = other.locals.clone();
+            this.boxed = other.boxed.clone();
+            this.stack = other.stack;
+        }
+
+        Frame copy() {
+            return new Frame(this);
+        }
+
+        int depth() {
+            return this.stack.length;
+        }
+
+        int peek(int fromTop) {
+            return this.stack[this.stack.length - 1 - fromTop];
+        }
+
+        void push(int pc, int type) {
+            this.stack = Arrays.copyOf(this.stack, this.stack.length + 1);
+            this.stack[this.stack.length - 1] = (type == BOXED) ? BOXED : (pc << 2) | type;
+        }
+
+        int pop() {
+            int value = peek(0);
+            this.stack = Arrays.copyOf(this.stack, this.stack.length - 1);
+            return value;
+        }
+
+        void store(int local, int type) {
+            this.locals[local] = type;
+            this.boxed[local] = (type == BOXED);
+        }
+
+        void boxLocal(int local) {
+            this.boxed[local] = true;
+        }
+    }
+
+    /**
+     * A branch which must box local variables before reaching its target
+     *
+     * @author Tony
+     *
+     */
+    private static class Edge {
+        final Label label = new Label();
+        final Frame from;
+        final int pc;
+        final int depth;
+
+        Edge(Frame from, int pc, int depth) {
+            this.from = from;
+            this.pc = pc;
+            this.depth = depth;
+        }
+    }
+
+    /**
+     * The exception handler of the JVM code of a source line, it reports the errors raised by the
+     * code at the program counter of the line's first instruction (see {@link CompiledCodeException})
+     *
+     * @author Tony
+     *
+     */
+    private static class LineHandler {
+        final Label label = new Label();
+        final int pc;
+
+        LineHandler(int pc) {
+            this.pc = pc;
+        }
+    }
+
+    /**
+     * The translation of a single {@link Bytecode}
+     *
+     * @author Tony
+     *
+     */
+    private static class Translation {
+        private final Bytecode code;
+        private final int[] instr;
+        private final int len;
+
+        /* the types the parameters are specialized for, null if they are boxed */
+        private final int[] parameterTypes;
+
+        /* the Leola stack depth before each instruction, -1 if it is unreachable */
+        private final int[] depths;
+
+        /* the instructions which are branched to */
+        private final boolean[] targets;
+
+        /* the loop heads which may be entered from the interpreter */
+        private final boolean[] entries;
+
+        /* the types before each instruction, null if it is unreachable */
+        private final Frame[] frames;
+
+        /* the local variables which may be read before they are assigned, at each instruction */
+        private final boolean[][] live;
+
+        /* the instructions whose result is consumed as a LeoObject, and so must be boxed */
+        private final boolean[] boxedResults;
+        private boolean reanalyze;
+
+        private int maxDepth;
+
+        private Code asm;
+        private Label[] labels;
+        private Map<Integer, Label> exits;
+        private List<Edge> edges;
+        private Map<Integer, LineHandler> lineHandlers;
+
+        /* the types after the last translated instruction, null if it does not fall through */
+        private Frame fallthrough;
+
+        /**
+         * @param code
+         * @param parameterTypes the types the parameters are specialized for, or null
+         */
+        Translation(Bytecode code, int[] parameterTypes) {
+            this.code = code;
+            this.parameterTypes = parameterTypes;
+            this.instr = code.instr;
+            this.len = code.len;
+            this.depths = new int[len];
+            this.targets = new boolean[len + 1];
+            this.entries = new boolean[len];
+            this.frames = new Frame[len];
+            this.live = new boolean[len][code.numLocals];
+            this.boxedResults = new boolean[len];
+        }
+
+        /**
+         * @return the loop heads, in ascending order
+         */
+        int[] entries() {
+            int[] result = new int[len];
+            int size = 0;
+            for(int pc = 0; pc < len; pc++) {
+                if(entries[pc]) {
+                    result[size++] = pc;
+                }
+            }
+            return Arrays.copyOf(result, size);
+        }
+
+        private static int opcode(int i) {
+            return Quickener.generic(OPCODE(i));
+        }
+
+        /**
+         * Determines the stack depth and the types of each instruction, verifying the {@link Bytecode} only
+         * contains supported instructions and has a consistent stack
+         *
+         * @return true if the {@link Bytecode} can be compiled
+         */
+        boolean analyze() {
+            if(!analyzeLiveness()) {
+                return false;
+            }
+
+            /* which results must be boxed is only known once the instructions consuming
+             * them have been analyzed, so the code is analyzed again until no more are found */
+            do {
+                this.reanalyze = false;
+                if(!analyzeFlow()) {
+                    return false;
+                }
+            }
+            while(this.reanalyze);
+
+            /* the IFEQ of a compare and branch instruction can not be a jump target */
+            for(int pc = 0; pc < len - 1; pc++) {
+                if(depths[pc] > -1 && isCompareAndBranch(opcode(instr[pc])) && targets[pc + 1]) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        /**
+         * Determines the local variables which are live at each instruction; the types of the
+         * others do not matter, so they are never boxed or unboxed
+         *
+         * @return false if a local variable is out of range
+         */
+        private boolean analyzeLiveness() {
+            int[] successors = new int[len + 2];
+            boolean changed = true;
+            while(changed) {
+                changed = false;
+                for(int pc = len - 1; pc > -1; pc--) {
+                    int i = instr[pc];
+                    int opcode = opcode(i);
+
+                    boolean[] in = new boolean[code.numLocals];
+                    int n = successors(pc, successors);
+                    for(int j = 0; j < n; j++) {
+                        int next = successors[j];
+                        if(next > -1 && next < len) {
+                            for(int k = 0; k < in.length; k++) {
+                                in[k] |= live[next][k];
+                            }
+                        }
+                    }
+
+                    try {
+                        switch(opcode) {
+                            case STORE_LOCAL: in[ARGx(i)] = false; break;
+                            case TAIL_CALL: {
+                                for(int k = 0; k < ARG1(i) && k < in.length; k++) {
+                                    in[k] = false;
+                                }
+                                break;
+                            }
+                            case LOAD_LOCAL: in[ARGx(i)] = true; break;
+                            case LOAD_LOCAL_GETK:
+                            case ADD_LOCAL_CONST:
+                            case SUB_LOCAL_CONST:
+                            case EQ_LOCAL_CONST_IFEQ: case NEQ_LOCAL_CONST_IFEQ:
+                            case GT_LOCAL_CONST_IFEQ: case GTE_LOCAL_CONST_IFEQ:
+                            case LT_LOCAL_CONST_IFEQ: case LTE_LOCAL_CONST_IFEQ: in[ARG1(i)] = true; break;
+                            case ADD_LOCAL_LOCAL:
+                            case EQ_LOCAL_LOCAL_IFEQ: case NEQ_LOCAL_LOCAL_IFEQ:
+                            case GT_LOCAL_LOCAL_IFEQ: case GTE_LOCAL_LOCAL_IFEQ:
+                            case LT_LOCAL_LOCAL_IFEQ: case LTE_LOCAL_LOCAL_IFEQ: {
+                                in[ARG1(i)] = true;
+                                in[ARG2(i)] = true;
+                                break;
+                            }
+                            default:
+                        }
+                    }
+                    catch(ArrayIndexOutOfBoundsException e) {
+                        return false;
+                    }
+
+                    if(!Arrays.equals(in, live[pc])) {
+                        live[pc] = in;
+                        changed = true;
+                    }
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @param pc
+         * @param successors the instructions which may follow the instruction
+         * @return the number of successors
+         */
+        private int successors(int pc, int[] successors) {
+            int i = instr[pc];
+            switch(opcode(i)) {
+                case RET:
+                case THROW: return 0;
+                case JMP: successors[0] = pc + 1 + ARGsx(i); return 1;
+                case TAIL_CALL: successors[0] = 0; return 1;
+                case IFEQ: {
+                    successors[0] = pc + 1 + ARGsx(i);
+                    successors[1] = pc + 1;
+                    return 2;
+                }
+                case EQ_LOCAL_LOCAL_IFEQ: case NEQ_LOCAL_LOCAL_IFEQ:
+                case GT_LOCAL_LOCAL_IFEQ: case GTE_LOCAL_LOCAL_IFEQ:
+                case LT_LOCAL_LOCAL_IFEQ: case LTE_LOCAL_LOCAL_IFEQ:
+                case EQ_LOCAL_CONST_IFEQ: case NEQ_LOCAL_CONST_IFEQ:
+                case GT_LOCAL_CONST_IFEQ: case GTE_LOCAL_CONST_IFEQ:
+                case LT_LOCAL_CONST_IFEQ: case LTE_LOCAL_CONST_IFEQ: {
+                    successors[0] = (pc + 1 < len) ? pc + 2 + ARGsx(instr[pc + 1]) : -1;
+                    successors[1] = pc + 2;
+                    return 2;
+                }
+                case TABLE_SWITCH:
+                case LOOKUP_SWITCH: {
+                    int n = Math.min(ARG1(i), len);
+                    for(int k = 0; k <= n + 1; k++) {
+                        successors[k] = pc + 1 + k;
+                    }
+                    return n + 2;
+                }
+                default: successors[0] = pc + 1; return 1;
+            }
+        }
+
+        /**
+         * @return true if any parameter is still unboxed at the start of the code, rather than
+         * having been boxed by a tail call
+         */
+        boolean isSpecialized() {
+            return hasTypedLocals(frames[0]);
+        }
+
+        private static boolean hasTypedLocals(Frame frame) {
+            for(int type : frame.locals) {
+                if(type != BOXED) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean analyzeFlow() {
+            Arrays.fill(depths, -1);
+            Arrays.fill(frames, null);
+            maxDepth = 0;
+
+            Frame start = new Frame(code.numLocals);
+            if(parameterTypes != null) {
+                for(int k = 0; k < parameterTypes.length; k++) {
+                    start.locals[k] = parameterTypes[k];
+                }
+            }
+
+            List<Integer> worklist = new ArrayList<Integer>();
+            if(!flow(worklist, -1, 0, start)) {
+                return false;
+            }
+
+            while(!worklist.isEmpty()) {
+                int pc = worklist.remove(worklist.size() - 1);
+                int depth = depths[pc];
+                int i = instr[pc];
+
+                Frame frame = transfer(pc, frames[pc]);
+                if(frame == null) {
+                    return false;
+                }
+
+                switch(opcode(i)) {
+                    case RET:
+                    case THROW: {
+                        continue;
+                    }
+                    case JMP: {
+                        int target = pc + 1 + ARGsx(i);
+                        if(target <= pc && depth == 0) {
+                            entries[target] = true;
+                        }
+                        if(!flow(worklist, pc, target, frame)) {
+                            return false;
+                        }
+                        continue;
+                    }
+                    case TAIL_CALL: {
+
+                        /* the arguments are moved into the local variables, and the function is restarted */
+                        int nargs = ARG1(i);
+                        if(code.hasVarargs() || depth != nargs + 1 || nargs > code.numLocals
+                           || !flow(worklist, pc, 0, frame)) {
+                            return false;
+                        }
+                        continue;
+                    }
+                    case IFEQ: {
+                        if(!flow(worklist, pc, pc + 1 + ARGsx(i), frame)
+                           || !flow(worklist, pc, pc + 1, frame)) {
+                            return false;
+                        }
+                        continue;
+                    }
+                    case EQ_LOCAL_LOCAL_IFEQ: case NEQ_LOCAL_LOCAL_IFEQ:
+                    case GT_LOCAL_LOCAL_IFEQ: case GTE_LOCAL_LOCAL_IFEQ:
+                    case LT_LOCAL_LOCAL_IFEQ: case LTE_LOCAL_LOCAL_IFEQ:
+                    case EQ_LOCAL_CONST_IFEQ: case NEQ_LOCAL_CONST_IFEQ:
+                    case GT_LOCAL_CONST_IFEQ: case GTE_LOCAL_CONST_IFEQ:
+                    case LT_LOCAL_CONST_IFEQ: case LTE_LOCAL_CONST_IFEQ: {
+
+                        /* the following IFEQ holds the jump offset, it is never executed on its own */
+                        if(pc + 1 >= len || targets[pc + 1]
+                           || !flow(worklist, pc, pc + 2 + ARGsx(instr[pc + 1]), frame)
+                           || !flow(worklist, pc, pc + 2, frame)) {
+                            return false;
+                        }
+                        continue;
+                    }
+                    case TABLE_SWITCH:
+                    case LOOKUP_SWITCH: {
+                        int n = ARG1(i);
+
+                        /* the key is popped when one of the jump table entries is taken,
+                         * otherwise the jump table is skipped */
+                        Frame popped = frame.copy();
+                        popped.pop();
+                        for(int k = 0; k <= n; k++) {
+                            if(!flow(worklist, pc, pc + 1 + k, popped)) {
+                                return false;
+                            }
+                        }
+                        if(!flow(worklist, pc, pc + n + 2, frame)) {
+                            return false;
+                        }
+                        continue;
+                    }
+                    default: {
+                        if(!flow(worklist, -1, pc + 1, frame)) {
+                            return false;
+                        }
+                    }
+                }
+            }
+
+            return true;
+        }
+
+        /**
+         * Records the types at the successor of an instruction
+         *
+         * @param worklist
+         * @param from the branching instruction, or -1 if this is the following instruction
+         * @param pc the successor
+         * @param frame the types at the successor
+         * @return false if the stack depth is not consistent
+         */
+        private boolean flow(List<Integer> worklist, int from, int pc, Frame frame) {
+            if(pc < 0 || pc > len) {
+                return false;
+            }
+
+            int depth = frame.depth();
+            maxDepth = Math.max(maxDepth, depth);
+            if(from > -1) {
+                targets[pc] = true;
+            }
+
+            /* falling off of the end of the code returns null */
+            if(pc == len) {
+                return true;
+            }
+
+            /* the local variables which are not live are of no type */
+            frame = frame.copy();
+            for(int k = 0; k < frame.locals.length; k++) {
+                if(!live[pc][k]) {
+                    frame.store(k, BOXED);
+                }
+            }
+
+            if(depths[pc] < 0) {
+                depths[pc] = depth;
+                frames[pc] = frame;
+                worklist.add(pc);
+                return true;
+            }
+
+            if(depths[pc] != depth) {
+                return false;
+            }
+
+            if(merge(frames[pc], frame)) {
+                worklist.add(pc);
+            }
+            return true;
+        }
+
+        /**
+         * Merges the types of another path into the types at an instruction, any local variable
+         * or stack value which differs between the paths is boxed
+         *
+         * @param frame the types at the instruction
+         * @param other
+         * @return true if the types at the instruction changed
+         */
+        private boolean merge(Frame frame, Frame other) {
+            boolean changed = false;
+            for(int k = 0; k < frame.locals.length; k++) {
+                int type = frame.locals[k];
+                if(type != other.locals[k]) {
+                    if(type != BOXED) {
+                        frame.store(k, BOXED);
+                        changed = true;
+                    }
+                }
+                else if(type != BOXED && frame.boxed[k] && !other.boxed[k]) {
+                    frame.boxed[k] = false;
+                    changed = true;
+                }
+            }
+
+            for(int j = 0; j < frame.stack.length; j++) {
+                int value = frame.stack[j];
+                if(value != other.stack[j]) {
+                    requireBoxed(value);
+                    requireBoxed(other.stack[j]);
+                    if(value != BOXED) {
+                        frame.stack[j] = BOXED;
+                        changed = true;
+                    }
+                }
+            }
+            return changed;
+        }
+
+        /**
+         * Requires the stack value to be boxed, which is done by the instruction producing it
+         *
+         * @param value
+         */
+        private void requireBoxed(int value) {
+            if(type(value) != BOXED && !boxedResults[producer(value)]) {
+                boxedResults[producer(value)] = true;
+                reanalyze = true;
+            }
+        }
+
+        private void requireBoxed(Frame frame, int pops) {
+            for(int j = 0; j < pops; j++) {
+                requireBoxed(frame.pop());
+            }
+        }
+
+        /**
+         * Determines the types after an instruction
+         *
+         * @param pc
+         * @param in the types before the instruction
+         * @return the types after the instruction, or null if the instruction is not supported or
+         * there are not enough values on the stack
+         */
+        private Frame transfer(int pc, Frame in) {
+            int i = instr[pc];
+            int depth = in.depth();
+            Frame out = in.copy();
+
+            int opcode = opcode(i);
+            int pops = 0;
+            int pushes = 0;
+            switch(opcode) {
+                case LOAD_CONST: {
+                    out.push(pc, boxedResults[pc] ? BOXED : typeOf(code.constants[ARGx(i)]));
+                    return out;
+                }
+                case LOAD_LOCAL: {
+                    int k = ARGx(i);
+                    if(boxedResults[pc]) {
+                        out.boxLocal(k);
+                        out.push(pc, BOXED);
+                    }
+                    else {
+                        out.push(pc, in.locals[k]);
+                    }
+                    return out;
+                }
+                case STORE_LOCAL: {
+                    if(depth < 1) {
+                        return null;
+                    }
+                    out.store(ARGx(i), type(out.pop()));
+                    return out;
+                }
+                case POP: {
+                    if(depth < 1) {
+                        return null;
+                    }
+                    out.pop();
+                    return out;
+                }
+                case OPPOP: {
+                    if(depth > 0) {
+                        out.pop();
+                    }
+                    return out;
+                }
+                case DUP: {
+                    if(depth < 1) {
+                        return null;
+                    }
+                    out.stack = Arrays.copyOf(out.stack, depth + 1);
+                    out.stack[depth] = out.stack[depth - 1];
+                    return out;
+                }
+                case NEG: {
+                    if(depth < 1) {
+                        return null;
+                    }
+                    out.push(pc, result(pc, type(out.pop()), INT));
+                    return out;
+                }
+                case ADD: case SUB: case MUL: case DIV: case MOD:
+                case EQ: case NEQ: case GT: case GTE: case LT: case LTE: {
+                    if(depth < 2) {
+                        return null;
+                    }
+
+                    /* a typed left operand is passed to the right operand's method, see #invokeReversed */
+                    int right = out.pop();
+                    int left = type(out.pop());
+                    if(left == BOXED) {
+                        requireBoxed(right);
+                    }
+
+                    boolean isCompare = opcode >= EQ;
+                    out.push(pc, isCompare ? BOXED : result(pc, left, type(right)));
+                    return out;
+                }
+                case ADD_LOCAL_CONST:
+                case SUB_LOCAL_CONST: {
+                    int left = in.locals[ARG1(i)];
+                    out.push(pc, result(pc, left, typeOf(code.constants[ARG2(i)])));
+                    return out;
+                }
+                case ADD_LOCAL_LOCAL: {
+                    int left = in.locals[ARG1(i)];
+                    int right = in.locals[ARG2(i)];
+                    if(left == BOXED) {
+                        out.boxLocal(ARG2(i));
+                    }
+                    out.push(pc, result(pc, left, right));
+                    return out;
+                }
+                case EQ_LOCAL_LOCAL_IFEQ: case NEQ_LOCAL_LOCAL_IFEQ:
+                case GT_LOCAL_LOCAL_IFEQ: case GTE_LOCAL_LOCAL_IFEQ:
+                case LT_LOCAL_LOCAL_IFEQ: case LTE_LOCAL_LOCAL_IFEQ: {
+                    if(in.locals[ARG1(i)] == BOXED) {
+                        out.boxLocal(ARG2(i));
+                    }
+                    return out;
+                }
+                case EQ_LOCAL_CONST_IFEQ: case NEQ_LOCAL_CONST_IFEQ:
+                case GT_LOCAL_CONST_IFEQ: case GTE_LOCAL_CONST_IFEQ:
+                case LT_LOCAL_CONST_IFEQ: case LTE_LOCAL_CONST_IFEQ:
+                case JMP: {
+                    return out;
+                }
+                case LOAD_LOCAL_GETK: {
+                    out.boxLocal(ARG1(i));
+                    out.push(pc, BOXED);
+                    return out;
+                }
+                case TAIL_CALL: {
+                    int nargs = ARG1(i);
+                    if(depth < nargs + 1 || nargs > code.numLocals) {
+                        return null;
+                    }
+
+                    requireBoxed(out, nargs + 1);
+                    for(int k = 0; k < nargs; k++) {
+                        out.store(k, BOXED);
+                    }
+                    return out;
+                }
+                case TABLE_SWITCH:
+                case LOOKUP_SWITCH: {
+                    if(depth < 1) {
+                        return null;
+                    }
+                    requireBoxed(out.stack[depth - 1]);
+                    return out;
+                }
+
+                case LOAD_OUTER:
+                case LOAD_NULL:
+                case LOAD_TRUE:
+                case LOAD_FALSE:
+                case GET_GLOBAL: pushes = 1; break;
+
+                case RET: pops = depth > 0 ? 1 : 0; break;
+                case IFEQ:
+                case THROW:
+                case STORE_OUTER:
+                case SET_GLOBAL: pops = 1; break;
+
+                case BNOT:
+                case NOT:
+                case EGETK:
+                case GETK: pops = 1; pushes = 1; break;
+
+                case IS_A:
+                case GET:
+                case IDX:
+                case BSL: case BSR: case XOR: case LOR: case LAND:
+                case OR: case AND:
+                case REQ: case RNEQ: pops = 2; pushes = 1; break;
+
+                case SETK: pops = 2; pushes = 1; break;
+                case SET:
+                case SIDX: pops = 3; pushes = 1; break;
+
+                case NEW_ARRAY:
+                case CONCAT: pops = ARGx(i); pushes = 1; break;
+                case NEW_MAP: pops = ARGx(i) * 2; pushes = 1; break;
+                case INVOKE: {
+                    if(ARG2(i) > 0) {
+                        return null;
+                    }
+                    pops = ARG1(i) + 1;
+                    pushes = 1;
+                    break;
+                }
+                default: {
+                    return null;
+                }
+            }
+
+            if(depth < pops) {
+                return null;
+            }
+
+            /* all other instructions operate on LeoObjects */
+            requireBoxed(out, pops);
+            for(int j = 0; j < pushes; j++) {
+                out.push(pc, BOXED);
+            }
+            return out;
+        }
+
+        /**
+         * @param pc
+         * @param left
+         * @param right
+         * @return the type of the result of the arithmetic instruction
+         */
+        private int result(int pc, int left, int right) {
+            if(left == BOXED || right == BOXED || boxedResults[pc]) {
+                return BOXED;
+            }
+            return numericType(left, right);
+        }
+
+        private static int numericType(int left, int right) {
+            return (left == INT && right == INT) ? INT : DOUBLE;
+        }
+
+        private static boolean isCompareAndBranch(int opcode) {
+            return opcode >= EQ_LOCAL_LOCAL_IFEQ && opcode <= LTE_LOCAL_CONST_IFEQ;
+        }
+
+        private Label label(int pc, int depth) {
+            if(pc == len) {
+                Label exit = exits.get(depth);
+                if(exit == null) {
+                    exit = new Label();
+                    exits.put(depth, exit);
+                }
+                return exit;
+            }
+
+            if(labels[pc] == null) {
+                labels[pc] = new Label();
+            }
+            return labels[pc];
+        }
+
+        /**
+         * The branch to an instruction, boxing the local variables which are no longer typed at the instruction
+         *
+         * @param from the types before the branch
+         * @param pc the instruction branched to
+         * @param depth
+         * @return the label to branch to
+         */
+        private Label edge(Frame from, int pc, int depth) {
+            if(pc < len && needsTransition(from, pc)) {
+                Edge edge = new Edge(from, pc, depth);
+                this.edges.add(edge);
+                return edge.label;
+            }
+            return label(pc, depth);
+        }
+
+        private boolean needsTransition(Frame from, int pc) {
+            Frame to = frames[pc];
+            for(int k = 0; k < from.locals.length; k++) {
+                if(from.locals[k] != BOXED && to.locals[k] == BOXED && !from.boxed[k] && live[pc][k]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void transition(Frame from, int pc) {
+            Frame to = frames[pc];
+            for(int k = 0; k < from.locals.length; k++) {
+                int type = from.locals[k];
+                if(type != BOXED && to.locals[k] == BOXED && !from.boxed[k] && live[pc][k]) {
+                    load(k, type);
+                    box(type);
+                    asm.astore(LOCALS_SLOT + k);
+                }
+            }
+        }
+
+        /**
+         * Translates the {@link Bytecode} into a method of the class file
+         *
+         * @param writer
+         * @param className the internal name of the class
+         * @param name the name of the method
+         * @param fallback the name of the method executing the code compiled for any types, or null if this code
+         * is not specialized for the types of its parameters
+         * @return false if the code is too large
+         */
+        boolean translate(ClassFileWriter writer, String className, String name, String fallback) {
+            this.asm = writer.newCode();
+            this.labels = new Label[len];
+            this.exits = new HashMap<Integer, Label>();
+            this.edges = new ArrayList<Edge>();
+            this.lineHandlers = new HashMap<Integer, LineHandler>();
+
+            /* load the constants and the local variables */
+            asm.aload(CODE_SLOT);
+            asm.field(ClassFileWriter.GETFIELD, BYTECODE, "constants", "[" + OBJ);
+            asm.astore(CONSTANTS_SLOT);
+
+            for(int k = 0; k < code.numLocals; k++) {
+                asm.aload(STACK_SLOT);
+                asm.iload(BASE_SLOT);
+                asm.iconst(k);
+                asm.op(ClassFileWriter.IADD);
+                asm.op(ClassFileWriter.AALOAD);
+                asm.astore(LOCALS_SLOT + k);
+            }
+
+            /* jump to the loop head the interpreter is continuing from, unboxing
+             * the local variables which are typed at the loop head */
+            Label fallbackLabel = (fallback != null) ? new Label() : null;
+            int[] loopHeads = entries();
+            if(loopHeads.length > 0) {
+                boolean isTyped = hasTypedLocals(frames[0]);
+                Label start = isTyped ? new Label() : label(0, 0);
+                Label[] entryLabels = new Label[loopHeads.length];
+                for(int j = 0; j < loopHeads.length; j++) {
+                    entryLabels[j] = new Label();
+                }
+
+                asm.iload(ENTRY_SLOT);
+                asm.lookupswitch(start, loopHeads, entryLabels);
+
+                for(int j = 0; j < loopHeads.length; j++) {
+                    asm.mark(entryLabels[j]);
+                    unboxLocals(frames[loopHeads[j]], fallbackLabel);
+                    asm.jump(ClassFileWriter.GOTO, label(loopHeads[j], 0));
+                }
+
+                if(isTyped) {
+                    asm.mark(start);
+                }
+            }
+
+            unboxLocals(frames[0], fallbackLabel);
+
+            this.fallthrough = null;
+            int line = -1;
+            int linePc = 0;
+            int lineStart = 0;
+            for(int pc = 0; pc < len; pc++) {
+                int depth = depths[pc];
+                if(depth < 0) {
+                    continue;
+                }
+
+                int lineNumber = code.getLineNumber(pc);
+                if(lineNumber != line) {
+                    lineRange(line, linePc, lineStart);
+                    line = lineNumber;
+                    linePc = pc;
+                    lineStart = asm.size();
+                }
+
+                if(this.fallthrough != null) {
+                    transition(this.fallthrough, pc);
+                }
+
+                if(labels[pc] != null || targets[pc]) {
+                    asm.mark(label(pc, depth));
+                }
+
+                this.fallthrough = null;
+                pc = translate(pc, depth);
+            }
+            lineRange(line, linePc, lineStart);
+
+            /* falling off of the end of the code returns null */
+            loadNull();
+            asm.op(ClassFileWriter.ARETURN);
+
+            for(Map.Entry<Integer, Label> exit : exits.entrySet()) {
+                asm.mark(exit.getValue());
+                loadNull();
+                asm.op(ClassFileWriter.ARETURN);
+            }
+
+            for(Edge edge : edges) {
+                asm.mark(edge.label);
+                transition(edge.from, edge.pc);
+                asm.jump(ClassFileWriter.GOTO, label(edge.pc, edge.depth));
+            }
+
+            /* wrap the error with the program counter it was raised at, and rethrow it */
+            for(LineHandler handler : lineHandlers.values()) {
+                asm.mark(handler.label);
+                asm.iconst(handler.pc);
+                asm.invoke(ClassFileWriter.INVOKESTATIC, RUNTIME, "raisedAt", "(Ljava/lang/Throwable;I)Lleola/vm/jit/CompiledCodeException;");
+                asm.op(ClassFileWriter.ATHROW);
+            }
+
+            /* the arguments or local variables are not of the types this code is specialized for */
+            if(fallbackLabel != null) {
+                asm.mark(fallbackLabel);
+                asm.aload(0);
+                asm.aload(CODE_SLOT);
+                asm.aload(STACK_SLOT);
+                asm.iload(BASE_SLOT);
+                asm.aload(OUTERS_SLOT);
+                asm.aload(SCOPE_SLOT);
+                asm.iload(ENTRY_SLOT);
+                asm.invoke(ClassFileWriter.INVOKEVIRTUAL, className, fallback, EXECUTE_DESC);
+                asm.op(ClassFileWriter.ARETURN);
+            }
+
+            if(asm.size() > ClassFileWriter.MAX_CODE_LENGTH) {
+                return false;
+            }
+
+            /* a double takes up two slots of the operand stack, and each local variable
+             * has an int and a double slot alongside of its LeoObject slot */
+            writer.addMethod(ClassFileWriter.ACC_PUBLIC, name, EXECUTE_DESC, asm,
+                             maxDepth * 2 + EXTRA_STACK, LOCALS_SLOT + code.numLocals * 4);
+            return true;
+        }
+
+        /**
+         * Covers the JVM code translated for a source line by the line's exception handler
+         *
+         * @param line the source line number, or -1 if not known
+         * @param pc the program counter of the first instruction of the line
+         * @param start the start of the JVM code of the line
+         */
+        private void lineRange(int line, int pc, int start) {
+            int end = asm.size();
+            if(line < 0 || start >= end) {
+                return;
+            }
+
+            LineHandler handler = lineHandlers.get(line);
+            if(handler == null) {
+                handler = new LineHandler(pc);
+                lineHandlers.put(line, handler);
+            }
+
+            asm.handler(start, end, handler.label);
+        }
+
+        /**
+         * Unboxes the local variables which are typed at an entry of the code
+         *
+         * @param frame the types at the entry
+         * @param fallback the label to jump to if a local variable is not of its type, or null if
+         * the types are known to hold
+         */
+        private void unboxLocals(Frame frame, Label fallback) {
+            for(int k = 0; k < frame.locals.length; k++) {
+                int type = frame.locals[k];
+                if(type == BOXED) {
+                    continue;
+                }
+
+                if(fallback != null) {
+                    asm.aload(LOCALS_SLOT + k);
+                    asm.type(ClassFileWriter.INSTANCEOF, type == INT ? LEO_INTEGER : LEO_DOUBLE);
+                    asm.jump(ClassFileWriter.IFEQ, fallback);
+                }
+
+                asm.aload(LOCALS_SLOT + k);
+                if(type == INT) {
+                    asm.invoke(ClassFileWriter.INVOKEVIRTUAL, LEO_OBJECT, "asInt", "()I");
+                    asm.istore(intSlot(k));
+                }
+                else {
+                    asm.invoke(ClassFileWriter.INVOKEVIRTUAL, LEO_OBJECT, "asDouble", "()D");
+                    asm.dstore(doubleSlot(k));
+                }
+            }
+        }
+
+        private int intSlot(int local) {
+            return LOCALS_SLOT + code.numLocals + local;
+        }
+
+        private int doubleSlot(int local) {
+            return LOCALS_SLOT + code.numLocals * 2 + local * 2;
+        }
+
+        /**
+         * Translates a single instruction
+         *
+         * @param pc
+         * @param depth the stack depth before the instruction
+         * @return the program counter of the last instruction translated
+         */
+        private int translate(int pc, int depth) {
+            int i = instr[pc];
+            int opcode = opcode(i);
+
+            Frame in = frames[pc];
+            Frame out = transfer(pc, in);
+            this.fallthrough = out;
+
+            switch(opcode) {
+                case LOAD_CONST: {
+                    LeoObject constant = code.constants[ARGx(i)];
+                    switch(type(out.peek(0))) {
+                        case INT: asm.iconst(constant.asInt()); break;
+                        case DOUBLE: asm.dconst(constant.asDouble()); break;
+                        default: loadConstant(ARGx(i));
+                    }
+                    break;
+                }
+                case LOAD_LOCAL: {
+                    int k = ARGx(i);
+                    if(type(out.peek(0)) == BOXED) {
+                        loadBoxed(k, in);
+                    }
+                    else {
+                        load(k, in.locals[k]);
+                    }
+                    break;
+                }
+                case LOAD_OUTER: {
+                    asm.aload(OUTERS_SLOT);
+                    asm.iconst(ARGx(i));
+                    asm.op(ClassFileWriter.AALOAD);
+                    asm.invoke(ClassFileWriter.INVOKEVIRTUAL, OUTER, "getValue", "()" + OBJ);
+                    break;
+                }
+                case LOAD_NULL: loadNull(); break;
+                case LOAD_TRUE: asm.field(ClassFileWriter.GETSTATIC, LEO_BOOLEAN, "LEOTRUE", "L" + LEO_BOOLEAN + ";"); break;
+                case LOAD_FALSE: asm.field(ClassFileWriter.GETSTATIC, LEO_BOOLEAN, "LEOFALSE", "L" + LEO_BOOLEAN + ";"); break;
+                case STORE_LOCAL: {
+                    int k = ARGx(i);
+                    switch(type(in.peek(0))) {
+                        case INT: asm.istore(intSlot(k)); break;
+                        case DOUBLE: asm.dstore(doubleSlot(k)); break;
+                        default: asm.astore(LOCALS_SLOT + k);
+                    }
+                    break;
+                }
+                case STORE_OUTER: {
+                    asm.aload(OUTERS_SLOT);
+                    asm.iconst(ARGx(i));
+                    asm.op(ClassFileWriter.AALOAD);
+                    asm.op(ClassFileWriter.SWAP);
+                    asm.invoke(ClassFileWriter.INVOKEVIRTUAL, OUTER, "setValue", "(" + OBJ + ")V");
+                    break;
+                }
+                case POP: pop(type(in.peek(0))); break;
+                case OPPOP: {
+                    if(depth > 0) {
+                        pop(type(in.peek(0)));
+                    }
+                    break;
+                }
+                case DUP: asm.op(type(in.peek(0)) == DOUBLE ? ClassFileWriter.DUP2 : ClassFileWriter.DUP); break;
+                case RET: {
+                    if(depth == 0) {
+                        loadNull();
+                    }
+                    asm.op(ClassFileWriter.ARETURN);
+                    this.fallthrough = null;
+                    break;
+                }
+                case JMP: {
+                    asm.jump(ClassFileWriter.GOTO, edge(out, pc + 1 + ARGsx(i), depth));
+                    this.fallthrough = null;
+                    break;
+                }
+                case TAIL_CALL: {
+                    for(int k = ARG1(i) - 1; k >= 0; k--) {
+                        asm.astore(LOCALS_SLOT + k);
+                    }
+                    asm.op(ClassFileWriter.POP);
+                    asm.jump(ClassFileWriter.GOTO, edge(out, 0, 0));
+                    this.fallthrough = null;
+                    break;
+                }
+                case IFEQ: {
+                    asm.invoke(ClassFileWriter.INVOKESTATIC, LEO_OBJECT, "isTrue", "(" + OBJ + ")Z");
+                    asm.jump(ClassFileWriter.IFEQ, edge(out, pc + 1 + ARGsx(i), depth - 1));
+                    break;
+                }
+                case IS_A: runtime("isA", 2); break;
+                case NEW_ARRAY: {
+                    newArray(ARGx(i));
+                    asm.invoke(ClassFileWriter.INVOKESTATIC, RUNTIME, "newArray", "([" + OBJ + ")" + OBJ);
+                    break;
+                }
+                case NEW_MAP: {
+                    newArray(ARGx(i) * 2);
+                    asm.invoke(ClassFileWriter.INVOKESTATIC, RUNTIME, "newMap", "([" + OBJ + ")" + OBJ);
+                    break;
+                }
+                case CONCAT: {
+                    newArray(ARGx(i));
+                    asm.invoke(ClassFileWriter.INVOKESTATIC, RUNTIME, "concat", "([" + OBJ + ")" + OBJ);
+                    break;
+                }
+                case INVOKE: {
+                    int nargs = ARG1(i);
+                    if(nargs > 5) {
+                        newArray(nargs);
+                        asm.invoke(ClassFileWriter.INVOKESTATIC, RUNTIME, "invoke", "(" + OBJ + "[" + OBJ + ")" + OBJ);
+                    }
+                    else {
+                        runtime("invoke", nargs + 1);
+                    }
+                    break;
+                }
+                case GET: method("xgetObject", 1); break;
+                case SET: runtime("set", 3); break;
+                case EGETK:
+                case GETK: {
+                    loadConstant(ARGx(i));
+                    loadInlineCache(pc);
+                    asm.invoke(ClassFileWriter.INVOKESTATIC, RUNTIME, opcode == GETK ? "getk" : "egetk",
+                               "(" + OBJ + OBJ + CACHE + ")" + OBJ);
+                    break;
+                }
+                case SETK: {
+                    loadConstant(ARGx(i));
+                    loadInlineCache(pc);
+                    asm.invoke(ClassFileWriter.INVOKESTATIC, RUNTIME, "setk", "(" + OBJ + OBJ + OBJ + CACHE + ")" + OBJ);
+                    break;
+                }
+                case GET_GLOBAL: {
+                    asm.aload(SCOPE_SLOT);
+                    loadConstant(ARGx(i));
+                    asm.invoke(ClassFileWriter.INVOKESTATIC, RUNTIME, "getGlobal", "(" + SCOPED + OBJ + ")" + OBJ);
+                    break;
+                }
+                case SET_GLOBAL: {
+                    asm.aload(SCOPE_SLOT);
+                    loadConstant(ARGx(i));
+                    asm.invoke(ClassFileWriter.INVOKESTATIC, RUNTIME, "setGlobal", "(" + OBJ + SCOPED + OBJ + ")V");
+                    break;
+                }
+                case IDX: method("$index", 1); break;
+                case SIDX: runtime("sidx", 3); break;
+                case THROW: {
+                    asm.invoke(ClassFileWriter.INVOKESTATIC, RUNTIME, "error",
+                               "(" + OBJ + ")Lleola/vm/exceptions/LeolaRuntimeException;");
+                    asm.op(ClassFileWriter.ATHROW);
+                    this.fallthrough = null;
+                    break;
+                }
+                case ADD:
+                case SUB:
+                case MUL:
+                case DIV:
+                case MOD: {
+                    int left = type(in.peek(1));
+                    int right = type(in.peek(0));
+                    if(left != BOXED && right != BOXED) {
+                        int kind = numericType(left, right);
+                        convertOperands(left, right);
+                        arithmetic(opcode, kind);
+                        boxResult(out, kind);
+                    }
+                    else if(left != BOXED) {
+                        swapOperands(left);
+                        invokeReversed(arithmeticName(opcode), left);
+                    }
+                    else {
+                        method(arithmeticName(opcode), 1);
+                    }
+                    break;
+                }
+                case NEG: {
+                    int type = type(in.peek(0));
+                    if(type != BOXED) {
+                        asm.op(type == INT ? ClassFileWriter.INEG : ClassFileWriter.DNEG);
+                        boxResult(out, type);
+                    }
+                    else {
+                        method("$neg", 0);
+                    }
+                    break;
+                }
+                case BSL: method("$bsl", 1); break;
+                case BSR: method("$bsr", 1); break;
+                case BNOT: method("$bnot", 0); break;
+                case XOR: method("$xor", 1); break;
+                case LOR: method("$bor", 1); break;
+                case LAND: method("$band", 1); break;
+                case OR: runtime("or", 2); break;
+                case AND: runtime("and", 2); break;
+                case NOT: {
+                    asm.invoke(ClassFileWriter.INVOKEVIRTUAL, LEO_OBJECT, "isTrue", "()Z");
+                    asm.iconst(1);
+                    asm.op(ClassFileWriter.IXOR);
+                    toBoolean();
+                    break;
+                }
+                case REQ:
+                case RNEQ:
+                case EQ:
+                case NEQ:
+                case GT:
+                case GTE:
+                case LT:
+                case LTE: {
+                    int left = type(in.peek(1));
+                    int right = type(in.peek(0));
+
+                    /* branch directly on the comparison, rather than on a LeoBoolean */
+                    int next = pc + 1;
+                    boolean isBranch = next < len && opcode(instr[next]) == IFEQ && !targets[next];
+
+                    if(left != BOXED && right != BOXED) {
+                        int kind = numericType(left, right);
+                        convertOperands(left, right);
+                        if(isBranch) {
+                            Frame frame = transfer(next, out);
+                            compareAndJump(opcode, kind, edge(frame, next + 1 + ARGsx(instr[next]), depth - 2));
+                            this.fallthrough = frame;
+                            return next;
+                        }
+
+                        compareToBoolean(opcode, kind);
+                        break;
+                    }
+
+                    if(left != BOXED) {
+                        swapOperands(left);
+                        invokeCompareReversed(opcode, left);
+                    }
+                    else {
+                        compare(opcode);
+                    }
+
+                    if(isBranch) {
+                        Frame frame = transfer(next, out);
+                        asm.jump(ClassFileWriter.IFEQ, edge(frame, next + 1 + ARGsx(instr[next]), depth - 2));
+                        this.fallthrough = frame;
+                        return next;
+                    }
+
+                    toBoolean();
+                    break;
+                }
+                case ADD_LOCAL_CONST:
+                case SUB_LOCAL_CONST:
+                case ADD_LOCAL_LOCAL: {
+                    int arithmetic = (opcode == SUB_LOCAL_CONST) ? SUB : ADD;
+                    int kind = localOperands(i, opcode == ADD_LOCAL_LOCAL, in);
+                    if(kind != BOXED) {
+                        arithmetic(arithmetic, kind);
+                        boxResult(out, kind);
+                    }
+                    else if(in.locals[ARG1(i)] != BOXED) {
+                        invokeReversed(arithmeticName(arithmetic), in.locals[ARG1(i)]);
+                    }
+                    else {
+                        method(arithmeticName(arithmetic), 1);
+                    }
+                    break;
+                }
+                case LOAD_LOCAL_GETK: {
+                    loadBoxed(ARG1(i), in);
+                    loadConstant(ARG2(i));
+                    loadInlineCache(pc);
+                    asm.invoke(ClassFileWriter.INVOKESTATIC, RUNTIME, "getk", "(" + OBJ + OBJ + CACHE + ")" + OBJ);
+                    break;
+                }
+                case EQ_LOCAL_LOCAL_IFEQ: case NEQ_LOCAL_LOCAL_IFEQ:
+                case GT_LOCAL_LOCAL_IFEQ: case GTE_LOCAL_LOCAL_IFEQ:
+                case LT_LOCAL_LOCAL_IFEQ: case LTE_LOCAL_LOCAL_IFEQ:
+                case EQ_LOCAL_CONST_IFEQ: case NEQ_LOCAL_CONST_IFEQ:
+                case GT_LOCAL_CONST_IFEQ: case GTE_LOCAL_CONST_IFEQ:
+                case LT_LOCAL_CONST_IFEQ: case LTE_LOCAL_CONST_IFEQ: {
+                    boolean isLocal = opcode <= LTE_LOCAL_LOCAL_IFEQ;
+                    int comparison = EQ + (opcode - (isLocal ? EQ_LOCAL_LOCAL_IFEQ : EQ_LOCAL_CONST_IFEQ));
+                    Label target = edge(out, pc + 2 + ARGsx(instr[pc + 1]), depth);
+
+                    int kind = localOperands(i, isLocal, in);
+                    if(kind != BOXED) {
+                        compareAndJump(comparison, kind, target);
+                    }
+                    else {
+                        if(in.locals[ARG1(i)] != BOXED) {
+                            invokeCompareReversed(comparison, in.locals[ARG1(i)]);
+                        }
+                        else {
+                            compare(comparison);
+                        }
+                        asm.jump(ClassFileWriter.IFEQ, target);
+                    }
+                    return pc + 1;
+                }
+                case TABLE_SWITCH:
+                case LOOKUP_SWITCH: {
+                    int n = ARG1(i);
+
+                    asm.op(ClassFileWriter.DUP);
+                    asm.aload(CONSTANTS_SLOT);
+                    asm.iconst(i);
+                    asm.invoke(ClassFileWriter.INVOKESTATIC, RUNTIME, "select", "(" + OBJ + "[" + OBJ + "I)I");
+
+                    /* -1 skips the jump table, otherwise the key is popped and the selected entry is taken */
+                    Frame popped = out.copy();
+                    popped.pop();
+
+                    Label skip = edge(out, pc + n + 2, depth);
+                    Label[] stubs = new Label[n + 2];
+                    stubs[0] = skip;
+                    for(int k = 1; k < stubs.length; k++) {
+                        stubs[k] = new Label();
+                    }
+                    asm.tableswitch(-1, skip, stubs);
+
+                    for(int k = 1; k < stubs.length; k++) {
+                        asm.mark(stubs[k]);
+                        asm.op(ClassFileWriter.POP);
+                        asm.jump(ClassFileWriter.GOTO, edge(popped, pc + k, depth - 1));
+                    }
+                    this.fallthrough = null;
+                    break;
+                }
+                default: {
+                    throw new IllegalStateException("Unsupported opcode: " + opcode);
+                }
+            }
+
+            return pc;
+        }
+
+        /**
+         * Loads the operands of an instruction operating on a local variable and either another local
+         * variable or a constant.  Typed operands are loaded unboxed, converted to the same type.  If only the
+         * left operand is typed, the right operand is loaded beneath it (see {@link #invokeReversed(String, int)}),
+         * otherwise both are loaded as {@link LeoObject}s.
+         *
+         * @param i the instruction
+         * @param isLocal if the right operand is a local variable, rather than a constant
+         * @param in the types before the instruction
+         * @return the type of both operands, or BOXED if they are not both typed
+         */
+        private int localOperands(int i, boolean isLocal, Frame in) {
+            int left = in.locals[ARG1(i)];
+            int right = isLocal ? in.locals[ARG2(i)] : typeOf(code.constants[ARG2(i)]);
+
+            if(left != BOXED && right != BOXED) {
+                int kind = numericType(left, right);
+                load(ARG1(i), left);
+                if(kind != left) {
+                    asm.op(ClassFileWriter.I2D);
+                }
+
+                if(isLocal) {
+                    load(ARG2(i), right);
+                }
+                else if(kind == INT) {
+                    asm.iconst(code.constants[ARG2(i)].asInt());
+                }
+                else {
+                    asm.dconst(code.constants[ARG2(i)].asDouble());
+                }
+
+                if(kind != right && isLocal) {
+                    asm.op(ClassFileWriter.I2D);
+                }
+                return kind;
+            }
+
+            if(left != BOXED) {
+                if(isLocal) {
+                    asm.aload(LOCALS_SLOT + ARG2(i));
+                }
+                else {
+                    loadConstant(ARG2(i));
+                }
+                load(ARG1(i), left);
+            }
+            else {
+                asm.aload(LOCALS_SLOT + ARG1(i));
+                if(isLocal) {
+                    loadBoxed(ARG2(i), in);
+                }
+                else {
+                    loadConstant(ARG2(i));
+                }
+            }
+            return BOXED;
+        }
+
+        /**
+         * Loads a local variable as the type it holds
+         *
+         * @param local
+         * @param type
+         */
+        private void load(int local, int type) {
+            switch(type) {
+                case INT: asm.iload(intSlot(local)); break;
+                case DOUBLE: asm.dload(doubleSlot(local)); break;
+                default: asm.aload(LOCALS_SLOT + local);
+            }
+        }
+
+        /**
+         * Loads a local variable as a {@link LeoObject}, boxing it if it is typed.  The boxed value
+         * is kept, so that it is only boxed once for each value it is assigned.
+         *
+         * @param local
+         * @param in the types before the instruction
+         */
+        private void loadBoxed(int local, Frame in) {
+            int type = in.locals[local];
+            if(type != BOXED && !in.boxed[local]) {
+                load(local, type);
+                box(type);
+                asm.op(ClassFileWriter.DUP);
+                asm.astore(LOCALS_SLOT + local);
+            }
+            else {
+                asm.aload(LOCALS_SLOT + local);
+            }
+        }
+
+        private void box(int type) {
+            if(type == INT) {
+                asm.invoke(ClassFileWriter.INVOKESTATIC, LEO_INTEGER, "valueOf", "(I)L" + LEO_INTEGER + ";");
+            }
+            else {
+                asm.invoke(ClassFileWriter.INVOKESTATIC, LEO_DOUBLE, "valueOf", "(D)L" + LEO_DOUBLE + ";");
+            }
+        }
+
+        /**
+         * Boxes the result of an arithmetic instruction, if it is consumed as a {@link LeoObject}
+         *
+         * @param out the types after the instruction
+         * @param type the type of the result
+         */
+        private void boxResult(Frame out, int type) {
+            if(type(out.peek(0)) == BOXED) {
+                box(type);
+            }
+        }
+
+        private void pop(int type) {
+            asm.op(type == DOUBLE ? ClassFileWriter.POP2 : ClassFileWriter.POP);
+        }
+
+        /**
+         * Converts the two typed operands on top of the stack to the same type
+         *
+         * @param left
+         * @param right
+         */
+        private void convertOperands(int left, int right) {
+            if(left == INT && right == DOUBLE) {
+
+                /* left is beneath the right operand, so move it on top to convert it and then back */
+                asm.op(ClassFileWriter.DUP2_X1);
+                asm.op(ClassFileWriter.POP2);
+                asm.op(ClassFileWriter.I2D);
+                asm.op(ClassFileWriter.DUP2_X2);
+                asm.op(ClassFileWriter.POP2);
+            }
+            else if(left == DOUBLE && right == INT) {
+                asm.op(ClassFileWriter.I2D);
+            }
+        }
+
+        /**
+         * Moves a {@link LeoObject} right operand beneath the typed left operand
+         *
+         * @param left the type of the left operand
+         */
+        private void swapOperands(int left) {
+            if(left == DOUBLE) {
+                asm.op(ClassFileWriter.DUP_X2);
+                asm.op(ClassFileWriter.POP);
+            }
+            else {
+                asm.op(ClassFileWriter.SWAP);
+            }
+        }
+
+        /**
+         * Invokes the method of the right operand taking the typed left operand, which
+         * computes <code>left op right</code>; the same method a boxed left operand would invoke.
+         *
+         * @param name
+         * @param left the type of the left operand
+         */
+        private void invokeReversed(String name, int left) {
+            asm.invoke(ClassFileWriter.INVOKEVIRTUAL, LEO_OBJECT, name, "(" + (left == INT ? "I" : "D") + ")" + OBJ);
+        }
+
+        private void invokeCompareReversed(int opcode, int left) {
+            asm.invoke(ClassFileWriter.INVOKEVIRTUAL, LEO_OBJECT, compareName(opcode), "(" + (left == INT ? "I" : "D") + ")Z");
+        }
+
+        private static String arithmeticName(int opcode) {
+            switch(opcode) {
+                case ADD: return "$add";
+                case SUB: return "$sub";
+                case MUL: return "$mul";
+                case DIV: return "$div";
+                case MOD: return "$mod";
+                default: throw new IllegalStateException("Unsupported arithmetic: " + opcode);
+            }
+        }
+
+        /**
+         * Computes the arithmetic on the two operands of the same type on top of the stack, which
+         * mirrors {@link leola.vm.types.LeoInteger} and {@link leola.vm.types.LeoDouble}
+         *
+         * @param opcode
+         * @param kind the type of the operands
+         */
+        private void arithmetic(int opcode, int kind) {
+            boolean isInt = kind == INT;
+            switch(opcode) {
+                case ADD: asm.op(isInt ? ClassFileWriter.IADD : ClassFileWriter.DADD); break;
+                case SUB: asm.op(isInt ? ClassFileWriter.ISUB : ClassFileWriter.DSUB); break;
+                case MUL: asm.op(isInt ? ClassFileWriter.IMUL : ClassFileWriter.DMUL); break;
+                case DIV: {
+                    checkDivisor(kind);
+                    asm.op(isInt ? ClassFileWriter.IDIV : ClassFileWriter.DDIV);
+                    break;
+                }
+                case MOD: {
+                    checkDivisor(kind);
+                    asm.op(isInt ? ClassFileWriter.IREM : ClassFileWriter.DREM);
+                    break;
+                }
+                default: throw new IllegalStateException("Unsupported arithmetic: " + opcode);
+            }
+        }
+
+        private void checkDivisor(int kind) {
+            Label nonZero = new Label();
+            if(kind == INT) {
+                asm.op(ClassFileWriter.DUP);
+                asm.jump(ClassFileWriter.IFNE, nonZero);
+            }
+            else {
+                asm.op(ClassFileWriter.DUP2);
+                asm.op(ClassFileWriter.DCONST_0);
+                asm.op(ClassFileWriter.DCMPL);
+                asm.jump(ClassFileWriter.IFNE, nonZero);
+            }
+
+            asm.invoke(ClassFileWriter.INVOKESTATIC, LEO_OBJECT, "throwDivideByZeroError", "()V");
+
+            /* not reached, the error is always thrown */
+            asm.op(ClassFileWriter.ACONST_NULL);
+            asm.op(ClassFileWriter.ATHROW);
+            asm.mark(nonZero);
+        }
+
+        /**
+         * Compares the two operands of the same type on top of the stack, jumping if the comparison is false
+         *
+         * @param opcode
+         * @param kind the type of the operands
+         * @param whenFalse
+         */
+        private void compareAndJump(int opcode, int kind, Label whenFalse) {
+            if(kind == INT) {
+                int jump = 0;
+                switch(opcode) {
+                    case EQ:  jump = ClassFileWriter.IF_ICMPNE; break;
+                    case NEQ: jump = ClassFileWriter.IF_ICMPEQ; break;
+                    case GT:  jump = ClassFileWriter.IF_ICMPLE; break;
+                    case GTE: jump = ClassFileWriter.IF_ICMPLT; break;
+                    case LT:  jump = ClassFileWriter.IF_ICMPGE; break;
+                    case LTE: jump = ClassFileWriter.IF_ICMPGT; break;
+                    default: throw new IllegalStateException("Unsupported comparison: " + opcode);
+                }
+                asm.jump(jump, whenFalse);
+                return;
+            }
+
+            /* NaN compares as false, other than with NEQ */
+            switch(opcode) {
+                case EQ:  asm.op(ClassFileWriter.DCMPL); asm.jump(ClassFileWriter.IFNE, whenFalse); break;
+                case NEQ: asm.op(ClassFileWriter.DCMPL); asm.jump(ClassFileWriter.IFEQ, whenFalse); break;
+                case GT:  asm.op(ClassFileWriter.DCMPL); asm.jump(ClassFileWriter.IFLE, whenFalse); break;
+                case GTE: asm.op(ClassFileWriter.DCMPL); asm.jump(ClassFileWriter.IFLT, whenFalse); break;
+                case LT:  asm.op(ClassFileWriter.DCMPG); asm.jump(ClassFileWriter.IFGE, whenFalse); break;
+                case LTE: asm.op(ClassFileWriter.DCMPG); asm.jump(ClassFileWriter.IFGT, whenFalse); break;
+                default: throw new IllegalStateException("Unsupported comparison: " + opcode);
+            }
+        }
+
+        private void compareToBoolean(int opcode, int kind) {
+            Label isFalse = new Label();
+            Label done = new Label();
+            compareAndJump(opcode, kind, isFalse);
+            asm.field(ClassFileWriter.GETSTATIC, LEO_BOOLEAN, "LEOTRUE", "L" + LEO_BOOLEAN + ";");
+            asm.jump(ClassFileWriter.GOTO, done);
+            asm.mark(isFalse);
+            asm.field(ClassFileWriter.GETSTATIC, LEO_BOOLEAN, "LEOFALSE", "L" + LEO_BOOLEAN + ";");
+            asm.mark(done);
+        }
+
+        private void loadNull() {
+            asm.field(ClassFileWriter.GETSTATIC, LEO_OBJECT, "NULL", OBJ);
+        }
+
+        private void loadConstant(int index) {
+            asm.aload(CONSTANTS_SLOT);
+            asm.iconst(index);
+            asm.op(ClassFileWriter.AALOAD);
+        }
+
+        private void loadInlineCache(int pc) {
+            asm.aload(CODE_SLOT);
+            asm.iconst(pc);
+            asm.invoke(ClassFileWriter.INVOKEVIRTUAL, BYTECODE, "getInlineCache", "(I)" + CACHE);
+        }
+
+        private void toBoolean() {
+            asm.invoke(ClassFileWriter.INVOKESTATIC, LEO_BOOLEAN, "valueOf", "(Z)L" + LEO_BOOLEAN + ";");
+        }
+
+        /**
+         * Invokes the {@link leola.vm.types.LeoObject} method on the operands
+         *
+         * @param name
+         * @param numberOfArgs
+         */
+        private void method(String name, int numberOfArgs) {
+            asm.invoke(ClassFileWriter.INVOKEVIRTUAL, LEO_OBJECT, name, "(" + repeat(OBJ, numberOfArgs) + ")" + OBJ);
+        }
+
+        /**
+         * Invokes the {@link JitRuntime} method on the operands
+         *
+         * @param name
+         * @param numberOfArgs
+         */
+        private void runtime(String name, int numberOfArgs) {
+            asm.invoke(ClassFileWriter.INVOKESTATIC, RUNTIME, name, "(" + repeat(OBJ, numberOfArgs) + ")" + OBJ);
+        }
+
+        private void compare(int opcode) {
+            asm.invoke(ClassFileWriter.INVOKEVIRTUAL, LEO_OBJECT, compareName(opcode), "(" + OBJ + ")Z");
+        }
+
+        private static String compareName(int opcode) {
+            switch(opcode) {
+                case REQ:  return "$req";
+                case RNEQ: return "$rneq";
+                case EQ:   return "$eq";
+                case NEQ:  return "$neq";
+                case GT:   return "$gt";
+                case GTE:  return "$gte";
+                case LT:   return "$lt";
+                case LTE:  return "$lte";
+                default: throw new IllegalStateException("Unsupported comparison: " + opcode);
+            }
+        }
+
+        /**
+         * Moves the top most operands into a new array, the first operand
+         * being the deepest on the stack
+         *
+         * @param size the number of operands
+         */
+        private void newArray(int size) {
+            asm.iconst(size);
+            asm.type(ClassFileWriter.ANEWARRAY, LEO_OBJECT);
+            for(int j = size - 1; j >= 0; j--) {
+                asm.op(ClassFileWriter.DUP_X1);
+                asm.op(ClassFileWriter.SWAP);
+                asm.iconst(j);
+                asm.op(ClassFileWriter.SWAP);
+                asm.op(ClassFileWriter.AASTORE);
+            }
+        }
+
+        private static String repeat(String str, int times) {
+            StringBuilder sb = new StringBuilder();
+            for(int j = 0; j < times; j++) {
+                sb.append(str);
+            }
+            return sb.toString();
+        }
+    }
+}
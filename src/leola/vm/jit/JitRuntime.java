@@ -0,0 +1,165 @@
+/*
+    Leola Programming Language
+    Author: Tony Sparks
+    See license.txt
+*/
+package leola.vm.jit;
+
+import leola.vm.InlineCache;
+import leola.vm.JumpTables;
+import leola.vm.exceptions.LeolaRuntimeException;
+import leola.vm.types.LeoArray;
+import leola.vm.types.LeoBoolean;
+import leola.vm.types.LeoError;
+import leola.vm.types.LeoMap;
+import leola.vm.types.LeoObject;
+import leola.vm.types.LeoScopedObject;
+import leola.vm.types.LeoString;
+
+/**
+ * The operations invoked by {@link CompiledBytecode} which are more than a single method call on a {@link LeoObject}.  Each
+ * mirrors the handling of its instruction in the {@link leola.vm.VM}.
+ *
+ * @author Tony
+ *
+ */
+public class JitRuntime {
+
+    public static LeoObject getk(LeoObject obj, LeoObject name, InlineCache cache) {
+        LeoObject value = null;
+        if(obj.isScopedObject()) {
+            value = cache.getProperty((LeoScopedObject)obj, name);
+            if(value == null) {
+                obj.throwAttributeError(name);
+            }
+        }
+        else {
+            value = obj.xgetObject(name);
+        }
+        return value;
+    }
+
+    public static LeoObject egetk(LeoObject obj, LeoObject name, InlineCache cache) {
+        LeoObject value = LeoObject.NULL;
+        if(obj.isScopedObject()) {
+            value = cache.getProperty((LeoScopedObject)obj, name);
+            if(value == null) {
+                value = LeoObject.NULL;
+            }
+        }
+        else if(obj.isAccessible()) {
+            value = obj.getObject(name);
+        }
+        return value;
+    }
+
+    public static LeoObject setk(LeoObject value, LeoObject obj, LeoObject name, InlineCache cache) {
+        if(obj.isScopedObject()) {
+            cache.setProperty((LeoScopedObject)obj, name, value);
+        }
+        else {
+            obj.setObject(name, value);
+        }
+        return obj;
+    }
+
+    public static LeoObject set(LeoObject value, LeoObject obj, LeoObject index) {
+        obj.setObject(index, value);
+        return obj;
+    }
+
+    public static LeoObject sidx(LeoObject value, LeoObject obj, LeoObject index) {
+        obj.$sindex(index, value);
+        return obj;
+    }
+
+    public static LeoObject getGlobal(LeoScopedObject scopedObj, LeoObject name) {
+        LeoObject member = scopedObj.getScope().getObject(name);
+        if(member == null) {
+            scopedObj.throwAttributeError(name);
+        }
+        return member;
+    }
+
+    public static void setGlobal(LeoObject value, LeoScopedObject scopedObj, LeoObject name) {
+        scopedObj.addProperty(name, value);
+    }
+
+    public static LeoObject newArray(LeoObject[] elements) {
+        LeoArray array = new LeoArray(elements.length);
+        for(int i = 0; i < elements.length; i++) {
+            array.add(elements[i]);
+        }
+        return array;
+    }
+
+    public static LeoObject concat(LeoObject[] operands) {
+        return LeoString.concat(operands, 0, operands.length);
+    }
+
+    public static LeoObject newMap(LeoObject[] entries) {
+        LeoMap map = new LeoMap(entries.length / 2);
+
+        /* the entries are added starting with the last one, the same
+         * order as they are popped off of the stack */
+        for(int i = entries.length - 2; i >= 0; i -= 2) {
+            map.put(entries[i], entries[i + 1]);
+        }
+        return map;
+    }
+
+    public static LeoObject and(LeoObject l, LeoObject r) {
+        return LeoBoolean.valueOf(l.isTrue() && r.isTrue());
+    }
+
+    public static LeoObject or(LeoObject l, LeoObject r) {
+        return LeoBoolean.valueOf(l.isTrue() || r.isTrue());
+    }
+
+    public static LeoObject isA(LeoObject type, LeoObject obj) {
+        return LeoBoolean.valueOf(obj.isOfType(type.toString()));
+    }
+
+    public static LeolaRuntimeException error(LeoObject message) {
+        return new LeolaRuntimeException(new LeoError(message), false);
+    }
+
+    public static CompiledCodeException raisedAt(Throwable e, int pc) {
+        if(e instanceof CompiledCodeException) {
+            return (CompiledCodeException)e;
+        }
+        return new CompiledCodeException(e, pc);
+    }
+
+    public static int select(LeoObject key, LeoObject[] constants, int i) {
+        return JumpTables.select(constants, i, key);
+    }
+
+    public static LeoObject invoke(LeoObject fun) {
+        return fun.xcall();
+    }
+
+    public static LeoObject invoke(LeoObject fun, LeoObject arg1) {
+        return fun.xcall(arg1);
+    }
+
+    public static LeoObject invoke(LeoObject fun, LeoObject arg1, LeoObject arg2) {
+        return fun.xcall(arg1, arg2);
+    }
+
+    public static LeoObject invoke(LeoObject fun, LeoObject arg1, LeoObject arg2, LeoObject arg3) {
+        return fun.xcall(arg1, arg2, arg3);
+    }
+
+    public static LeoObject invoke(LeoObject fun, LeoObject arg1, LeoObject arg2, LeoObject arg3, LeoObject arg4) {
+        return fun.xcall(arg1, arg2, arg3, arg4);
+    }
+
+    public static LeoObject invoke(LeoObject fun, LeoObject arg1, LeoObject arg2, LeoObject arg3, LeoObject arg4, LeoObject arg5) {
+        return fun.xcall(arg1, arg2, arg3, arg4, arg5);
+    }
+
+    public static LeoObject invoke(LeoObject fun, LeoObject[] args) {
+        return fun.xcall(args);
+    }
+}
@@ -32,6 +32,14 @@ import leola.vm.lib.LeolaMethod;
  * <p>
  * All optional methods are implemented from the {@link List} interface and {@link Iterator}.
  *
+ * <p>
+ * The elements are kept in one of a number of storage strategies.  An array starts out empty and specializes to the type of
+ * the first element added: an array of integers, longs or reals is backed by a primitive Java array, and its elements are
+ * only boxed when read.  The first time an element of another type is stored the array is generalized to an array of
+ * {@link LeoObject}'s, which it then remains.  Elements are boxed through the same caches as any other number (see
+ * {@link LeoInteger#valueOf(int)}), so a small number reads back as the same object each time; any other number is boxed
+ * anew on each read, which is equal (==) to, but not the same reference (===) as, the last read.
+ *
  * @author Tony
  *
  */
@@ -71,7 +79,23 @@ public class LeoArray extends LeoObject implements List<LeoObject> {
     }
     
     
+    /*
+     * The storage strategies; only one of the backing arrays is in use at a time
+     */
+    private static final int EMPTY   = 0;
+    private static final int INTS    = 1;
+    private static final int LONGS   = 2;
+    private static final int DOUBLES = 3;
+    private static final int OBJECTS = 4;
+    
+    private int strategy;
     private LeoObject[] array;
+    private int[] ints;
+    private long[] longs;
+    private double[] doubles;
+    
+    /* the capacity to allocate once an EMPTY array is specialized */
+    private int emptyCapacity;
     private int size;
     
     /**
@@ -87,21 +111,18 @@ public class LeoArray extends LeoObject implements List<LeoObject> {
         super(LeoType.ARRAY);
 
         this.size = 0;
-        this.array = new LeoObject[initialSize];    
-        clear();
+        this.strategy = EMPTY;
+        this.emptyCapacity = initialSize;
     }
     
     /**
      * @param array
      */
     public LeoArray(List<LeoObject> array) {
-        super(LeoType.ARRAY);
-
-        this.size = array.size();
-        this.array = new LeoObject[this.size];
+        this(array.size());
         
-        for(int i = 0; i < this.size; i++) {
-            this.array[i] = array.get(i);
+        for(int i = 0; i < array.size(); i++) {
+            add(array.get(i));
         }
     }
 
@@ -119,6 +140,7 @@ public class LeoArray extends LeoObject implements List<LeoObject> {
     public LeoArray(LeoObject[] a, int size) {
         super(LeoType.ARRAY);
         
+        this.strategy = OBJECTS;
         this.array = a;
         this.size = size;
     }
@@ -205,16 +227,32 @@ public class LeoArray extends LeoObject implements List<LeoObject> {
      */
     public LeoArray sort(final LeoObject function) {
         if(function != null) {
-            Arrays.sort(this.array, 0, this.size, new Comparator<LeoObject>() {                
+            Comparator<LeoObject> comparator = new Comparator<LeoObject>() {                
                 @Override
                 public int compare(LeoObject o1, LeoObject o2) {
                     LeoObject result = function.xcall(o1, o2);
                     return result.asInt();
                 }
-            });
+            };
+            
+            if(isSpecialized()) {
+                LeoObject[] elements = toArray();
+                Arrays.sort(elements, comparator);
+                for(int i = 0; i < elements.length; i++) {
+                    set(i, elements[i]);
+                }
+            }
+            else if(this.strategy == OBJECTS) {
+                Arrays.sort(this.array, 0, this.size, comparator);
+            }
         }
         else {
-            Arrays.sort(this.array, 0, this.size);
+            switch(this.strategy) {
+                case INTS:    Arrays.sort(this.ints, 0, this.size);    break;
+                case LONGS:   Arrays.sort(this.longs, 0, this.size);   break;
+                case DOUBLES: Arrays.sort(this.doubles, 0, this.size); break;
+                case OBJECTS: Arrays.sort(this.array, 0, this.size);   break;
+            }
         }
         
         return this;
@@ -346,8 +384,6 @@ public class LeoArray extends LeoObject implements List<LeoObject> {
      */
     @Override
     public String toString() {
-        if (this.array == null)
-            return "[]";
         int iMax = this.size - 1;
         if (iMax == -1)
             return "[]";
@@ -355,18 +391,18 @@ public class LeoArray extends LeoObject implements List<LeoObject> {
         StringBuilder b = new StringBuilder();
         b.append('[');
         for (int i = 0; ; i++) {
-            LeoObject v = this.array[i];
+            LeoObject v = get(i);
             if(v==null) {
                 b.append("null");
             }
             else if(v.isString()) {
-                b.append("\"").append(this.array[i].toString()).append("\"");
+                b.append("\"").append(v.toString()).append("\"");
             }
             else if(v.isNull()) {
                 b.append("null");
             }
             else {
-                b.append(this.array[i].toString());
+                b.append(v.toString());
             }
             
             if (i >= iMax)
@@ -434,8 +470,10 @@ public class LeoArray extends LeoObject implements List<LeoObject> {
      * Clears the array
      */
     public void clear() {
-        for(int i = 0; i < this.size; i++ ) {
-            this.array[i] = LeoNull.LEONULL;
+        if(this.strategy == OBJECTS) {
+            for(int i = 0; i < this.size; i++ ) {
+                this.array[i] = LeoNull.LEONULL;
+            }
         }
         this.size = 0;
     }
@@ -461,7 +499,13 @@ public class LeoArray extends LeoObject implements List<LeoObject> {
      */
     @LeolaMethod(alias="get")
     public LeoObject get(int i) {
-        return this.array[i];
+        switch(this.strategy) {
+            case INTS:    return (i < this.size) ? LeoInteger.valueOf(this.ints[i]) : unsetElement(i);
+            case LONGS:   return (i < this.size) ? LeoLong.valueOf(this.longs[i]) : unsetElement(i);
+            case DOUBLES: return (i < this.size) ? LeoDouble.valueOf(this.doubles[i]) : unsetElement(i);
+            case OBJECTS: return this.array[i];
+            default:      return unsetElement(i);
+        }
     }
 
     /**
@@ -575,6 +619,14 @@ public class LeoArray extends LeoObject implements List<LeoObject> {
      * @param obj
      */
     public LeoObject set(int index, LeoObject obj) {
+        if(this.strategy != OBJECTS) {
+            if(index < this.size && strategyOf(obj) == this.strategy) {
+                store(index, obj);
+                return obj;
+            }
+            
+            generalize();
+        }
         return this.array[index] = obj;
     }
 
@@ -584,7 +636,7 @@ public class LeoArray extends LeoObject implements List<LeoObject> {
      * @param obj
      */
     public void set(LeoObject index, LeoObject obj) {
-        this.array[index.asInt()] = obj;
+        set(index.asInt(), obj);
     }
 
     public LeoObject reverse() {
@@ -607,6 +659,17 @@ public class LeoArray extends LeoObject implements List<LeoObject> {
             throw new LeolaRuntimeException("Can't slice an array with start > end");            
         }
         
+        if(isSpecialized() && end <= this.size) {
+            LeoArray slice = new LeoArray(end-start);
+            slice.specialize(this.strategy);
+            System.arraycopy(storage(), start, slice.storage(), 0, end-start);
+            slice.size = end-start;
+            
+            return slice;
+        }
+        
+        generalize();
+        
         LeoObject[] slice = new LeoObject[end-start];
         System.arraycopy(this.array, start, slice, 0, slice.length);
         
@@ -627,14 +690,14 @@ public class LeoArray extends LeoObject implements List<LeoObject> {
      * @return the first element
      */
     public LeoObject first() {
-        return this.array[0];
+        return get(0);
     }
     /**
      * @return the last element
      */
     public LeoObject last() {
-        if(this.array.length > 0) {
-            return this.array[this.size-1];
+        if(capacity() > 0) {
+            return get(this.size-1);
         }
         return LeoNull.LEONULL;
     }
@@ -661,7 +724,7 @@ public class LeoArray extends LeoObject implements List<LeoObject> {
      */
     public boolean has(LeoObject value) {
         for(int i = 0; i < this.size; i++) {
-            LeoObject l = this.array[i];
+            LeoObject l = get(i);
             if ( l != null && l.$eq(value)) {
                 return true;
             }
@@ -674,14 +737,24 @@ public class LeoArray extends LeoObject implements List<LeoObject> {
      */
     public LeoObject[] toArray() {
         LeoObject[] clone = new LeoObject[this.size];
-        System.arraycopy(this.array, 0, clone, 0, clone.length);
+        if(this.strategy == OBJECTS) {
+            System.arraycopy(this.array, 0, clone, 0, clone.length);
+        }
+        else {
+            for(int i = 0; i < clone.length; i++) {
+                clone[i] = get(i);
+            }
+        }
         return clone;
     }
     
     /**
+     * Note, this generalizes the storage of this array to {@link LeoObject}'s
+     * 
      * @return a native array representation
      */
     public LeoObject[] getRawArray() {
+        generalize();
         return this.array;
     }
     
@@ -690,7 +763,11 @@ public class LeoArray extends LeoObject implements List<LeoObject> {
      */
     @Override
     public LeoObject clone() {
-        return new LeoArray(this.array, this.size);
+        switch(this.strategy) {
+            case OBJECTS: return new LeoArray(this.array, this.size);
+            case EMPTY:   return new LeoArray(this.emptyCapacity);
+            default:      return slice(0, this.size);
+        }
     }
 
     /* (non-Javadoc)
@@ -742,9 +819,13 @@ public class LeoArray extends LeoObject implements List<LeoObject> {
         if ( other != null && other.isOfType(LeoType.ARRAY)) {
             LeoArray otherarray = other.as();
             if ( otherarray.size == this.size) {
+                if(otherarray.strategy == this.strategy && isSpecialized()) {
+                    return equalElements(otherarray);
+                }
+                
                 for(int i = 0; i < this.size; i++) {
-                    LeoObject l = this.array[i];
-                    LeoObject r = otherarray.array[i];
+                    LeoObject l = get(i);
+                    LeoObject r = otherarray.get(i);
                     if ( ! LeoObject.$eq(l, r) ) {
                         return false;
                     }
@@ -775,7 +856,7 @@ public class LeoArray extends LeoObject implements List<LeoObject> {
             Class<?> arrayType = narrowType.getComponentType();
             Object array = Array.newInstance(arrayType, size());
             for(int i = 0; i < size(); i++) {
-                Object javaElement = LeoObject.toJavaObject(arrayType, this.array[i]);
+                Object javaElement = LeoObject.toJavaObject(arrayType, get(i));
                 Array.set(array, i, javaElement);
             }
             return array;
@@ -804,8 +885,34 @@ public class LeoArray extends LeoObject implements List<LeoObject> {
     public void write(DataOutput out) throws IOException {
         out.write(this.getType().ordinal());
         out.writeInt(this.size);
-        for(int i = 0; i < this.size; i++) {            
-            this.array[i].write(out);
+        switch(this.strategy) {
+            case INTS: {
+                for(int i = 0; i < this.size; i++) {
+                    out.write(LeoType.INTEGER.ordinal());
+                    out.writeInt(this.ints[i]);
+                }
+                break;
+            }
+            case LONGS: {
+                for(int i = 0; i < this.size; i++) {
+                    out.write(LeoType.LONG.ordinal());
+                    out.writeLong(this.longs[i]);
+                }
+                break;
+            }
+            case DOUBLES: {
+                for(int i = 0; i < this.size; i++) {
+                    out.write(LeoType.REAL.ordinal());
+                    out.writeDouble(this.doubles[i]);
+                }
+                break;
+            }
+            case OBJECTS: {
+                for(int i = 0; i < this.size; i++) {            
+                    this.array[i].write(out);
+                }
+                break;
+            }
         }
     }
     
@@ -820,8 +927,13 @@ public class LeoArray extends LeoObject implements List<LeoObject> {
         int size = in.readInt();
         LeoArray result = new LeoArray(size);
         for(int i = 0; i < size; i++) {
-            LeoObject obj = LeoObject.read(env, in);
-            result.$add(obj);
+            LeoType type = LeoType.fromOrdinal(in.readByte());
+            switch(type) {
+                case INTEGER: result.addInt(in.readInt());       break;
+                case LONG:    result.addLong(in.readLong());     break;
+                case REAL:    result.addDouble(in.readDouble()); break;
+                default:      result.add(LeoObject.read(env, type, in));
+            }
         }
         
         return result;
@@ -863,26 +975,187 @@ public class LeoArray extends LeoObject implements List<LeoObject> {
         }
         
         for(int i = 0; i < this.size; i++) {            
-            a[i] = (T)this.array[i].getValue();
+            a[i] = (T)get(i).getValue();
         }
         return a;
     }
     
     
 
+    /**
+     * @param obj
+     * @return the storage strategy which holds the supplied element
+     */
+    private static int strategyOf(LeoObject obj) {
+        if(obj != null) {
+            switch(obj.getType()) {
+                case INTEGER: return INTS;
+                case LONG:    return LONGS;
+                case REAL:    return DOUBLES;
+                default:
+            }
+        }
+        return OBJECTS;
+    }
+    
+    /**
+     * @return true if the elements are held in a primitive array
+     */
+    private boolean isSpecialized() {
+        return this.strategy != EMPTY && this.strategy != OBJECTS;
+    }
+    
+    /**
+     * @return the backing array of the current strategy
+     */
+    private Object storage() {
+        switch(this.strategy) {
+            case INTS:    return this.ints;
+            case LONGS:   return this.longs;
+            case DOUBLES: return this.doubles;
+            case OBJECTS: return this.array;
+            default:      return null;
+        }
+    }
+    
+    private int capacity() {
+        switch(this.strategy) {
+            case INTS:    return this.ints.length;
+            case LONGS:   return this.longs.length;
+            case DOUBLES: return this.doubles.length;
+            case OBJECTS: return this.array.length;
+            default:      return this.emptyCapacity;
+        }
+    }
+    
+    /**
+     * Reads an element beyond the size of an array which isn't held as {@link LeoObject}'s; as with an array
+     * of {@link LeoObject}'s, these are null up to the capacity of the array.
+     * 
+     * @param i
+     * @return {@link LeoNull#LEONULL}
+     */
+    private LeoObject unsetElement(int i) {
+        int capacity = capacity();
+        if(i < 0 || i >= capacity) {
+            throw new ArrayIndexOutOfBoundsException("Index " + i + " out of bounds for length " + capacity);
+        }
+        return LeoNull.LEONULL;
+    }
+    
+    /**
+     * Switches to the supplied specialized strategy, only done while the array has no elements
+     * 
+     * @param strategy
+     */
+    private void specialize(int strategy) {
+        int capacity = capacity();
+        this.ints = null;
+        this.longs = null;
+        this.doubles = null;
+        
+        switch(strategy) {
+            case INTS:    this.ints = new int[capacity];       break;
+            case LONGS:   this.longs = new long[capacity];     break;
+            case DOUBLES: this.doubles = new double[capacity]; break;
+        }
+        this.strategy = strategy;
+    }
+    
+    /**
+     * Switches to holding the elements as {@link LeoObject}'s, boxing any primitive elements
+     */
+    private void generalize() {
+        if(this.strategy != OBJECTS) {
+            int capacity = capacity();
+            LeoObject[] objects = new LeoObject[capacity];
+            for(int i = 0; i < this.size; i++) {
+                objects[i] = get(i);
+            }
+            for(int i = this.size; i < capacity; i++) {
+                objects[i] = LeoNull.LEONULL;
+            }
+            
+            this.array = objects;
+            this.ints = null;
+            this.longs = null;
+            this.doubles = null;
+            this.strategy = OBJECTS;
+        }
+    }
+    
+    /**
+     * Ensures the current strategy is able to hold the supplied element, specializing an array without elements
+     * to the element's type or otherwise generalizing the array.
+     * 
+     * @param obj
+     */
+    private void accept(LeoObject obj) {
+        if(this.strategy != OBJECTS) {
+            int strategy = strategyOf(obj);
+            if(strategy != this.strategy) {
+                if(this.size == 0 && strategy != OBJECTS) {
+                    specialize(strategy);
+                }
+                else {
+                    generalize();
+                }
+            }
+        }
+    }
+    
+    /**
+     * Stores the element, which must conform to the current strategy (see {@link #accept(LeoObject)})
+     * 
+     * @param index
+     * @param obj
+     */
+    private void store(int index, LeoObject obj) {
+        switch(this.strategy) {
+            case INTS:    this.ints[index] = obj.asInt();       break;
+            case LONGS:   this.longs[index] = obj.asLong();     break;
+            case DOUBLES: this.doubles[index] = obj.asDouble(); break;
+            default:      this.array[index] = obj;
+        }
+    }
+    
+    /**
+     * @param other an array of the same size and specialized strategy
+     * @return true if the elements of both arrays are equal
+     */
+    private boolean equalElements(LeoArray other) {
+        for(int i = 0; i < this.size; i++) {
+            switch(this.strategy) {
+                case INTS:    if(this.ints[i] != other.ints[i]) return false;       break;
+                case LONGS:   if(this.longs[i] != other.longs[i]) return false;     break;
+                case DOUBLES: if(this.doubles[i] != other.doubles[i]) return false; break;
+            }
+        }
+        return true;
+    }
+
     private void ensureCapacity(int minCapacity) {
         
-        int oldCapacity = this.array.length;
+        int oldCapacity = capacity();
         if (minCapacity > oldCapacity) {
-            LeoObject oldData[] = this.array;
             int newCapacity = (oldCapacity * 3)/2 + 1;
             
             if (newCapacity < minCapacity) newCapacity = minCapacity;
             
-            this.array = new LeoObject[newCapacity];
-            System.arraycopy(oldData, 0, this.array, 0, oldCapacity);     
-            for(int i = this.size; i < newCapacity; i++) {
-                this.array[i] = LeoNull.LEONULL;
+            switch(this.strategy) {
+                case INTS:    this.ints = Arrays.copyOf(this.ints, newCapacity);       break;
+                case LONGS:   this.longs = Arrays.copyOf(this.longs, newCapacity);     break;
+                case DOUBLES: this.doubles = Arrays.copyOf(this.doubles, newCapacity); break;
+                case OBJECTS: {
+                    LeoObject oldData[] = this.array;
+                    this.array = new LeoObject[newCapacity];
+                    System.arraycopy(oldData, 0, this.array, 0, oldCapacity);     
+                    for(int i = this.size; i < newCapacity; i++) {
+                        this.array[i] = LeoNull.LEONULL;
+                    }
+                    break;
+                }
+                default: this.emptyCapacity = newCapacity;
             }
         }
     }
@@ -892,10 +1165,41 @@ public class LeoArray extends LeoObject implements List<LeoObject> {
      */
     
     public boolean add(LeoObject e) {
+        accept(e);
         ensureCapacity(this.size + 1);
-        this.array[this.size++] = e;
+        store(this.size++, e);
         return true;
     }
+    
+    private void addInt(int value) {
+        if(this.strategy != INTS) {
+            add(LeoInteger.valueOf(value));
+        }
+        else {
+            ensureCapacity(this.size + 1);
+            this.ints[this.size++] = value;
+        }
+    }
+    
+    private void addLong(long value) {
+        if(this.strategy != LONGS) {
+            add(LeoLong.valueOf(value));
+        }
+        else {
+            ensureCapacity(this.size + 1);
+            this.longs[this.size++] = value;
+        }
+    }
+    
+    private void addDouble(double value) {
+        if(this.strategy != DOUBLES) {
+            add(LeoDouble.valueOf(value));
+        }
+        else {
+            ensureCapacity(this.size + 1);
+            this.doubles[this.size++] = value;
+        }
+    }
 
     /* (non-Javadoc)
      * @see java.util.List#remove(java.lang.Object)
@@ -907,7 +1211,7 @@ public class LeoArray extends LeoObject implements List<LeoObject> {
 
     private boolean _remove(Object o) {        
         for (int index = 0; index < size; index++) {
-            if (o.equals(this.array[index])) {
+            if (o.equals(get(index))) {
                 fastRemove(index);
                 return true;
             }
@@ -923,10 +1227,18 @@ public class LeoArray extends LeoObject implements List<LeoObject> {
     private void fastRemove(int index) {
         
         int numMoved = size - index - 1;
-        if (numMoved > 0)
-            System.arraycopy(array, index+1, array, index,
+        if (numMoved > 0) {
+            Object storage = storage();
+            System.arraycopy(storage, index+1, storage, index,
                              numMoved);
-        array[--size] = LeoNull.LEONULL;
+        }
+        
+        if(this.strategy == OBJECTS) {
+            array[--size] = LeoNull.LEONULL;
+        }
+        else {
+            --size;
+        }
     }
 
     /* (non-Javadoc)
@@ -988,7 +1300,7 @@ public class LeoArray extends LeoObject implements List<LeoObject> {
     public boolean retainAll(Collection<?> c) {
         List<LeoObject> objectsToRemove = new ArrayList<LeoObject>();
         for(int i = 0; i < this.size; i++) {
-            LeoObject o = this.array[i];
+            LeoObject o = get(i);
             if(o != null) {
                 if(!c.contains(o)) {
                     objectsToRemove.add(o);
@@ -1004,9 +1316,11 @@ public class LeoArray extends LeoObject implements List<LeoObject> {
      */
     
     public void add(int index, LeoObject element) {
+        accept(element);
         ensureCapacity(size+1); 
-        System.arraycopy(this.array, index, this.array, index + 1, size - index);
-        this.array[index] = element;
+        Object storage = storage();
+        System.arraycopy(storage, index, storage, index + 1, size - index);
+        store(index, element);
         size++;
     }
 
@@ -1015,12 +1329,12 @@ public class LeoArray extends LeoObject implements List<LeoObject> {
      */
     
     public LeoObject remove(int index) {
-        LeoObject oldValue = this.array[index];
-
-        int numMoved = size - index - 1;
-        if (numMoved > 0)
-            System.arraycopy(this.array, index+1, this.array, index, numMoved);
-        this.array[--size] = LeoNull.LEONULL;
+        if(index >= size) {
+            generalize();
+        }
+        
+        LeoObject oldValue = get(index);
+        fastRemove(index);
         return oldValue;
     }
 
@@ -1030,7 +1344,7 @@ public class LeoArray extends LeoObject implements List<LeoObject> {
     
     public int indexOf(Object o) {    
         for (int i = 0; i < size; i++) {
-            if (o.equals(this.array[i]))
+            if (o.equals(get(i)))
                 return i;
         }
     
@@ -1043,7 +1357,7 @@ public class LeoArray extends LeoObject implements List<LeoObject> {
     
     public int lastIndexOf(Object o) {    
         for (int i = size-1; i >= 0; i--) {
-            if (o.equals(this.array[i]))
+            if (o.equals(get(i)))
                 return i;
         }    
         return -1;
@@ -1101,7 +1415,7 @@ public class LeoArray extends LeoObject implements List<LeoObject> {
                 throw new NoSuchElementException();
                                     
             cursor = i + 1;
-            return array.array[(lastRet = i)];            
+            return array.get(lastRet = i);            
         }
 
         @Override
@@ -1116,7 +1430,7 @@ public class LeoArray extends LeoObject implements List<LeoObject> {
             if (i < 0)
                 throw new NoSuchElementException();            
             cursor = i;
-            return array.array[(lastRet = i)];            
+            return array.get(lastRet = i);            
         }
 
         @Override
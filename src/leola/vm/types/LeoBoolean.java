@@ -199,7 +199,7 @@ public class LeoBoolean extends LeoObject {
     @Override
     public LeoObject $add(LeoObject other) {
         if ( other.isString() ) {
-            return LeoString.valueOf(this.value + other.toString());
+            return new LeoString(this.value + other.toString());
         }
         return super.$add(other);
     }
@@ -96,17 +96,8 @@ public class LeoClass extends LeoScopedObject {
                   , ClassDefinition classDefinition
                   , LeoObject superClass
                   , LeoObject[] params) {
-        super(LeoType.CLASS, scope, classDefinition.getBody().numOuters);
-            
-        this.runtime = runtime;
-        this.classDefinition = classDefinition;
+        this(runtime, scope, classDefinition, superClass);
         
-        this.superClass = superClass;
-        this.className = classDefinition.getClassName();
-        this.constructor = classDefinition.getBody();
-        this.paramNames = classDefinition.getParameterNames();
-        this.outers = classDefinition.getOuters();
-                
         putObject("super", superClass);
         putObject("this", this);
                 
@@ -140,6 +131,33 @@ public class LeoClass extends LeoScopedObject {
         }
         
     }
+    
+    /**
+     * Creates an instance without running the class body, the members are expected to be copied into
+     * the {@link Scope} by the caller (e.g., when a fork copies an instance of its template runtime, see {@link Leola#fork()}).
+     * 
+     * @param runtime
+     * @param scope
+     * @param classDefinition
+     * @param superClass
+     */
+    public LeoClass(Leola runtime
+                  , Scope scope
+                  , ClassDefinition classDefinition
+                  , LeoObject superClass) {
+        super(LeoType.CLASS, scope, classDefinition.getBody().numOuters);
+        
+        this.runtime = runtime;
+        this.classDefinition = classDefinition;
+        
+        this.superClass = superClass;
+        this.className = classDefinition.getClassName();
+        this.constructor = classDefinition.getBody();
+        this.paramNames = classDefinition.getParameterNames();
+        this.outers = classDefinition.getOuters();
+        
+        scope.setOwner(this);
+    }
         
     /**
      * @return the paramNames
@@ -162,6 +180,13 @@ public class LeoClass extends LeoScopedObject {
         return constructor;
     }
 
+    /**
+     * @return the {@link ClassDefinition} this is an instance of
+     */
+    public ClassDefinition getClassDefinition() {
+        return classDefinition;
+    }
+    
     /**
      * @return the superClass
      */
@@ -216,7 +241,7 @@ public class LeoClass extends LeoScopedObject {
         StringBuilder sb = new StringBuilder();
         boolean isFirst = true;
 
-        LeoMap map = this.getScope().getRawObjects();
+        LeoMap map = this.getScope().getObjects();
         sb.append("{ ");
         final LeoString THIS = LeoString.valueOf("this");
         final LeoString SUPER = LeoString.valueOf("super");
@@ -405,7 +430,7 @@ public class LeoClass extends LeoScopedObject {
         }
         else {
             if (other.isString()) {
-                return LeoString.valueOf(toString() + other.toString());
+                return new LeoString(toString() + other.toString());
             }
         }
         
@@ -8,11 +8,19 @@ package leola.vm.types;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
-import java.util.Stack;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * An Error object
  * 
+ * <p>
+ * As an error is often caught and discarded (e.g., by a <code>try/catch</code> in the calling function), its stack 
+ * trace is recorded cheaply: the frames the error passes through are kept as their source file and line
+ * number (see {@link #addFrame(String, int)}), and are only turned into {@link LeoError}s once the stack trace
+ * is inspected.
+ * 
  * @author Tony
  *
  */
@@ -22,14 +30,19 @@ public class LeoError extends LeoObject {
     private int lineNumber;
     private String sourceFile;
     
-    private Stack<LeoError> stackTrace;
+    /* the stack trace, allocated once the first entry is added; an entry 
+     * without an error is a frame, which is created on demand from the 
+     * source file and line number */
+    private LeoError[] stackTrace;
+    private String[] stackSourceFiles;
+    private int[] stackLineNumbers;
+    private int stackSize;
     
     
     public LeoError(LeoObject message, int lineNumber) {
         super(LeoType.ERROR);
         this.message = message;
         this.lineNumber = lineNumber;
-        this.stackTrace = new Stack<LeoError>();
     }
     
     /**
@@ -44,21 +57,76 @@ public class LeoError extends LeoObject {
     }
     
     public LeoError(String msg) {
-        this(LeoString.valueOf(msg));
+        this(new LeoString(msg));
     }
     public LeoError(String msg, int lineNumber) {
-        this(LeoString.valueOf(msg), lineNumber);
+        this(new LeoString(msg), lineNumber);
     }
     public LeoError(int lineNumber) {
-        this(LeoString.valueOf(""), lineNumber);
+        this(new LeoString(""), lineNumber);
     }
     
     public LeoError() {
         this(LeoNull.LEONULL);
     }
     
+    /**
+     * Adds an error to the stack trace
+     * 
+     * @param error
+     */
     public void addStack(LeoError error) {
-        this.stackTrace.add(error);
+        int index = addEntry();
+        this.stackTrace[index] = error;
+    }
+    
+    /**
+     * Adds a frame the error was thrown from to the stack trace, this is a cheaper 
+     * equivalent of adding a {@link LeoError} without a message
+     * 
+     * @param sourceFile the source file of the frame, may be null
+     * @param lineNumber the line number of the frame
+     */
+    public void addFrame(String sourceFile, int lineNumber) {
+        int index = addEntry();
+        this.stackSourceFiles[index] = sourceFile;
+        this.stackLineNumbers[index] = lineNumber;
+    }
+    
+    private int addEntry() {
+        if(this.stackTrace == null) {
+            this.stackTrace = new LeoError[4];
+            this.stackSourceFiles = new String[4];
+            this.stackLineNumbers = new int[4];
+        }
+        else if(this.stackSize == this.stackTrace.length) {
+            int newSize = this.stackSize << 1;
+            this.stackTrace = Arrays.copyOf(this.stackTrace, newSize);
+            this.stackSourceFiles = Arrays.copyOf(this.stackSourceFiles, newSize);
+            this.stackLineNumbers = Arrays.copyOf(this.stackLineNumbers, newSize);
+        }
+        
+        return this.stackSize++;
+    }
+    
+    /**
+     * @return the errors and frames this error was thrown through
+     */
+    public List<LeoError> getStackTrace() {
+        List<LeoError> stackTrace = new ArrayList<LeoError>(this.stackSize);
+        for(int i = 0; i < this.stackSize; i++) {
+            stackTrace.add(getStackEntry(i));
+        }
+        return stackTrace;
+    }
+    
+    private LeoError getStackEntry(int index) {
+        LeoError error = this.stackTrace[index];
+        if(error == null) {
+            error = this.stackTrace[index] = new LeoError(LeoNull.LEONULL, this.stackLineNumbers[index]);
+            error.setSourceFile(this.stackSourceFiles[index]);
+        }
+        return error;
     }
     
     /**
@@ -128,9 +196,9 @@ public class LeoError extends LeoObject {
         sb.append("\n");
         
         int tab = 0;
-        int size = stackTrace.size();
+        int size = this.stackSize;
         for(int i = 0; i < size; i++) {                        
-            LeoError error = stackTrace.get(i);            
+            LeoError error = getStackEntry(i);            
             if(error.getLineNumber()>0) {
                 if(error.sourceFile!=null) {
                     sb.append("+-Thrown from ")
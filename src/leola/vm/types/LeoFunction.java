@@ -13,6 +13,7 @@ import java.util.Arrays;
 import leola.vm.Leola;
 import leola.vm.VM;
 import leola.vm.compiler.Bytecode;
+import leola.vm.compiler.Outer;
 
 
 /**
@@ -67,13 +68,30 @@ public class LeoFunction extends LeoOuterObject {
         this.numberOfArgs = bytecode.numArgs;
     }
     
+    /**
+     * Creates a function which shares its closure values with other functions
+     * 
+     * @param runtime
+     * @param env
+     * @param bytecode
+     * @param outers the already assigned closure values
+     */
+    public LeoFunction(Leola runtime, LeoObject env, Bytecode bytecode, Outer[] outers) {
+        super(LeoType.FUNCTION, outers);
+        
+        this.runtime = runtime;
+        this.env = env;
+        this.bytecode = bytecode;
+        this.numberOfArgs = bytecode.numArgs;
+    }
+    
     /* (non-Javadoc)
      * @see leola.vm.types.LeoObject#add(leola.vm.types.LeoObject)
      */
     @Override
     public LeoObject $add(LeoObject other) {
         if (other.isString()) {
-            return LeoString.valueOf(toString() + other.toString());
+            return new LeoString(toString() + other.toString());
         }
         return super.$add(other);
     }
@@ -94,6 +112,20 @@ public class LeoFunction extends LeoOuterObject {
         return bytecode;
     }
     
+    /**
+     * @return the environment this function was created in
+     */
+    public LeoObject getEnv() {
+        return env;
+    }
+    
+    /**
+     * @return the runtime which owns this function
+     */
+    public Leola getRuntime() {
+        return runtime;
+    }
+    
     /**
      * @return the numberOfArgs
      */
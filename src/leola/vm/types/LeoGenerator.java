@@ -8,6 +8,7 @@ package leola.vm.types;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.util.Arrays;
 
 import leola.vm.Leola;
 import leola.vm.compiler.Bytecode;
@@ -33,6 +34,11 @@ import leola.vm.compiler.Bytecode;
  *   println( talk() ) // prints null, the function is done computing
  *   
  * </pre>
+ * 
+ * <p>
+ * The {@link Bytecode} of a generator is shared by all of its instances; each instance keeps its own state, the
+ * program counter to resume at and the stack its frame executes on.  The {@link leola.vm.VM} executes the generator
+ * directly on this stack, so the local variables are left in place between a yield and the next resume.
  *
  * @author Tony
  *
@@ -40,11 +46,21 @@ import leola.vm.compiler.Bytecode;
 public class LeoGenerator extends LeoFunction {
     
     /**
-     * The locals that need to be saved with this
-     * generator
+     * The stack this generator executes on, its
+     * local variables followed by its operand stack
      */
     private LeoObject[] locals;
     
+    /**
+     * The program counter to resume at
+     */
+    private int pc;
+    
+    /**
+     * If a VM is currently executing this generator
+     */
+    private boolean executing;
+    
     /**
      * @param type
      * @param numberOfArgs
@@ -52,16 +68,53 @@ public class LeoGenerator extends LeoFunction {
      */
     public LeoGenerator(Leola runtime, LeoObject env, Bytecode bytecode) {
         super(runtime, LeoType.GENERATOR, env, bytecode);                
-        this.locals = new LeoObject[bytecode.numLocals];
+        this.locals = new LeoObject[bytecode.maxstacksize];
     }
         
     /**
-     * @return the locals
+     * @return the stack this generator executes on, which starts with its local variables
      */
     public LeoObject[] getLocals() {
         return locals;
     }
     
+    /**
+     * @param locals the stack this generator executes on, which may have been grown by the functions
+     * the generator called
+     */
+    public void setLocals(LeoObject[] locals) {
+        this.locals = locals;
+    }
+    
+    /**
+     * @return true if a VM is currently executing this generator, in which case it can not be resumed
+     */
+    public boolean isExecuting() {
+        return executing;
+    }
+    
+    /**
+     * @param executing if a VM is currently executing this generator
+     */
+    public void setExecuting(boolean executing) {
+        this.executing = executing;
+    }
+    
+    /**
+     * @return the program counter this generator resumes at, which is the length of its {@link Bytecode} once
+     * the generator is done
+     */
+    public int getProgramCounter() {
+        return pc;
+    }
+    
+    /**
+     * @param pc the program counter this generator resumes at
+     */
+    public void setProgramCounter(int pc) {
+        this.pc = pc;
+    }
+    
     /* (non-Javadoc)
      * @see leola.vm.types.LeoObject#isGenerator()
      */
@@ -235,7 +288,9 @@ public class LeoGenerator extends LeoFunction {
         return result;
     }
     
-    /* (non-Javadoc)
+    /**
+     * The clone resumes where this generator resumes, with a copy of its local variables
+     * 
      * @see leola.vm.types.LeoFunction#clone()
      */
     @Override
@@ -246,6 +301,9 @@ public class LeoGenerator extends LeoFunction {
                 clone.outers[i] = this.outers[i];
             }
         }
+        
+        clone.locals = Arrays.copyOf(this.locals, this.locals.length);
+        clone.pc = this.pc;
         return clone;
     }
     
@@ -485,7 +485,7 @@ public class LeoMap extends LeoObject implements Map<LeoObject, LeoObject> {
     @Override
     public LeoObject $add(LeoObject other) {
         if (other.isString()) {
-            return LeoString.valueOf(toString() + other.toString());
+            return new LeoString(toString() + other.toString());
         }
         
         return super.$add(other);
@@ -693,6 +693,32 @@ public class LeoMap extends LeoObject implements Map<LeoObject, LeoObject> {
         return hashValues[index];
     }
     
+    /**
+     * Replaces the value at the supplied hash slot.  The slot must already
+     * be occupied by a key (see {@link LeoMap#getSlot(LeoObject)}).
+     * 
+     * @param index the hash slot
+     * @param value the new value
+     */
+    public void setValue(int index, LeoObject value) {
+        hashValues[index] = value;
+    }
+    
+    /**
+     * Retrieves the hash slot in which the key is stored.  The slot is only valid until
+     * the next structural modification of this map (adding or removing keys).
+     * 
+     * @param key
+     * @return the hash slot of the key, or -1 if the key is not in this map
+     */
+    public int getSlot(LeoObject key) {
+        if ( hashEntries > 0 ) {
+            int slot = hashFindSlot(key);
+            return hashKeys[slot] != null ? slot : -1;
+        }
+        return -1;
+    }
+    
     protected LeoObject nextKey(LeoObject key) {
         int i = nexti(key);
         return hashKeys[i];
@@ -743,9 +769,9 @@ public class LeoMap extends LeoObject implements Map<LeoObject, LeoObject> {
         int i = ( key.hashCode() & 0x7FFFFFFF ) % hashKeys.length;
         
         // This loop is guaranteed to terminate as long as we never allow the
-        // table to get 100% full.
+        // table to get 100% full.  Interned keys (identifiers) match by reference.
         LeoObject k;
-        while ( ( k = hashKeys[i] ) != null && !k.$eq(key) ) {
+        while ( ( k = hashKeys[i] ) != null && k != key && !k.$eq(key) ) {
             i = ( i + 1 ) % hashKeys.length;
         }
         return i;
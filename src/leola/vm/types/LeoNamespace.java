@@ -118,7 +118,7 @@ public class LeoNamespace extends LeoScopedObject {
     @Override
     public LeoObject $add(LeoObject other) {
         if (other.isString()) {
-            return LeoString.valueOf(toString() + other.toString());
+            return new LeoString(toString() + other.toString());
         }
         return super.$add(other);
     }
@@ -311,7 +311,7 @@ public class LeoNativeClass extends LeoObject {
     @Override
     public LeoObject $add(LeoObject other) {
         if (other.isString()) {
-            return LeoString.valueOf(toString() + other.toString());
+            return new LeoString(toString() + other.toString());
         }
         return super.$add(other);
     }
@@ -88,7 +88,14 @@ public class LeoNativeFunction extends LeoObject {
     public LeoObject getMethodName() {
         return methodName;
     }
-    
+
+    /**
+     * @return the overloaded methods
+     */
+    public List<Method> getOverloads() {
+        return overloads;
+    }
+
 
     /* (non-Javadoc)
      * @see leola.types.LeoObject#isFunction()
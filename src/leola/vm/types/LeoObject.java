@@ -316,7 +316,7 @@ public abstract class LeoObject implements Comparable<LeoObject> {
     }
 
     public LeoString toLeoString() {
-        return LeoString.valueOf(toString());
+        return new LeoString(toString());
     }
     
     /**
@@ -1160,6 +1160,19 @@ public abstract class LeoObject implements Comparable<LeoObject> {
     public static LeoObject read(LeoObject env, DataInput in) throws IOException {
         int type = in.readByte();
         LeoType leoType = LeoType.fromOrdinal(type);
+        return read(env, leoType, in);
+    }
+
+    /**
+     * Reads from the {@link DataInput} stream, constructing a {@link LeoObject} of the already read type
+     *
+     * @param env
+     * @param leoType
+     * @param in
+     * @return the reconstituted {@link LeoObject}
+     * @throws IOException
+     */
+    static LeoObject read(LeoObject env, LeoType leoType, DataInput in) throws IOException {
         LeoObject result = null;
         
         switch(leoType) {
@@ -1227,13 +1240,13 @@ public abstract class LeoObject implements Comparable<LeoObject> {
      * Throws a {@link LeolaRuntimeException} if this is a {@link LeoError} instance
      * 
      * @return this object for method chaining
-     * @throws LeolaRuntimeException the underlying {@link LeoError}
+     * @throws LeolaRuntimeException the underlying {@link LeoError}, without a Java stack trace
      * 
      */
     public LeoObject throwIfError() throws LeolaRuntimeException {
         if(isError()) {
             LeoError error = as();
-            throw new LeolaRuntimeException(error);
+            throw new LeolaRuntimeException(error, false);
         }
         return this;
     }
@@ -1245,7 +1258,7 @@ public abstract class LeoObject implements Comparable<LeoObject> {
      * @throws LeolaRuntimeException
      */
     public static void throwClassNotFoundError(String message) throws LeolaRuntimeException {
-        throw new LeolaRuntimeException("NoClassDefinitionError: " + message);
+        throw new LeolaRuntimeException("NoClassDefinitionError: " + message, false);
     }
     
     /**
@@ -1255,7 +1268,7 @@ public abstract class LeoObject implements Comparable<LeoObject> {
      * @throws LeolaRuntimeException
      */
     public static void throwMethodError(String message) throws LeolaRuntimeException {
-        throw new LeolaRuntimeException("MethodError: " + message);
+        throw new LeolaRuntimeException("MethodError: " + message, false);
     }
     
     
@@ -1266,7 +1279,7 @@ public abstract class LeoObject implements Comparable<LeoObject> {
      * @throws LeolaRuntimeException
      */
     public static void throwNativeMethodError(String message) throws LeolaRuntimeException {
-        throw new LeolaRuntimeException("NativeMethodError: " + message);
+        throw new LeolaRuntimeException("NativeMethodError: " + message, false);
     }
     
     /**
@@ -1274,7 +1287,7 @@ public abstract class LeoObject implements Comparable<LeoObject> {
      * @throws LeolaRuntimeException
      */
     public static void throwDivideByZeroError() throws LeolaRuntimeException {
-        throw new LeolaRuntimeException("DivideByZeroError: Can't divide by zero.");
+        throw new LeolaRuntimeException("DivideByZeroError: Can't divide by zero.", false);
     }
     
     /**
@@ -1282,7 +1295,7 @@ public abstract class LeoObject implements Comparable<LeoObject> {
      * @throws LeolaRuntimeException
      */
     public void throwNotImplementedError(String functionName) throws LeolaRuntimeException {
-        throw new LeolaRuntimeException("NotImplementedError: '" + getType() + "' does not implement the '" + functionName + "' method.");
+        throw new LeolaRuntimeException("NotImplementedError: '" + getType() + "' does not implement the '" + functionName + "' method.", false);
     }
     
     /**
@@ -1301,17 +1314,17 @@ public abstract class LeoObject implements Comparable<LeoObject> {
             else {
                 LeoClass aClass = as();
                 throw new LeolaRuntimeException
-                    ("AttributeError: '" + aClass.getClassName() + "' has no attribute with the name '" + name + "'");
+                    ("AttributeError: '" + aClass.getClassName() + "' has no attribute with the name '" + name + "'", false);
             }
         }
         else if(isNamespace()) {
             LeoNamespace namespace = as();
             throw new LeolaRuntimeException
-                ("AttributeError: '" + namespace.getName() + "' has no attribute with the name '" + name + "'");
+                ("AttributeError: '" + namespace.getName() + "' has no attribute with the name '" + name + "'", false);
         }
         else {
             throw new LeolaRuntimeException
-                ("AttributeError: No attribute found with the name '" + name + "'");
+                ("AttributeError: No attribute found with the name '" + name + "'", false);
         }
     }
     
@@ -1325,7 +1338,7 @@ public abstract class LeoObject implements Comparable<LeoObject> {
      */
     public static void throwAttributeError(Class<?> ownerClass, LeoObject name) throws LeolaRuntimeException {
         throw new LeolaRuntimeException
-            ("AttributeError: '" + ownerClass.getSimpleName() + "' has no attribute with the name '" + name + "'");
+            ("AttributeError: '" + ownerClass.getSimpleName() + "' has no attribute with the name '" + name + "'", false);
     }
     
     
@@ -1339,7 +1352,7 @@ public abstract class LeoObject implements Comparable<LeoObject> {
      */
     public static void throwAttributeAccessError(Class<?> ownerClass, LeoObject name) throws LeolaRuntimeException {
         throw new LeolaRuntimeException
-            ("AttributeAccessError: '" + ownerClass.getSimpleName() + "' could not access attribute with the name '" + name + "'");
+            ("AttributeAccessError: '" + ownerClass.getSimpleName() + "' could not access attribute with the name '" + name + "'", false);
     }
     
     /**
@@ -33,6 +33,16 @@ public abstract class LeoOuterObject extends LeoObject {
         
         this.outers = numberOfOuters>0 ? new Outer[numberOfOuters] : NOOUTERS;
     }
+    
+    /**
+     * @param type
+     * @param outers the closure values, which may be shared with other objects
+     */
+    public LeoOuterObject(LeoType type, Outer[] outers) {
+        super(type);
+        
+        this.outers = outers;
+    }
 
     /**
      * @return true
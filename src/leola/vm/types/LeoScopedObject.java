@@ -225,7 +225,7 @@ public abstract class LeoScopedObject extends LeoOuterObject {
      * new each time.
      */
     public LeoArray getPropertyNames() {
-        LeoMap map = this.scope.getRawObjects();
+        LeoMap map = this.scope.getObjects();
         return map.keys();
     }
     
@@ -234,7 +234,10 @@ public abstract class LeoScopedObject extends LeoOuterObject {
      * new each time, moreover any changes to the LeoArray are reflected on this scope. 
      */
     public LeoArray getProperties() {
-        return new LeoArray(this.scope.getScopedValues(), this.scope.getNumberOfObjects());
+        LeoObject[] values = this.scope.getScopedValues();
+        
+        /* the scope may be concurrently modified, so only trust the copied values */
+        return new LeoArray(values, Math.min(values.length, this.scope.getNumberOfObjects()));
     }
     
     /**
@@ -8,9 +8,15 @@ package leola.vm.types;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import leola.vm.exceptions.LeolaRuntimeException;
 import leola.vm.lib.LeolaMethod;
@@ -37,27 +43,146 @@ import leola.vm.util.ClassUtil;
  */
 public class LeoString extends LeoObject {
 
-    private static final Map<String, WeakReference<LeoString>> interns = new ConcurrentHashMap<String, WeakReference<LeoString>>();
-    private static LeoString getString(String ref) {
-        WeakReference<LeoString> str = interns.get(ref);
-        return str != null ? str.get() : null;
+    /**
+     * A weakly referenced interned string, which removes itself from the intern table once the {@link LeoString}
+     * is collected (see {@link LeoString#expungeStaleInterns()}).
+     */
+    private static final class InternReference extends WeakReference<LeoString> {
+        final String key;
+
+        InternReference(String key, LeoString value, ReferenceQueue<LeoString> queue) {
+            super(value, queue);
+            this.key = key;
+        }
+    }
+
+    private static final ConcurrentHashMap<String, InternReference> interns = new ConcurrentHashMap<String, InternReference>();
+    private static final ReferenceQueue<LeoString> collectedInterns = new ReferenceQueue<LeoString>();
+    private static final AtomicLong internHits = new AtomicLong();
+    private static final AtomicLong internMisses = new AtomicLong();
+
+    /**
+     * Removes the entries of the collected {@link LeoString}s from the intern table
+     */
+    private static void expungeStaleInterns() {
+        Reference<? extends LeoString> ref;
+        while( (ref = collectedInterns.poll()) != null ) {
+            InternReference intern = (InternReference)ref;
+            interns.remove(intern.key, intern);
+        }
     }
+
     private static LeoString putString(String ref) {
+        expungeStaleInterns();
+
         LeoString lStr = new LeoString(ref);
-        interns.put(ref, new WeakReference<LeoString>(lStr));
-        return lStr;
+        InternReference intern = new InternReference(ref, lStr, collectedInterns);
+        for(;;) {
+            InternReference existing = interns.putIfAbsent(ref, intern);
+            if(existing == null) {
+                return lStr;
+            }
+
+            /* another thread interned the string first */
+            LeoString existingStr = existing.get();
+            if(existingStr != null) {
+                return existingStr;
+            }
+
+            if(interns.replace(ref, existing, intern)) {
+                return lStr;
+            }
+        }
     }
-    
+
+    /**
+     * @return the number of entries in the intern table, which includes the entries of collected {@link LeoString}s
+     * which have not been expunged yet
+     */
+    public static int getInternTableSize() {
+        return interns.size();
+    }
+
+    /**
+     * @return the number of {@link #valueOf(String)} calls which returned an already interned {@link LeoString}
+     */
+    public static long getInternHitCount() {
+        return internHits.get();
+    }
+
+    /**
+     * @return the number of {@link #valueOf(String)} calls which interned a new {@link LeoString}
+     */
+    public static long getInternMissCount() {
+        return internMisses.get();
+    }
+
     /**
-     * Value
+     * Concatenations of at least this many characters are represented as a {@link Rope}, shorter ones are
+     * copied right away
      */
-    private String value;
+    private static final int MIN_ROPE_LENGTH = 64;
 
     /**
+     * The (immutable) concatenation of two strings, each of which is either a {@link String} or a {@link Rope}.  The
+     * characters are only copied once the string is read (see {@link Rope#flatten()}), which makes repeatedly appending
+     * to a string (<code>s = s + piece</code>) linear rather than quadratic.
+     */
+    private static final class Rope {
+        final Object left;
+        final Object right;
+        final int length;
+
+        Rope(Object left, Object right, int length) {
+            this.left = left;
+            this.right = right;
+            this.length = length;
+        }
+
+        /**
+         * Copies the characters of the leaves, from right to left; the tree is walked with an explicit stack as
+         * the ropes built by loops are as deep as the number of iterations
+         *
+         * @return the flattened string
+         */
+        String flatten() {
+            char[] chars = new char[this.length];
+            int end = this.length;
+
+            List<Object> stack = new ArrayList<Object>();
+            stack.add(this);
+            while(!stack.isEmpty()) {
+                Object node = stack.remove(stack.size() - 1);
+                if(node instanceof Rope) {
+                    Rope rope = (Rope)node;
+                    stack.add(rope.left);
+                    stack.add(rope.right);
+                }
+                else {
+                    String leaf = (String)node;
+                    end -= leaf.length();
+                    leaf.getChars(0, leaf.length(), chars, end);
+                }
+            }
+
+            return new String(chars);
+        }
+    }
+
+    /**
+     * Value, either a {@link String} or a {@link Rope} which is replaced by the flattened {@link String} once read
+     */
+    private volatile Object value;
+
+    /**
+     * Creates a {@link LeoString} which is not interned, this should be used for the strings produced at runtime (such
+     * as the result of a concatenation), see {@link #valueOf(String)} for identifiers and constants.
+     *
      * @param value
      */
     public LeoString(String value) {
-        this(new StringBuilder(value));
+        super(LeoType.STRING);
+        this.value = value==null ? "" : value;
     }
 
     /**
@@ -69,20 +194,143 @@ public class LeoString extends LeoObject {
     }
 
     /**
-     * Interns the {@link LeoString}.
+     * @param value either a {@link String} or a {@link Rope}
+     */
+    private LeoString(Object value) {
+        super(LeoType.STRING);
+        this.value = value;
+    }
+
+    /**
+     * Concatenates the two values, each of which is either a {@link String} or a {@link Rope}
+     *
+     * @param left
+     * @param right
+     * @return the concatenated {@link LeoString}, which is not interned
+     */
+    private static LeoString concat(Object left, Object right) {
+        return new LeoString(join(left, right));
+    }
+
+    /**
+     * Joins the two values, each of which is either a {@link String} or a {@link Rope}
+     *
+     * @param left
+     * @param right
+     * @return the joined {@link String}, or a {@link Rope} if it is at least {@link #MIN_ROPE_LENGTH} long
+     */
+    private static Object join(Object left, Object right) {
+        long length = (long)length(left) + length(right);
+        if(length > Integer.MAX_VALUE) {
+            throw new LeolaRuntimeException("StringLengthError: The concatenated string is too large: " + length);
+        }
+
+        if(length < MIN_ROPE_LENGTH || length(left) == 0 || length(right) == 0) {
+            return flatten(left).concat(flatten(right));
+        }
+
+        return new Rope(left, right, (int)length);
+    }
+
+    /**
+     * Concatenates the operands of a <code>CONCAT</code> instruction, which is equivalent to adding them from left to
+     * right (<code>a + b + c</code>).  Once the result is a string, the remaining operands are appended into one buffer
+     * sized up front, rather than creating an intermediate {@link LeoString} for each of them; long operands are kept
+     * as they are and joined as a {@link Rope}.
+     *
+     * @param operands
+     * @param offset the index of the first operand
+     * @param count the number of operands
+     * @return the result of adding the operands
+     */
+    public static LeoObject concat(LeoObject[] operands, int offset, int count) {
+        int end = offset + count;
+        int index = offset;
+
+        /* until the result is a string, the operands are added (1 + 2 + "a" is "3a") */
+        LeoObject result = operands[index++];
+        while(index < end && !(result instanceof LeoString)) {
+            result = result.$add(operands[index++]);
+        }
+
+        if(index == end) {
+            return result;
+        }
+
+        Object[] parts = new Object[end - index + 1];
+        parts[0] = ((LeoString)result).value;
+
+        int bufferLength = 0;
+        for(int i = 0; i < parts.length; i++) {
+            if(i > 0) {
+                LeoObject operand = operands[index + i - 1];
+                parts[i] = (operand instanceof LeoString) ? ((LeoString)operand).value : operand.toString();
+            }
+
+            int length = length(parts[i]);
+            if(length < MIN_ROPE_LENGTH) {
+                bufferLength += length;
+            }
+        }
+
+        Object value = null;
+        StringBuilder buffer = null;
+        for(Object part : parts) {
+            if(length(part) < MIN_ROPE_LENGTH) {
+                if(buffer == null) {
+                    buffer = new StringBuilder(bufferLength);
+                }
+                buffer.append((String)part);
+                bufferLength -= length(part);
+            }
+            else {
+                if(buffer != null) {
+                    value = (value != null) ? join(value, buffer.toString()) : buffer.toString();
+                    buffer = null;
+                }
+                value = (value != null) ? join(value, part) : part;
+            }
+        }
+
+        if(buffer != null) {
+            value = (value != null) ? join(value, buffer.toString()) : buffer.toString();
+        }
+
+        return new LeoString(value);
+    }
+
+    private static int length(Object value) {
+        return (value instanceof Rope) ? ((Rope)value).length : ((String)value).length();
+    }
+
+    private static String flatten(Object value) {
+        return (value instanceof Rope) ? ((Rope)value).flatten() : (String)value;
+    }
+
+    /**
+     * Interns the {@link LeoString}, returning the same instance for equal strings as long as the instance is
+     * referenced.  Interning is reserved for identifiers and constants (compiler constants, member names and
+     * keys), as the lookup in the intern table is wasted on transient strings; see {@link #LeoString(String)}.
      * 
      * @param str
-     * @return
+     * @return the interned {@link LeoString}
      */
     public static LeoString valueOf(String str) {
-        LeoString lStr = getString(str);
-        return lStr != null ? lStr : putString(str);        
+        InternReference ref = interns.get(str);
+        LeoString lStr = (ref != null) ? ref.get() : null;
+        if(lStr != null) {
+            internHits.incrementAndGet();
+            return lStr;
+        }
+
+        internMisses.incrementAndGet();
+        return putString(str);
     }
     
     /**
      */
     public LeoString() {
-        this(new StringBuilder());
+        this("");
     }    
     
     /**
@@ -128,7 +376,7 @@ public class LeoString extends LeoObject {
      * @return the value
      */
     public String getString() {
-        return value.toString();
+        return toString();
     }
 
 
@@ -137,7 +385,15 @@ public class LeoString extends LeoObject {
      */
     @Override
     public String toString() {
-        return this.value;
+        Object v = this.value;
+        if(v instanceof String) {
+            return (String)v;
+        }
+
+        /* racing threads flatten to equal strings */
+        String str = ((Rope)v).flatten();
+        this.value = str;
+        return str;
     }
 
     /**
@@ -160,7 +416,7 @@ public class LeoString extends LeoObject {
             sb.append(result.toString());                    
         }
         
-        return LeoString.valueOf(sb.toString());
+        return new LeoString(sb.toString());
     }
     
     /**
@@ -170,19 +426,20 @@ public class LeoString extends LeoObject {
      * @return the new String
      */
     public LeoString filter(LeoObject function) {        
-        StringBuilder sb = new StringBuilder(this.value);
+        String value = toString();
+        StringBuilder sb = new StringBuilder(value);
         
-        int len = this.value.length();
+        int len = value.length();
         for(int i = 0; i < len; i++) {
-            char c = this.value.charAt(i);
+            char c = value.charAt(i);
             
-            LeoString ch = LeoString.valueOf( String.valueOf(c));
+            LeoString ch = new LeoString( String.valueOf(c));
             if ( LeoObject.isTrue(function.xcall(ch)) ) {                       
                 sb.append(c);
             }
         }
         
-        return LeoString.valueOf(sb.toString());
+        return new LeoString(sb.toString());
     }
     
     
@@ -249,11 +506,11 @@ public class LeoString extends LeoObject {
      * @return the joined string
      */
     public LeoString join(String delimiter, Object ... args) {
-        StringBuilder sb = new StringBuilder(this.value);
+        StringBuilder sb = new StringBuilder(toString());
         for(int i = 0; i < args.length; i++) {            
             sb.append(args[i]);
         }
-        return LeoString.valueOf(sb.toString());
+        return new LeoString(sb.toString());
     }
     
     /**
@@ -262,21 +519,21 @@ public class LeoString extends LeoObject {
      * @return the formatted string
      */
     public LeoString format(Object ...args) {
-        return LeoString.valueOf(String.format(this.value, args));
+        return new LeoString(String.format(toString(), args));
     }
     
     /**
      * @return a new instance in lower case
      */
     public LeoString toLower() {
-        return LeoString.valueOf(this.value.toLowerCase());
+        return new LeoString(toString().toLowerCase());
     }
 
     /**
      * @return a new instance in upper case
      */
     public LeoString toUpper() {
-        return LeoString.valueOf(this.value.toUpperCase());
+        return new LeoString(toString().toUpperCase());
     }
 
     @Override
@@ -285,15 +542,15 @@ public class LeoString extends LeoObject {
     }    
     @Override
     public LeoObject $add(double other) {
-        return LeoString.valueOf(other + this.value);
+        return concat(String.valueOf(other), this.value);
     }    
     @Override
     public LeoObject $add(int other) {
-        return LeoString.valueOf(other + this.value);
+        return concat(String.valueOf(other), this.value);
     }
     @Override
     public LeoObject $add(long other) {
-        return LeoString.valueOf(other + this.value);
+        return concat(String.valueOf(other), this.value);
     }
     
     @Override
@@ -335,13 +592,13 @@ public class LeoString extends LeoObject {
         if(key.isNumber()) {
             int index = key.asInt();
             
-            StringBuilder sb = new StringBuilder(this.value);
+            StringBuilder sb = new StringBuilder(toString());
             sb.insert(index, other.toString());
             this.value = sb.toString();
         }
         else {
             String regex = key.toString();
-            this.value = this.value.replaceAll(regex, other.toString());
+            this.value = toString().replaceAll(regex, other.toString());
         }
     }
 
@@ -387,8 +644,8 @@ public class LeoString extends LeoObject {
      * @return
      */
     public LeoString append(LeoObject v) {
-        //this.value.append(v.toString());
-        return LeoString.valueOf(this.value + v.toString());
+        Object other = (v instanceof LeoString) ? ((LeoString)v).value : v.toString();
+        return concat(this.value, other);
     }
 
     /**
@@ -398,10 +655,17 @@ public class LeoString extends LeoObject {
      * @return this string
      */
     public LeoString insert(int position, LeoObject v) {
-//        this.value.insert(position, v.toString());
-        StringBuilder sb = new StringBuilder(this.value);
+        Object other = (v instanceof LeoString) ? ((LeoString)v).value : v.toString();
+        if(position == 0) {
+            return concat(other, this.value);
+        }
+        if(position == length()) {
+            return concat(this.value, other);
+        }
+
+        StringBuilder sb = new StringBuilder(toString());
         sb.insert(position, v.toString());
-        return LeoString.valueOf(sb.toString());
+        return new LeoString(sb.toString());
     }
 
     /**
@@ -411,7 +675,7 @@ public class LeoString extends LeoObject {
      * @return true if this string contains the supplied string (v)
      */
     public boolean contains(LeoObject v) {
-        return this.value.indexOf(v.toString()) > -1;
+        return toString().indexOf(v.toString()) > -1;
     }
 
     /**
@@ -420,7 +684,7 @@ public class LeoString extends LeoObject {
      * @return -1 if the supplied string is not in this string.
      */
     public int indexOf(LeoObject v) {
-        return this.value.indexOf(v.toString());
+        return toString().indexOf(v.toString());
     }
 
     /**
@@ -429,7 +693,7 @@ public class LeoString extends LeoObject {
      * @return
      */
     public LeoString rest(int i) {
-        return new LeoString(this.value.substring(i));
+        return new LeoString(toString().substring(i));
     }
 
     /**
@@ -440,7 +704,7 @@ public class LeoString extends LeoObject {
      * @return
      */
     public LeoString substring(int start, int end) {
-        return new LeoString(this.value.substring(start, end));
+        return new LeoString(toString().substring(start, end));
     }
 
 
@@ -454,9 +718,9 @@ public class LeoString extends LeoObject {
      */
     public LeoString replace(int start, int end, LeoObject v) {
         //this.value.replace(start, end, v.toString());
-        StringBuilder sb = new StringBuilder(this.value);
+        StringBuilder sb = new StringBuilder(toString());
         sb.replace(start, end, v.toString());
-        return LeoString.valueOf(sb.toString());
+        return new LeoString(sb.toString());
     }
     
     /**
@@ -467,7 +731,7 @@ public class LeoString extends LeoObject {
      * @return
      */
     public LeoString replaceAll(LeoObject replaceMe, LeoObject v) {
-        return LeoString.valueOf(this.value.replaceAll(replaceMe.toString(), v.toString()));
+        return new LeoString(toString().replaceAll(replaceMe.toString(), v.toString()));
 //        String source = replaceMe.toString();
 //        String replacementString = v.toString();
 //        
@@ -493,10 +757,10 @@ public class LeoString extends LeoObject {
      * @return a {@link LeoArray}
      */
     public LeoArray split(LeoObject v) {
-        String[] res = this.value.toString().split(v.toString());
+        String[] res = toString().split(v.toString());
         LeoArray result = new LeoArray(res.length);
         for(int i = 0; i < res.length; i++) {
-            result.add(LeoString.valueOf(res[i]));
+            result.add(new LeoString(res[i]));
         }
         return result;
     }
@@ -511,21 +775,7 @@ public class LeoString extends LeoObject {
     }
     
     public boolean startsWith(String prefix, int toffset) {        
-        int to = toffset;                
-        int po = 0;
-        int pc = prefix.length();
-        
-        // Note: toffset might be near -1>>>1.
-        if ((toffset < 0) || (toffset > this.value.length() - pc)) {
-            return false;
-        }
-        
-        while (--pc >= 0) {
-            if (this.value.charAt(to++) != prefix.charAt(po++) ) {
-                return false;
-            }
-        }
-        return true;
+        return toString().startsWith(prefix, toffset);
     }
     
     /**
@@ -536,11 +786,12 @@ public class LeoString extends LeoObject {
     public LeoArray indexesOf(LeoObject v) {
         LeoArray results = new LeoArray();
         String str = v.toString();
+        String value = toString();
         
         int index = 0;
         int result = 0;
         while (result > -1) {
-           result = this.value.indexOf(str, index);
+           result = value.indexOf(str, index);
            if(result > -1) {
                results.add(LeoInteger.valueOf(result));
                index = result + 1;
@@ -554,14 +805,14 @@ public class LeoString extends LeoObject {
      * @return removes any leading or trailing whitespace characters
      */
     public LeoString trim() {
-        return LeoString.valueOf(this.value.trim());
+        return new LeoString(toString().trim());
     }
     
     /**
      * @return the length of the string
      */
     public int length() {
-        return (this.value != null ) ? this.value.length() : 0;
+        return length(this.value);
     }
 
     /**
@@ -576,7 +827,7 @@ public class LeoString extends LeoObject {
      * @return the character at this position
      */
     public LeoString charAt(int n) {
-        return LeoString.valueOf(String.valueOf( this.value.charAt(n) ));
+        return new LeoString(String.valueOf( toString().charAt(n) ));
     }
 
     /**
@@ -584,7 +835,7 @@ public class LeoString extends LeoObject {
      * @return the integer value of the character at a location
      */
     public int byteAt(int n) {
-        return this.value.charAt(n);
+        return toString().charAt(n);
     }
     
     /* (non-Javadoc)
@@ -592,7 +843,7 @@ public class LeoString extends LeoObject {
      */
     @Override
     public int hashCode() {    
-        return (this.value != null) ? this.value.hashCode() : super.hashCode();
+        return toString().hashCode();
     }
 
     /* (non-Javadoc)
@@ -602,19 +853,30 @@ public class LeoString extends LeoObject {
     public boolean $eq(LeoObject other) {
         boolean result = false;
         if ( (other != null ) && other.isString() ) {            
-            String a = this.value;
-            String b = other.toString();
-            if ( a != null ) {
-                result = a.equals(b);
-            }
-            else {
-                result = (b==null);
-            }
+            result = toString().equals(other.toString());
         }
 
         return result;
     }
 
+    /**
+     * Strings produced at runtime are not interned, so equal strings are treated as the same reference
+     *
+     * @see leola.vm.types.LeoObject#$req(leola.vm.types.LeoObject)
+     */
+    @Override
+    public boolean $req(LeoObject other) {
+        return this == other || $eq(other);
+    }
+
+    /* (non-Javadoc)
+     * @see leola.vm.types.LeoObject#$rneq(leola.vm.types.LeoObject)
+     */
+    @Override
+    public boolean $rneq(LeoObject other) {
+        return !$req(other);
+    }
+
     /**
      * Compares two {@link StringBuilder}s
      * @param l
@@ -646,7 +908,7 @@ public class LeoString extends LeoObject {
     public boolean $gt(LeoObject other) {
         if ( other != null && other.isOfType(LeoType.STRING)) {
             LeoString str = other.as();
-            int c = compareTo(this.value, str.value);
+            int c = compareTo(toString(), str.toString());
             return c > 0;
         }
 
@@ -660,7 +922,7 @@ public class LeoString extends LeoObject {
     public boolean $gte(LeoObject other) {
         if ( other != null && other.isOfType(LeoType.STRING)) {
             LeoString str = other.as();
-            int c = compareTo(this.value, str.value);
+            int c = compareTo(toString(), str.toString());
             return c >= 0;
         }
 
@@ -674,7 +936,7 @@ public class LeoString extends LeoObject {
     public boolean $lt(LeoObject other) {
         if ( other != null && other.isOfType(LeoType.STRING)) {
             LeoString str = other.as();
-            int c = compareTo(this.value, str.value);
+            int c = compareTo(toString(), str.toString());
             return c < 0;
         }
 
@@ -688,7 +950,7 @@ public class LeoString extends LeoObject {
     public boolean $lte(LeoObject other) {
         if ( other != null && other.isOfType(LeoType.STRING)) {
             LeoString str = other.as();
-            int c = compareTo(this.value, str.value);
+            int c = compareTo(toString(), str.toString());
             return c <= 0;
         }
 
@@ -700,13 +962,13 @@ public class LeoString extends LeoObject {
      */
     @Override
     public Object getValue() {
-        return this.value;
+        return toString();
     }
     
     private void checkSizeForConversion() {
-        if ( this.value.length() > 1) {
+        if ( toString().length() > 1) {
             throw new LeolaRuntimeException
-                ("StringCharError: The supplied LeoString: '" + this.value + "' is larger than 1 character and therefore does not match the native type: char");
+                ("StringCharError: The supplied LeoString: '" + toString() + "' is larger than 1 character and therefore does not match the native type: char");
         }
     }
     
@@ -715,31 +977,31 @@ public class LeoString extends LeoObject {
      */
     @Override
     public Object getValue(Class<?> type) {
-        Object resultJavaObj = this.value;
+        Object resultJavaObj = toString();
         if(ClassUtil.inheritsFrom(type, LeoObject.class) ) {
             resultJavaObj = this;
         }
         else if(ClassUtil.isType(type, ClassUtil.CHAR) ) {
             checkSizeForConversion();
-            resultJavaObj = this.value.charAt(0);
+            resultJavaObj = toString().charAt(0);
         } else if(ClassUtil.isType(type, ClassUtil.BYTE) ) {
             checkSizeForConversion();
-            resultJavaObj = (byte)this.value.charAt(0);
+            resultJavaObj = (byte)toString().charAt(0);
         } else if(ClassUtil.isType(type, ClassUtil.SHORT) ) {
             checkSizeForConversion();
-            resultJavaObj = (short)this.value.charAt(0);
+            resultJavaObj = (short)toString().charAt(0);
         } else if(ClassUtil.isType(type, ClassUtil.INT) ) {
             checkSizeForConversion();
-            resultJavaObj = (int)this.value.charAt(0);
+            resultJavaObj = (int)toString().charAt(0);
         } else if(ClassUtil.isType(type, ClassUtil.LONG) ) {
             checkSizeForConversion();
-            resultJavaObj = (long)this.value.charAt(0);
+            resultJavaObj = (long)toString().charAt(0);
         } else if(ClassUtil.isType(type, ClassUtil.FLOAT) ) {
             checkSizeForConversion();
-            resultJavaObj = (float)this.value.charAt(0);
+            resultJavaObj = (float)toString().charAt(0);
         } else if(ClassUtil.isType(type, ClassUtil.DOUBLE) ) {
             checkSizeForConversion();
-            resultJavaObj = (double)this.value.charAt(0);
+            resultJavaObj = (double)toString().charAt(0);
         } 
         
         return resultJavaObj;
@@ -764,8 +1026,9 @@ public class LeoString extends LeoObject {
     @Override
     public void write(DataOutput out) throws IOException {
         out.write(this.getType().ordinal());    
-        out.writeInt(this.value.length());
-        out.writeBytes(this.value);
+        byte[] b = toString().getBytes(StandardCharsets.UTF_8);
+        out.writeInt(b.length);
+        out.write(b);
     }
 
     /**
@@ -781,7 +1044,7 @@ public class LeoString extends LeoObject {
         if ( length > 0 ) {
             byte[] buf = new byte[length];
             in.readFully(buf);
-            str = new String(buf);
+            str = new String(buf, StandardCharsets.UTF_8);
         }
         return LeoString.valueOf(str);
     }
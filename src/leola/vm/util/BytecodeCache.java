@@ -0,0 +1,323 @@
+/*
+    Leola Programming Language
+    Author: Tony Sparks
+    See license.txt
+*/
+package leola.vm.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import leola.vm.Args;
+import leola.vm.Leola;
+import leola.vm.compiler.Bytecode;
+
+/**
+ * An on-disk cache of compiled scripts.  The {@link Bytecode} of a script is stored in the cache directory, in a file
+ * named after the path of the script, along with the hash of the script contents, the {@link Bytecode#VERSION} and the
+ * compiler options (see {@link Args#isDebugMode()}, {@link Args#optimizeBytecode()} and {@link Args#foldConstants()}).
+ * The cached {@link Bytecode} is used as long as all of these match, otherwise the script is compiled and the cached
+ * {@link Bytecode} rewritten.
+ *
+ * <p>
+ * The cached files are written to a temporary file and then moved into place, so that multiple processes may share the
+ * cache directory.  A cached file which can not be read is treated as stale, and failing to write a cached file does not
+ * fail the compilation.
+ *
+ * @author Tony
+ *
+ */
+public class BytecodeCache {
+
+    public static final int MAGIC_NUMBER = 0x1E0CC;
+
+    private static final String CACHE_EXT = ".leolac";
+    private static final String SOURCE_EXT = ".leola";
+
+    private static final int FL_DEBUG    = (1<<0);
+    private static final int FL_OPTIMIZE = (1<<1);
+    private static final int FL_FOLD     = (1<<2);
+
+    private final Leola runtime;
+    private final File directory;
+
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+
+    /**
+     * @param runtime the runtime which compiles the scripts
+     * @param directory the cache directory, which is created if it does not exist
+     */
+    public BytecodeCache(Leola runtime, File directory) {
+        this.runtime = runtime;
+        this.directory = directory;
+
+        this.hits = new AtomicLong();
+        this.misses = new AtomicLong();
+    }
+
+    /**
+     * @return the cache directory
+     */
+    public File getDirectory() {
+        return this.directory;
+    }
+
+    /**
+     * @return the number of scripts loaded from the cache
+     */
+    public long getHitCount() {
+        return this.hits.get();
+    }
+
+    /**
+     * @return the number of scripts compiled, as they were not cached or the cached {@link Bytecode} was stale
+     */
+    public long getMissCount() {
+        return this.misses.get();
+    }
+
+    /**
+     * Loads the {@link Bytecode} of the script from the cache, compiling (and caching) the script if the cached
+     * {@link Bytecode} is missing or stale.
+     *
+     * @param sourceFile the script
+     * @return the {@link Bytecode}
+     * @throws Exception if the script can not be read or compiled
+     */
+    public Bytecode load(File sourceFile) throws Exception {
+        byte[] source = Files.readAllBytes(sourceFile.toPath());
+        byte[] hash = hash(source);
+        File cacheFile = getCacheFile(sourceFile);
+
+        Bytecode bytecode = lookup(cacheFile, hash);
+        if(bytecode != null) {
+            this.hits.incrementAndGet();
+        }
+        else {
+            this.misses.incrementAndGet();
+
+            bytecode = compile(source);
+            store(cacheFile, hash, bytecode);
+        }
+
+        bytecode.setSourceFile(sourceFile);
+        return bytecode;
+    }
+
+    /**
+     * Compiles the scripts of the directory (and its sub directories) into the cache, the scripts which are already
+     * cached are skipped.
+     *
+     * @param sourceDirectory
+     * @param numberOfThreads the number of scripts compiled in parallel
+     * @return the number of compiled scripts
+     * @throws Exception the first failure to compile a script, once all of the scripts are processed
+     */
+    public int precompile(File sourceDirectory, int numberOfThreads) throws Exception {
+        List<File> sourceFiles = new ArrayList<File>();
+        findScripts(sourceDirectory, sourceFiles);
+
+        final AtomicInteger compiled = new AtomicInteger();
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, numberOfThreads));
+        try {
+            List<Future<Void>> results = new ArrayList<Future<Void>>(sourceFiles.size());
+            for(final File sourceFile : sourceFiles) {
+                results.add(executor.submit(new Callable<Void>() {
+
+                    @Override
+                    public Void call() throws Exception {
+                        byte[] source = Files.readAllBytes(sourceFile.toPath());
+                        byte[] hash = hash(source);
+                        File cacheFile = getCacheFile(sourceFile);
+
+                        if(lookup(cacheFile, hash) == null) {
+                            store(cacheFile, hash, compile(source));
+                            compiled.incrementAndGet();
+                        }
+                        return null;
+                    }
+                }));
+            }
+
+            Exception error = null;
+            for(Future<Void> result : results) {
+                try {
+                    result.get();
+                }
+                catch(ExecutionException e) {
+                    if(error == null) {
+                        error = (e.getCause() instanceof Exception) ? (Exception)e.getCause() : e;
+                    }
+                }
+            }
+
+            if(error != null) {
+                throw error;
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+
+        return compiled.get();
+    }
+
+    /**
+     * @param sourceFile
+     * @return the file the {@link Bytecode} of the script is cached in, named after the script and the hash of
+     * its path
+     * @throws IOException
+     */
+    public File getCacheFile(File sourceFile) throws IOException {
+        String path = sourceFile.getCanonicalPath();
+
+        String name = sourceFile.getName();
+        if(name.endsWith(SOURCE_EXT)) {
+            name = name.substring(0, name.length() - SOURCE_EXT.length());
+        }
+
+        byte[] pathHash = hash(path.getBytes("UTF-8"));
+        StringBuilder sb = new StringBuilder(name.length() + 17 + CACHE_EXT.length());
+        sb.append(name).append('-');
+        for(int i = 0; i < 8; i++) {
+            sb.append(Character.forDigit((pathHash[i] >> 4) & 0xF, 16))
+              .append(Character.forDigit(pathHash[i] & 0xF, 16));
+        }
+        sb.append(CACHE_EXT);
+
+        return new File(this.directory, sb.toString());
+    }
+
+    /**
+     * @param cacheFile
+     * @param hash the hash of the script contents
+     * @return the cached {@link Bytecode}, or null if it is missing or stale
+     */
+    private Bytecode lookup(File cacheFile, byte[] hash) {
+        if(!cacheFile.isFile()) {
+            return null;
+        }
+
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)))) {
+            if(in.readInt() != MAGIC_NUMBER || in.readInt() != Bytecode.VERSION || in.readInt() != getCompilerFlags()) {
+                return null;
+            }
+
+            byte[] cachedHash = new byte[in.readUnsignedByte()];
+            in.readFully(cachedHash);
+            if(!Arrays.equals(hash, cachedHash)) {
+                return null;
+            }
+
+            return Bytecode.read(this.runtime.getGlobalNamespace(), in);
+        }
+        catch(Exception e) {
+            /* a corrupt (or partially written by an older version) file is stale */
+            return null;
+        }
+    }
+
+    /**
+     * Writes the {@link Bytecode} to a temporary file, which is then moved over the cached file
+     *
+     * @param cacheFile
+     * @param hash the hash of the script contents
+     * @param bytecode
+     */
+    private void store(File cacheFile, byte[] hash, Bytecode bytecode) {
+        File tempFile = null;
+        try {
+            if(!this.directory.isDirectory() && !this.directory.mkdirs() && !this.directory.isDirectory()) {
+                return;
+            }
+
+            tempFile = File.createTempFile(cacheFile.getName(), ".tmp", this.directory);
+            try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+                out.writeInt(MAGIC_NUMBER);
+                out.writeInt(Bytecode.VERSION);
+                out.writeInt(getCompilerFlags());
+                out.writeByte(hash.length);
+                out.write(hash);
+                bytecode.write(out);
+            }
+
+            try {
+                Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            }
+            catch(AtomicMoveNotSupportedException e) {
+                Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        catch(IOException e) {
+            /* the cache is only an optimization, the script is compiled the next time */
+            if(tempFile != null) {
+                tempFile.delete();
+            }
+        }
+    }
+
+    private Bytecode compile(byte[] source) throws Exception {
+        return this.runtime.compile(new BufferedReader(new StringReader(new String(source))));
+    }
+
+    /**
+     * @return the compiler options the {@link Bytecode} depends on
+     */
+    private int getCompilerFlags() {
+        Args args = this.runtime.getArgs();
+
+        int flags = 0;
+        if(args.isDebugMode())       flags |= FL_DEBUG;
+        if(args.optimizeBytecode())  flags |= FL_OPTIMIZE;
+        if(args.foldConstants())     flags |= FL_FOLD;
+        return flags;
+    }
+
+    private static void findScripts(File dir, List<File> sourceFiles) {
+        File[] files = dir.listFiles();
+        if(files != null) {
+            for(File file : files) {
+                if(file.isDirectory()) {
+                    findScripts(file, sourceFiles);
+                }
+                else if(file.getName().endsWith(SOURCE_EXT)) {
+                    sourceFiles.add(file);
+                }
+            }
+        }
+    }
+
+    private static byte[] hash(byte[] data) {
+        try {
+            return MessageDigest.getInstance("SHA-1").digest(data);
+        }
+        catch(NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -89,13 +89,13 @@ public class ClassUtil {
             if( cause instanceof LeolaRuntimeException) {
                 throw (LeolaRuntimeException)cause;
             }
-            throw new LeolaRuntimeException(e.getCause());
+            throw new LeolaRuntimeException(e.getCause(), false);
         }
         else {
             if(e instanceof LeolaRuntimeException) {
                 throw (LeolaRuntimeException)e;
             }
-            throw new LeolaRuntimeException(e);
+            throw new LeolaRuntimeException(e, false);
         }
     }
     
@@ -79,7 +79,7 @@ public class LeoTypeConverter {
             
             @Override
             public LeoObject convert(Class<?> type, Object javaObj) {
-                return LeoString.valueOf(javaObj.toString());
+                return new LeoString(javaObj.toString());
             }
             
             @Override
@@ -276,7 +276,7 @@ public class LeoTypeConverter {
             if(leoObj.isScopedObject()) {
                 Scope scope = leoObj.getScope();
                 if(scope.hasObjects()) {
-                    map = scope.getRawObjects();
+                    map = scope.getObjects();
                 }
                 else {
                     map = new LeoMap(1);
@@ -329,7 +329,7 @@ public class LeoTypeConverter {
             
             @Override
             public LeoObject convert(Class<?> type, Object javaObj) {
-                return LeoString.valueOf(javaObj.toString());
+                return new LeoString(javaObj.toString());
             }
             
             @Override
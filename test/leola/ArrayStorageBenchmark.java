@@ -0,0 +1,107 @@
+package leola;
+
+import java.lang.management.ManagementFactory;
+
+import leola.BenchmarkTimer.Benchmark;
+import leola.vm.Leola;
+import leola.vm.types.LeoArray;
+import leola.vm.types.LeoObject;
+
+/**
+ * Measures arrays of numbers held in their specialized (primitive) storage against the same arrays generalized to
+ * {@link LeoObject}'s (see {@link LeoArray#getRawArray()}).  Reports the heap retained by the array along with the
+ * time to sum, scale and sort it from a script.
+ *
+ * @author Tony
+ *
+ */
+public class ArrayStorageBenchmark {
+
+    private static final int NUMBER_OF_ELEMENTS = 2_000_000;
+
+    private static final String SCRIPT =
+            "var fill = def(n, real) {                                  \n" +
+            "    var a = []                                             \n" +
+            "    var i = 0                                              \n" +
+            "    while i < n {                                          \n" +
+            "        if real { a.push(i * 0.5) }                        \n" +
+            "        else    { a.push((i * 7919) % 1000003) }           \n" +
+            "        i += 1                                             \n" +
+            "    }                                                      \n" +
+            "    return a                                               \n" +
+            "}                                                          \n" +
+            "var sum = def(a) {                                         \n" +
+            "    var s = 0                                              \n" +
+            "    var i = 0                                              \n" +
+            "    var n = a.size()                                       \n" +
+            "    while i < n {                                          \n" +
+            "        s += a[i]                                          \n" +
+            "        i += 1                                             \n" +
+            "    }                                                      \n" +
+            "    return s                                               \n" +
+            "}                                                          \n" +
+            "var scale = def(a) {                                       \n" +
+            "    var i = 0                                              \n" +
+            "    var n = a.size()                                       \n" +
+            "    while i < n {                                          \n" +
+            "        a[i] = a[i] * 2                                    \n" +
+            "        i += 1                                             \n" +
+            "    }                                                      \n" +
+            "}                                                          \n";
+
+    private static long usedHeap() {
+        for(int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static double time(final LeoObject function, final LeoObject arg) throws Exception {
+        return BenchmarkTimer.time(new Benchmark() {
+
+            @Override
+            public void run() throws Exception {
+                function.call(arg);
+            }
+        }) / 1_000_000.0;
+    }
+
+    private static void measure(Leola runtime, boolean real, boolean generalized) throws Exception {
+        LeoObject n = LeoObject.valueOf(NUMBER_OF_ELEMENTS);
+        LeoObject fill = runtime.get("fill");
+
+        long heap = usedHeap();
+        final LeoArray array = fill.call(n, LeoObject.valueOf(real)).as();
+        if(generalized) {
+            array.getRawArray();
+        }
+        heap = usedHeap() - heap;
+
+        double sumTime = time(runtime.get("sum"), array);
+        double scaleTime = time(runtime.get("scale"), array);
+
+        double sortTime = BenchmarkTimer.measure(1, new Benchmark() {
+
+            @Override
+            public void run() throws Exception {
+                array.sort((LeoObject)null);
+            }
+        }) / 1_000_000.0;
+
+        System.out.printf("%-8s %-12s %12.1f %10.2f %10.2f %10.2f%n", real ? "real" : "integer",
+                          generalized ? "objects" : "specialized", heap / (1024.0 * 1024.0), sumTime, scaleTime, sortTime);
+    }
+
+    public static void main(String[] args) throws Exception {
+        LeoObject.valueOf(0);
+
+        Leola runtime = new Leola();
+        runtime.eval(SCRIPT);
+
+        System.out.printf("%-8s %-12s %12s %10s %10s %10s%n", "elements", "storage", "retained mb", "sum ms", "scale ms", "sort ms");
+        for(boolean real : new boolean[] { false, true }) {
+            measure(runtime, real, true);
+            measure(runtime, real, false);
+        }
+    }
+}
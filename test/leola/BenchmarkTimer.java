@@ -0,0 +1,75 @@
+package leola;
+
+/**
+ * The timing loop shared by the benchmarks: runs the benchmark a number of times to warm up the JVM (and the
+ * runtime's compile thresholds), then reports the average time of the measured runs.
+ *
+ * @author Tony
+ *
+ */
+public class BenchmarkTimer {
+
+    public static final int WARMUP_RUNS = 3;
+    public static final int MEASURED_RUNS = 5;
+
+    /**
+     * The code being measured
+     */
+    public interface Benchmark {
+        void run() throws Exception;
+    }
+
+    /**
+     * Runs the {@link Benchmark} without timing it.
+     *
+     * @param runs
+     * @param benchmark
+     * @throws Exception
+     */
+    public static void warmup(int runs, Benchmark benchmark) throws Exception {
+        for(int i = 0; i < runs; i++) {
+            benchmark.run();
+        }
+    }
+
+    /**
+     * Times the {@link Benchmark}, without warming it up.
+     *
+     * @param runs
+     * @param benchmark
+     * @return the average time of each run, in nanoseconds
+     * @throws Exception
+     */
+    public static double measure(int runs, Benchmark benchmark) throws Exception {
+        long startTime = System.nanoTime();
+        for(int i = 0; i < runs; i++) {
+            benchmark.run();
+        }
+        return (double)(System.nanoTime() - startTime) / runs;
+    }
+
+    /**
+     * Warms up the {@link Benchmark} and then times it.
+     *
+     * @param warmupRuns
+     * @param measuredRuns
+     * @param benchmark
+     * @return the average time of each measured run, in nanoseconds
+     * @throws Exception
+     */
+    public static double time(int warmupRuns, int measuredRuns, Benchmark benchmark) throws Exception {
+        warmup(warmupRuns, benchmark);
+        return measure(measuredRuns, benchmark);
+    }
+
+    /**
+     * Warms up the {@link Benchmark} and then times it, with the default {@link #WARMUP_RUNS} and {@link #MEASURED_RUNS}.
+     *
+     * @param benchmark
+     * @return the average time of each measured run, in nanoseconds
+     * @throws Exception
+     */
+    public static double time(Benchmark benchmark) throws Exception {
+        return time(WARMUP_RUNS, MEASURED_RUNS, benchmark);
+    }
+}
@@ -0,0 +1,138 @@
+package leola;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import leola.BenchmarkTimer.Benchmark;
+import leola.vm.Args;
+import leola.vm.Leola;
+import leola.vm.types.LeoObject;
+import leola.vm.util.BytecodeCache;
+
+/**
+ * Measures loading an application made of many scripts: compiling each script as it is loaded, versus loading the
+ * compiled scripts from a warm {@link BytecodeCache}.  Also reports the time to precompile the scripts into an empty
+ * cache, serially and in parallel.
+ *
+ * @author Tony
+ *
+ */
+public class BytecodeCacheBenchmark {
+
+    private static final int NUMBER_OF_SCRIPTS = 300;
+
+    private static final String SCRIPT =
+            "namespace module%1$d {                                 \n" +
+            "    var clamp = def(x, lo, hi) {                       \n" +
+            "        if x < lo { return lo }                        \n" +
+            "        if x > hi { return hi }                        \n" +
+            "        return x                                       \n" +
+            "    }                                                  \n" +
+            "    var describe = def(x) {                            \n" +
+            "        var result = \"\"                              \n" +
+            "        switch x                                       \n" +
+            "            when 0 -> result = \"none\"                \n" +
+            "            when 1 -> result = \"one\"                 \n" +
+            "            else result = \"many\"                     \n" +
+            "        return result                                  \n" +
+            "    }                                                  \n" +
+            "    class Account(id, balance) {                       \n" +
+            "        var deposit = def(amount) {                    \n" +
+            "            balance += clamp(amount, 0, 1000)          \n" +
+            "            return balance                             \n" +
+            "        }                                              \n" +
+            "        var withdraw = def(amount) {                   \n" +
+            "            if amount > balance {                      \n" +
+            "                throw \"insufficient funds\"           \n" +
+            "            }                                          \n" +
+            "            balance -= amount                          \n" +
+            "            return balance                             \n" +
+            "        }                                              \n" +
+            "    }                                                  \n" +
+            "    var total = 0                                      \n" +
+            "    var i = 0                                          \n" +
+            "    while i < 10 {                                     \n" +
+            "        total += clamp(i * %1$d, 0, 100)               \n" +
+            "        i += 1                                         \n" +
+            "    }                                                  \n" +
+            "}                                                      \n";
+
+    private static void benchmark(String name, Benchmark benchmark) throws Exception {
+        System.out.printf("%-32s %12.2f%n", name, BenchmarkTimer.time(benchmark) / 1_000_000.0);
+    }
+
+    private static void loadAll(Leola runtime, File[] scripts) throws Exception {
+        for(File script : scripts) {
+            runtime.eval(script);
+        }
+    }
+
+    private static void deleteAll(File dir) {
+        File[] files = dir.listFiles();
+        if(files != null) {
+            for(File file : files) {
+                file.delete();
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        LeoObject.valueOf(0);
+
+        final File sourceDir = Files.createTempDirectory("leola-scripts").toFile();
+        final File cacheDir = Files.createTempDirectory("leola-cache").toFile();
+
+        final File[] scripts = new File[NUMBER_OF_SCRIPTS];
+        for(int i = 0; i < NUMBER_OF_SCRIPTS; i++) {
+            scripts[i] = new File(sourceDir, "module" + i + ".leola");
+            Files.write(scripts[i].toPath(), String.format(SCRIPT, i).getBytes());
+        }
+
+        final Args cachedArgs = Args.builder().setBytecodeCacheDirectory(cacheDir).build();
+        final BytecodeCache cache = new Leola(cachedArgs).getBytecodeCache();
+        final int numberOfThreads = Runtime.getRuntime().availableProcessors();
+
+        System.out.printf("%d scripts, %d processor(s)%n%n", NUMBER_OF_SCRIPTS, numberOfThreads);
+        System.out.printf("%-32s %12s%n", "Benchmark", "ms/op");
+
+        benchmark("load, compiling each script", new Benchmark() {
+
+            @Override
+            public void run() throws Exception {
+                loadAll(new Leola(), scripts);
+            }
+        });
+
+        cache.precompile(sourceDir, numberOfThreads);
+        benchmark("load, from the warm cache", new Benchmark() {
+
+            @Override
+            public void run() throws Exception {
+                loadAll(new Leola(cachedArgs), scripts);
+            }
+        });
+
+        benchmark("precompile, 1 thread", new Benchmark() {
+
+            @Override
+            public void run() throws Exception {
+                deleteAll(cacheDir);
+                cache.precompile(sourceDir, 1);
+            }
+        });
+
+        benchmark("precompile, " + numberOfThreads + " thread(s)", new Benchmark() {
+
+            @Override
+            public void run() throws Exception {
+                deleteAll(cacheDir);
+                cache.precompile(sourceDir, numberOfThreads);
+            }
+        });
+
+        deleteAll(cacheDir);
+        deleteAll(sourceDir);
+        cacheDir.delete();
+        sourceDir.delete();
+    }
+}
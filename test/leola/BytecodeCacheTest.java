@@ -0,0 +1,113 @@
+package leola;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import org.junit.Test;
+
+import leola.vm.Args;
+import leola.vm.Leola;
+import leola.vm.types.LeoObject;
+import leola.vm.util.BytecodeCache;
+
+public class BytecodeCacheTest {
+
+    private static final String SCRIPT =
+          "var add = def(a, b) { return a + b }                 \n"
+        + "class Point(x, y) {                                  \n"
+        + "    var sum = def() { return add(x, y) }             \n"
+        + "}                                                    \n"
+        + "var result = \"none\"                                \n"
+        + "switch new Point(1, 2).sum()                         \n"
+        + "    when 3 -> result = \"three\"                     \n"
+        + "    else result = \"other\"                          \n";
+
+    private static File newDirectory() throws Exception {
+        File dir = Files.createTempDirectory("leola").toFile();
+        dir.deleteOnExit();
+        return dir;
+    }
+
+    private static File writeScript(File dir, String name, String contents) throws Exception {
+        File script = new File(dir, name);
+        Files.write(script.toPath(), contents.getBytes());
+        script.deleteOnExit();
+        return script;
+    }
+
+    private static Leola newRuntime(File cacheDir, boolean debug) {
+        return Args.builder().setBytecodeCacheDirectory(cacheDir).setIsDebugMode(debug).newRuntime();
+    }
+
+    @Test
+    public void testCache() throws Exception {
+        LeoObject.valueOf(0);
+        File cacheDir = new File(newDirectory(), "cache");
+        File script = writeScript(newDirectory(), "point.leola", SCRIPT);
+
+        Leola runtime = newRuntime(cacheDir, false);
+        BytecodeCache cache = runtime.getBytecodeCache();
+        assertNotNull(cache);
+        assertNull(new Leola().getBytecodeCache());
+
+        runtime.eval(script);
+        assertEquals(LeoObject.valueOf("three"), runtime.get("result"));
+        assertEquals(0, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertTrue(cache.getCacheFile(script).isFile());
+
+        /* a new runtime reuses the cached bytecode */
+        Leola cached = newRuntime(cacheDir, false);
+        cached.eval(script);
+        assertEquals(LeoObject.valueOf("three"), cached.get("result"));
+        assertEquals(1, cached.getBytecodeCache().getHitCount());
+        assertEquals(0, cached.getBytecodeCache().getMissCount());
+        assertEquals(LeoObject.valueOf(7), cached.eval("return add(3, 4)"));
+
+        /* the cached bytecode is stale once the script or the compiler options change */
+        writeScript(script.getParentFile(), "point.leola", SCRIPT + "result = \"changed\"");
+        cached.eval(script);
+        assertEquals(LeoObject.valueOf("changed"), cached.get("result"));
+        assertEquals(1, cached.getBytecodeCache().getMissCount());
+
+        Leola debug = newRuntime(cacheDir, true);
+        debug.eval(script);
+        assertEquals(1, debug.getBytecodeCache().getMissCount());
+        debug.eval(script);
+        assertEquals(1, debug.getBytecodeCache().getHitCount());
+
+        /* a corrupt cached file is replaced */
+        Files.write(cache.getCacheFile(script).toPath(), new byte[] { 1, 2, 3 });
+        cached.eval(script);
+        assertEquals(2, cached.getBytecodeCache().getMissCount());
+        cached.eval(script);
+        assertEquals(2, cached.getBytecodeCache().getHitCount());
+    }
+
+    @Test
+    public void testPrecompile() throws Exception {
+        LeoObject.valueOf(0);
+        File cacheDir = newDirectory();
+        File sourceDir = newDirectory();
+        File subDir = new File(sourceDir, "sub");
+        assertTrue(subDir.mkdir());
+        subDir.deleteOnExit();
+
+        for(int i = 0; i < 10; i++) {
+            writeScript((i % 2 == 0) ? sourceDir : subDir, "script" + i + ".leola", "var value" + i + " = " + i);
+        }
+        writeScript(sourceDir, "notes.txt", "not a script");
+
+        BytecodeCache cache = newRuntime(cacheDir, false).getBytecodeCache();
+        assertEquals(10, cache.precompile(sourceDir, 4));
+        assertEquals(0, cache.precompile(sourceDir, 4));
+
+        Leola runtime = newRuntime(cacheDir, false);
+        runtime.eval(new File(subDir, "script3.leola"));
+        assertEquals(LeoObject.valueOf(3), runtime.get("value3"));
+        assertEquals(1, runtime.getBytecodeCache().getHitCount());
+        assertEquals(0, runtime.getBytecodeCache().getMissCount());
+    }
+}
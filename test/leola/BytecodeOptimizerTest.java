@@ -0,0 +1,178 @@
+package leola;
+
+import static leola.vm.Opcodes.*;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileFilter;
+
+import org.junit.Test;
+
+import leola.vm.Leola;
+import leola.vm.compiler.BytecodeOptimizer;
+import leola.vm.types.LeoObject;
+
+public class BytecodeOptimizerTest {
+
+    private static int jmp(int opcode, int offset) {
+        return SET_ARGsx(opcode, offset);
+    }
+
+    private static int argx(int opcode, int x) {
+        return SET_ARGx(opcode, x);
+    }
+
+    @Test
+    public void testThreadJumps() {
+        int[] instr = {
+            jmp(JMP, 1),           // 0 -> 2
+            LOAD_NULL,             // 1
+            jmp(JMP, 1),           // 2 -> 4
+            POP,                   // 3
+            RET,                   // 4
+        };
+
+        int[] result = new BytecodeOptimizer(instr).optimize(null);
+
+        /* JMP -> JMP -> RET becomes RET, the second JMP is also a RET */
+        assertEquals(RET, OPCODE(result[0]));
+        assertEquals(5, result.length);
+    }
+
+    @Test
+    public void testConstantBranches() {
+        int[] instr = {
+            LOAD_TRUE,             // 0
+            jmp(IFEQ, 2),          // 1 -> 4
+            LOAD_NULL,             // 2
+            POP,                   // 3
+            LOAD_FALSE,            // 4
+            jmp(IFEQ, 1),          // 5 -> 7
+            LOAD_NULL,             // 6
+            RET,                   // 7
+        };
+
+        int[] result = new BytecodeOptimizer(instr).optimize(null);
+        assertArrayEquals(new int[] {
+            LOAD_NULL,
+            POP,
+            jmp(JMP, 1),
+            LOAD_NULL,
+            RET,
+        }, result);
+    }
+
+    @Test
+    public void testRelocation() {
+        int[] instr = {
+            argx(LOAD_LOCAL, 0),   // 0
+            argx(LOAD_LOCAL, 1),   // 1
+            LT,                    // 2
+            jmp(IFEQ, 6),          // 3 -> 10
+            DUP,                   // 4
+            argx(STORE_LOCAL, 0),  // 5
+            POP,                   // 6
+            argx(LOAD_LOCAL, 0),   // 7
+            argx(LOAD_CONST, 0),   // 8
+            jmp(JMP, -10),         // 9 -> 0
+            RET,                   // 10
+        };
+
+        int[] result = new BytecodeOptimizer(instr).optimize(null);
+        assertArrayEquals(new int[] {
+            SET_ARG2(SET_ARG1(LT_LOCAL_LOCAL_IFEQ, 0), 1),
+            jmp(IFEQ, 4),
+            argx(STORE_LOCAL, 0),
+            argx(LOAD_LOCAL, 0),
+            argx(LOAD_CONST, 0),
+            jmp(JMP, -6),
+            RET,
+        }, result);
+    }
+
+    @Test
+    public void testJumpTargetsAreNotFused() {
+        int[] instr = {
+            jmp(JMP, 1),           // 0 -> 2
+            argx(LOAD_LOCAL, 0),   // 1
+            argx(LOAD_CONST, 0),   // 2
+            ADD,                   // 3
+            RET,                   // 4
+        };
+
+        int[] result = new BytecodeOptimizer(instr).optimize(null);
+        assertArrayEquals(instr, result);
+    }
+
+    @Test
+    public void testJumpTablesAreKept() {
+        int[] instr = {
+            argx(LOAD_LOCAL, 0),                       // 0
+            SET_ARG2(SET_ARG1(TABLE_SWITCH, 2), 0),    // 1
+            jmp(JMP, 7),                               // 2 -> 10
+            jmp(JMP, 6),                               // 3 -> 10
+            jmp(JMP, 0),                               // 4 -> 5
+            DUP,                                       // 5
+            argx(LOAD_CONST, 0),                       // 6
+            EQ,                                        // 7
+            jmp(IFEQ, 1),                              // 8 -> 10
+            POP,                                       // 9
+            RET,                                       // 10
+        };
+
+        /* the JMP to the next instruction is an entry of the jump table */
+        int[] result = new BytecodeOptimizer(instr).optimize(null);
+        assertEquals(11, result.length);
+        assertEquals(jmp(JMP, 0), result[4]);
+        assertEquals(DUP, result[5]);
+    }
+
+    private static long countInstructions(File script, boolean optimize) throws Exception {
+        Leola leola = Leola.builder()
+                           .setOptimizeBytecode(optimize)
+                           .setCountInstructions(true)
+                           .setAllowThreadLocals(false)
+                           .newRuntime();
+
+        LeoObject result = leola.eval(script);
+        assertFalse(result.isError());
+
+        return leola.getActiveVM().getInstructionCount();
+    }
+
+    /**
+     * Runs the test scripts with and without the optimizer, and reports the
+     * number of dispatched instructions
+     */
+    @Test
+    public void testDispatchCount() throws Exception {
+        File testsDir = new File(System.getProperty("user.dir"), "tests");
+        File[] testScripts = testsDir.listFiles(new FileFilter() {
+
+            @Override
+            public boolean accept(File pathname) {
+                return pathname.getName().toLowerCase().endsWith("test.leola");
+            }
+        });
+
+        long totalUnoptimized = 0;
+        long totalOptimized = 0;
+        for(File testScript : testScripts) {
+            long unoptimized = countInstructions(testScript, false);
+            long optimized = countInstructions(testScript, true);
+
+            assertTrue(testScript.getName(), optimized <= unoptimized);
+
+            System.out.printf("%-32s %10d %10d %6.1f%%%n", testScript.getName(), unoptimized, optimized,
+                    100.0 * (unoptimized - optimized) / Math.max(unoptimized, 1));
+
+            totalUnoptimized += unoptimized;
+            totalOptimized += optimized;
+        }
+
+        System.out.printf("%-32s %10d %10d %6.1f%%%n", "total", totalUnoptimized, totalOptimized,
+                100.0 * (totalUnoptimized - totalOptimized) / Math.max(totalUnoptimized, 1));
+
+        assertTrue(totalOptimized < totalUnoptimized);
+    }
+}
@@ -0,0 +1,89 @@
+package leola;
+
+import leola.BenchmarkTimer.Benchmark;
+import leola.vm.Args;
+import leola.vm.Leola;
+import leola.vm.types.LeoObject;
+
+/**
+ * Measures the throughput of 1, 4 and 16 threads calling into the same {@link Leola} runtime, whose functions
+ * read globals and namespace members.  The runtime shares its global and namespace scopes between the threads
+ * (see {@link Args#concurrentGlobals()}); a single thread calling into a runtime without concurrent globals
+ * is the baseline.
+ *
+ * @author Tony
+ *
+ */
+public class ConcurrentGlobalsBenchmark {
+
+    private static final int CALLS = 200000;
+    private static final int[] THREADS = { 1, 4, 16 };
+
+    private static final String FUNCTIONS =
+            "namespace shared {                                 \n" +
+            "    var scale = 2                                  \n" +
+            "    var scaled = def(x) { return x * scale }       \n" +
+            "}                                                  \n" +
+            "var offset = 1                                     \n" +
+            "var square = def(x) { return x * x }               \n" +
+            "var work = def(n) {                                \n" +
+            "    return square(n) + shared:scaled(n) + offset   \n" +
+            "}                                                  \n";
+
+    private static void run(final Leola runtime, int numberOfThreads) throws Exception {
+        final LeoObject work = runtime.get("work");
+        final int callsPerThread = CALLS / numberOfThreads;
+
+        Thread[] threads = new Thread[numberOfThreads];
+        for(int t = 0; t < numberOfThreads; t++) {
+            threads[t] = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    for(int i = 0; i < callsPerThread; i++) {
+                        LeoObject result = work.xcall(LeoObject.valueOf(i & 1023));
+                        if(result.isError()) {
+                            throw new IllegalStateException(result.toString());
+                        }
+                    }
+                }
+            });
+        }
+
+        for(Thread thread : threads) {
+            thread.start();
+        }
+        for(Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    private static void benchmark(String name, final Leola runtime, final int numberOfThreads) throws Exception {
+        double nanosPerCall = BenchmarkTimer.time(new Benchmark() {
+
+            @Override
+            public void run() throws Exception {
+                ConcurrentGlobalsBenchmark.run(runtime, numberOfThreads);
+            }
+        }) / CALLS;
+        System.out.printf("%-24s %8d %14.0f %12.1f%n", name, numberOfThreads, 1_000_000_000.0 / nanosPerCall, nanosPerCall);
+    }
+
+    public static void main(String[] args) throws Exception {
+        LeoObject.valueOf(0);
+
+        Leola baseline = Args.builder().newRuntime();
+        baseline.eval(FUNCTIONS);
+
+        Leola runtime = Args.builder()
+                            .setConcurrentGlobals(true)
+                            .newRuntime();
+        runtime.eval(FUNCTIONS);
+
+        System.out.printf("%-24s %8s %14s %12s%n", "Benchmark", "Threads", "calls/sec", "ns/call");
+        benchmark("unshared globals", baseline, 1);
+        for(int numberOfThreads : THREADS) {
+            benchmark("concurrent globals", runtime, numberOfThreads);
+        }
+    }
+}
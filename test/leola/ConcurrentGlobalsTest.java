@@ -0,0 +1,140 @@
+package leola;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import leola.vm.Args;
+import leola.vm.Leola;
+import leola.vm.exceptions.LeolaRuntimeException;
+import leola.vm.types.LeoNamespace;
+import leola.vm.types.LeoObject;
+import leola.vm.types.LeoScopedObject;
+
+public class ConcurrentGlobalsTest {
+
+    private static final String SCRIPT =
+          "namespace shared {                                              \n"
+        + "    var scale = 2                                               \n"
+        + "    var scaled = def(x) { return x * scale }                    \n"
+        + "}                                                               \n"
+        + "var square = def(x) { return x * x }                            \n"
+        + "class Point(x, y) {                                             \n"
+        + "    var sum = def() { return x + y }                            \n"
+        + "}                                                               \n"
+        + "var work = def(t, n) {                                          \n"
+        + "    var sum = 0                                                 \n"
+        + "    var i = 0                                                   \n"
+        + "    while i < n {                                               \n"
+        + "        sum += square(i) + shared:scaled(i) + new Point(i, t).sum() \n"
+        + "        i += 1                                                  \n"
+        + "    }                                                           \n"
+        + "    return sum                                                  \n"
+        + "}                                                               \n";
+
+    private static final int THREADS = 8;
+    private static final int ROUNDS = 200;
+    private static final int N = 20;
+
+    private static Leola newRuntime() throws Exception {
+        LeoObject.valueOf(0);
+        Leola leola = Args.builder().setConcurrentGlobals(true).newRuntime();
+        leola.eval(SCRIPT);
+        return leola;
+    }
+
+    private static int expected(int t, int n) {
+        int sum = 0;
+        for(int i = 0; i < n; i++) {
+            sum += i * i + 2 * i + i + t;
+        }
+        return sum;
+    }
+
+    @Test
+    public void testScopes() throws Exception {
+        Leola leola = newRuntime();
+        assertTrue(leola.getGlobalNamespace().getScope().isConcurrent());
+        assertTrue(leola.getNamespace("shared").getScope().isConcurrent());
+        assertTrue(leola.getOrCreateNamespace("other").getScope().isConcurrent());
+
+        /* class instances are not shared */
+        LeoScopedObject point = (LeoScopedObject)leola.eval("return new Point(1, 2)");
+        assertFalse(point.getScope().isConcurrent());
+        assertEquals(LeoObject.valueOf(3), point.getObject("sum").xcall());
+
+        assertEquals(LeoObject.valueOf(expected(3, 10)), leola.eval("return work(3, 10)"));
+        assertEquals(LeoObject.valueOf(6), leola.eval("shared:scale = 3 \n return shared:scaled(2)"));
+
+        Leola unshared = Args.builder().newRuntime();
+        assertFalse(unshared.getGlobalNamespace().getScope().isConcurrent());
+    }
+
+    @Test(expected=LeolaRuntimeException.class)
+    public void testRequiresThreadLocals() {
+        Args.builder().setAllowThreadLocals(false).setConcurrentGlobals(true).newRuntime();
+    }
+
+    @Test
+    public void testStress() throws Exception {
+        final Leola leola = newRuntime();
+        final LeoObject work = leola.get("work");
+        final LeoNamespace shared = leola.getNamespace("shared");
+        final int sharedMembers = shared.getScope().getNumberOfObjects();
+
+        Thread[] threads = new Thread[THREADS];
+        final Throwable[] errors = new Throwable[threads.length];
+        for(int t = 0; t < threads.length; t++) {
+            final int index = t;
+            threads[t] = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        for(int round = 0; round < ROUNDS; round++) {
+                            assertEquals(LeoObject.valueOf(expected(index, N)), work.xcall(LeoObject.valueOf(index), LeoObject.valueOf(N)));
+
+                            /* define globals and namespace members while the other threads read them */
+                            String name = "g_" + index + "_" + round;
+                            leola.put(name, round);
+                            leola.put(shared, name, round * 2);
+
+                            if(round % 10 == 0) {
+                                LeoObject result = leola.eval("var e_" + index + "_" + round + " = " + name + " + shared:" + name
+                                                            + " \n return e_" + index + "_" + round);
+                                assertEquals(LeoObject.valueOf(round * 3), result);
+                            }
+                        }
+                    }
+                    catch(Throwable e) {
+                        errors[index] = e;
+                    }
+                }
+            });
+        }
+
+        for(Thread thread : threads) {
+            thread.start();
+        }
+
+        for(int t = 0; t < threads.length; t++) {
+            threads[t].join();
+            if(errors[t] != null) {
+                throw new AssertionError(errors[t]);
+            }
+        }
+
+        /* no definition was lost */
+        for(int t = 0; t < THREADS; t++) {
+            for(int round = 0; round < ROUNDS; round++) {
+                String name = "g_" + t + "_" + round;
+                assertEquals(LeoObject.valueOf(round), leola.get(name));
+                assertEquals(LeoObject.valueOf(round * 2), leola.get(shared, name));
+                if(round % 10 == 0) {
+                    assertEquals(LeoObject.valueOf(round * 3), leola.get("e_" + t + "_" + round));
+                }
+            }
+        }
+        assertEquals(sharedMembers + THREADS * ROUNDS, shared.getScope().getNumberOfObjects());
+    }
+}
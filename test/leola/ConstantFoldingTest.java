@@ -0,0 +1,119 @@
+package leola;
+
+import static org.junit.Assert.*;
+
+import java.io.StringReader;
+import java.util.List;
+
+import org.junit.Test;
+
+import leola.ast.BinaryExpr;
+import leola.ast.BlockStmt;
+import leola.ast.BooleanExpr;
+import leola.ast.EmptyStmt;
+import leola.ast.Expr;
+import leola.ast.FuncDefExpr;
+import leola.ast.IntegerExpr;
+import leola.ast.ProgramStmt;
+import leola.ast.RealExpr;
+import leola.ast.ReturnStmt;
+import leola.ast.Stmt;
+import leola.ast.StringExpr;
+import leola.ast.VarDeclStmt;
+import leola.ast.VarExpr;
+import leola.vm.Leola;
+import leola.vm.compiler.ConstantFoldingVisitor;
+import leola.vm.types.LeoObject;
+
+public class ConstantFoldingTest {
+
+    private static List<Stmt> optimize(String source) throws Exception {
+        LeoObject.valueOf(0);
+
+        Leola runtime = Leola.builder().setAllowThreadLocals(false).newRuntime();
+        ProgramStmt program = (ProgramStmt)runtime.generateAST(new StringReader(source));
+        program.visit(new ConstantFoldingVisitor());
+        return program.getStatements();
+    }
+
+    private static Expr value(Stmt stmt) {
+        return ((VarDeclStmt)stmt).getValue();
+    }
+
+    @Test
+    public void testFoldLiterals() throws Exception {
+        List<Stmt> stmts = optimize(
+                "var a = 1024 * 60 * 60 \n" +
+                "var b = \"a\" + \"b\" + 1 \n" +
+                "var c = 1 + 0.5 \n" +
+                "var d = -(2 * 3) \n" +
+                "var e = !(1 < 2) \n" +
+                "var f = 1 / 0 \n" +
+                "var g = x * (2 + 3) \n");
+
+        assertEquals(1024 * 60 * 60, ((IntegerExpr)value(stmts.get(0))).getValue());
+        assertEquals("ab1", ((StringExpr)value(stmts.get(1))).getValue());
+        assertEquals(1.5, ((RealExpr)value(stmts.get(2))).getValue(), 0);
+        assertEquals(-6, ((IntegerExpr)value(stmts.get(3))).getValue());
+        assertFalse(((BooleanExpr)value(stmts.get(4))).getValue());
+
+        /* errors are left to the runtime */
+        assertTrue(value(stmts.get(5)) instanceof BinaryExpr);
+
+        BinaryExpr g = (BinaryExpr)value(stmts.get(6));
+        assertTrue(g.getLeft() instanceof VarExpr);
+        assertEquals(5, ((IntegerExpr)g.getRight()).getValue());
+    }
+
+    @Test
+    public void testLogicalExpressions() throws Exception {
+        List<Stmt> stmts = optimize(
+                "var a = true && x \n" +
+                "var b = null && x \n" +
+                "var c = 1 || x \n" +
+                "var d = false || x \n" +
+                "var e = x && true \n");
+
+        assertTrue(value(stmts.get(0)) instanceof VarExpr);
+        assertFalse(((BooleanExpr)value(stmts.get(1))).getValue());
+        assertTrue(((BooleanExpr)value(stmts.get(2))).getValue());
+        assertTrue(value(stmts.get(3)) instanceof VarExpr);
+        assertTrue(value(stmts.get(4)) instanceof BinaryExpr);
+    }
+
+    @Test
+    public void testDeadBranches() throws Exception {
+        List<Stmt> stmts = optimize(
+                "if true { a() } else { b() } \n" +
+                "if 1 > 2 { a() } \n" +
+                "while false { a() } \n" +
+                "if false var x = 1 \n");
+
+        assertTrue(stmts.get(0) instanceof BlockStmt);
+        assertTrue(stmts.get(1) instanceof EmptyStmt);
+        assertTrue(stmts.get(2) instanceof EmptyStmt);
+
+        /* the declaration of x is kept */
+        assertFalse(stmts.get(3) instanceof EmptyStmt);
+    }
+
+    @Test
+    public void testUnreachableStatements() throws Exception {
+        List<Stmt> stmts = optimize(
+                "var f = def(x) { \n" +
+                "  if x { return 1 } else { return 2 } \n" +
+                "  a() \n" +
+                "} \n" +
+                "var g = def(x) { \n" +
+                "  if true { return x } \n" +
+                "  a() \n" +
+                "} \n");
+
+        List<Stmt> f = ((BlockStmt)((FuncDefExpr)value(stmts.get(0))).getBody()).getStatements();
+        assertEquals(1, f.size());
+
+        List<Stmt> g = ((BlockStmt)((FuncDefExpr)value(stmts.get(1))).getBody()).getStatements();
+        assertEquals(1, g.size());
+        assertTrue(((BlockStmt)g.get(0)).getStatements().get(0) instanceof ReturnStmt);
+    }
+}
@@ -0,0 +1,156 @@
+package leola;
+
+import static leola.vm.Opcodes.*;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import leola.vm.Leola;
+import leola.vm.compiler.Bytecode;
+import leola.vm.debug.BreakpointListener;
+import leola.vm.debug.DebugEvent;
+import leola.vm.debug.Debugger;
+import leola.vm.types.LeoFunction;
+import leola.vm.types.LeoObject;
+
+public class DebuggerTest {
+
+    private static final String FUNCTIONS =
+          "var f = def(n) {      \n"
+        + "    var x = n + 1     \n"
+        + "    return x * 2      \n"
+        + "}                     \n"
+        + "var g = def(n) {      \n"
+        + "    var r = f(n)      \n"
+        + "    return r + 1      \n"
+        + "}                     \n";
+
+    /**
+     * Records the lines stopped at, and steps the supplied number of times
+     */
+    private static class Recorder implements BreakpointListener {
+        List<Integer> lines = new ArrayList<Integer>();
+        List<Bytecode> code = new ArrayList<Bytecode>();
+        int steps;
+        boolean into;
+
+        Recorder(int steps, boolean into) {
+            this.steps = steps;
+            this.into = into;
+        }
+
+        @Override
+        public void onBreakpoint(DebugEvent event, Debugger debugger) {
+            this.lines.add(event.getLineNumber());
+            this.code.add(event.getBytecode());
+
+            if(this.steps-- > 0) {
+                if(this.into) {
+                    debugger.stepInto();
+                }
+                else {
+                    debugger.stepOver();
+                }
+            }
+        }
+    }
+
+    private static Leola newRuntime(Debugger debugger) throws Exception {
+        LeoObject.valueOf(0);
+
+        Leola leola = Leola.builder().setAllowThreadLocals(false).newRuntime();
+        leola.setDebugger(debugger);
+        leola.eval(FUNCTIONS);
+        return leola;
+    }
+
+    private static Bytecode bytecode(Leola leola, String name) {
+        return ((LeoFunction)leola.get(name)).getBytecode();
+    }
+
+    private static boolean isPatched(Bytecode code) {
+        for(int pc = 0; pc < code.len; pc++) {
+            if(OPCODE(code.instr[pc]) == BREAKPOINT) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    public void testBreakpoint() throws Exception {
+        Recorder recorder = new Recorder(0, false);
+        Debugger debugger = new Debugger(recorder);
+        Leola leola = newRuntime(debugger);
+
+        Bytecode f = bytecode(leola, "f");
+        assertFalse(debugger.addBreakpoint(f, 100));
+        assertTrue(debugger.addBreakpoint(f, 2));
+        assertTrue(isPatched(f));
+
+        /* the breakpoint stays in place, and the displaced instruction is executed */
+        for(int i = 1; i <= 3; i++) {
+            assertEquals(LeoObject.valueOf((i + 1) * 2), leola.eval("return f(" + i + ")"));
+        }
+        assertEquals(3, recorder.lines.size());
+        assertEquals(Integer.valueOf(2), recorder.lines.get(0));
+
+        assertTrue(debugger.removeBreakpoint(f, 2));
+        assertFalse(isPatched(f));
+        assertFalse(debugger.hasBreakpoints());
+
+        assertEquals(LeoObject.valueOf(4), leola.eval("return f(1)"));
+        assertEquals(3, recorder.lines.size());
+    }
+
+    @Test
+    public void testStepOver() throws Exception {
+        Recorder recorder = new Recorder(4, false);
+        Debugger debugger = new Debugger(recorder);
+        Leola leola = newRuntime(debugger);
+
+        Bytecode f = bytecode(leola, "f");
+        debugger.addBreakpoint(f, 2);
+
+        assertEquals(LeoObject.valueOf(10), leola.eval("var a = f(1) \n var b = f(2) \n return a + b"));
+
+        /* steps out to the caller once f returns, then to the next line, which calls f again */
+        assertEquals("[2, 3, 1, 2, 2]", recorder.lines.toString());
+        assertSame(f, recorder.code.get(1));
+        assertNotSame(f, recorder.code.get(2));
+        assertSame(f, recorder.code.get(4));
+
+        debugger.removeAllBreakpoints();
+        assertFalse(isPatched(f));
+    }
+
+    @Test
+    public void testStepInto() throws Exception {
+        Recorder recorder = new Recorder(2, true);
+        Debugger debugger = new Debugger(recorder);
+        Leola leola = newRuntime(debugger);
+
+        Bytecode f = bytecode(leola, "f");
+        Bytecode g = bytecode(leola, "g");
+        debugger.addBreakpoint(g, 6);
+
+        assertEquals(LeoObject.valueOf(5), leola.eval("return g(1)"));
+        assertEquals("[6, 2, 3]", recorder.lines.toString());
+        assertSame(g, recorder.code.get(0));
+        assertSame(f, recorder.code.get(1));
+        assertSame(f, recorder.code.get(2));
+
+        /* stepping over does not stop within f */
+        recorder = new Recorder(1, false);
+        debugger = new Debugger(recorder);
+        leola.setDebugger(debugger);
+        assertFalse(isPatched(f) || isPatched(g));
+
+        debugger.addBreakpoint(g, 6);
+        assertEquals(LeoObject.valueOf(5), leola.eval("return g(1)"));
+        assertEquals("[6, 7]", recorder.lines.toString());
+    }
+}
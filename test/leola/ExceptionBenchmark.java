@@ -0,0 +1,106 @@
+package leola;
+
+import leola.BenchmarkTimer.Benchmark;
+import leola.vm.Leola;
+import leola.vm.types.LeoObject;
+
+/**
+ * Measures the throughput of throwing and catching errors in Leola code: errors caught within the
+ * throwing function, errors caught a number of calls up from where they are thrown, and attribute
+ * errors raised by the runtime.  A loop calling a function without throwing is the baseline.
+ *
+ * @author Tony
+ *
+ */
+public class ExceptionBenchmark {
+
+    private static final int WARMUP_RUNS = 5;
+    private static final int MEASURED_RUNS = 10;
+    private static final int ITERATIONS = 100000;
+
+    private static final String FUNCTIONS =
+            "var nothrow = def(n) {                             \n" +
+            "    return n                                       \n" +
+            "}                                                  \n" +
+            "var thrower = def(n) {                             \n" +
+            "    throw \"failed: \" + n                         \n" +
+            "}                                                  \n" +
+            "var deep = def(depth, n) {                         \n" +
+            "    if depth == 0 { return thrower(n) }            \n" +
+            "    return deep(depth - 1, n)                      \n" +
+            "}                                                  \n" +
+            "var baseline = def(n) {                            \n" +
+            "    var caught = 0                                 \n" +
+            "    var i = 0                                      \n" +
+            "    while i < n {                                  \n" +
+            "        try { nothrow(i) } catch e { caught += 1 } \n" +
+            "        i += 1                                     \n" +
+            "    }                                              \n" +
+            "    return caught                                  \n" +
+            "}                                                  \n" +
+            "var local = def(n) {                               \n" +
+            "    var caught = 0                                 \n" +
+            "    var i = 0                                      \n" +
+            "    while i < n {                                  \n" +
+            "        try { throw \"failed\" } catch e { caught += 1 } \n" +
+            "        i += 1                                     \n" +
+            "    }                                              \n" +
+            "    return caught                                  \n" +
+            "}                                                  \n" +
+            "var callee = def(n, depth) {                       \n" +
+            "    var caught = 0                                 \n" +
+            "    var i = 0                                      \n" +
+            "    while i < n {                                  \n" +
+            "        try { deep(depth, i) } catch e { caught += 1 } \n" +
+            "        i += 1                                     \n" +
+            "    }                                              \n" +
+            "    return caught                                  \n" +
+            "}                                                  \n" +
+            "class Empty() {}                                   \n" +
+            "var attribute = def(n) {                           \n" +
+            "    var caught = 0                                 \n" +
+            "    var obj = new Empty()                          \n" +
+            "    var i = 0                                      \n" +
+            "    while i < n {                                  \n" +
+            "        try { obj.missing() } catch e { caught += 1 } \n" +
+            "        i += 1                                     \n" +
+            "    }                                              \n" +
+            "    return caught                                  \n" +
+            "}                                                  \n";
+
+    private static final String[][] BENCHMARKS = {
+        { "no throw",           "return baseline(" + ITERATIONS + ")" },
+        { "local throw",        "return local(" + ITERATIONS + ")" },
+        { "throw from callee",  "return callee(" + ITERATIONS + ", 0)" },
+        { "throw 10 calls up",  "return callee(" + ITERATIONS + ", 10)" },
+        { "attribute error",    "return attribute(" + ITERATIONS + ")" },
+    };
+
+    private static void run(Leola runtime, String script) throws Exception {
+        LeoObject result = runtime.eval(script);
+        if(result.isError()) {
+            throw new IllegalStateException(result.toString());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        LeoObject.valueOf(0);
+
+        final Leola runtime = Leola.builder()
+                             .setAllowThreadLocals(false)
+                             .newRuntime();
+        runtime.eval(FUNCTIONS);
+
+        System.out.printf("%-20s %14s %12s%n", "Benchmark", "ops/sec", "ns/op");
+        for(final String[] benchmark : BENCHMARKS) {
+            double nanosPerOp = BenchmarkTimer.time(WARMUP_RUNS, MEASURED_RUNS, new Benchmark() {
+
+                @Override
+                public void run() throws Exception {
+                    ExceptionBenchmark.run(runtime, benchmark[1]);
+                }
+            }) / ITERATIONS;
+            System.out.printf("%-20s %14.0f %12.1f%n", benchmark[0], 1_000_000_000.0 / nanosPerOp, nanosPerOp);
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package leola;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import leola.vm.Leola;
+import leola.vm.types.LeoGenerator;
+import leola.vm.types.LeoObject;
+
+public class GeneratorTest {
+
+    private static final String FUNCTIONS =
+          "var count = def(to) {                \n"
+        + "    return gen() {                   \n"
+        + "        var i = 0                    \n"
+        + "        while i < to {               \n"
+        + "            yield i                  \n"
+        + "            i += 1                   \n"
+        + "        }                            \n"
+        + "    }                                \n"
+        + "}                                    \n"
+        + "var pairs = def(to) {                \n"
+        + "    return gen() {                   \n"
+        + "        var outer = count(to)        \n"
+        + "        var i = outer()              \n"
+        + "        while i != null {            \n"
+        + "            var inner = count(i + 1) \n"
+        + "            var j = inner()          \n"
+        + "            while j != null {        \n"
+        + "                yield i * 10 + j     \n"
+        + "                j = inner()          \n"
+        + "            }                        \n"
+        + "            i = outer()              \n"
+        + "        }                            \n"
+        + "    }                                \n"
+        + "}                                    \n";
+
+    private static Leola newRuntime(boolean allowThreadLocals) throws Exception {
+        LeoObject.valueOf(0);
+        Leola leola = Leola.builder().setAllowThreadLocals(allowThreadLocals).newRuntime();
+        leola.eval(FUNCTIONS);
+        return leola;
+    }
+
+    @Test
+    public void testInstances() throws Exception {
+        Leola leola = newRuntime(false);
+        LeoGenerator a = (LeoGenerator)leola.eval("return count(3)");
+        LeoGenerator b = (LeoGenerator)leola.eval("return count(2)");
+
+        /* the bytecode is shared, and is not modified by resuming */
+        assertSame(a.getBytecode(), b.getBytecode());
+
+        assertEquals(LeoObject.valueOf(0), a.xcall());
+        assertEquals(LeoObject.valueOf(1), a.xcall());
+        assertEquals(LeoObject.valueOf(0), b.xcall());
+        assertEquals(LeoObject.valueOf(2), a.xcall());
+        assertEquals(LeoObject.valueOf(1), b.xcall());
+        assertEquals(0, a.getBytecode().pc);
+
+        assertEquals(LeoObject.NULL, a.xcall());
+        assertEquals(a.getBytecode().len, a.getProgramCounter());
+        assertEquals(LeoObject.NULL, a.xcall());
+        assertEquals(LeoObject.NULL, b.xcall());
+    }
+
+    @Test
+    public void testClone() throws Exception {
+        Leola leola = newRuntime(false);
+        LeoGenerator a = (LeoGenerator)leola.eval("return count(3)");
+        assertEquals(LeoObject.valueOf(0), a.xcall());
+
+        /* the clone continues from where the generator is */
+        LeoGenerator b = (LeoGenerator)a.clone();
+        assertEquals(LeoObject.valueOf(1), a.xcall());
+        assertEquals(LeoObject.valueOf(2), a.xcall());
+        assertEquals(LeoObject.valueOf(1), b.xcall());
+    }
+
+    @Test
+    public void testNested() throws Exception {
+        Leola leola = newRuntime(false);
+        LeoObject result = leola.eval("var s = \"\" \n var p = pairs(3) \n var n = p() \n "
+                                    + "while n != null { s += n + \" \" \n n = p() } \n return s");
+        assertEquals(LeoObject.valueOf("0 10 11 20 21 22 "), result);
+    }
+
+    @Test
+    public void testInPlace() throws Exception {
+        Leola leola = newRuntime(false);
+        LeoGenerator a = (LeoGenerator)leola.eval("return count(3)");
+        LeoObject[] locals = a.getLocals();
+        assertEquals(a.getBytecode().maxstacksize, locals.length);
+
+        /* resumes on the same stack, where the local variables are left */
+        assertEquals(LeoObject.valueOf(0), a.xcall());
+        assertEquals(LeoObject.valueOf(1), a.xcall());
+        assertSame(locals, a.getLocals());
+        assertEquals(LeoObject.valueOf(1), locals[0]);
+        assertFalse(a.isExecuting());
+
+        /* the stack grows for the functions called, and is then trimmed back */
+        leola.eval("var depth = def(n) { if n == 0 { return 0 } return 1 + depth(n - 1) }");
+        LeoGenerator deep = (LeoGenerator)leola.eval("return gen(n) { var d = depth(n) yield d yield depth(n + 1) + d }");
+        assertEquals(LeoObject.valueOf(5000), deep.xcall(LeoObject.valueOf(5000)));
+        assertEquals(deep.getBytecode().maxstacksize, deep.getLocals().length);
+        assertEquals(LeoObject.valueOf(5011), deep.xcall(LeoObject.valueOf(10)));
+        assertEquals(LeoObject.NULL, deep.xcall(LeoObject.valueOf(10)));
+    }
+
+    @Test
+    public void testClosures() throws Exception {
+        Leola leola = newRuntime(false);
+
+        /* closures over the calling function's locals are read while on the generator's stack */
+        LeoObject result = leola.eval("var f = def() {                                                    \n"
+                                    + "    var total = 100                                                \n"
+                                    + "    var add = def(x) { total += x return total }                   \n"
+                                    + "    var g = gen() { var i = 0 while i < 3 { yield add(i) i += 1 } } \n"
+                                    + "    return [g(), g(), g(), g(), total]                              \n"
+                                    + "}                                                                  \n"
+                                    + "return f()");
+        assertEquals(leola.eval("return [100, 101, 103, null, 103]"), result);
+
+        /* closures over the generator's own locals */
+        result = leola.eval("var sq = gen() { var i = 0 while i < 3 { var s = def() return i * i \n yield s() \n i += 1 } } \n"
+                          + "return [sq(), sq(), sq(), sq()]");
+        assertEquals(leola.eval("return [0, 1, 4, null]"), result);
+    }
+
+    @Test
+    public void testAlreadyExecuting() throws Exception {
+        Leola leola = newRuntime(false);
+        LeoObject result = leola.eval("var re = gen() { yield 1 + re() } \n"
+                                    + "var caught = false \n"
+                                    + "try { re() } catch e { caught = true } \n"
+                                    + "return caught");
+        assertEquals(LeoObject.TRUE, result);
+        assertFalse(((LeoGenerator)leola.get("re")).isExecuting());
+    }
+
+    @Test
+    public void testThreads() throws Exception {
+        /* the generators of one definition, each thread executing in its own VM */
+        final Leola leola = newRuntime(true);
+        final LeoObject count = leola.get("count");
+
+        Thread[] threads = new Thread[4];
+        final Throwable[] errors = new Throwable[threads.length];
+        for(int t = 0; t < threads.length; t++) {
+            final int index = t;
+            threads[t] = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        for(int run = 0; run < 200; run++) {
+                            LeoObject generator = count.xcall(LeoObject.valueOf(50));
+                            for(int i = 0; i < 50; i++) {
+                                assertEquals(LeoObject.valueOf(i), generator.xcall());
+                            }
+                            assertEquals(LeoObject.NULL, generator.xcall());
+                        }
+                    }
+                    catch(Throwable e) {
+                        errors[index] = e;
+                    }
+                }
+            });
+            threads[t].start();
+        }
+
+        for(int t = 0; t < threads.length; t++) {
+            threads[t].join();
+            if(errors[t] != null) {
+                throw new AssertionError(errors[t]);
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package leola;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.Field;
+
+import org.junit.Test;
+
+import leola.vm.InlineCache;
+import leola.vm.Scope;
+import leola.vm.Scope.ScopeType;
+import leola.vm.types.LeoNamespace;
+import leola.vm.types.LeoObject;
+
+public class InlineCacheTest {
+
+    private static final LeoObject KEY = LeoObject.valueOf("key");
+
+    @Test
+    public void testHits() {
+        LeoNamespace ns = new LeoNamespace(new Scope(ScopeType.Namespace, new Scope(ScopeType.Namespace, null)), KEY);
+        ns.putObject(KEY, LeoObject.valueOf(1));
+
+        InlineCache cache = new InlineCache();
+        assertEquals(LeoObject.valueOf(1), cache.getProperty(ns, KEY));
+        assertEquals(LeoObject.valueOf(1), cache.getProperty(ns, KEY));
+
+        cache.setProperty(ns, KEY, LeoObject.valueOf(2));
+        assertEquals(LeoObject.valueOf(2), cache.getProperty(ns, KEY));
+        assertEquals(LeoObject.valueOf(2), ns.getObject(KEY));
+
+        assertEquals(1, cache.getMisses());
+        assertEquals(3, cache.getHits());
+    }
+
+    @Test
+    public void testInvalidation() {
+        Scope global = new Scope(ScopeType.Namespace, null);
+        Scope parent = new Scope(ScopeType.Namespace, global);
+        Scope child = new Scope(ScopeType.Class, parent);
+
+        LeoNamespace ns = new LeoNamespace(child, KEY);
+        parent.putObject(KEY, LeoObject.valueOf(1));
+
+        InlineCache cache = new InlineCache();
+        assertEquals(LeoObject.valueOf(1), cache.getProperty(ns, KEY));
+
+        /* shadow the parent */
+        child.putObject(KEY, LeoObject.valueOf(2));
+        assertEquals(LeoObject.valueOf(2), cache.getProperty(ns, KEY));
+
+        child.removeObject(KEY);
+        assertEquals(LeoObject.valueOf(1), cache.getProperty(ns, KEY));
+
+        parent.removeObject(KEY);
+        assertNull(cache.getProperty(ns, KEY));
+
+        /* the global scope is never searched */
+        global.putObject(KEY, LeoObject.valueOf(3));
+        assertNull(cache.getProperty(ns, KEY));
+    }
+
+    @Test
+    public void testEvictionAfterOverflow() throws Exception {
+        InlineCache cache = new InlineCache();
+
+        /* the miss count has wrapped around, yet still hits more than it misses */
+        Field misses = InlineCache.class.getDeclaredField("misses");
+        misses.setAccessible(true);
+        misses.setInt(cache, Integer.MIN_VALUE + 1);
+
+        for(int i = 0; i <= InlineCache.MAX_ENTRIES; i++) {
+            LeoNamespace ns = new LeoNamespace(new Scope(ScopeType.Namespace, new Scope(ScopeType.Namespace, null)), KEY);
+            ns.putObject(KEY, LeoObject.valueOf(i));
+            assertEquals(LeoObject.valueOf(i), cache.getProperty(ns, KEY));
+        }
+        assertFalse(cache.isMegamorphic());
+    }
+}
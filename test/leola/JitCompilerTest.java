@@ -0,0 +1,270 @@
+package leola;
+
+import static leola.vm.Opcodes.*;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileFilter;
+
+import org.junit.Test;
+
+import leola.vm.Args;
+import leola.vm.Leola;
+import leola.vm.compiler.Bytecode;
+import leola.vm.exceptions.LeolaRuntimeException;
+import leola.vm.jit.CompiledBytecode;
+import leola.vm.jit.JitCompiler;
+import leola.vm.types.LeoFunction;
+import leola.vm.types.LeoObject;
+
+public class JitCompilerTest {
+
+    private static Leola newRuntime(boolean tieredCompilation) {
+        LeoObject.valueOf(0);
+        return Leola.builder()
+                    .setTieredCompilation(tieredCompilation)
+                    .setCompileThreshold(1)
+                    .setAllowThreadLocals(false)
+                    .newRuntime();
+    }
+
+    private static Bytecode bytecode(Leola leola, String name) {
+        return ((LeoFunction)leola.get(name)).getBytecode();
+    }
+
+    @Test
+    public void testScripts() throws Exception {
+        File testsDir = new File(System.getProperty("user.dir"), "tests");
+        File[] testScripts = testsDir.listFiles(new FileFilter() {
+
+            @Override
+            public boolean accept(File pathname) {
+                return pathname.getName().toLowerCase().endsWith("test.leola");
+            }
+        });
+
+        for(File testScript : testScripts) {
+            LeoObject result = newRuntime(true).eval(testScript);
+            assertFalse(testScript.getName() + ": " + result, result.isError());
+        }
+    }
+
+    @Test
+    public void testCompiledResults() throws Exception {
+        String script =
+              "var fib = def(n) { if n < 2 { return n } return fib(n - 1) + fib(n - 2) } \n"
+            + "var loop = def(n) { var s = 0 var i = 0 while i < n { s += i % 7 i += 1 } return s } \n"
+            + "var maps = def(n) { var m = {} var i = 0 while i < n { m[\"k\" + (i % 10)] = i i += 1 } return m } \n"
+            + "var arrays = def(a, b, c) { return [a, b, c, a + b + c] } \n"
+            + "var strings = def(s) { return case s when \"a\" -> 1 when \"b\" -> 2 else 3 } \n";
+
+        for(boolean jit : new boolean[] { false, true }) {
+            Leola leola = newRuntime(jit);
+            leola.eval(script);
+
+            assertEquals(LeoObject.valueOf(6765), leola.eval("return fib(20)"));
+            assertEquals(LeoObject.valueOf(2997), leola.eval("return loop(1000)"));
+            assertEquals(LeoObject.valueOf(999), leola.eval("return maps(1000)[\"k9\"]"));
+            assertEquals(LeoObject.valueOf(6), leola.eval("return arrays(1, 2, 3)[3]"));
+            assertEquals(LeoObject.valueOf(2), leola.eval("return strings(\"b\")"));
+            assertEquals(LeoObject.valueOf(3), leola.eval("return strings(4)"));
+
+            for(String name : new String[] { "fib", "loop", "maps", "arrays", "strings" }) {
+                assertEquals(name, jit, bytecode(leola, name).getCompiled() != null);
+            }
+        }
+    }
+
+    @Test
+    public void testUnboxedNumbers() throws Exception {
+        String script =
+              "var ints = def(n) { var s = 0 var i = 0 while i < n { s += i * 3 - i / 2 + i % 5 i += 1 } return s } \n"
+            + "var reals = def(n) { var x = 0.5 var i = 0 while i < n { x = x * 1.5 - x / 3.0 + 0.25 i += 1 } return x } \n"
+            + "var mixed = def(n) { var x = 1 var i = 0 while i < n { if i > 2 { x = x + 0.5 } else { x = x + 1 } i += 1 } return x } \n"
+            + "var overflow = def(n) { var x = 2147483647 - n return x + n + 1 } \n"
+            + "var nan = def(x) { var y = x / 0.5 - x * 2.0 var z = 0.0 / 1.0 return y != y || (1.0 - 1.0) == z } \n"
+            + "var compares = def(a, b) { return [a < b, a <= b, a > b, a >= b, a == b, a != b, -a] } \n"
+            + "var escapes = def(n) { var a = [] var i = 0 while i < n { a.push(i * 0.5) i += 1 } return a } \n"
+            + "var divide = def(a, b) { var x = a + 1 return x / b } \n"
+            + "var modulo = def(a, b) { var x = a + 1 return x % b } \n"
+            + "var count = def(n, acc) { if n == 0 { return acc } return count(n - 1, acc + 0.5) } \n";
+
+        String[] expressions = {
+            "ints(1000)", "reals(10)", "mixed(10)", "overflow(10)", "nan(3.0)",
+            "compares(1, 2)", "compares(2.5, 2)", "compares(2, 2.0)", "compares(3.0, 1.5)",
+            "escapes(5)[4]", "escapes(5).size()", "count(100, 0)", "divide(1, 2)", "divide(1.0, 4)", "modulo(7, 3.0)",
+        };
+
+        LeoObject[] expected = new LeoObject[expressions.length];
+        for(boolean jit : new boolean[] { false, true }) {
+            Leola leola = newRuntime(jit);
+            leola.eval(script);
+
+            for(int i = 0; i < expressions.length; i++) {
+                LeoObject result = leola.eval("return " + expressions[i]);
+                if(jit) {
+                    assertEquals(expressions[i], expected[i], result);
+                    assertEquals(expressions[i], expected[i].getType(), result.getType());
+                }
+                expected[i] = result;
+            }
+
+            for(String expression : new String[] { "divide(1, 0)", "divide(1.0, 0.0)", "modulo(1, 0)", "modulo(2.5, -0.0)" }) {
+                try {
+                    leola.eval("return " + expression);
+                    fail(expression);
+                }
+                catch(LeolaRuntimeException e) {
+                    assertTrue(e.getMessage(), e.getMessage().contains("DivideByZeroError"));
+                }
+            }
+
+            for(String name : new String[] { "ints", "reals", "mixed", "compares", "escapes", "divide", "count" }) {
+                assertEquals(name, jit, bytecode(leola, name).getCompiled() != null);
+            }
+        }
+    }
+
+    @Test
+    public void testOnByDefault() throws Exception {
+        LeoObject.valueOf(0);
+        assertTrue(new Args().tieredCompilation());
+        assertFalse(Args.parse("nj", "script.leola").tieredCompilation());
+
+        String script = "var reals = def(n) { var x = 0.5 var i = 0 while i < n { x = x * 0.75 - x / 3.0 + 1.25 i += 1 } return x }";
+
+        Leola interpreted = Leola.builder().setTieredCompilation(false).newRuntime();
+        interpreted.eval(script);
+        LeoObject expected = interpreted.eval("return reals(5000)");
+        assertNull(bytecode(interpreted, "reals").getCompiled());
+
+        /* the loop passes the default compile threshold, and continues in compiled code */
+        Leola leola = new Leola();
+        leola.eval(script);
+        assertEquals(expected, leola.eval("return reals(5000)"));
+        assertNotNull(bytecode(leola, "reals").getCompiled());
+        assertEquals(expected, leola.eval("return reals(5000)"));
+    }
+
+    @Test
+    public void testSpecializedArguments() throws Exception {
+        Leola leola = newRuntime(true);
+        leola.eval("var sum = def(a, b) { var s = a var i = 0 while i < 10 { s = s + b i += 1 } return s }");
+
+        /* first compiled for integer arguments, then called with arguments of other types */
+        assertEquals(LeoObject.valueOf(21), leola.eval("return sum(1, 2)"));
+        assertNotNull(bytecode(leola, "sum").getCompiled());
+
+        assertEquals(LeoObject.valueOf(26.0), leola.eval("return sum(1, 2.5)"));
+        assertEquals(LeoObject.valueOf(21.5), leola.eval("return sum(1.5, 2)"));
+        assertEquals(LeoObject.valueOf("a2222222222"), leola.eval("return sum(\"a\", 2)"));
+        assertEquals(LeoObject.valueOf(-2147483648 + 9), leola.eval("return sum(2147483647, 1)"));
+        assertEquals(LeoObject.valueOf(21), leola.eval("return sum(1, 2)"));
+    }
+
+    @Test
+    public void testErrors() throws Exception {
+        Leola leola = newRuntime(true);
+        leola.eval("var thrower = def(n) { if n == 0 { throw \"bottom\" } return thrower(n - 1) }");
+
+        LeoObject result = leola.eval("var r = false \n try { thrower(10) } \n catch e { r = e == \"bottom\" } \n return r");
+        assertEquals(LeoObject.valueOf(true), result);
+        assertNotNull(bytecode(leola, "thrower").getCompiled());
+
+        leola.eval("var missing = def() { return noSuchVariable }");
+        try {
+            leola.eval("return missing()");
+            fail();
+        }
+        catch(LeolaRuntimeException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("noSuchVariable"));
+        }
+    }
+
+    @Test
+    public void testErrorLineNumbers() throws Exception {
+        String script =
+              "var f = def(a) {               \n"
+            + "    var x = a + 1              \n"
+            + "    if x > 4 {                 \n"
+            + "        var z = null           \n"
+            + "        return z.foo           \n"
+            + "    }                          \n"
+            + "    return x                   \n"
+            + "}                              \n"
+            + "var g = def(n) {               \n"
+            + "    var i = 0                  \n"
+            + "    while i < n {              \n"
+            + "        f(i)                   \n"
+            + "        i += 1                 \n"
+            + "    }                          \n"
+            + "}                              \n";
+
+        String[] expressions = { "f(1) \n f(5)", "g(3) \n g(10)" };
+        String[] expected = new String[expressions.length];
+        for(boolean jit : new boolean[] { false, true }) {
+            Leola leola = newRuntime(jit);
+            leola.eval(script);
+
+            for(int i = 0; i < expressions.length; i++) {
+                try {
+                    leola.eval(expressions[i]);
+                    fail(expressions[i]);
+                }
+                catch(LeolaRuntimeException e) {
+                    String trace = e.getLeoError().toString();
+                    assertTrue(trace, trace.contains("line: 5"));
+                    if(jit) {
+                        assertEquals(expressions[i], expected[i], trace);
+                    }
+                    expected[i] = trace;
+                }
+            }
+
+            assertEquals(jit, bytecode(leola, "f").getCompiled() != null);
+            assertEquals(jit, bytecode(leola, "g").getCompiled() != null);
+        }
+    }
+
+    @Test
+    public void testLoopContinuesInCompiledCode() throws Exception {
+        Leola leola = newRuntime(true);
+        leola.eval("var loop = def(n) { var s = 0 var i = 0 while i < n { s += i i += 1 } return s }");
+
+        /* the first invocation switches over to the compiled code at the head of the loop */
+        assertEquals(LeoObject.valueOf(4950), leola.eval("return loop(100)"));
+        assertNotNull(bytecode(leola, "loop").getCompiled());
+    }
+
+    @Test
+    public void testFallingOffTheEnd() throws Exception {
+        Bytecode code = new Bytecode(new int[] { LOAD_TRUE, POP });
+        code.constants = new LeoObject[0];
+
+        CompiledBytecode compiled = new JitCompiler(1).compile(code);
+        assertNotNull(compiled);
+        assertEquals(LeoObject.NULL, compiled.execute(code, new LeoObject[0], 0, null, null, 0));
+    }
+
+    @Test
+    public void testUnsupportedCodeIsInterpreted() throws Exception {
+        Leola leola = newRuntime(true);
+        leola.eval("var counter = def() { var c = 0 return def() { c += 1 return c } }");
+        leola.eval("var inc = counter() inc() inc()");
+
+        assertEquals(LeoObject.valueOf(3), leola.eval("return inc()"));
+        assertNull(bytecode(leola, "counter").getCompiled());
+        assertFalse(bytecode(leola, "counter").isCompilable());
+        assertNotNull(bytecode(leola, "inc").getCompiled());
+
+        Bytecode code = new Bytecode(new int[] { SET_ARGx(LINE, 1), LOAD_NULL, RET });
+        assertNull(new JitCompiler(1).compile(code));
+
+        code = new Bytecode(new int[] { LOAD_NULL, YIELD, RET });
+        assertNull(new JitCompiler(1).compile(code));
+
+        /* inconsistent stack depths */
+        code = new Bytecode(new int[] { LOAD_TRUE, SET_ARGsx(IFEQ, 1), LOAD_NULL, RET });
+        assertNull(new JitCompiler(1).compile(code));
+    }
+}
@@ -0,0 +1,192 @@
+package leola;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import leola.vm.Leola;
+import leola.vm.types.LeoArray;
+import leola.vm.types.LeoDouble;
+import leola.vm.types.LeoInteger;
+import leola.vm.types.LeoLong;
+import leola.vm.types.LeoNull;
+import leola.vm.types.LeoObject;
+import leola.vm.types.LeoObject.LeoType;
+
+public class LeoArrayTest {
+
+    private static byte[] write(LeoArray array) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        array.write(new DataOutputStream(bytes));
+        return bytes.toByteArray();
+    }
+
+    private static LeoArray read(byte[] bytes) throws Exception {
+        return LeoObject.read(null, new DataInputStream(new ByteArrayInputStream(bytes))).as();
+    }
+
+    @Test
+    public void testSpecializedElements() throws Exception {
+        LeoObject.valueOf(0);
+
+        LeoArray ints = new LeoArray();
+        for(int i = 0; i < 100; i++) {
+            ints.add(LeoInteger.valueOf(i * 1000));
+        }
+        assertEquals(100, ints.size());
+        assertEquals(LeoInteger.valueOf(99000), ints.get(99));
+        assertEquals(LeoType.INTEGER, ints.get(99).getType());
+        assertEquals(LeoNull.LEONULL, ints.get(100));
+
+        ints.set(0, LeoInteger.valueOf(-1));
+        ints.add(1, LeoInteger.valueOf(-2));
+        assertEquals(LeoInteger.valueOf(-1), ints.remove(0));
+        assertEquals(LeoInteger.valueOf(-2), ints.get(0));
+        assertEquals(LeoInteger.valueOf(1000), ints.get(1));
+        assertEquals(LeoInteger.valueOf(99000), ints.pop());
+        assertEquals(99, ints.size());
+        assertEquals(LeoInteger.valueOf(3000), ints.slice(2, 5).get(1));
+        assertTrue(ints.has(LeoDouble.valueOf(2000.0)));
+        assertEquals(2, ints.indexOf(LeoInteger.valueOf(2000)));
+
+        LeoArray longs = new LeoArray();
+        longs.add(LeoLong.valueOf(Long.MAX_VALUE));
+        longs.add(LeoLong.valueOf(1));
+        assertEquals(LeoType.LONG, longs.get(1).getType());
+        assertEquals(Long.MAX_VALUE, longs.get(0).asLong());
+
+        LeoArray doubles = new LeoArray();
+        doubles.add(LeoDouble.valueOf(0.5));
+        doubles.add(LeoDouble.valueOf(-2.25));
+        assertEquals(LeoType.REAL, doubles.get(1).getType());
+        assertEquals(LeoDouble.valueOf(-2.25), doubles.get(1));
+
+        doubles.clear();
+        doubles.add(LeoInteger.valueOf(7));
+        assertEquals(LeoType.INTEGER, doubles.get(0).getType());
+    }
+
+    @Test
+    public void testGeneralize() throws Exception {
+        LeoObject.valueOf(0);
+
+        LeoArray array = new LeoArray();
+        array.add(LeoDouble.valueOf(1.5));
+        array.add(LeoDouble.valueOf(2.5));
+
+        /* an element not of the array's type switches it over to objects, each element keeps its type */
+        array.set(1, LeoInteger.valueOf(3));
+        array.add(LeoObject.valueOf("four"));
+        assertEquals(LeoType.REAL, array.get(0).getType());
+        assertEquals(LeoType.INTEGER, array.get(1).getType());
+        assertEquals(LeoObject.valueOf("four"), array.get(2));
+        assertEquals("[1.5, 3, \"four\"]", array.toString());
+
+        LeoArray ints = new LeoArray(Arrays.<LeoObject>asList(LeoInteger.valueOf(1), LeoInteger.valueOf(2)));
+        LeoObject[] raw = ints.getRawArray();
+        assertEquals(LeoInteger.valueOf(2), raw[1]);
+        raw[1] = LeoObject.valueOf("two");
+        assertEquals(LeoObject.valueOf("two"), ints.get(1));
+
+        LeoArray objects = LeoArray.newLeoArray(LeoInteger.valueOf(1), LeoInteger.valueOf(2));
+        ints = new LeoArray();
+        ints.add(LeoInteger.valueOf(1));
+        ints.add(LeoInteger.valueOf(2));
+        assertTrue(ints.$eq(objects));
+        assertTrue(objects.$eq(ints));
+        assertTrue(ints.$eq(ints.clone()));
+        assertFalse(ints.$eq(doublesOf(1.0, 3.0)));
+    }
+
+    private static LeoArray doublesOf(double ... values) {
+        LeoArray array = new LeoArray();
+        for(double v : values) {
+            array.add(LeoDouble.valueOf(v));
+        }
+        return array;
+    }
+
+    @Test
+    public void testSort() throws Exception {
+        LeoObject.valueOf(0);
+        Leola runtime = new Leola();
+
+        assertEquals(runtime.eval("return [1, 2, 2, 4, 5, 87, 324]"), runtime.eval("return [1, 5, 2, 87, 324, 4, 2].sort()"));
+        assertEquals(runtime.eval("return [324, 87, 5, 4, 2, 2, 1]"), runtime.eval("return [1, 5, 2, 87, 324, 4, 2].sort(def(a,b) return b-a)"));
+        assertEquals(doublesOf(-1.5, 0.25, 3.0), doublesOf(3.0, -1.5, 0.25).sort((LeoObject)null));
+        assertEquals(runtime.eval("return [1, 2.5, 3]"), runtime.eval("return [3, 2.5, 1].sort()"));
+    }
+
+    @Test
+    public void testScriptAccess() throws Exception {
+        LeoObject.valueOf(0);
+        Leola runtime = new Leola();
+        runtime.eval("var sum = def(a) { var s = 0 a.foreach(def(e) { s += e }) return s }   \n"
+                   + "var squares = def(n) { var a = [] var i = 0 while i < n { a.push(i * i) i += 1 } return a } \n");
+
+        assertEquals(LeoObject.valueOf(328350), runtime.eval("return sum(squares(100))"));
+        assertEquals(LeoObject.valueOf(81), runtime.eval("return squares(10)[9]"));
+        assertEquals(LeoObject.valueOf(10.5), runtime.eval("var a = squares(10) \n a[9] = 10.5 \n return a[9]"));
+        assertEquals(LeoObject.valueOf(4.5), runtime.eval("var a = [0.5, 1.5] \n a[0] = a[0] + a[1] + 2.5 \n return a[0]"));
+        assertEquals(LeoObject.valueOf("x"), runtime.eval("var a = [1, 2, 3] \n a[1] = \"x\" \n return a[1]"));
+        assertEquals(LeoObject.valueOf(6), runtime.eval("return [1, 2, 3].reduce(def(p, n) return p + n)"));
+        assertEquals(LeoObject.valueOf("[2, 4, 6]"), runtime.eval("return [1, 2, 3].map(def(e) return e * 2).toString()"));
+    }
+
+    @Test
+    public void testReferenceEquality() throws Exception {
+        LeoObject.valueOf(0);
+        Leola runtime = new Leola();
+
+        /* small numbers are read back from the number caches */
+        assertEquals(LeoObject.TRUE, runtime.eval("var a = [100, 2] \n return a[0] === a[0]"));
+        assertEquals(LeoObject.TRUE, runtime.eval("var a = [100.0, 2.5] \n var x = a[0] \n return x === a[0] && a[1] !== a[0]"));
+        assertSame(LeoInteger.valueOf(-255), new LeoArray(Arrays.<LeoObject>asList(LeoInteger.valueOf(-255))).get(0));
+
+        /* other numbers are boxed on each read; they are equal, but not the same reference */
+        assertEquals(LeoObject.TRUE, runtime.eval("var a = [100000, 2] \n return a[0] == a[0] && a[0] !== a[0]"));
+        assertEquals(LeoObject.TRUE, runtime.eval("var a = [0.1, 2.5] \n return a[0] == a[0] && a[0] !== a[0]"));
+
+        /* separately computed numbers are not the same reference */
+        assertEquals(LeoObject.FALSE, runtime.eval("var n = 999 \n return 1000 === n + 1"));
+        assertEquals(LeoObject.TRUE, runtime.eval("var n = 999 \n return 1000 !== n + 1"));
+        assertFalse(LeoInteger.valueOf(100000).$req(LeoInteger.valueOf(100000)));
+        assertFalse(LeoInteger.valueOf(100000).$req(LeoLong.valueOf(100000)));
+    }
+
+    @Test
+    public void testReadWrite() throws Exception {
+        LeoObject.valueOf(0);
+
+        LeoObject[][] elements = {
+            { LeoInteger.valueOf(1), LeoInteger.valueOf(-70000), LeoInteger.valueOf(Integer.MAX_VALUE) },
+            { LeoLong.valueOf(1), LeoLong.valueOf(Long.MIN_VALUE) },
+            { LeoDouble.valueOf(0.5), LeoDouble.valueOf(Double.MAX_VALUE) },
+            { LeoInteger.valueOf(1), LeoDouble.valueOf(2.5), LeoObject.valueOf("three"), LeoNull.LEONULL },
+            { },
+        };
+
+        for(LeoObject[] e : elements) {
+            LeoArray specialized = new LeoArray();
+            for(LeoObject obj : e) {
+                specialized.add(obj);
+            }
+
+            /* the serialized form does not depend on the storage of the array */
+            byte[] bytes = write(specialized);
+            assertArrayEquals(write(LeoArray.newLeoArray(e)), bytes);
+
+            LeoArray result = read(bytes);
+            assertEquals(specialized, result);
+            for(int i = 0; i < e.length; i++) {
+                assertEquals(e[i].getType(), result.get(i).getType());
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package leola;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import leola.vm.Leola;
+import leola.vm.exceptions.LeolaRuntimeException;
+import leola.vm.types.LeoError;
+import leola.vm.types.LeoObject;
+
+public class LeoErrorTest {
+
+    private static final String SCRIPT =
+          "var f = def() {     \n"
+        + "    throw \"boom\"  \n"
+        + "}                   \n"
+        + "var g = def() {     \n"
+        + "    f()             \n"
+        + "}                   \n"
+        + "g()                 \n";
+
+    @Test
+    public void testFrames() {
+        LeoObject.valueOf(0);
+
+        LeoError error = new LeoError("boom", 2);
+        assertTrue(error.getStackTrace().isEmpty());
+
+        LeoError cause = new LeoError("cause");
+        error.addFrame("a.leola", 5);
+        error.addStack(cause);
+        for(int i = 0; i < 10; i++) {
+            error.addFrame(null, 10 + i);
+        }
+
+        List<LeoError> stackTrace = error.getStackTrace();
+        assertEquals(12, stackTrace.size());
+        assertEquals("a.leola", stackTrace.get(0).getSourceFile());
+        assertEquals(5, stackTrace.get(0).getLineNumber());
+        assertTrue(stackTrace.get(0).getMessage().isNull());
+        assertSame(cause, stackTrace.get(1));
+        assertEquals(19, stackTrace.get(11).getLineNumber());
+
+        /* the frames are only created once */
+        assertSame(stackTrace.get(0), error.getStackTrace().get(0));
+    }
+
+    @Test
+    public void testThrown() throws Exception {
+        LeoObject.valueOf(0);
+        Leola leola = Leola.builder().setAllowThreadLocals(false).newRuntime();
+
+        try {
+            leola.eval(SCRIPT);
+            fail();
+        }
+        catch(LeolaRuntimeException e) {
+            assertEquals(0, e.getStackTrace().length);
+
+            LeoError error = e.getLeoError();
+            assertEquals(2, error.getLineNumber());
+            assertEquals(LeoObject.valueOf("boom"), error.getMessage());
+
+            List<LeoError> stackTrace = error.getStackTrace();
+            assertEquals(2, stackTrace.size());
+            assertEquals(5, stackTrace.get(0).getLineNumber());
+            assertEquals(7, stackTrace.get(1).getLineNumber());
+
+            assertEquals("Error <> @ line: 2 >> boom\n"
+                       + "+-Thrown from <> @ line: 5\n"
+                       + "|\n"
+                       + "+--+-Thrown from <> @ line: 7", error.toString());
+        }
+
+        /* errors caught in Leola code do not escape */
+        assertEquals(LeoObject.valueOf(3), leola.eval("var n = 0 \n try { g() } catch e { n += 1 } \n "
+                                                    + "try { n.missing() } catch e { n += 2 } \n return n"));
+    }
+
+    @Test
+    public void testStackTrace() {
+        LeoObject.valueOf(0);
+
+        assertEquals(0, new LeolaRuntimeException("error", false).getStackTrace().length);
+        assertTrue(new LeolaRuntimeException("error").getStackTrace().length > 0);
+
+        Exception cause = new IllegalStateException("cause");
+        LeolaRuntimeException e = new LeolaRuntimeException(cause, false);
+        assertSame(cause, e.getCause());
+        assertEquals(0, e.getStackTrace().length);
+
+        /* suppressed exceptions (e.g., from a try-with-resources in native code) are still kept */
+        Exception suppressed = new IllegalStateException("close");
+        e.addSuppressed(suppressed);
+        assertSame(suppressed, e.getSuppressed()[0]);
+
+        e = new LeolaRuntimeException(LeoObject.valueOf("error"), false);
+        e.addSuppressed(suppressed);
+        assertEquals(1, e.getSuppressed().length);
+    }
+}
@@ -0,0 +1,86 @@
+package leola;
+
+import leola.BenchmarkTimer.Benchmark;
+import leola.vm.Leola;
+import leola.vm.LeolaPool;
+import leola.vm.types.LeoObject;
+
+/**
+ * Measures the cost of obtaining a runtime with the shared scripts loaded and running a request in it: creating
+ * a new {@link Leola} runtime and evaluating the shared scripts, versus checking out a fork from a {@link LeolaPool}
+ * (and releasing it).
+ *
+ * @author Tony
+ *
+ */
+public class LeolaPoolBenchmark {
+
+    private static final int ITERATIONS = 2000;
+
+    private static final String SHARED =
+            "namespace util {                                   \n" +
+            "    var clamp = def(x, lo, hi) {                   \n" +
+            "        if x < lo { return lo }                    \n" +
+            "        if x > hi { return hi }                    \n" +
+            "        return x                                   \n" +
+            "    }                                              \n" +
+            "}                                                  \n" +
+            "class Account(id, balance) {                       \n" +
+            "    var deposit = def(amount) {                    \n" +
+            "        balance += util:clamp(amount, 0, 1000)     \n" +
+            "        return balance                             \n" +
+            "    }                                              \n" +
+            "}                                                  \n" +
+            "var handle = def(id, amount) {                     \n" +
+            "    return new Account(id, 100).deposit(amount)    \n" +
+            "}                                                  \n";
+
+    private static final String REQUEST = "return handle(1, 50)";
+
+    private static void benchmark(String name, Benchmark benchmark) throws Exception {
+        double nanosPerOp = BenchmarkTimer.time(BenchmarkTimer.WARMUP_RUNS * ITERATIONS, BenchmarkTimer.MEASURED_RUNS * ITERATIONS, benchmark);
+        System.out.printf("%-28s %14.0f %12.1f%n", name, 1_000_000_000.0 / nanosPerOp, nanosPerOp / 1000.0);
+    }
+
+    private static void check(LeoObject result) {
+        if(!result.equals(LeoObject.valueOf(150))) {
+            throw new IllegalStateException(result.toString());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        LeoObject.valueOf(0);
+
+        Leola template = new Leola();
+        template.eval(SHARED);
+        final LeolaPool pool = new LeolaPool(template, 1, 1);
+
+        System.out.printf("%-28s %14s %12s%n", "Benchmark", "ops/sec", "us/op");
+        benchmark("new Leola() + eval", new Benchmark() {
+
+            @Override
+            public void run() throws Exception {
+                Leola runtime = new Leola();
+                runtime.eval(SHARED);
+                check(runtime.eval(REQUEST));
+            }
+        });
+
+        benchmark("pool checkout + release", new Benchmark() {
+
+            @Override
+            public void run() throws Exception {
+                Leola runtime = pool.checkout();
+                try {
+                    check(runtime.eval(REQUEST));
+                }
+                finally {
+                    pool.release(runtime);
+                }
+            }
+        });
+
+        System.out.printf("%nCheckouts: %d, average: %d ns, max: %d ns%n"
+                , pool.getCheckoutCount(), pool.getAverageCheckoutTime(), pool.getMaxCheckoutTime());
+    }
+}
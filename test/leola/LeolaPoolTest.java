@@ -0,0 +1,159 @@
+package leola;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import leola.vm.Leola;
+import leola.vm.LeolaPool;
+import leola.vm.exceptions.LeolaRuntimeException;
+import leola.vm.types.LeoObject;
+
+public class LeolaPoolTest {
+
+    private static final String SCRIPT =
+          "namespace shared {                                   \n"
+        + "    var scale = 2                                    \n"
+        + "    var scaled = def(x) { return x * scale }         \n"
+        + "}                                                    \n"
+        + "var counter = 0                                      \n"
+        + "var inc = def() {                                    \n"
+        + "    counter += 1                                     \n"
+        + "    return counter                                   \n"
+        + "}                                                    \n"
+        + "class Point(x, y) {                                  \n"
+        + "    var sum = def() { return x + y + counter }       \n"
+        + "}                                                    \n";
+
+    private static Leola newTemplate() throws Exception {
+        LeoObject.valueOf(0);
+        Leola template = new Leola();
+        template.eval(SCRIPT);
+        return template;
+    }
+
+    @Test
+    public void testFork() throws Exception {
+        Leola template = newTemplate();
+        Leola fork = template.fork();
+        assertSame(template, fork.getTemplate());
+        assertNull(template.getTemplate());
+        assertSame(fork.getGlobalNamespace(), fork.getNamespace(Leola.GLOBAL_SCOPE_NAME));
+        assertSame(fork.getGlobalNamespace(), fork.get("this"));
+
+        /* template functions read and write the globals of the fork */
+        assertEquals(LeoObject.valueOf(1), fork.eval("return inc()"));
+        assertEquals(LeoObject.valueOf(2), fork.eval("return inc()"));
+        assertEquals(LeoObject.valueOf(0), template.get("counter"));
+
+        assertEquals(LeoObject.valueOf(20), fork.eval("shared:scale = 10 \n return shared:scaled(2)"));
+        assertEquals(LeoObject.valueOf(4), template.eval("return shared:scaled(2)"));
+
+        assertEquals(LeoObject.valueOf(5), fork.eval("return new Point(1, 2).sum()"));
+        assertEquals(LeoObject.valueOf(3), template.eval("return new Point(1, 2).sum()"));
+
+        /* the libraries act on the fork */
+        assertEquals(LeoObject.valueOf(7), fork.eval("eval(\"var defined = 7\") \n return defined"));
+        assertNull(template.get("defined"));
+        assertEquals(LeoObject.valueOf("abc"), fork.eval("return str:append(\"ab\", \"c\")"));
+
+        /* the identity of the template objects is kept */
+        assertEquals(LeoObject.TRUE, fork.eval("var f = inc \n return f == inc"));
+
+        /* discards the changes */
+        fork.reset();
+        assertNull(fork.get("defined"));
+        assertEquals(LeoObject.valueOf(1), fork.eval("return inc()"));
+        assertEquals(LeoObject.valueOf(4), fork.eval("return shared:scaled(2)"));
+    }
+
+    @Test
+    public void testMutableValues() throws Exception {
+        LeoObject.valueOf(0);
+        Leola template = new Leola();
+        template.eval("var mk = def() { var c = 0 return def() { c += 1 return c } } \n"
+                    + "var inc = mk()                                            \n"
+                    + "var list = []                                             \n"
+                    + "var map = { a -> 1 }                                      \n"
+                    + "class Base(b) { var base = def() { return b } }           \n"
+                    + "class C(x) is Base(x) {                                   \n"
+                    + "    var items = []                                        \n"
+                    + "    var get = def() { return x }                          \n"
+                    + "    var add = def(i) { items.push(i) return items.size() } \n"
+                    + "}                                                         \n"
+                    + "var inst = new C(1)                                       \n"
+                    + "var nested = [inst, { f -> inc }]                         \n");
+
+        String mutate = "inc() \n inc() \n list.push(1) \n map[\"a\"] = 2 \n map[\"b\"] = 3 \n inst.x = 99 \n inst.add(5) \n inst.b = 7";
+        String read = "return [inc(), list.size(), map[\"a\"], map.has(\"b\"), inst.x, inst.get(), inst.add(6), inst.base(), "
+                    + "nested[0] == inst, nested[1][\"f\"] == inc]";
+        LeoObject unchanged = template.fork().eval(read);
+        assertEquals(template.eval("return [1, 0, 1, false, 1, 1, 1, 1, true, true]"), unchanged);
+
+        LeolaPool pool = new LeolaPool(template, 1, 2);
+        Leola a = pool.checkout();
+        a.eval(mutate);
+        assertEquals(a.eval("return [3, 1, 2, true, 99, 99, 2, 7, true, true]"), a.eval(read));
+
+        /* another fork does not see the changes, nor does the fork once it is checked out again */
+        Leola b = pool.checkout();
+        assertEquals(unchanged, b.eval(read));
+        pool.release(a);
+        pool.release(b);
+
+        Leola c = pool.checkout();
+        assertEquals(unchanged, c.eval(read));
+        pool.release(c);
+
+        /* the template itself is never modified */
+        assertEquals(unchanged, template.eval(read));
+    }
+
+    @Test(expected=LeolaRuntimeException.class)
+    public void testForkOfFork() throws Exception {
+        newTemplate().fork().fork();
+    }
+
+    @Test
+    public void testPool() throws Exception {
+        Leola template = newTemplate();
+        LeolaPool pool = new LeolaPool(template, 1, 2);
+        assertEquals(1, pool.getSize());
+        assertEquals(1, pool.getIdleCount());
+
+        Leola a = pool.checkout();
+        Leola b = pool.checkout();
+        assertNotSame(a, b);
+        assertEquals(2, pool.getSize());
+        assertEquals(0, pool.getIdleCount());
+
+        /* the pool is exhausted */
+        assertNull(pool.checkout(1, TimeUnit.MILLISECONDS));
+        assertEquals(1, pool.getWaitCount());
+
+        assertEquals(LeoObject.valueOf(1), a.eval("return inc()"));
+        pool.release(a);
+        assertEquals(1, pool.getIdleCount());
+
+        Leola c = pool.checkout();
+        assertSame(a, c);
+        assertEquals(LeoObject.valueOf(1), c.eval("return inc()"));
+
+        assertEquals(3, pool.getCheckoutCount());
+        assertTrue(pool.getMaxCheckoutTime() >= pool.getAverageCheckoutTime());
+        assertTrue(pool.getCheckoutTime() > 0);
+
+        try {
+            pool.release(template);
+            fail();
+        }
+        catch(LeolaRuntimeException e) {
+        }
+
+        pool.release(b);
+        pool.release(c);
+        assertEquals(2, pool.getIdleCount());
+    }
+}
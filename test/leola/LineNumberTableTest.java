@@ -0,0 +1,98 @@
+package leola;
+
+import static leola.vm.Opcodes.*;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.StringReader;
+
+import org.junit.Test;
+
+import leola.vm.Leola;
+import leola.vm.compiler.Bytecode;
+import leola.vm.compiler.LineNumberTable;
+import leola.vm.exceptions.LeolaRuntimeException;
+import leola.vm.types.LeoObject;
+
+public class LineNumberTableTest {
+
+    private static final String SCRIPT =
+          "var a = 1          \n"
+        + "                   \n"
+        + "var f = def() {    \n"
+        + "    var x = 2      \n"
+        + "    return nope + x\n"
+        + "}                  \n"
+        + "return f()         \n";
+
+    @Test
+    public void testLookup() {
+        LineNumberTable table = new LineNumberTable();
+        assertEquals(-1, table.getLineNumber(0));
+
+        table.add(0, 1);
+        table.add(3, 2);
+        table.add(3, 4);
+        table.add(7, 4);
+        for(int i = 0; i < 20; i++) {
+            table.add(10 + i, 10 + i);
+        }
+
+        assertEquals(22, table.getSize());
+        assertEquals(1, table.getLineNumber(2));
+        assertEquals(4, table.getLineNumber(3));
+        assertEquals(4, table.getLineNumber(9));
+        assertEquals(29, table.getLineNumber(100));
+    }
+
+    @Test
+    public void testErrorLinesWithoutDebugMode() throws Exception {
+        LeoObject.valueOf(0);
+
+        Leola leola = Leola.builder().setIsDebugMode(false).setAllowThreadLocals(false).newRuntime();
+        Bytecode code = leola.compile(new StringReader(SCRIPT));
+        assertFalse(code.hasDebug());
+        assertTrue(code.hasLineNumbers());
+
+        /* no LINE instructions are emitted outside of debug mode */
+        for(Bytecode bytecode : new Bytecode[] { code, code.inner[0] }) {
+            for(int pc = 0; pc < bytecode.len; pc++) {
+                assertNotEquals(LINE, OPCODE(bytecode.instr[pc]));
+            }
+        }
+
+        try {
+            leola.eval(SCRIPT);
+            fail();
+        }
+        catch(LeolaRuntimeException e) {
+            assertEquals(5, e.getLeoError().getLineNumber());
+        }
+    }
+
+    @Test
+    public void testSerialization() throws Exception {
+        LeoObject.valueOf(0);
+
+        Leola leola = Leola.builder().setAllowThreadLocals(false).newRuntime();
+        Bytecode code = leola.compile(new StringReader(SCRIPT));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        code.write(new DataOutputStream(bytes));
+        Bytecode read = Bytecode.read(leola.getGlobalNamespace(), new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertTrue(read.hasLineNumbers());
+        for(int pc = 0; pc < code.len; pc++) {
+            assertEquals(code.getLineNumber(pc), read.getLineNumber(pc));
+        }
+
+        Bytecode inner = read.inner[0];
+        for(int pc = 0; pc < inner.len; pc++) {
+            assertEquals(code.inner[0].getLineNumber(pc), inner.getLineNumber(pc));
+        }
+        assertEquals(5, inner.getLineNumber(inner.len - 1));
+    }
+}
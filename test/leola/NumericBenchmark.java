@@ -0,0 +1,215 @@
+package leola;
+
+import java.lang.management.ManagementFactory;
+
+import leola.BenchmarkTimer.Benchmark;
+import leola.vm.Leola;
+import leola.vm.types.LeoObject;
+
+/**
+ * Numeric benchmarks (mandelbrot, n-body and spectral-norm) written in Leola.  Each is run both interpreted and
+ * with tiered compilation, which keeps numbers unboxed in local variables and temporaries; the ops/sec along
+ * with the bytes allocated per op (the garbage produced by boxing each arithmetic result) are reported.  The
+ * compiled rows show the default configuration, the interpreted rows show tiered compilation disabled.
+ *
+ * @author Tony
+ *
+ */
+public class NumericBenchmark {
+
+    private static final int WARMUP_RUNS = 5;
+    private static final int MEASURED_RUNS = 10;
+
+    private static final String FUNCTIONS =
+            "var mandelbrot = def(size) {                                       \n" +
+            "    var sum = 0                                                    \n" +
+            "    var y = 0                                                      \n" +
+            "    while y < size {                                               \n" +
+            "        var ci = 2.0 * y / size - 1.0                              \n" +
+            "        var x = 0                                                  \n" +
+            "        while x < size {                                           \n" +
+            "            var cr = 2.0 * x / size - 1.5                          \n" +
+            "            var zr = 0.0                                           \n" +
+            "            var zi = 0.0                                           \n" +
+            "            var inside = 1                                         \n" +
+            "            var i = 0                                              \n" +
+            "            while i < 50 {                                         \n" +
+            "                var tr = zr * zr - zi * zi + cr                    \n" +
+            "                zi = 2.0 * zr * zi + ci                            \n" +
+            "                zr = tr                                            \n" +
+            "                if zr * zr + zi * zi > 4.0 {                       \n" +
+            "                    inside = 0                                     \n" +
+            "                    break                                          \n" +
+            "                }                                                  \n" +
+            "                i += 1                                             \n" +
+            "            }                                                      \n" +
+            "            sum += inside                                          \n" +
+            "            x += 1                                                 \n" +
+            "        }                                                          \n" +
+            "        y += 1                                                     \n" +
+            "    }                                                              \n" +
+            "    return sum                                                     \n" +
+            "}                                                                  \n" +
+
+            "class Body(x, y, z, vx, vy, vz, mass);                             \n" +
+            "var PI = 3.141592653589793                                         \n" +
+            "var SOLAR_MASS = 4.0 * PI * PI                                     \n" +
+            "var DAYS_PER_YEAR = 365.24                                         \n" +
+            "var newBodies = def() {                                            \n" +
+            "    return [                                                       \n" +
+            "        new Body(0.0, 0.0, 0.0, 0.0, 0.0, 0.0, SOLAR_MASS),        \n" +
+            "        new Body(4.84143144246472090e+00, -1.16032004402742839e+00, -1.03622044471123109e-01,           \n" +
+            "                 1.66007664274403694e-03 * DAYS_PER_YEAR, 7.69901118419740425e-03 * DAYS_PER_YEAR,     \n" +
+            "                 -6.90460016972063023e-05 * DAYS_PER_YEAR, 9.54791938424326609e-04 * SOLAR_MASS),      \n" +
+            "        new Body(8.34336671824457987e+00, 4.12479856412430479e+00, -4.03523417114321381e-01,            \n" +
+            "                 -2.76742510726862411e-03 * DAYS_PER_YEAR, 4.99852801234917238e-03 * DAYS_PER_YEAR,    \n" +
+            "                 2.30417297573763929e-05 * DAYS_PER_YEAR, 2.85885980666130812e-04 * SOLAR_MASS),       \n" +
+            "        new Body(1.28943695621391310e+01, -1.51111514016986312e+01, -2.23307578892655734e-01,           \n" +
+            "                 2.96460137564761618e-03 * DAYS_PER_YEAR, 2.37847173959480950e-03 * DAYS_PER_YEAR,     \n" +
+            "                 -2.96589568540237556e-05 * DAYS_PER_YEAR, 4.36624404335156298e-05 * SOLAR_MASS),      \n" +
+            "        new Body(1.53796971148509165e+01, -2.59193146099879641e+01, 1.79258772950371181e-01,            \n" +
+            "                 2.68067772490389322e-03 * DAYS_PER_YEAR, 1.62824170038242295e-03 * DAYS_PER_YEAR,     \n" +
+            "                 -9.51592254519715870e-05 * DAYS_PER_YEAR, 5.15138902046611451e-05 * SOLAR_MASS)       \n" +
+            "    ]                                                              \n" +
+            "}                                                                  \n" +
+            "var advance = def(bodies, n, dt) {                                 \n" +
+            "    var i = 0                                                      \n" +
+            "    while i < n {                                                  \n" +
+            "        var bi = bodies[i]                                         \n" +
+            "        var j = i + 1                                              \n" +
+            "        while j < n {                                              \n" +
+            "            var bj = bodies[j]                                     \n" +
+            "            var dx = bi.x - bj.x                                   \n" +
+            "            var dy = bi.y - bj.y                                   \n" +
+            "            var dz = bi.z - bj.z                                   \n" +
+            "            var d2 = dx * dx + dy * dy + dz * dz                   \n" +
+            "            var mag = dt / (d2 * sqrt(d2))                         \n" +
+            "            var mi = bi.mass * mag                                 \n" +
+            "            var mj = bj.mass * mag                                 \n" +
+            "            bi.vx = bi.vx - dx * mj                                \n" +
+            "            bi.vy = bi.vy - dy * mj                                \n" +
+            "            bi.vz = bi.vz - dz * mj                                \n" +
+            "            bj.vx = bj.vx + dx * mi                                \n" +
+            "            bj.vy = bj.vy + dy * mi                                \n" +
+            "            bj.vz = bj.vz + dz * mi                                \n" +
+            "            j += 1                                                 \n" +
+            "        }                                                          \n" +
+            "        i += 1                                                     \n" +
+            "    }                                                              \n" +
+            "    i = 0                                                          \n" +
+            "    while i < n {                                                  \n" +
+            "        var b = bodies[i]                                          \n" +
+            "        b.x = b.x + dt * b.vx                                      \n" +
+            "        b.y = b.y + dt * b.vy                                      \n" +
+            "        b.z = b.z + dt * b.vz                                      \n" +
+            "        i += 1                                                     \n" +
+            "    }                                                              \n" +
+            "}                                                                  \n" +
+            "var nbody = def(steps) {                                           \n" +
+            "    var bodies = newBodies()                                       \n" +
+            "    var step = 0                                                   \n" +
+            "    while step < steps {                                           \n" +
+            "        advance(bodies, 5, 0.01)                                   \n" +
+            "        step += 1                                                  \n" +
+            "    }                                                              \n" +
+            "    return bodies[0].vx                                            \n" +
+            "}                                                                  \n" +
+
+            "var A = def(i, j) {                                                \n" +
+            "    var ij = i + j                                                 \n" +
+            "    return 1.0 / (ij * (ij + 1) / 2 + i + 1)                       \n" +
+            "}                                                                  \n" +
+            "var multiplyAv = def(n, v, av, transpose) {                        \n" +
+            "    var i = 0                                                      \n" +
+            "    while i < n {                                                  \n" +
+            "        var sum = 0.0                                              \n" +
+            "        var j = 0                                                  \n" +
+            "        while j < n {                                              \n" +
+            "            if transpose { sum += A(j, i) * v[j] }                 \n" +
+            "            else { sum += A(i, j) * v[j] }                         \n" +
+            "            j += 1                                                 \n" +
+            "        }                                                          \n" +
+            "        av[i] = sum                                                \n" +
+            "        i += 1                                                     \n" +
+            "    }                                                              \n" +
+            "}                                                                  \n" +
+            "var spectralnorm = def(n) {                                        \n" +
+            "    var u = []                                                     \n" +
+            "    var v = []                                                     \n" +
+            "    var tmp = []                                                   \n" +
+            "    var i = 0                                                      \n" +
+            "    while i < n {                                                  \n" +
+            "        u.push(1.0)                                                \n" +
+            "        v.push(0.0)                                                \n" +
+            "        tmp.push(0.0)                                              \n" +
+            "        i += 1                                                     \n" +
+            "    }                                                              \n" +
+            "    i = 0                                                          \n" +
+            "    while i < 10 {                                                 \n" +
+            "        multiplyAv(n, u, tmp, false)                               \n" +
+            "        multiplyAv(n, tmp, v, true)                                \n" +
+            "        multiplyAv(n, v, tmp, false)                               \n" +
+            "        multiplyAv(n, tmp, u, true)                                \n" +
+            "        i += 1                                                     \n" +
+            "    }                                                              \n" +
+            "    var vBv = 0.0                                                  \n" +
+            "    var vv = 0.0                                                   \n" +
+            "    i = 0                                                          \n" +
+            "    while i < n {                                                  \n" +
+            "        vBv += u[i] * v[i]                                         \n" +
+            "        vv += v[i] * v[i]                                          \n" +
+            "        i += 1                                                     \n" +
+            "    }                                                              \n" +
+            "    return sqrt(vBv / vv)                                          \n" +
+            "}                                                                  \n";
+
+    private static final String[][] BENCHMARKS = {
+        { "mandelbrot",    "return mandelbrot(200)" },
+        { "n-body",        "return nbody(20000)" },
+        { "spectral-norm", "return spectralnorm(100)" },
+    };
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static void measure(String name, boolean tieredCompilation, final String script) throws Exception {
+        final Leola runtime = Leola.builder()
+                             .setTieredCompilation(tieredCompilation)
+                             .setAllowThreadLocals(false)
+                             .newRuntime();
+        runtime.loadStatics(Math.class);
+        runtime.eval(FUNCTIONS);
+
+        Benchmark benchmark = new Benchmark() {
+
+            @Override
+            public void run() throws Exception {
+                runtime.eval(script);
+            }
+        };
+
+        BenchmarkTimer.warmup(WARMUP_RUNS, benchmark);
+        LeoObject result = runtime.eval(script);
+        if(result.isError()) {
+            throw new IllegalStateException(result.toString());
+        }
+
+        long allocated = allocatedBytes();
+        double nanosPerOp = BenchmarkTimer.measure(MEASURED_RUNS, benchmark);
+        allocated = allocatedBytes() - allocated;
+
+        System.out.printf("%-14s %-12s %12.2f %16.1f %16s%n", name, tieredCompilation ? "compiled" : "interpreted",
+                          1_000_000_000.0 / nanosPerOp, allocated / (MEASURED_RUNS * 1024.0), result);
+    }
+
+    public static void main(String[] args) throws Exception {
+        LeoObject.valueOf(0);
+
+        System.out.printf("%-14s %-12s %12s %16s %16s%n", "", "", "ops/sec", "allocated kb/op", "result");
+        for(String[] benchmark : BENCHMARKS) {
+            measure(benchmark[0], false, benchmark[1]);
+            measure(benchmark[0], true, benchmark[1]);
+        }
+    }
+}
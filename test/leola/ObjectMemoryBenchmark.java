@@ -0,0 +1,63 @@
+package leola;
+
+import leola.vm.Leola;
+import leola.vm.types.LeoArray;
+import leola.vm.types.LeoObject;
+
+/**
+ * Measures the memory used by class instances.  Instantiates 1M objects of a 5 field class and reports
+ * the bytes per object using shaped slot storage, and again after moving each instance into dictionary
+ * storage (the layout used prior to shapes).
+ *
+ * Run with a large heap, e.g. -Xmx2g
+ *
+ * @author Tony
+ *
+ */
+public class ObjectMemoryBenchmark {
+
+    private static final int NUMBER_OF_OBJECTS = 1_000_000;
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for(int i = 0; i < 4; i++) {
+            System.gc();
+            try {
+                Thread.sleep(100);
+            }
+            catch(InterruptedException e) {
+            }
+        }
+
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Leola runtime = Leola.builder().newRuntime();
+        runtime.eval("class Point(a, b, c, d, e);");
+
+        long baseline = usedMemory();
+
+        LeoArray objects = runtime.eval(
+                "var objects = []                              \n" +
+                "var i = 0                                     \n" +
+                "while i < " + NUMBER_OF_OBJECTS + " {         \n" +
+                "   objects.add(new Point(i, i, i, i, i))      \n" +
+                "   i += 1                                     \n" +
+                "}                                             \n" +
+                "return objects                                \n").as();
+
+        long shaped = usedMemory() - baseline;
+
+        for(int i = 0; i < objects.size(); i++) {
+            LeoObject obj = objects.get(i);
+            obj.getScope().getRawObjects();
+        }
+
+        long dictionary = usedMemory() - baseline;
+
+        System.out.printf("Objects:            %d%n", objects.size());
+        System.out.printf("Dictionary storage: %d bytes/object%n", dictionary / NUMBER_OF_OBJECTS);
+        System.out.printf("Shaped storage:     %d bytes/object%n", shaped / NUMBER_OF_OBJECTS);
+    }
+}
@@ -0,0 +1,103 @@
+package leola;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import leola.vm.ExceptionStack;
+import leola.vm.Leola;
+import leola.vm.ParameterPermutation;
+import leola.vm.exceptions.LeolaRuntimeException;
+import leola.vm.types.LeoObject;
+
+public class ParameterPermutationTest {
+
+    private static LeoObject[] names(String ... names) {
+        LeoObject[] result = new LeoObject[names.length];
+        for(int i = 0; i < names.length; i++) {
+            result[i] = names[i] != null ? LeoObject.valueOf(names[i]) : null;
+        }
+        return result;
+    }
+
+    @Test
+    public void testIndexesAreCached() {
+        LeoObject.valueOf(0);
+
+        LeoObject[] paramNames = names("a", "b", "c");
+        List<LeoObject> params = Arrays.asList(names("c", null, "a"));
+
+        ParameterPermutation permutation = new ParameterPermutation();
+        int[] indexes = permutation.getIndexes(params, paramNames);
+        assertArrayEquals(new int[] { 3, -2, 1 }, indexes);
+        assertSame(indexes, permutation.getIndexes(params, paramNames));
+
+        /* a different callee */
+        int[] otherIndexes = permutation.getIndexes(params, names("c", "b", "a"));
+        assertNotSame(indexes, otherIndexes);
+        assertArrayEquals(new int[] { 1, -2, 3 }, otherIndexes);
+
+        /* different names at the call site */
+        paramNames = names("a", "b", "c");
+        permutation.getIndexes(params, paramNames);
+        assertArrayEquals(new int[] { 2, -2, 0 }, permutation.getIndexes(Arrays.asList(names("b", null)), paramNames));
+    }
+
+    @Test
+    public void testInvalidName() {
+        LeoObject.valueOf(0);
+
+        try {
+            new ParameterPermutation().getIndexes(Arrays.asList(names("d")), names("a", "b"));
+            fail();
+        }
+        catch(LeolaRuntimeException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("'d'"));
+        }
+    }
+
+    @Test
+    public void testNamedParametersAcrossCalls() throws Exception {
+        LeoObject.valueOf(0);
+
+        Leola leola = Leola.builder().setAllowThreadLocals(false).newRuntime();
+        leola.eval("var f = def(a, b, c) { return a + b * 10 + c * 100 } \n"
+                 + "var g = def(c, b, a) { return a + b * 10 + c * 100 } \n"
+                 + "var call = def(fn) { return fn(c=>3, 2, a=>1) } \n"
+                 + "var total = def(n) { var s = 0 var i = 0 while i < n { s += call(f) + call(g) i += 1 } return s }");
+
+        assertEquals(LeoObject.valueOf(321 * 2 * 100), leola.eval("return total(100)"));
+
+        try {
+            leola.eval("return f(d=>1)");
+            fail();
+        }
+        catch(LeolaRuntimeException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("'d'"));
+        }
+        assertEquals(LeoObject.valueOf(321), leola.eval("return call(f)"));
+    }
+
+    @Test
+    public void testExceptionStackReuse() {
+        ExceptionStack blockStack = new ExceptionStack();
+        for(int i = 0; i < 20; i++) {
+            blockStack.pushCatch(i);
+            blockStack.pushFinally(i + 100);
+        }
+
+        assertTrue(blockStack.peekIsFinally());
+        assertEquals(119, blockStack.peekAddress());
+        blockStack.pop();
+        assertTrue(blockStack.peekIsCatch());
+        assertEquals(19, blockStack.peekAddress());
+
+        blockStack.clear();
+        assertTrue(blockStack.isEmpty());
+        assertFalse(blockStack.peekIsCatch());
+        assertFalse(blockStack.peekIsFinally());
+    }
+}
@@ -0,0 +1,69 @@
+package leola;
+
+import static leola.vm.Opcodes.*;
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import leola.vm.Quickener;
+import leola.vm.compiler.Bytecode;
+import leola.vm.types.LeoObject;
+
+public class QuickenerTest {
+
+    private static final LeoObject ONE = LeoObject.valueOf(1);
+    private static final LeoObject TWO = LeoObject.valueOf(2);
+    private static final LeoObject HALF = LeoObject.valueOf(0.5);
+    private static final LeoObject STR = LeoObject.valueOf("a");
+
+    @Test
+    public void testQuicken() {
+        assertEquals(ADD_II, Quickener.quicken(ADD, ONE, TWO));
+        assertEquals(ADD_DD, Quickener.quicken(ADD, HALF, HALF));
+        assertEquals(ADD_SS, Quickener.quicken(ADD, STR, STR));
+        assertEquals(LT_LOCAL_CONST_IFEQ_II, Quickener.quicken(LT_LOCAL_CONST_IFEQ, ONE, TWO));
+
+        /* mixed operands are left generic */
+        assertEquals(ADD, Quickener.quicken(ADD, ONE, HALF));
+        assertEquals(ADD, Quickener.quicken(ADD, STR, ONE));
+        assertEquals(EQ, Quickener.quicken(EQ, HALF, HALF));
+
+        assertEquals(LT_LOCAL_CONST_IFEQ, Quickener.generic(LT_LOCAL_CONST_IFEQ_II));
+        assertEquals(SET_ARG2(SET_ARG1(ADD_LOCAL_CONST, 3), 4), Quickener.generify(SET_ARG2(SET_ARG1(ADD_LOCAL_CONST_II, 3), 4)));
+    }
+
+    @Test
+    public void testDequicken() {
+        Bytecode code = new Bytecode(new int[] { ADD, RET });
+
+        Quickener.quicken(code, 0, code.instr[0], ONE, TWO);
+        assertEquals(ADD_II, code.instr[0]);
+        assertEquals(LeoObject.valueOf(3), Quickener.execute(code, 0, code.instr[0], ONE, TWO));
+        assertEquals(ADD_II, code.instr[0]);
+
+        /* a type miss executes the generic instruction and de-quickens */
+        assertEquals(LeoObject.valueOf(1.5), Quickener.execute(code, 0, code.instr[0], ONE, HALF));
+        assertEquals(ADD, code.instr[0]);
+
+        Quickener.quicken(code, 0, code.instr[0], STR, STR);
+        assertEquals(ADD_SS, code.instr[0]);
+        assertEquals(LeoObject.valueOf("aa"), Quickener.execute(code, 0, code.instr[0], STR, STR));
+        assertEquals(LeoObject.valueOf("a1"), Quickener.execute(code, 0, code.instr[0], STR, ONE));
+        assertEquals(ADD, code.instr[0]);
+    }
+
+    @Test
+    public void testUnstableTypesStayGeneric() {
+        Bytecode code = new Bytecode(new int[] { LT, RET });
+        for(int i = 0; i < Quickener.MAX_DEQUICKENS; i++) {
+            Quickener.quicken(code, 0, code.instr[0], ONE, TWO);
+            assertEquals(LT_II, code.instr[0]);
+
+            assertEquals(LeoObject.valueOf(true), Quickener.execute(code, 0, code.instr[0], HALF, ONE));
+            assertEquals(LT, code.instr[0]);
+        }
+
+        Quickener.quicken(code, 0, code.instr[0], ONE, TWO);
+        assertEquals(LT, code.instr[0]);
+    }
+}
@@ -0,0 +1,153 @@
+package leola;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import leola.BenchmarkTimer.Benchmark;
+import leola.vm.Args;
+import leola.vm.Leola;
+import leola.vm.types.LeoObject;
+
+/**
+ * Measures the startup of a runtime initialized by a representative script: creating a new {@link Leola} runtime
+ * (which loads the standard libraries) and evaluating the script, versus starting the runtime from a snapshot of
+ * the initialized runtime (see {@link Leola#writeSnapshot(File)}).  Reports the time to start a runtime and the heap
+ * retained by each started runtime.
+ *
+ * @author Tony
+ *
+ */
+public class RuntimeSnapshotBenchmark {
+
+    private static final int ITERATIONS = 500;
+    private static final int RETAINED = 200;
+
+    private static final String SCRIPT =
+            "namespace util {                                   \n" +
+            "    var clamp = def(x, lo, hi) {                   \n" +
+            "        if x < lo { return lo }                    \n" +
+            "        if x > hi { return hi }                    \n" +
+            "        return x                                   \n" +
+            "    }                                              \n" +
+            "    var codes = {}                                 \n" +
+            "    var i = 0                                      \n" +
+            "    while i < 100 {                                \n" +
+            "        codes[\"code\" + i] = i * 7                \n" +
+            "        i += 1                                     \n" +
+            "    }                                              \n" +
+            "}                                                  \n" +
+            "namespace format {                                 \n" +
+            "    var pad = def(s, n) {                          \n" +
+            "        var result = s                             \n" +
+            "        while n > 0 {                              \n" +
+            "            result = str:append(result, \" \")     \n" +
+            "            n -= 1                                 \n" +
+            "        }                                          \n" +
+            "        return result                              \n" +
+            "    }                                              \n" +
+            "}                                                  \n" +
+            "class Account(id, balance) {                       \n" +
+            "    var deposit = def(amount) {                    \n" +
+            "        balance += util:clamp(amount, 0, 1000)     \n" +
+            "        return balance                             \n" +
+            "    }                                              \n" +
+            "}                                                  \n" +
+            "class Savings(id, balance, rate) is Account(id, balance) {\n" +
+            "    var accrue = def() {                           \n" +
+            "        return deposit(balance * rate)             \n" +
+            "    }                                              \n" +
+            "}                                                  \n" +
+            "var handle = def(id, amount) {                     \n" +
+            "    return new Account(id, 100).deposit(amount)    \n" +
+            "}                                                  \n";
+
+    private static final String REQUEST = "return handle(1, 50)";
+
+    private interface Startup {
+        Leola start() throws Exception;
+    }
+
+    private static void benchmark(String name, final Startup startup) throws Exception {
+        double firstTime = BenchmarkTimer.measure(1, new Benchmark() {
+
+            @Override
+            public void run() throws Exception {
+                check(startup.start());
+            }
+        });
+
+        double nanosPerOp = BenchmarkTimer.time(BenchmarkTimer.WARMUP_RUNS * ITERATIONS, BenchmarkTimer.MEASURED_RUNS * ITERATIONS, new Benchmark() {
+
+            @Override
+            public void run() throws Exception {
+                startup.start();
+            }
+        });
+        System.out.printf("%-24s %12.1f %12.1f %14d%n", name, firstTime / 1000.0, nanosPerOp / 1000.0, retained(startup));
+    }
+
+    /**
+     * @return the heap retained by each started runtime, in bytes
+     */
+    private static long retained(Startup startup) throws Exception {
+        List<Leola> runtimes = new ArrayList<Leola>(RETAINED);
+        long before = usedHeap();
+        for(int i = 0; i < RETAINED; i++) {
+            runtimes.add(startup.start());
+        }
+        long after = usedHeap();
+
+        check(runtimes.get(RETAINED - 1));
+        return (after - before) / RETAINED;
+    }
+
+    private static long usedHeap() throws Exception {
+        Runtime runtime = Runtime.getRuntime();
+        for(int i = 0; i < 4; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void check(Leola runtime) throws Exception {
+        LeoObject result = runtime.eval(REQUEST);
+        if(!result.equals(LeoObject.valueOf(150))) {
+            throw new IllegalStateException(result.toString());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        LeoObject.valueOf(0);
+
+        File snapshotFile = File.createTempFile("leola", ".snapshot");
+        snapshotFile.deleteOnExit();
+
+        Leola template = new Leola();
+        template.eval(SCRIPT);
+        template.writeSnapshot(snapshotFile);
+
+        final Args snapshotArgs = Args.builder().setSnapshotFile(snapshotFile).build();
+
+        System.out.printf("Snapshot size: %d bytes%n%n", snapshotFile.length());
+        System.out.printf("%-24s %12s %12s %14s%n", "Startup", "first (us)", "us/op", "retained (b)");
+        benchmark("new Leola() + eval", new Startup() {
+
+            @Override
+            public Leola start() throws Exception {
+                Leola runtime = new Leola();
+                runtime.eval(SCRIPT);
+                return runtime;
+            }
+        });
+
+        benchmark("snapshot", new Startup() {
+
+            @Override
+            public Leola start() throws Exception {
+                return new Leola(snapshotArgs);
+            }
+        });
+    }
+}
@@ -0,0 +1,139 @@
+package leola;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.Test;
+
+import leola.vm.Args;
+import leola.vm.Leola;
+import leola.vm.exceptions.LeolaRuntimeException;
+import leola.vm.types.LeoObject;
+
+public class RuntimeSnapshotTest {
+
+    private static final String SCRIPT =
+          "namespace shared {                                   \n"
+        + "    var scale = 2                                    \n"
+        + "    var scaled = def(x) { return x * scale }         \n"
+        + "}                                                    \n"
+        + "var makeCounter = def() {                            \n"
+        + "    var n = 0                                        \n"
+        + "    return def() { n += 1 return n }                 \n"
+        + "}                                                    \n"
+        + "var counter = makeCounter()                          \n"
+        + "var counters = [ counter, counter ]                  \n"
+        + "var names = { first -> \"ünï\", last -> \"code\" }   \n"
+        + "var lower = str:toLower                              \n"
+        + "class Base(a) {                                      \n"
+        + "    var get = def() { return a }                     \n"
+        + "}                                                    \n"
+        + "class Point(x, y) is Base(x) {                       \n"
+        + "    var sum = def() { return x + y + shared:scale }  \n"
+        + "}                                                    \n";
+
+    private static File writeSnapshot(Leola runtime) throws IOException {
+        File snapshotFile = File.createTempFile("leola", ".snapshot");
+        snapshotFile.deleteOnExit();
+        runtime.writeSnapshot(snapshotFile);
+        return snapshotFile;
+    }
+
+    private static Leola fromSnapshot(File snapshotFile) {
+        return Args.builder().setSnapshotFile(snapshotFile).newRuntime();
+    }
+
+    @Test
+    public void testSnapshot() throws Exception {
+        LeoObject.valueOf(0);
+        Leola template = new Leola();
+        template.eval(SCRIPT);
+        template.eval("counter()");
+
+        Leola runtime = fromSnapshot(writeSnapshot(template));
+
+        assertEquals(LeoObject.valueOf(10), runtime.eval("return shared:scaled(5)"));
+        assertEquals(LeoObject.valueOf(30), runtime.eval("shared:scale = 6 \n return shared:scaled(5)"));
+        assertEquals(LeoObject.valueOf(10), template.eval("return shared:scaled(5)"));
+
+        /* the closure values are restored, and remain shared */
+        assertEquals(LeoObject.valueOf(2), runtime.eval("return counter()"));
+        assertEquals(LeoObject.valueOf(3), runtime.eval("return counters[1]()"));
+        assertEquals(LeoObject.TRUE, runtime.eval("return counters[0] == counter"));
+
+        assertEquals(LeoObject.valueOf("ünï"), runtime.eval("return names[\"first\"]"));
+        assertEquals(LeoObject.valueOf(9), runtime.eval("return new Point(1, 2).sum()"));
+        assertEquals(LeoObject.valueOf(4), runtime.eval("return new Point(4, 2).get()"));
+
+        /* the libraries are bound to the new runtime */
+        assertEquals(LeoObject.valueOf("abc"), runtime.eval("return lower(\"ABC\")"));
+        assertEquals(LeoObject.valueOf("abc"), runtime.eval("return str:append(\"ab\", \"c\")"));
+        assertEquals(LeoObject.valueOf(7), runtime.eval("eval(\"var defined = 7\") \n return defined"));
+        assertNull(template.get("defined"));
+
+        assertSame(runtime.getGlobalNamespace(), runtime.get("this"));
+        assertSame(runtime.getGlobalNamespace(), runtime.getNamespace(Leola.GLOBAL_SCOPE_NAME));
+
+        /* reading the snapshot again */
+        runtime.reset();
+        assertNull(runtime.get("defined"));
+        assertEquals(LeoObject.valueOf(2), runtime.eval("return counter()"));
+        assertEquals(LeoObject.valueOf(10), runtime.eval("return shared:scaled(5)"));
+    }
+
+    @Test
+    public void testSnapshotOfSnapshot() throws Exception {
+        LeoObject.valueOf(0);
+        Leola template = new Leola();
+        template.eval(SCRIPT);
+
+        Leola runtime = fromSnapshot(writeSnapshot(fromSnapshot(writeSnapshot(template))));
+        assertEquals(LeoObject.valueOf(1), runtime.eval("return counter()"));
+        assertEquals(LeoObject.valueOf(5), runtime.eval("return new Point(1, 2).sum()"));
+    }
+
+    @Test(expected=IOException.class)
+    public void testUnsupported() throws Exception {
+        LeoObject.valueOf(0);
+        Leola runtime = new Leola();
+        runtime.eval(SCRIPT + "var point = new Point(1, 2)");
+        writeSnapshot(runtime);
+    }
+
+    @Test
+    public void testUnsupportedKeepsPreviousSnapshot() throws Exception {
+        LeoObject.valueOf(0);
+        File directory = Files.createTempDirectory("leola").toFile();
+        File snapshotFile = new File(directory, "app.snapshot");
+        new Leola().writeSnapshot(snapshotFile);
+        long length = snapshotFile.length();
+
+        Leola runtime = new Leola();
+        runtime.eval(SCRIPT + "var point = new Point(1, 2)");
+        try {
+            runtime.writeSnapshot(snapshotFile);
+            fail();
+        }
+        catch(IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("'point'"));
+        }
+
+        /* the failed snapshot leaves neither a partial nor a temporary file behind */
+        assertEquals(length, snapshotFile.length());
+        assertArrayEquals(new String[] { "app.snapshot" }, directory.list());
+        assertEquals(LeoObject.valueOf(2), fromSnapshot(snapshotFile).eval("return 1 + 1"));
+
+        snapshotFile.delete();
+        directory.delete();
+    }
+
+    @Test(expected=LeolaRuntimeException.class)
+    public void testSandboxed() throws Exception {
+        LeoObject.valueOf(0);
+        File snapshotFile = writeSnapshot(new Leola());
+        Args.builder().setSnapshotFile(snapshotFile).setSandboxed(true).newRuntime();
+    }
+}
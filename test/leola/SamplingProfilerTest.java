@@ -0,0 +1,72 @@
+package leola;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import leola.vm.Leola;
+import leola.vm.debug.SamplingProfiler;
+import leola.vm.types.LeoObject;
+
+public class SamplingProfilerTest {
+
+    private static final String SCRIPT =
+          "var inner = def() {     \n"
+        + "    profiler.sample()   \n"
+        + "}                       \n"
+        + "var outer = def() {     \n"
+        + "    var i = 0           \n"
+        + "    while i < 3 {       \n"
+        + "        inner()         \n"
+        + "        i += 1          \n"
+        + "    }                   \n"
+        + "}                       \n"
+        + "outer()                 \n";
+
+    private static Leola newRuntime() {
+        LeoObject.valueOf(0);
+        return Leola.builder().setAllowThreadLocals(false).newRuntime();
+    }
+
+    @Test
+    public void testSamples() throws Exception {
+        Leola leola = newRuntime();
+        SamplingProfiler profiler = new SamplingProfiler(leola, 1000);
+        profiler.setLineGranularity(true);
+        leola.put("profiler", profiler);
+
+        leola.eval(SCRIPT);
+        assertEquals(3, profiler.getSampleCount());
+        assertEquals("<script>:11;<script>:7;<script>:2 3\n", profiler.getCollapsedStacks());
+
+        String report = profiler.getReport(10);
+        assertTrue(report, report.contains("3  100.0%  <script>:2"));
+        assertTrue(report, report.contains("0    0.0%          3  100.0%  <script>:11"));
+
+        /* the VM is idle, so there is nothing to sample */
+        profiler.sample();
+        assertEquals(3, profiler.getSampleCount());
+
+        profiler.reset();
+        assertEquals("", profiler.getCollapsedStacks());
+    }
+
+    @Test
+    public void testSamplingThread() throws Exception {
+        Leola leola = newRuntime();
+        leola.eval("var spin = def(n) { var s = 0 var i = 0 while i < n { s += i % 7 i += 1 } return s }");
+
+        SamplingProfiler profiler = leola.startProfiler(1);
+        assertTrue(profiler.isRunning());
+
+        long start = System.currentTimeMillis();
+        while(profiler.getSampleCount() < 5 && System.currentTimeMillis() - start < 10_000) {
+            leola.eval("spin(100000)");
+        }
+
+        assertSame(profiler, leola.stopProfiler());
+        assertFalse(profiler.isRunning());
+        assertTrue(profiler.getSampleCount() >= 5);
+        assertTrue(profiler.getCollapsedStacks(), profiler.getCollapsedStacks().contains("<script>:1"));
+    }
+}
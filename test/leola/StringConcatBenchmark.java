@@ -0,0 +1,53 @@
+package leola;
+
+import leola.BenchmarkTimer.Benchmark;
+import leola.vm.Leola;
+import leola.vm.types.LeoObject;
+
+/**
+ * Measures a script building a large string by repeatedly appending to it (<code>s = s + piece</code>), as report
+ * generators do.  Reports the time to build the string and read it back for an increasing number of pieces; the time
+ * per piece should stay flat as the string grows.
+ *
+ * @author Tony
+ *
+ */
+public class StringConcatBenchmark {
+
+    private static final int[] NUMBER_OF_PIECES = { 10_000, 50_000, 100_000, 200_000 };
+
+    private static final String SCRIPT =
+            "var report = def(n) {                              \n" +
+            "    var s = \"\"                                     \n" +
+            "    var i = 0                                      \n" +
+            "    while i < n {                                  \n" +
+            "        s = s + \"| row \" + i + \" | total \"          \n" +
+            "        s = s + (i * 7) + \" |\\n\"                    \n" +
+            "        i += 1                                     \n" +
+            "    }                                              \n" +
+            "    return s                                       \n" +
+            "}                                                  \n";
+
+    public static void main(String[] args) throws Exception {
+        LeoObject.valueOf(0);
+
+        Leola runtime = new Leola();
+        runtime.eval(SCRIPT);
+        final LeoObject report = runtime.get("report");
+
+        System.out.printf("%-12s %12s %12s %12s%n", "pieces", "chars", "ms/op", "ns/piece");
+        for(int pieces : NUMBER_OF_PIECES) {
+            final LeoObject n = LeoObject.valueOf(pieces);
+            double total = BenchmarkTimer.time(new Benchmark() {
+
+                @Override
+                public void run() throws Exception {
+                    report.call(n).toString().length();
+                }
+            });
+
+            int length = report.call(n).toString().length();
+            System.out.printf("%-12d %12d %12.2f %12.1f%n", pieces, length, total / 1_000_000.0, total / pieces);
+        }
+    }
+}
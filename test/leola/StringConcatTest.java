@@ -0,0 +1,121 @@
+package leola;
+
+import static leola.vm.Opcodes.*;
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import leola.vm.Leola;
+import leola.vm.compiler.Bytecode;
+import leola.vm.types.LeoFunction;
+import leola.vm.types.LeoObject;
+import leola.vm.types.LeoString;
+
+public class StringConcatTest {
+
+    private static String expected(int n, boolean prepend) {
+        StringBuilder sb = new StringBuilder();
+        for(int i = 0; i < n; i++) {
+            if(prepend) {
+                sb.insert(0, "piece" + i + ",");
+            }
+            else {
+                sb.append("piece").append(i).append(",");
+            }
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void testRepeatedConcat() throws Exception {
+        LeoObject.valueOf(0);
+        Leola runtime = new Leola();
+        runtime.eval("var append = def(n) {                         \n"
+                   + "    var s = \"\"                                \n"
+                   + "    var i = 0                                   \n"
+                   + "    while i < n {                               \n"
+                   + "        s = s + \"piece\" + i + \",\"           \n"
+                   + "        i += 1                                  \n"
+                   + "    }                                           \n"
+                   + "    return s                                    \n"
+                   + "}                                               \n"
+                   + "var prepend = def(n) {                        \n"
+                   + "    var s = \"\"                                \n"
+                   + "    var i = 0                                   \n"
+                   + "    while i < n {                               \n"
+                   + "        s = \"piece\" + i + \",\" + s           \n"
+                   + "        i += 1                                  \n"
+                   + "    }                                           \n"
+                   + "    return s                                    \n"
+                   + "}                                               \n");
+
+        LeoString appended = runtime.eval("return append(100000)").as();
+        assertEquals(expected(100000, false).length(), appended.length());
+        assertEquals(expected(100000, false), appended.toString());
+
+        LeoString prepended = runtime.eval("return prepend(20000)").as();
+        assertEquals(expected(20000, true), prepended.toString());
+
+        assertEquals(LeoObject.TRUE, runtime.eval("return append(100) == append(100)"));
+        assertEquals(LeoObject.valueOf(7), runtime.eval("var m = {} \n m[append(20)] = 7 \n return m[append(20)]"));
+        assertEquals(LeoObject.valueOf("piece19,"), runtime.eval("return append(20).rest(142)"));
+    }
+
+    @Test
+    public void testConcatIsImmutable() throws Exception {
+        LeoObject.valueOf(0);
+        String text = expected(10, false);
+        LeoString a = new LeoString(text);
+        LeoString b = a.append(a);
+        LeoString c = b.insert(0, LeoObject.valueOf(">"));
+        LeoString d = b.insert(b.length(), LeoObject.valueOf("<"));
+
+        /* modifying a string (see LeoString#$sindex) does not alter the strings it was concatenated into */
+        a.$sindex(LeoObject.valueOf(0), LeoObject.valueOf("X"));
+        assertEquals("X" + text, a.toString());
+        assertEquals(text + text, b.toString());
+        assertEquals(">" + text + text, c.toString());
+        assertEquals(text + text + "<", d.toString());
+        assertEquals(new LeoString(text + text).hashCode(), b.hashCode());
+        assertEquals(LeoObject.valueOf("1" + text + text), b.$add(1));
+    }
+
+    @Test
+    public void testConcatInstruction() throws Exception {
+        LeoObject.valueOf(0);
+        String script =
+              "var concat = def(a, b, c) { return a + \":\" + b + \":\" + c }   \n"
+            + "var added = def(a, b, c) {                                    \n"
+            + "    var s = a + \":\"                                          \n"
+            + "    s = s + b                                                 \n"
+            + "    s = s + \":\"                                              \n"
+            + "    return s + c                                              \n"
+            + "}                                                             \n"
+            + "var numbers = def(a, b) { return a + b + \"!\" + a + b }      \n";
+
+        for(boolean jit : new boolean[] { false, true }) {
+            Leola runtime = Leola.builder()
+                                 .setTieredCompilation(jit)
+                                 .setCompileThreshold(1)
+                                 .setAllowThreadLocals(false)
+                                 .newRuntime();
+            runtime.eval(script);
+
+            Bytecode code = ((LeoFunction)runtime.get("concat")).getBytecode();
+            boolean hasConcat = false;
+            for(int instr : code.instr) {
+                hasConcat |= OPCODE(instr) == CONCAT && ARGx(instr) == 5;
+            }
+            assertTrue(hasConcat);
+
+            String[] arguments = { "1, 2, 3", "\"a\", 2.5, \"c\"", "1, 2, \"" + expected(10, false) + "\"", "\"" + expected(10, false) + "\", \"b\", 3" };
+            for(String args : arguments) {
+                assertEquals(args, runtime.eval("return added(" + args + ")"), runtime.eval("return concat(" + args + ")"));
+            }
+
+            assertEquals(LeoObject.valueOf("3!12"), runtime.eval("return numbers(1, 2)"));
+            assertEquals(LeoObject.valueOf("ab!ab"), runtime.eval("return numbers(\"a\", \"b\")"));
+            assertEquals(jit, ((LeoFunction)runtime.get("concat")).getBytecode().getCompiled() != null);
+        }
+    }
+}
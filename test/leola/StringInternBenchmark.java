@@ -0,0 +1,93 @@
+package leola;
+
+import leola.BenchmarkTimer.Benchmark;
+import leola.vm.Leola;
+import leola.vm.types.LeoObject;
+import leola.vm.types.LeoString;
+
+/**
+ * Builds 10M distinct strings, both as runtime strings (concatenations in a script) and as interned strings
+ * (see {@link LeoString#valueOf(String)}), reporting the time per string, the used heap and the size of the intern
+ * table as the strings are built.  Fails if the intern table does not stay bounded.
+ *
+ * @author Tony
+ *
+ */
+public class StringInternBenchmark {
+
+    private static final int NUMBER_OF_STRINGS = 10_000_000;
+    private static final int BATCH_SIZE = 1_000_000;
+    private static final int MAX_INTERN_TABLE_SIZE = 2 * BATCH_SIZE;
+
+    private static final String SCRIPT =
+            "var build = def(start, n) {                \n" +
+            "    var result = \"\"                        \n" +
+            "    var i = start                          \n" +
+            "    while i < start + n {                  \n" +
+            "        result = \"value\" + i              \n" +
+            "        i += 1                             \n" +
+            "    }                                      \n" +
+            "    return result                          \n" +
+            "}                                          \n";
+
+    private interface Batch {
+        void build(int start) throws Exception;
+    }
+
+    private static void benchmark(String name, final Batch batch) throws Exception {
+        System.out.printf("%n%s%n", name);
+        System.out.printf("%12s %12s %14s %12s%n", "strings", "ns/string", "used heap (kb)", "interned");
+
+        for(int start = 0; start < NUMBER_OF_STRINGS; start += BATCH_SIZE) {
+            final int batchStart = start;
+            double total = BenchmarkTimer.measure(1, new Benchmark() {
+
+                @Override
+                public void run() throws Exception {
+                    batch.build(batchStart);
+                }
+            });
+
+            int internTableSize = LeoString.getInternTableSize();
+            System.out.printf("%12d %12.1f %14d %12d%n", start + BATCH_SIZE, total / BATCH_SIZE, usedHeap() / 1024, internTableSize);
+
+            if(internTableSize > MAX_INTERN_TABLE_SIZE) {
+                throw new IllegalStateException("The intern table is not bounded: " + internTableSize);
+            }
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    public static void main(String[] args) throws Exception {
+        LeoObject.valueOf(0);
+
+        final Leola runtime = new Leola();
+        runtime.eval(SCRIPT);
+        final LeoObject build = runtime.get("build");
+
+        benchmark("runtime strings", new Batch() {
+
+            @Override
+            public void build(int start) throws Exception {
+                build.call(LeoObject.valueOf(start), LeoObject.valueOf(BATCH_SIZE));
+            }
+        });
+
+        benchmark("interned strings", new Batch() {
+
+            @Override
+            public void build(int start) throws Exception {
+                for(int i = start; i < start + BATCH_SIZE; i++) {
+                    LeoString.valueOf("value" + i);
+                }
+            }
+        });
+
+        System.out.printf("%nintern hits: %d, misses: %d%n", LeoString.getInternHitCount(), LeoString.getInternMissCount());
+    }
+}
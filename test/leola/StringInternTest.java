@@ -0,0 +1,73 @@
+package leola;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import leola.vm.Leola;
+import leola.vm.types.LeoObject;
+import leola.vm.types.LeoString;
+
+public class StringInternTest {
+
+    @Test
+    public void testIntern() {
+        LeoObject.valueOf(0);
+        long hits = LeoString.getInternHitCount();
+
+        LeoString a = LeoString.valueOf("internTestIdentifier");
+        LeoString b = LeoString.valueOf(new String("internTestIdentifier"));
+        assertSame(a, b);
+        assertTrue(LeoString.getInternHitCount() > hits);
+        assertTrue(LeoString.getInternTableSize() > 0);
+
+        LeoString c = new LeoString("internTestIdentifier");
+        assertNotSame(a, c);
+        assertEquals(a, c);
+        assertEquals(a.hashCode(), c.hashCode());
+        assertTrue(a.$req(c));
+        assertFalse(a.$rneq(c));
+    }
+
+    @Test
+    public void testRuntimeStringsAreNotInterned() throws Exception {
+        LeoObject.valueOf(0);
+        Leola runtime = new Leola();
+        runtime.eval("var build = def(n) {             \n"
+                   + "    var result = \"\"              \n"
+                   + "    var i = 0                      \n"
+                   + "    while i < n {                  \n"
+                   + "        result = \"key\" + i       \n"
+                   + "        i += 1                     \n"
+                   + "    }                              \n"
+                   + "    return result                  \n"
+                   + "}                                  \n");
+
+        long misses = LeoString.getInternMissCount();
+        assertEquals(LeoObject.valueOf("key9999"), runtime.eval("return build(10000)"));
+        assertTrue(LeoString.getInternMissCount() - misses < 100);
+
+        /* runtime strings remain usable as keys, and compare as before */
+        assertEquals(LeoObject.valueOf(7), runtime.eval("var m = { key1 -> 7 } \n return m[\"key\" + 1]"));
+        assertEquals(LeoObject.TRUE, runtime.eval("var k = \"key\" + 1 \n return k === \"key1\""));
+        assertEquals(LeoObject.FALSE, runtime.eval("return (\"key\" + 2) !== \"key2\""));
+    }
+
+    @Test
+    public void testCollectedInternsAreExpunged() throws Exception {
+        LeoObject.valueOf(0);
+        int size = LeoString.getInternTableSize();
+        for(int i = 0; i < 10000; i++) {
+            LeoString.valueOf("collectedIntern" + i);
+        }
+
+        for(int i = 0; i < 10 && LeoString.getInternTableSize() > size + 5000; i++) {
+            System.gc();
+            Thread.sleep(20);
+
+            /* interning expunges the collected entries */
+            LeoString.valueOf("collectedInternProbe" + i);
+        }
+        assertTrue(LeoString.getInternTableSize() <= size + 5000);
+    }
+}
@@ -10,6 +10,7 @@ import java.io.FileFilter;
 
 import org.junit.Test;
 
+import leola.vm.Args.ArgsBuilder;
 import leola.vm.Leola;
 import leola.vm.types.LeoObject;
 
@@ -23,26 +24,68 @@ public class SuiteTest {
 
     @Test
     public void test() {        
+        for(File testScript : testScripts()) {
+            runTest(testScript, Leola.builder());
+        }
+    }
+    
+    @Test
+    public void testWithoutSuperinstructions() {
+        runTests(false, true, true);
+    }
+    
+    @Test
+    public void testWithoutFolding() {
+        runTests(true, false, true);
+    }
+    
+    @Test
+    public void testWithoutQuickening() {
+        runTests(true, true, false);
+    }
+    
+    @Test
+    public void testWithoutOptimizations() {
+        runTests(false, false, false);
+    }
+    
+    /**
+     * Runs all tests with the given optimizations, both interpreted and
+     * compiled on their first invocation
+     * 
+     * @param optimizeBytecode
+     * @param foldConstants
+     * @param quickenInstructions
+     */
+    private void runTests(boolean optimizeBytecode, boolean foldConstants, boolean quickenInstructions) {
+        for(boolean tieredCompilation : new boolean[] { false, true }) {
+            for(File testScript : testScripts()) {
+                runTest(testScript, Leola.builder()
+                                         .setOptimizeBytecode(optimizeBytecode)
+                                         .setFoldConstants(foldConstants)
+                                         .setQuickenInstructions(quickenInstructions)
+                                         .setTieredCompilation(tieredCompilation)
+                                         .setCompileThreshold(1));
+            }
+        }
+    }
+    
+    private File[] testScripts() {
         File testsDir = new File(System.getProperty("user.dir"), "tests");
-        File[] testScripts = testsDir.listFiles(new FileFilter() {
+        return testsDir.listFiles(new FileFilter() {
             
             @Override
             public boolean accept(File pathname) {
                 return pathname.getName().toLowerCase().endsWith("test.leola");
             }
         });
-        
-        for(File testScript : testScripts) {
-            runTest(testScript);
-        }
     }
     
-    private void runTest(File testScript) {
+    private void runTest(File testScript, ArgsBuilder builder) {
         System.out.print("Running test: " + testScript + "...");
         
-        Leola leola = Leola.builder()
-                           .setIsDebugMode(true)
-                           .newRuntime();
+        Leola leola = builder.setIsDebugMode(true)
+                             .newRuntime();
         try {
             LeoObject result = leola.eval(testScript);
             assertFalse(result.isError());
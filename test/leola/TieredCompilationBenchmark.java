@@ -0,0 +1,89 @@
+package leola;
+
+import leola.BenchmarkTimer.Benchmark;
+import leola.vm.Leola;
+import leola.vm.types.LeoObject;
+
+/**
+ * Compares the interpreter against tiered compilation on a recursive function (fib), numeric loops
+ * and map-heavy code.  Each script is run a number of times in the same runtime, so the reported time
+ * of the compiled tier is after both the compile threshold and the JVM warm up have been reached.
+ *
+ * @author Tony
+ *
+ */
+public class TieredCompilationBenchmark {
+
+    private static final int WARMUP_RUNS = 5;
+    private static final int MEASURED_RUNS = 10;
+
+    private static final String FUNCTIONS =
+            "var fib = def(n) {                                 \n" +
+            "    if n < 2 { return n }                          \n" +
+            "    return fib(n - 1) + fib(n - 2)                 \n" +
+            "}                                                  \n" +
+            "var loops = def(n) {                               \n" +
+            "    var sum = 0                                    \n" +
+            "    var i = 0                                      \n" +
+            "    while i < n {                                  \n" +
+            "        var j = 0                                  \n" +
+            "        while j < 100 {                            \n" +
+            "            sum = (sum + i * j) % 1000003          \n" +
+            "            j += 1                                 \n" +
+            "        }                                          \n" +
+            "        i += 1                                     \n" +
+            "    }                                              \n" +
+            "    return sum                                     \n" +
+            "}                                                  \n" +
+            "var maps = def(n) {                                \n" +
+            "    var m = {}                                     \n" +
+            "    var i = 0                                      \n" +
+            "    while i < n {                                  \n" +
+            "        var key = \"k\" + (i % 256)                \n" +
+            "        var count = m[key]                         \n" +
+            "        if count == null { count = 0 }             \n" +
+            "        m[key] = count + 1                         \n" +
+            "        i += 1                                     \n" +
+            "    }                                              \n" +
+            "    return m[\"k7\"]                               \n" +
+            "}                                                  \n";
+
+    private static final String[][] BENCHMARKS = {
+        { "fib",   "return fib(25)" },
+        { "loops", "return loops(10000)" },
+        { "maps",  "return maps(200000)" },
+    };
+
+    private static void run(Leola runtime, String script) throws Exception {
+        LeoObject result = runtime.eval(script);
+        if(result.isError()) {
+            throw new IllegalStateException(result.toString());
+        }
+    }
+
+    private static double measure(boolean tieredCompilation, final String script) throws Exception {
+        final Leola runtime = Leola.builder()
+                             .setTieredCompilation(tieredCompilation)
+                             .setAllowThreadLocals(false)
+                             .newRuntime();
+        runtime.eval(FUNCTIONS);
+
+        return BenchmarkTimer.time(WARMUP_RUNS, MEASURED_RUNS, new Benchmark() {
+
+            @Override
+            public void run() throws Exception {
+                TieredCompilationBenchmark.run(runtime, script);
+            }
+        }) / 1_000_000.0;
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.out.printf("%-8s %14s %14s %8s%n", "", "interpreted", "compiled", "speedup");
+        for(String[] benchmark : BENCHMARKS) {
+            double interpreted = measure(false, benchmark[1]);
+            double compiled = measure(true, benchmark[1]);
+
+            System.out.printf("%-8s %12.2fms %12.2fms %7.2fx%n", benchmark[0], interpreted, compiled, interpreted / compiled);
+        }
+    }
+}
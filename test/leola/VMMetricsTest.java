@@ -0,0 +1,95 @@
+package leola;
+
+import static leola.vm.Opcodes.*;
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import leola.vm.Args;
+import leola.vm.Leola;
+import leola.vm.VMMetrics;
+import leola.vm.VMMetrics.Allocation;
+import leola.vm.types.LeoObject;
+
+public class VMMetricsTest {
+
+    private static final String SCRIPT =
+          "var counter = def() {            \n"
+        + "    var n = 0                    \n"
+        + "    return def() {               \n"
+        + "        n += 1                   \n"
+        + "        return n                 \n"
+        + "    }                            \n"
+        + "}                                \n"
+        + "var depth = def(n) {             \n"
+        + "    if n == 0 { return 0 }       \n"
+        + "    return depth(n - 1) + 1      \n"
+        + "}                                \n"
+        + "var c = counter()                \n"
+        + "var list = []                    \n"
+        + "var i = 0                        \n"
+        + "while i < 10 {                   \n"
+        + "    list += [c(), {x->i}]        \n"
+        + "    i += 1                       \n"
+        + "}                                \n"
+        + "return depth(100)                \n";
+
+    private static Leola newRuntime(boolean collectMetrics) {
+        LeoObject.valueOf(0);
+        return Args.builder()
+                .setAllowThreadLocals(false)
+                .setStackSize(64)
+                .setCollectMetrics(collectMetrics)
+                .newRuntime();
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        Leola leola = newRuntime(false);
+        assertNull(leola.getMetrics());
+        assertEquals(LeoObject.valueOf(100), leola.eval(SCRIPT));
+    }
+
+    @Test
+    public void testMetrics() throws Exception {
+        Leola leola = newRuntime(true);
+        assertEquals(LeoObject.valueOf(100), leola.eval(SCRIPT));
+
+        VMMetrics metrics = leola.getMetrics();
+        assertEquals(leola.getActiveVM().getInstructionCount(), metrics.getExecutionCount());
+
+        assertEquals(11, metrics.getExecutionCount(NEW_ARRAY));
+        assertEquals(11, metrics.getAllocations(Allocation.ARRAY));
+        assertEquals(metrics.getExecutionCount(NEW_MAP), metrics.getAllocations(Allocation.MAP));
+        assertEquals(10, metrics.getAllocations(Allocation.MAP));
+        assertEquals(metrics.getExecutionCount(FUNC_DEF), metrics.getAllocations(Allocation.FUNCTION));
+        assertEquals(1, metrics.getAllocations(Allocation.OUTER));
+        assertEquals(0, metrics.getAllocations(Allocation.GENERATOR));
+        assertTrue(metrics.getStackGrowths() > 0);
+
+        long[] buckets = metrics.getTimeBuckets(NEW_ARRAY);
+        long total = 0;
+        for(long bucket : buckets) {
+            total += bucket;
+        }
+        assertEquals(11, total);
+        assertTrue(metrics.getTime(NEW_ARRAY) > 0);
+
+        String report = metrics.getReport();
+        assertTrue(report, report.startsWith("Opcode"));
+        assertTrue(report, report.contains("NEW_ARRAY"));
+        assertTrue(report, report.contains("LeoArray"));
+
+        metrics.reset();
+        assertEquals(0, metrics.getExecutionCount());
+        assertEquals(0, metrics.getStackGrowths());
+    }
+
+    @Test
+    public void testTimeBuckets() {
+        assertEquals(64, VMMetrics.getTimeBucketLimit(0));
+        assertEquals(256, VMMetrics.getTimeBucketLimit(1));
+        assertEquals(256 * 1024, VMMetrics.getTimeBucketLimit(VMMetrics.NUMBER_OF_TIME_BUCKETS - 2));
+        assertEquals(Long.MAX_VALUE, VMMetrics.getTimeBucketLimit(VMMetrics.NUMBER_OF_TIME_BUCKETS - 1));
+    }
+}